@@ -0,0 +1,70 @@
+/*
+ * web: org.nrg.xnat.dicom.mizer.service.CompiledAnonScriptCacheBenchmark
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.dicom.mizer.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nrg.dicom.mizer.exceptions.MizerException;
+import org.nrg.dicom.mizer.service.MizerService;
+import org.nrg.test.utils.TestFileUtils;
+import org.nrg.xnat.dicom.mizer.config.MizerServiceTestConfig;
+import org.nrg.xnat.helpers.merge.anonymize.CompiledAnonScriptCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares anonymizing a session's worth of instances by compiling the script for every instance with reusing the
+ * compiled script from {@link CompiledAnonScriptCache}. Run with <b>./gradlew benchmark</b>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = MizerServiceTestConfig.class)
+@Slf4j
+public class CompiledAnonScriptCacheBenchmark extends BaseMizerTest {
+    @Test
+    public void compareCompiledScriptThroughput() throws IOException, MizerException {
+        final CompiledAnonScriptCache cache       = new CompiledAnonScriptCache(_service);
+        final List<File>              perInstance = copyTestFiles();
+        final List<File>              cached      = copyTestFiles();
+
+        final long perInstanceStart = System.nanoTime();
+        for (final File file : perInstance) {
+            _service.anonymize(file, PROJECT, SUBJECT, SESSION, true, 1L, SET_STD_ATTRS_DE6);
+        }
+        final long perInstanceElapsed = System.nanoTime() - perInstanceStart;
+
+        final long cachedStart = System.nanoTime();
+        for (final File file : cached) {
+            cache.anonymize(file, 1L, SET_STD_ATTRS_DE6, PROJECT, SUBJECT, SESSION, true);
+        }
+        final long cachedElapsed = System.nanoTime() - cachedStart;
+
+        log.info("Anonymized {} instances in {} ms compiling per instance and {} ms with the compiled script cache", INSTANCES, perInstanceElapsed / 1000000, cachedElapsed / 1000000);
+    }
+
+    private static List<File> copyTestFiles() throws IOException {
+        final List<File> files = new ArrayList<>(INSTANCES);
+        for (int index = 0; index < INSTANCES; index++) {
+            files.add(TestFileUtils.copyTestFileToTemp(TEST_FILE));
+        }
+        return files;
+    }
+
+    private static final int INSTANCES = 200;
+
+    @Autowired
+    private MizerService _service;
+}
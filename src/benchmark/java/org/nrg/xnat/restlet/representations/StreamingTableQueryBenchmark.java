@@ -0,0 +1,186 @@
+/*
+ * web: org.nrg.xnat.restlet.representations.StreamingTableQueryBenchmark
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.restlet.representations;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.nrg.xft.XFTTable;
+import org.restlet.data.MediaType;
+import org.restlet.resource.OutputRepresentation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.OutputStream;
+import java.sql.ResultSetMetaData;
+import java.util.Hashtable;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Writes a 500,000 row search result as JSON, CSV, and XML, once by reading the whole result into an {@link XFTTable}
+ * first, the way table representations were written before, and once by streaming the rows from the database with a
+ * {@link StreamingTableQuery}, logging the time to the first byte, the total time, and the peak heap used for each. The
+ * database is an in-memory H2 database in PostgreSQL mode. H2 doesn't fetch rows through a cursor the way the PostgreSQL
+ * driver does when a fetch size is set, so this compares the cost of building the table against writing the rows
+ * directly, but the heap used by the streamed results is only representative when run against PostgreSQL. Run with
+ * <b>./gradlew benchmark</b>.
+ */
+@Slf4j
+public class StreamingTableQueryBenchmark {
+    @BeforeClass
+    public static void createTable() {
+        _dataSource = new SingleConnectionDataSource("jdbc:h2:mem:streaming;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "", true);
+        _template = new JdbcTemplate(_dataSource);
+        _template.execute("CREATE TABLE xnat_search (id VARCHAR(32), label VARCHAR(64), project VARCHAR(32), insert_date TIMESTAMP, notes VARCHAR(255))");
+        _template.execute("INSERT INTO xnat_search SELECT 'XNAT_E' || X, 'Session_' || X, 'Project_' || MOD(X, 20), TIMESTAMP '2020-01-01 00:00:00', 'Notes for session ' || X FROM SYSTEM_RANGE(1, " + ROWS + ")");
+    }
+
+    @AfterClass
+    public static void dropTable() {
+        _template.execute("DROP TABLE xnat_search");
+        _dataSource.destroy();
+    }
+
+    @Test
+    public void compareRepresentations() throws Exception {
+        assertEquals(ROWS, new StreamingTableQuery(_template, QUERY).count());
+        for (final MediaType mediaType : new MediaType[]{MediaType.APPLICATION_JSON, MediaType.TEXT_CSV, MediaType.TEXT_XML}) {
+            // Warm up the driver and writers before measuring anything.
+            measure(materialized(mediaType));
+            measure(streamed(mediaType));
+
+            final Measurement materialized = measure(materialized(mediaType));
+            final Measurement streamed     = measure(streamed(mediaType));
+            log.info("Wrote {} rows as {}: reading the rows into a table took {} ms to the first byte, {} ms in total, and {} MB of heap; streaming the rows took {} ms to the first byte, {} ms in total, and {} MB of heap",
+                     ROWS, mediaType, materialized._firstByte, materialized._total, materialized._heap, streamed._firstByte, streamed._total, streamed._heap);
+        }
+    }
+
+    private static Representation materialized(final MediaType mediaType) {
+        return () -> {
+            final XFTTable                  table    = readTable();
+            final Hashtable<String, Object> metadata = new Hashtable<>();
+            metadata.put(StreamingTableQuery.TOTAL_RECORDS, table.size());
+            if (mediaType.equals(MediaType.APPLICATION_JSON)) {
+                return new JSONTableRepresentation(table, metadata, mediaType);
+            }
+            if (mediaType.equals(MediaType.TEXT_CSV)) {
+                return new CSVTableRepresentation(table, metadata, mediaType);
+            }
+            return new XMLTableRepresentation(table, metadata, mediaType);
+        };
+    }
+
+    private static Representation streamed(final MediaType mediaType) {
+        return () -> {
+            final StreamingTableQuery       query    = new StreamingTableQuery(_template, QUERY);
+            final Hashtable<String, Object> metadata = new Hashtable<>();
+            if (mediaType.equals(MediaType.APPLICATION_JSON)) {
+                return new JSONTableRepresentation(query, null, metadata, mediaType);
+            }
+            if (mediaType.equals(MediaType.TEXT_CSV)) {
+                return new CSVTableRepresentation(query, null, metadata, mediaType);
+            }
+            return new XMLTableRepresentation(query, null, metadata, mediaType);
+        };
+    }
+
+    /**
+     * Reads the query results into a table the same way <b>XFTTable.Execute()</b> does.
+     */
+    private static XFTTable readTable() {
+        return _template.query(QUERY, (ResultSetExtractor<XFTTable>) results -> {
+            final ResultSetMetaData metaData = results.getMetaData();
+            final String[]          columns  = new String[metaData.getColumnCount()];
+            for (int index = 0; index < columns.length; index++) {
+                columns[index] = metaData.getColumnLabel(index + 1);
+            }
+            final XFTTable table = new XFTTable();
+            table.initTable(columns);
+            while (results.next()) {
+                final Object[] row = new Object[columns.length];
+                for (int index = 0; index < row.length; index++) {
+                    row[index] = results.getObject(index + 1);
+                }
+                table.insertRow(row);
+            }
+            return table;
+        });
+    }
+
+    private static Measurement measure(final Representation representation) throws Exception {
+        System.gc();
+        final Runtime               runtime  = Runtime.getRuntime();
+        final long                  baseline = runtime.totalMemory() - runtime.freeMemory();
+        final long                  start    = System.nanoTime();
+        final MeasuringOutputStream output   = new MeasuringOutputStream(start);
+        representation.create().write(output);
+        final long                  total    = System.nanoTime() - start;
+        return new Measurement(output._firstByte / 1000000, total / 1000000, Math.max(0, output._peakHeap - baseline) / 1024 / 1024);
+    }
+
+    private interface Representation {
+        OutputRepresentation create();
+    }
+
+    /**
+     * Discards what's written to it, recording when the first byte arrives and sampling the heap used as bytes arrive.
+     */
+    private static class MeasuringOutputStream extends OutputStream {
+        MeasuringOutputStream(final long start) {
+            _start = start;
+        }
+
+        @Override
+        public void write(final int b) {
+            written(1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            written(len);
+        }
+
+        private void written(final int length) {
+            if (_written == 0) {
+                _firstByte = System.nanoTime() - _start;
+            }
+            _written += length;
+            final Runtime runtime = Runtime.getRuntime();
+            _peakHeap = Math.max(_peakHeap, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        private final long _start;
+        private       long _written;
+        private       long _firstByte;
+        private       long _peakHeap;
+    }
+
+    private static class Measurement {
+        Measurement(final long firstByte, final long total, final long heap) {
+            _firstByte = firstByte;
+            _total = total;
+            _heap = heap;
+        }
+
+        private final long _firstByte;
+        private final long _total;
+        private final long _heap;
+    }
+
+    private static final int    ROWS  = 500000;
+    private static final String QUERY = "SELECT id, label, project, insert_date, notes FROM xnat_search ORDER BY id";
+
+    private static SingleConnectionDataSource _dataSource;
+    private static JdbcTemplate               _template;
+}
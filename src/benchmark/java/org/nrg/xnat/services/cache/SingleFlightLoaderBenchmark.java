@@ -0,0 +1,109 @@
+/*
+ * web: org.nrg.xnat.services.cache.SingleFlightLoaderBenchmark
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.services.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@Slf4j
+public class SingleFlightLoaderBenchmark {
+    /**
+     * Simulates {@link #USERS} users each making {@link #REQUESTS_PER_USER} concurrent page requests right after every
+     * cache entry has been evicted, e.g. after a group change. Each miss takes {@link #LOAD_TIME} milliseconds to load,
+     * standing in for the readable counts queries. With a single lock around all loads, every user waits for the loads
+     * of the users ahead of them. With the single-flight loader, each user's entry is loaded once and different users'
+     * entries load in parallel. Run with <b>./gradlew benchmark</b>.
+     */
+    @Test
+    public void compareContentionAfterGlobalEviction() throws Exception {
+        final Map<String, Integer> lockedCache = new ConcurrentHashMap<>();
+        final AtomicInteger        lockedLoads = new AtomicInteger();
+        final Object               lock        = new Object();
+        final long lockedElapsed = simulate(username -> {
+            final Integer cached = lockedCache.get(username);
+            if (cached != null) {
+                return cached;
+            }
+            synchronized (lock) {
+                return lockedCache.computeIfAbsent(username, key -> {
+                    sleep(LOAD_TIME);
+                    return lockedLoads.incrementAndGet();
+                });
+            }
+        });
+
+        final SingleFlightLoader   loader      = new SingleFlightLoader();
+        final Map<String, Integer> cache       = new ConcurrentHashMap<>();
+        final AtomicInteger        loads       = new AtomicInteger();
+        final long elapsed = simulate(username -> {
+            final Integer cached = cache.get(username);
+            if (cached != null) {
+                return cached;
+            }
+            return loader.load(username, () -> cache.get(username), () -> {
+                sleep(LOAD_TIME);
+                final int value = loads.incrementAndGet();
+                cache.put(username, value);
+                return value;
+            });
+        });
+
+        log.info("Loaded {} users with {} concurrent requests each in {} ms with a single lock and {} ms with single-flight loading", USERS, REQUESTS_PER_USER, lockedElapsed, elapsed);
+        assertEquals(USERS, lockedLoads.get());
+        assertEquals(USERS, loads.get());
+        assertTrue(elapsed < lockedElapsed);
+    }
+
+    private static long simulate(final Function<String, Integer> request) throws Exception {
+        final ExecutorService service = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Callable<Integer>> requests = new ArrayList<>();
+            for (int index = 0; index < USERS * REQUESTS_PER_USER; index++) {
+                final String username = "user" + (index % USERS);
+                requests.add(() -> request.apply(username));
+            }
+            final long start = System.nanoTime();
+            for (final Future<Integer> future : service.invokeAll(requests)) {
+                assertNotNull(future.get());
+            }
+            return (System.nanoTime() - start) / 1000000;
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final int  USERS             = 500;
+    private static final int  REQUESTS_PER_USER = 3;
+    private static final int  THREADS           = 200;
+    private static final long LOAD_TIME         = 5;
+}
@@ -0,0 +1,195 @@
+package org.nrg.xnat.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.imageio.plugins.dcm.DicomImageReadParam;
+import org.dcm4che3.imageio.plugins.dcm.DicomImageReader;
+import org.dcm4che3.imageio.plugins.dcm.DicomImageReaderSpi;
+import org.dcm4che3.io.DicomOutputStream;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.nrg.xnat.snapshot.generator.impl.MontageGenerator;
+
+import javax.imageio.ImageReader;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times montage generation for 1x1, 4x4, and 8x8 montages from a synthetic CT series with one slice per file and from
+ * a synthetic multi-frame file with all slices in one file, comparing the renderer as it was before slices were decoded
+ * in parallel with the parallel decode in {@link MontageGenerator}. Run with <b>./gradlew benchmark</b>.
+ */
+@Slf4j
+public class MontageGeneratorBenchmark {
+    @BeforeClass
+    public static void createSeries() throws IOException {
+        _folder = Files.createTempDirectory("montage").toFile();
+        for (int slice = 0; slice < SLICES; slice++) {
+            final File file = new File(_folder, "ct-" + slice + ".dcm");
+            writeDicom(file, 1, slice);
+            _ctFiles.add(file.getAbsolutePath());
+        }
+        final File multiFrame = new File(_folder, "multi-frame.dcm");
+        writeDicom(multiFrame, SLICES, 0);
+        _multiFrameFiles.add(multiFrame.getAbsolutePath());
+    }
+
+    @AfterClass
+    public static void deleteSeries() {
+        final File[] files = _folder.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        _folder.delete();
+    }
+
+    @Test
+    public void compareCtMontages() throws Exception {
+        compare("CT", _ctFiles);
+    }
+
+    @Test
+    public void compareMultiFrameMontages() throws Exception {
+        compare("multi-frame", _multiFrameFiles);
+    }
+
+    private static void compare(final String label, final List<String> files) throws Exception {
+        final LegacyMontageGenerator sequential = new LegacyMontageGenerator();
+        final MontageGenerator       parallel   = new MontageGenerator();
+        for (final int size : new int[]{1, 4, 8}) {
+            // Warm up the readers, writers, and decoder threads before timing anything.
+            sequential.generateSequentially(files, SLICES, size, size);
+            parallel.generate(files, SLICES, size, size);
+
+            final long sequentialElapsed = time(() -> sequential.generateSequentially(files, SLICES, size, size));
+            final long parallelElapsed   = time(() -> {
+                final BufferedImage montage = parallel.generate(files, SLICES, size, size);
+                assertEquals(size * COLUMNS, montage.getWidth());
+                assertEquals(size * ROWS, montage.getHeight());
+            });
+            log.info("Generated {} {}x{} {} montages in an average of {} ms with the previous renderer and {} ms decoding slices in parallel",
+                     ITERATIONS, size, size, label, sequentialElapsed, parallelElapsed);
+        }
+    }
+
+    private static long time(final Montage montage) throws Exception {
+        final long start = System.nanoTime();
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            montage.generate();
+        }
+        return (System.nanoTime() - start) / 1000000 / ITERATIONS;
+    }
+
+    private static void writeDicom(final File file, final int frames, final int seed) throws IOException {
+        final Attributes attributes  = new Attributes();
+        final String     instanceUid = "1.2.826.0.1.3680043.8.498." + System.nanoTime();
+        attributes.setString(Tag.SOPClassUID, VR.UI, UID.CTImageStorage);
+        attributes.setString(Tag.SOPInstanceUID, VR.UI, instanceUid);
+        attributes.setString(Tag.Modality, VR.CS, "CT");
+        attributes.setInt(Tag.SamplesPerPixel, VR.US, 1);
+        attributes.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2");
+        attributes.setInt(Tag.Rows, VR.US, ROWS);
+        attributes.setInt(Tag.Columns, VR.US, COLUMNS);
+        attributes.setInt(Tag.BitsAllocated, VR.US, 16);
+        attributes.setInt(Tag.BitsStored, VR.US, 12);
+        attributes.setInt(Tag.HighBit, VR.US, 11);
+        attributes.setInt(Tag.PixelRepresentation, VR.US, 0);
+        attributes.setString(Tag.WindowCenter, VR.DS, "1024");
+        attributes.setString(Tag.WindowWidth, VR.DS, "2048");
+        if (frames > 1) {
+            attributes.setInt(Tag.NumberOfFrames, VR.IS, frames);
+        }
+
+        // A gradient that shifts from frame to frame, so the frames aren't identical.
+        final byte[] pixels = new byte[ROWS * COLUMNS * 2 * frames];
+        int          offset = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            for (int row = 0; row < ROWS; row++) {
+                for (int column = 0; column < COLUMNS; column++) {
+                    final int value = (row * 4 + column * 4 + (seed + frame) * 32) & 0x0FFF;
+                    pixels[offset++] = (byte) value;
+                    pixels[offset++] = (byte) (value >> 8);
+                }
+            }
+        }
+        attributes.setBytes(Tag.PixelData, VR.OW, pixels);
+
+        try (final DicomOutputStream output = new DicomOutputStream(file)) {
+            output.writeDataset(attributes.createFileMetaInformation(UID.ExplicitVRLittleEndian), attributes);
+        }
+    }
+
+    private interface Montage {
+        void generate() throws Exception;
+    }
+
+    /**
+     * Generates montages the way they were generated before slices were decoded in parallel: each slice is read on the
+     * calling thread with a new reader and input stream, and each panel is drawn with its own graphics context.
+     */
+    private static class LegacyMontageGenerator {
+        BufferedImage generateSequentially(final List<String> files, final int nSlices, final int rows, final int cols) throws IOException {
+            final int                 nPanels = rows * cols;
+            final List<BufferedImage> images  = new ArrayList<>(nPanels);
+            for (int panel = 0; panel < nPanels; panel++) {
+                final int slice = panel * nSlices / nPanels;
+                images.add(files.size() == 1 ? readImage(new File(files.get(0)), slice) : readImage(new File(files.get(slice)), 0));
+            }
+            if (nPanels == 1) {
+                return images.get(0);
+            }
+            final BufferedImage montage = new BufferedImage(cols * COLUMNS, rows * ROWS, images.get(0).getType());
+            for (int panel = 0; panel < nPanels; panel++) {
+                final Graphics2D graphics = montage.createGraphics();
+                graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
+                graphics.drawImage(images.get(panel), (panel % cols) * COLUMNS, (panel / cols) * ROWS, null);
+                graphics.dispose();
+            }
+            return montage;
+        }
+
+        private static BufferedImage readImage(final File file, final int frame) throws IOException {
+            try (final ImageInputStream input = new FileImageInputStream(file)) {
+                final ImageReader reader = new DicomImageReader(new DicomImageReaderSpi());
+                reader.setInput(input);
+                final DicomImageReadParam param = (DicomImageReadParam) reader.getDefaultReadParam();
+                param.setPreferWindow(true);
+                param.setAutoWindowing(true);
+                param.setWindowCenter(0);
+                param.setWindowWidth(0);
+                param.setWindowIndex(0);
+                param.setVOILUTIndex(0);
+                param.setOverlayActivationMask(0xffff);
+                param.setOverlayGrayscaleValue(0xffff);
+                param.setOverlayRGBValue(0xffffff);
+                return reader.read(frame, param);
+            }
+        }
+    }
+
+    private static final int ROWS       = 512;
+    private static final int COLUMNS    = 512;
+    private static final int SLICES     = 64;
+    private static final int ITERATIONS = 5;
+
+    private static final List<String> _ctFiles         = new ArrayList<>();
+    private static final List<String> _multiFrameFiles = new ArrayList<>();
+    private static       File         _folder;
+}
@@ -0,0 +1,111 @@
+/*
+ * web: org.nrg.xnat.utils.ChecksumEngineBenchmark
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares hashing a synthetic session tree one file at a time with a 1 KB heap buffer, as catalog checksums were
+ * calculated previously, with hashing it with {@link ChecksumEngine} on the shared pool, then times each supported
+ * algorithm on one thread. Run with <b>./gradlew benchmark</b>.
+ */
+@Slf4j
+public class ChecksumEngineBenchmark {
+    @BeforeClass
+    public static void setup() throws IOException {
+        _tree = Files.createTempDirectory("checksums").toFile();
+        final Random random = new Random(SEED);
+        for (int index = 0; index < FILES; index++) {
+            final File   folder = new File(_tree, "scan" + (index % 10));
+            final byte[] data   = new byte[index % 100 == 0 ? LARGE_FILE_SIZE : 1 + random.nextInt(SMALL_FILE_SIZE)];
+            random.nextBytes(data);
+            folder.mkdirs();
+            final File file = new File(folder, index + ".dcm");
+            Files.write(file.toPath(), data);
+            _files.add(file);
+        }
+    }
+
+    @AfterClass
+    public static void teardown() throws IOException {
+        org.apache.commons.io.FileUtils.deleteDirectory(_tree);
+    }
+
+    @Test
+    public void compareHashingThroughput() throws Exception {
+        final List<String> expected = new ArrayList<>(FILES);
+        final long         start    = System.nanoTime();
+        for (final File file : _files) {
+            expected.add(legacyMd5(file));
+        }
+        final long legacyElapsed = System.nanoTime() - start;
+
+        final long         engineStart = System.nanoTime();
+        final List<String> actual      = ChecksumEngine.hashAll(_files, 4, file -> {
+            try {
+                return ChecksumEngine.hash(file, ChecksumEngine.MD5);
+            } catch (IOException e) {
+                return "";
+            }
+        });
+        final long engineElapsed = System.nanoTime() - engineStart;
+        assertEquals(expected, actual);
+        log.info("Hashed {} files in {} ms with the legacy MD5 path and {} ms with the checksum engine on up to 4 threads", FILES, legacyElapsed / 1000000, engineElapsed / 1000000);
+
+        for (final String algorithm : ChecksumEngine.ALGORITHMS) {
+            final long algorithmStart = System.nanoTime();
+            for (final File file : _files) {
+                ChecksumEngine.hash(file, algorithm);
+            }
+            log.info("Hashed {} files with {} in {} ms on one thread", FILES, algorithm, (System.nanoTime() - algorithmStart) / 1000000);
+        }
+    }
+
+    private static String legacyMd5(final File file) throws IOException, NoSuchAlgorithmException {
+        final MessageDigest md5 = MessageDigest.getInstance("MD5");
+        try (final RandomAccessFile store = new RandomAccessFile(file, "r");
+             final FileChannel channel = store.getChannel()) {
+            final ByteBuffer buffer = ByteBuffer.allocate(1024);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                md5.update(buffer);
+                buffer.clear();
+            }
+        }
+        return Hex.encodeHexString(md5.digest());
+    }
+
+    private static final long SEED            = 8675309L;
+    private static final int  FILES           = 1000;
+    private static final int  SMALL_FILE_SIZE = 128 * 1024;
+    private static final int  LARGE_FILE_SIZE = 12 * 1024 * 1024;
+
+    private static final List<File> _files = new ArrayList<>();
+
+    private static File _tree;
+}
@@ -24,11 +24,13 @@ import org.dcm4che2.net.service.DicomService;
 import org.nrg.action.ClientException;
 import org.nrg.action.ServerException;
 import org.nrg.dcm.DicomFileNamer;
+import org.nrg.xdat.XDAT;
 import org.nrg.xdat.om.XnatProjectdata;
 import org.nrg.xft.security.UserI;
 import org.nrg.xnat.DicomObjectIdentifier;
 import org.nrg.xnat.archive.GradualDicomImporter;
 import org.nrg.xnat.helpers.uri.URIManager;
+import org.nrg.xnat.processor.services.ArchiveProcessorChainService;
 import org.nrg.xnat.restlet.util.FileWriterWrapperI;
 
 import javax.inject.Provider;
@@ -216,6 +218,7 @@ public class CStoreService extends DicomService implements CStoreSCP {
     private final Provider<UserI> userProvider;
     private DicomFileNamer namer = null;
     private final DicomSCPManager _manager;
+    private ArchiveProcessorChainService _processorChainService;
 
 
     public CStoreService(final DicomObjectIdentifier<XnatProjectdata> identifier,
@@ -307,6 +310,11 @@ public class CStoreService extends DicomService implements CStoreSCP {
                 if (null != namer) {
                     importer.setNamer(namer);
                 }
+                if (doCustomProcessing) {
+                    // The compiled chain is shared by every instance sent to this receiver until the processor
+                    // configuration changes, so this doesn't touch the database after the first instance.
+                    importer.setProcessorChain(getProcessorChainService().getProcessorChain(aeTitle + ':' + port));
+                }
                 importer.call();
             } catch (final ClientException e) {
                 log.error("C-STORE operation failed", e);
@@ -327,6 +335,13 @@ public class CStoreService extends DicomService implements CStoreSCP {
         }
     }
 
+    private ArchiveProcessorChainService getProcessorChainService() {
+        if (_processorChainService == null) {
+            _processorChainService = XDAT.getContextService().getBean(ArchiveProcessorChainService.class);
+        }
+        return _processorChainService;
+    }
+
     private static final class StreamWrapper implements FileWriterWrapperI {
         private final InputStream in;
 
@@ -24,9 +24,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.nrg.action.ClientException;
 import org.nrg.action.ServerException;
 import org.nrg.framework.annotations.XapiRestController;
-import org.nrg.framework.exceptions.NrgServiceError;
-import org.nrg.framework.exceptions.NrgServiceException;
-import org.nrg.framework.exceptions.NrgServiceRuntimeException;
 import org.nrg.xapi.exceptions.InsufficientPrivilegesException;
 import org.nrg.xapi.exceptions.NoContentException;
 import org.nrg.xapi.exceptions.NotFoundException;
@@ -47,6 +44,7 @@ import org.nrg.xnat.helpers.uri.UriParserUtils;
 import org.nrg.xnat.services.archive.CatalogService;
 import org.nrg.xnat.web.http.AbstractZipStreamingResponseBody;
 import org.nrg.xnat.web.http.CatalogZipStreamingResponseBody;
+import org.nrg.xnat.web.http.RangedFileDelivery;
 import org.restlet.data.Status;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -62,7 +60,7 @@ import org.xml.sax.SAXParseException;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.List;
@@ -172,44 +170,29 @@ public class CatalogApi extends AbstractXapiRestController {
     @ApiOperation(value = "Downloads the specified catalog as an XML file.", response = StreamingResponseBody.class)
     @ApiResponses({@ApiResponse(code = 200, message = "The requested catalog was successfully downloaded."),
                    @ApiResponse(code = 204, message = "No catalog was specified."),
+                   @ApiResponse(code = 206, message = "The requested byte range of the catalog was successfully downloaded."),
+                   @ApiResponse(code = 304, message = "The catalog hasn't changed since the version identified in the request."),
                    @ApiResponse(code = 400, message = "Something is wrong with the request format."),
                    @ApiResponse(code = 403, message = "The user is not authorized to access the specified catalog."),
                    @ApiResponse(code = 404, message = "The request was valid but the specified catalog was not found."),
+                   @ApiResponse(code = 416, message = "The requested byte range is past the end of the catalog."),
                    @ApiResponse(code = 500, message = "An unexpected or unknown error occurred")})
     @XapiRequestMapping(value = "download/{catalogId}/xml", produces = MediaType.APPLICATION_XML_VALUE, method = RequestMethod.GET)
     @ResponseBody
-    public ResponseEntity<StreamingResponseBody> downloadSessionCatalogXml(@ApiParam("The ID of the catalog to be downloaded.") @PathVariable final String catalogId) throws InsufficientPrivilegesException, NotFoundException, IOException, NrgServiceException {
-        try {
-            final UserI user = getSessionUser();
+    public ResponseEntity<StreamingResponseBody> downloadSessionCatalogXml(@ApiParam("The ID of the catalog to be downloaded.") @PathVariable final String catalogId) throws InsufficientPrivilegesException {
+        final UserI user = getSessionUser();
 
-            log.info("User {} requested download catalog: {}", user.getUsername(), catalogId);
-            final CatCatalogI catalog = _service.getCachedCatalog(user, catalogId);
-            if (catalog == null) {
-                throw new NotFoundException("No catalog with ID " + catalogId + " was found.");
-            }
-            return ResponseEntity.ok()
-                                 .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_XML_VALUE)
-                                 .header(HttpHeaders.CONTENT_DISPOSITION, getAttachmentDisposition(catalogId, "xml"))
-                                 .header(HttpHeaders.CONTENT_LENGTH, Long.toString(_service.getCatalogSize(user, catalogId)))
-                                 .body(outputStream -> {
-                                     try (final OutputStreamWriter writer = new OutputStreamWriter(outputStream)) {
-                                         if (catalog instanceof CatCatalogBean) {
-                                             ((CatCatalogBean) catalog).toXML(writer, true);
-                                         } else {
-                                             try {
-                                                 catalog.toXML(writer);
-                                             } catch (Exception e) {
-                                                 throw new NrgServiceRuntimeException(NrgServiceError.Unknown, "An error occurred trying to write the catalog " + catalogId + ".", e);
-                                             }
-                                         }
-                                     }
-                                 });
-        } catch (NrgServiceRuntimeException e) {
-            if (e.getCause() != null) {
-                throw new NrgServiceException(e.getServiceError(), e.getMessage(), e.getCause());
-            }
-            throw new NrgServiceException(e.getServiceError(), e.getMessage());
-        }
+        log.info("User {} requested download catalog: {}", user.getUsername(), catalogId);
+        final HttpServletRequest request  = ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getRequest();
+        final RangedFileDelivery delivery = RangedFileDelivery.forRequest(request, _service.getCachedCatalogFile(user, catalogId), null);
+
+        final ResponseEntity.BodyBuilder builder = ResponseEntity.status(delivery.getStatus())
+                                                                 .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_XML_VALUE)
+                                                                 .header(HttpHeaders.CONTENT_DISPOSITION, getAttachmentDisposition(catalogId, "xml"));
+        delivery.getHeaders().forEach(builder::header);
+
+        final StreamingResponseBody body = delivery.hasContent() ? outputStream -> delivery.transferTo(Channels.newChannel(outputStream)) : null;
+        return builder.body(body);
     }
 
     @ApiOperation(value = "Downloads the contents of the specified catalog as a zip archive.",
@@ -229,6 +212,7 @@ public class CatalogApi extends AbstractXapiRestController {
         return ResponseEntity.ok()
                              .header(HttpHeaders.CONTENT_TYPE, AbstractZipStreamingResponseBody.MEDIA_TYPE)
                              .header(HttpHeaders.CONTENT_DISPOSITION, getAttachmentDisposition(catalogId, "zip"))
+                             .header(HttpHeaders.ACCEPT_RANGES, "none")
                              .body(new CatalogZipStreamingResponseBody(user, _service.getCachedCatalog(user, catalogId), _preferences.getArchivePath(), request));
     }
 
@@ -255,6 +239,7 @@ public class CatalogApi extends AbstractXapiRestController {
         return ResponseEntity.ok()
                              .header(HttpHeaders.CONTENT_TYPE, AbstractZipStreamingResponseBody.MEDIA_TYPE)
                              .header(HttpHeaders.CONTENT_DISPOSITION, getAttachmentDisposition(catalogId, "zip"))
+                             .header(HttpHeaders.ACCEPT_RANGES, "none")
                              .body(new CatalogZipStreamingResponseBody(user, catalog, _preferences.getArchivePath(), true, request));
     }
 
@@ -27,6 +27,7 @@ import org.nrg.xdat.security.services.RoleHolder;
 import org.nrg.xdat.security.services.UserManagementServiceI;
 import org.nrg.xnat.entities.ArchiveProcessorInstance;
 import org.nrg.xnat.helpers.ArchiveProcessorInstanceSummary;
+import org.nrg.xnat.processor.services.ArchiveProcessorChainService;
 import org.nrg.xnat.processor.services.ArchiveProcessorInstanceService;
 import org.nrg.xnat.processors.ArchiveProcessor;
 import org.nrg.xnat.processors.StudyRemappingArchiveProcessor;
@@ -51,9 +52,10 @@ import static org.springframework.web.bind.annotation.RequestMethod.*;
 @Slf4j
 public class ArchiveProcessorInstanceApi extends AbstractXapiRestController {
     @Autowired
-    public ArchiveProcessorInstanceApi(final ArchiveProcessorInstanceService service, final UserManagementServiceI userManagementService, final RoleHolder roleHolder, final DicomSCPManager manager, final List<ArchiveProcessor> processors) {
+    public ArchiveProcessorInstanceApi(final ArchiveProcessorInstanceService service, final ArchiveProcessorChainService chainService, final UserManagementServiceI userManagementService, final RoleHolder roleHolder, final DicomSCPManager manager, final List<ArchiveProcessor> processors) {
         super(userManagementService, roleHolder);
         _service = service;
+        _chainService = chainService;
         _processorNames = processors.stream().map(ArchiveProcessor::getClass).map(Class::getName).collect(Collectors.toList());
         log.info("Got {} archive processors: {}", _processorNames.size(), String.join(", ", _processorNames));
         _manager = manager;
@@ -81,7 +83,9 @@ public class ArchiveProcessorInstanceApi extends AbstractXapiRestController {
             throw new DataFormatException("The specified processor class " + processor.getProcessorClass() + " does not exist.");
         }
         processor.checkForValidProject();
-        return _service.create(processor);
+        final ArchiveProcessorInstance created = _service.create(processor);
+        _chainService.invalidate();
+        return created;
     }
 
     @ApiOperation(value = "Updates the requested site processor instance from the submitted attributes.", notes = "Returns the updated site processor instance.", response = ArchiveProcessorInstance.class)
@@ -107,6 +111,7 @@ public class ArchiveProcessorInstanceApi extends AbstractXapiRestController {
                 throw new DataFormatException("The specified processor class " + processor.getProcessorClass() + " can't be found on this system.");
             }
             _service.update(existingProcessor);
+            _chainService.invalidate();
             return existingProcessor;
         }
         throw new NotModifiedException("No changes were specified for the archive processor " + instanceId);
@@ -126,6 +131,7 @@ public class ArchiveProcessorInstanceApi extends AbstractXapiRestController {
         }
         try {
             _service.delete(instanceId);
+            _chainService.invalidate();
             return true;
         } catch (Throwable t) {
             log.error("An error occurred deleting the processor instance " + instanceId, t);
@@ -194,6 +200,7 @@ public class ArchiveProcessorInstanceApi extends AbstractXapiRestController {
     }
 
     private final ArchiveProcessorInstanceService _service;
+    private final ArchiveProcessorChainService    _chainService;
     private final List<String>                    _processorNames;
     private final DicomSCPManager                 _manager;
 }
@@ -0,0 +1,56 @@
+/*
+ * web: org.nrg.xapi.rest.settings.InitializationApi
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xapi.rest.settings;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.annotations.XapiRestController;
+import org.nrg.xapi.rest.AbstractXapiRestController;
+import org.nrg.xapi.rest.XapiRequestMapping;
+import org.nrg.xdat.security.services.RoleHolder;
+import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xnat.initialization.InitializingTaskTiming;
+import org.nrg.xnat.initialization.InitializingTasksExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.util.List;
+
+import static org.nrg.xdat.security.helpers.AccessLevel.Admin;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+
+@Api("System Initialization API")
+@XapiRestController
+@RequestMapping(value = "/initialization")
+@Slf4j
+public class InitializationApi extends AbstractXapiRestController {
+    @Autowired
+    public InitializationApi(final UserManagementServiceI userManagementService, final RoleHolder roleHolder, final InitializingTasksExecutor executor) {
+        super(userManagementService, roleHolder);
+        _executor = executor;
+    }
+
+    @ApiOperation(value = "Returns the startup timeline for the initializing tasks.", notes = "For each initializing task this returns its status, its dependencies, when it was queued, started, and finished, and how long it waited for its dependencies, waited to be ready, and ran. Times are in milliseconds.", response = InitializingTaskTiming.class, responseContainer = "List")
+    @ApiResponses({@ApiResponse(code = 200, message = "Initializing task timeline successfully retrieved."),
+                   @ApiResponse(code = 401, message = "Must be authenticated to access the XNAT REST API."),
+                   @ApiResponse(code = 403, message = "Not authorized to view the initializing task timeline."),
+                   @ApiResponse(code = 500, message = "Unexpected error")})
+    @XapiRequestMapping(value = "tasks/timeline", produces = APPLICATION_JSON_VALUE, method = GET, restrictTo = Admin)
+    public List<InitializingTaskTiming> getInitializingTaskTimeline() {
+        log.debug("User {} requested the initializing task timeline.", getSessionUser().getUsername());
+        return _executor.getTimeline();
+    }
+
+    private final InitializingTasksExecutor _executor;
+}
@@ -0,0 +1,42 @@
+/*
+ * web: org.nrg.xnat.actions.postArchive.PreRenderSnapshotsAction
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.actions.postArchive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xdat.XDAT;
+import org.nrg.xdat.model.XnatImagescandataI;
+import org.nrg.xdat.om.XnatImagesessiondata;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnat.archive.PrearcSessionArchiver;
+import org.nrg.xnat.preferences.SnapshotPreferences;
+import org.nrg.xnat.snapshot.services.SnapshotGenerationService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Queues the newly archived session's scans for snapshot and thumbnail pre-rendering when that's enabled in the
+ * {@link SnapshotPreferences snapshot preferences}. The rendering itself happens in the background.
+ */
+@SuppressWarnings("unused")
+@Slf4j
+public class PreRenderSnapshotsAction implements PrearcSessionArchiver.PostArchiveAction {
+    @Override
+    public Boolean execute(final UserI user, final XnatImagesessiondata src, final Map<String, Object> params) {
+        if (src == null || !XDAT.getContextService().getBean(SnapshotPreferences.class).isPreRenderEnabled()) {
+            return false;
+        }
+        final List<String> scanIds = src.getScans_scan().stream().map(XnatImagescandataI::getId).collect(Collectors.toList());
+        log.debug("Requesting snapshot pre-rendering for {} scans of session {}", scanIds.size(), src.getId());
+        XDAT.getContextService().getBean(SnapshotGenerationService.class).preRender(src.getId(), scanIds);
+        return true;
+    }
+}
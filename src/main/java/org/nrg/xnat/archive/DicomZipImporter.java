@@ -11,44 +11,67 @@ package org.nrg.xnat.archive;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.dcm4che2.data.Tag;
 import org.dcm4che2.io.DicomCodingException;
+import org.dcm4che2.io.DicomInputStream;
+import org.dcm4che2.io.StopTagInputHandler;
 import org.nrg.action.ClientException;
 import org.nrg.action.ServerException;
+import org.nrg.config.exceptions.ConfigServiceException;
+import org.nrg.xdat.XDAT;
 import org.nrg.xft.security.UserI;
 import org.nrg.xft.utils.fileExtraction.Format;
 import org.nrg.xnat.helpers.ArchiveEntryFileWriterWrapper;
-import org.nrg.xnat.helpers.TarEntryFileWriterWrapper;
-import org.nrg.xnat.helpers.ZipEntryFileWriterWrapper;
 import org.nrg.xnat.helpers.prearchive.PrearcUtils;
+import org.nrg.xnat.processor.services.ArchiveProcessorChainService;
+import org.nrg.xnat.processors.AbstractArchiveProcessor;
+import org.nrg.xnat.processors.ArchiveProcessorChain;
 import org.nrg.xnat.restlet.actions.importer.ImporterHandler;
 import org.nrg.xnat.restlet.actions.importer.ImporterHandlerA;
 import org.nrg.xnat.restlet.util.FileWriterWrapperI;
 
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 @ImporterHandler(handler = ImporterHandlerA.DICOM_ZIP_IMPORTER)
+@Slf4j
 public final class DicomZipImporter extends ImporterHandlerA {
     public DicomZipImporter(final Object listenerControl,
                             final UserI u,
                             final FileWriterWrapperI fw,
                             final Map<String, Object> params)
             throws ClientException, IOException {
+        this(listenerControl, u, fw, params, null);
+    }
+
+    /**
+     * Creates an importer that imports each entry with the specified entry importer instead of a {@link
+     * GradualDicomImporter}. This lets tests check how entries are read and scheduled without a running XNAT.
+     */
+    DicomZipImporter(final Object listenerControl,
+                     final UserI u,
+                     final FileWriterWrapperI fw,
+                     final Map<String, Object> params,
+                     final EntryImporter entryImporter)
+            throws ClientException, IOException {
         super(listenerControl, u);
         this.listenerControl = getControlString();
         this.u = u;
         this.params = params;
         this.in = fw.getInputStream();
         this.format = Format.getFormat(fw.getName());
+        this.entryImporter = entryImporter != null ? entryImporter : this::importEntry;
     }
 
     /* (non-Javadoc)
@@ -56,25 +79,26 @@ public final class DicomZipImporter extends ImporterHandlerA {
      */
     @Override
     public List<String> call() throws ClientException, ServerException {
-        ClientException nonDcmException = null;
-        boolean ignoreUnparsable = PrearcUtils.parseParam(params, IGNORE_UNPARSABLE_PARAM, false);
-        final Set<String> uris = Sets.newLinkedHashSet();
+        if (PrearcUtils.parseParam(params, GradualDicomImporter.CUSTOM_PROC_PARAM, false)) {
+            // Resolve the archive processors once for the whole archive rather than once per entry.
+            processorChain = XDAT.getContextService().getBean(ArchiveProcessorChainService.class).getProcessorChain(AbstractArchiveProcessor.getAeAndPort(params));
+        }
+
+        // This thread reads and inflates the entries into buffers while the shared workers import them. The buffer
+        // pool bounds how far reading can get ahead of the workers for this archive, and the buffered byte limit bounds
+        // the memory held by all of the archives being imported at once.
+        for (int index = 0; index < Importers.THREADS * 2; index++) {
+            buffers.add(new EntryBuffer());
+        }
+
         try {
             switch (format) {
                 case ZIP:
                     try (final ZipInputStream zin = new ZipInputStream(in)) {
                         ZipEntry ze;
-                        while (null != (ze = zin.getNextEntry())) {
+                        while (null != (ze = zin.getNextEntry()) && failure.get() == null) {
                             if (!ze.isDirectory()) {
-                                try {
-                                    importEntry(new ZipEntryFileWriterWrapper(ze, zin), uris);
-                                } catch (ClientException e) {
-                                    if (ignoreUnparsable && e.getCause() instanceof DicomCodingException) {
-                                        nonDcmException = e;
-                                    } else {
-                                        throw e;
-                                    }
-                                }
+                                submitEntry(ze.getName(), ze.getSize(), zin);
                             }
                         }
                     }
@@ -87,17 +111,9 @@ public final class DicomZipImporter extends ImporterHandlerA {
                     }
                     try (final TarArchiveInputStream zin = new TarArchiveInputStream(is)) {
                         TarArchiveEntry ze;
-                        while (null != (ze = zin.getNextTarEntry())) {
+                        while (null != (ze = zin.getNextTarEntry()) && failure.get() == null) {
                             if (!ze.isDirectory()) {
-                                try {
-                                    importEntry(new TarEntryFileWriterWrapper(ze, zin), uris);
-                                } catch (ClientException e) {
-                                    if (ignoreUnparsable && e.getCause() instanceof DicomCodingException) {
-                                        nonDcmException = e;
-                                    } else {
-                                        throw e;
-                                    }
-                                }
+                                submitEntry(ze.getName(), ze.getSize(), zin);
                             }
                         }
                     }
@@ -106,7 +122,33 @@ public final class DicomZipImporter extends ImporterHandlerA {
                     throw new ClientException("Unsupported format " + format);
             }
         } catch (IOException e) {
+            awaitImports();
             throw new ClientException("unable to read data from file", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            awaitImports();
+            throw new ServerException("interrupted while importing archive entries", e);
+        }
+
+        // Results and errors are reported in entry order, so the URIs come back in the same order as when the
+        // entries were imported one at a time.
+        final boolean     ignoreUnparsable = PrearcUtils.parseParam(params, IGNORE_UNPARSABLE_PARAM, false);
+        final Set<String> uris             = Sets.newLinkedHashSet();
+        ClientException   nonDcmException  = null;
+        for (final Future<List<String>> future : imports) {
+            try {
+                uris.addAll(getImportResult(future));
+            } catch (ClientException e) {
+                if (ignoreUnparsable && e.getCause() instanceof DicomCodingException) {
+                    nonDcmException = e;
+                } else {
+                    awaitImports();
+                    throw e;
+                }
+            } catch (ServerException e) {
+                awaitImports();
+                throw e;
+            }
         }
 
         if (uris.isEmpty() && nonDcmException != null) {
@@ -115,20 +157,252 @@ public final class DicomZipImporter extends ImporterHandlerA {
         return Lists.newArrayList(uris);
     }
 
-    private void importEntry(ArchiveEntryFileWriterWrapper entryFileWriter, Set<String> uris)
-            throws ServerException, ClientException {
+    /**
+     * Reads the entry into a pooled buffer and queues it for import. Imports are ordered only where they could
+     * interfere with each other: the first entry for a study is imported before any other entries for the study so
+     * that only one of them creates the prearchive session, and entries with the same file name are imported in order
+     * since they may resolve to the same output file. Entries that are too large to buffer, or that can't be buffered
+     * because imports of other archives are holding all of the buffered bytes, are imported on this thread once all
+     * queued imports have finished.
+     */
+    private void submitEntry(final String name, final long size, final InputStream entry) throws IOException, InterruptedException {
+        final EntryBuffer buffer = buffers.take();
+        final boolean     buffered;
+        try {
+            buffered = bufferEntry(entry, buffer);
+        } catch (IOException | InterruptedException e) {
+            releaseBuffer(buffer);
+            throw e;
+        }
+
+        final String                     studyInstanceUID = buffer.getStudyInstanceUID();
+        final String                     fileName         = FilenameUtils.getName(name);
+        final List<CompletableFuture<?>> dependencies     = new ArrayList<>();
+        if (studyInstanceUID != null && firstEntries.containsKey(studyInstanceUID)) {
+            dependencies.add(firstEntries.get(studyInstanceUID));
+        }
+        if (lastEntries.containsKey(fileName)) {
+            dependencies.add(lastEntries.get(fileName));
+        }
+
+        final CompletableFuture<List<String>> future;
+        if (!buffered) {
+            awaitImports();
+            future = new CompletableFuture<>();
+            try {
+                future.complete(entryImporter.importEntry(new ArchiveEntryFileWriterWrapper(name, size, new SequenceInputStream(buffer.getInputStream(), entry))));
+            } catch (ClientException | ServerException e) {
+                future.completeExceptionally(e);
+                recordFailure(e);
+            } finally {
+                releaseBuffer(buffer);
+            }
+        } else {
+            // Dependencies only order the imports, so this entry is imported whether or not they succeeded.
+            future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0])).handleAsync((ignored, throwable) -> {
+                try {
+                    return entryImporter.importEntry(new ArchiveEntryFileWriterWrapper(name, buffer.size(), buffer.getInputStream()));
+                } catch (ClientException | ServerException e) {
+                    recordFailure(e);
+                    throw new CompletionException(e);
+                } finally {
+                    releaseBuffer(buffer);
+                }
+            }, Importers.EXECUTOR);
+        }
+
+        if (studyInstanceUID != null) {
+            firstEntries.putIfAbsent(studyInstanceUID, future);
+        }
+        lastEntries.put(fileName, future);
+        imports.add(future);
+    }
+
+    /**
+     * Copies the entry into the buffer, reserving space for it from the bytes that can be buffered by all imports as it
+     * goes. If there's no space and this import has nothing queued that would free some, the entry isn't buffered any
+     * further.
+     *
+     * @return Returns true if the whole entry was read into the buffer, false if the rest of the entry is still to be
+     *         read from the stream.
+     */
+    private boolean bufferEntry(final InputStream entry, final EntryBuffer buffer) throws IOException, InterruptedException {
+        while (true) {
+            final int read = IOUtils.read(entry, chunk);
+            if (read == 0) {
+                return true;
+            }
+            final int     size     = buffer.size() + read;
+            final boolean reserved = size <= MAX_BUFFERED_ENTRY_SIZE && reserve(buffer, size);
+            buffer.write(chunk, 0, read);
+            if (!reserved) {
+                return false;
+            }
+        }
+    }
+
+    private boolean reserve(final EntryBuffer buffer, final int size) throws InterruptedException {
+        final int needed = (size + PERMIT_SIZE - 1) / PERMIT_SIZE - buffer.permits;
+        if (needed <= 0) {
+            return true;
+        }
+        while (!BUFFERED_BYTES.tryAcquire(needed, RESERVE_WAIT, TimeUnit.MILLISECONDS)) {
+            if (imports.stream().allMatch(Future::isDone)) {
+                return false;
+            }
+        }
+        buffer.permits += needed;
+        return true;
+    }
+
+    private List<String> importEntry(final FileWriterWrapperI entryFileWriter) throws ServerException, ClientException {
         final GradualDicomImporter importer = new GradualDicomImporter(listenerControl, u, entryFileWriter, params);
         importer.setIdentifier(getIdentifier());
         if (null != getNamer()) {
             importer.setNamer(getNamer());
         }
-        uris.addAll(importer.call());
+        if (null != processorChain) {
+            importer.setProcessorChain(processorChain);
+        }
+        return importer.call();
+    }
+
+    /**
+     * Records the first failure that should stop the import, so no more entries are read from the archive.
+     */
+    private void recordFailure(final Exception e) {
+        if (!(PrearcUtils.parseParam(params, IGNORE_UNPARSABLE_PARAM, false) && e instanceof ClientException && e.getCause() instanceof DicomCodingException)) {
+            failure.compareAndSet(null, e);
+        }
     }
 
+    private void releaseBuffer(final EntryBuffer buffer) {
+        BUFFERED_BYTES.release(buffer.permits);
+        buffer.permits = 0;
+        // Only the initial buffer size is kept between entries, since the space used by larger entries isn't reserved.
+        buffers.add(buffer.capacity() > INITIAL_BUFFER_SIZE ? new EntryBuffer() : buffer.clear());
+    }
+
+    private void awaitImports() {
+        for (final Future<List<String>> future : imports) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ignored) {
+                // Errors are reported by the caller.
+            }
+        }
+    }
+
+    private static List<String> getImportResult(final Future<List<String>> future) throws ClientException, ServerException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServerException("interrupted while importing archive entries", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof ClientException) {
+                throw (ClientException) cause;
+            }
+            if (cause instanceof ServerException) {
+                throw (ServerException) cause;
+            }
+            throw new ServerException(cause);
+        }
+    }
+
+    private static int getImportThreads() {
+        final int defaultThreads = Math.max(1, Math.min(DEFAULT_MAX_IMPORT_THREADS, Runtime.getRuntime().availableProcessors()));
+        try {
+            return Math.max(1, Integer.parseInt(XDAT.getSiteConfigurationProperty(IMPORT_THREADS_PROPERTY, Integer.toString(defaultThreads))));
+        } catch (ConfigServiceException | RuntimeException e) {
+            log.warn("Couldn't get the number of DICOM archive import threads from the site configuration property {}, using {}", IMPORT_THREADS_PROPERTY, defaultThreads, e);
+            return defaultThreads;
+        }
+    }
+
+    /**
+     * Imports a single entry from the archive.
+     */
+    interface EntryImporter {
+        List<String> importEntry(FileWriterWrapperI entry) throws ClientException, ServerException;
+    }
+
+    /**
+     * A reusable buffer for an archive entry's contents.
+     */
+    private static final class EntryBuffer extends ByteArrayOutputStream {
+        EntryBuffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        InputStream getInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        EntryBuffer clear() {
+            reset();
+            return this;
+        }
+
+        /**
+         * Reads the study instance UID from the buffered entry without parsing past it.
+         *
+         * @return The study instance UID, or null if the entry doesn't look like a DICOM object.
+         */
+        String getStudyInstanceUID() {
+            try (final DicomInputStream input = new DicomInputStream(getInputStream())) {
+                input.setHandler(new StopTagInputHandler(Tag.StudyInstanceUID + 1));
+                return input.readDicomObject().getString(Tag.StudyInstanceUID);
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        // The number of permits this buffer holds from the buffered byte limit.
+        int permits;
+    }
+
+    /**
+     * The workers shared by all DICOM archive imports. The number of workers is read from the site configuration the
+     * first time an archive is imported.
+     */
+    private static final class Importers {
+        static final int             THREADS  = getImportThreads();
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, new ThreadFactoryBuilder().setNameFormat("dicom-archive-import-%d").setDaemon(true).build());
+    }
+
+    private static final String IGNORE_UNPARSABLE_PARAM    = "Ignore-Unparsable";
+    private static final String IMPORT_THREADS_PROPERTY    = "dicomArchiveImportThreads";
+    private static final int    DEFAULT_MAX_IMPORT_THREADS = 4;
+    private static final int    INITIAL_BUFFER_SIZE        = 1024 * 1024;
+    private static final int    MAX_BUFFERED_ENTRY_SIZE    = 32 * 1024 * 1024;
+    private static final int    MAX_BUFFERED_BYTES         = 256 * 1024 * 1024;
+    private static final int    PERMIT_SIZE                = 64 * 1024;
+    private static final long   RESERVE_WAIT               = 100;
+
+    // The bytes that can be held in entry buffers by all of the archives being imported, in units of PERMIT_SIZE.
+    private static final Semaphore BUFFERED_BYTES = new Semaphore(MAX_BUFFERED_BYTES / PERMIT_SIZE);
+
     private final InputStream         in;
     private final Object              listenerControl;
     private final UserI               u;
     private final Map<String, Object> params;
     private final Format              format;
-    private static final String       IGNORE_UNPARSABLE_PARAM = "Ignore-Unparsable";
+    private final EntryImporter       entryImporter;
+    private ArchiveProcessorChain     processorChain;
+
+    private final BlockingQueue<EntryBuffer>                    buffers      = new LinkedBlockingQueue<>();
+    private final List<CompletableFuture<List<String>>>        imports      = new ArrayList<>();
+    private final Map<String, CompletableFuture<List<String>>> firstEntries = new HashMap<>();
+    private final Map<String, CompletableFuture<List<String>>> lastEntries  = new HashMap<>();
+    private final AtomicReference<Exception>                    failure      = new AtomicReference<>();
+    private final byte[]                                        chunk        = new byte[PERMIT_SIZE];
 }
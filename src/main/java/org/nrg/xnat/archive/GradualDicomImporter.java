@@ -11,7 +11,6 @@ package org.nrg.xnat.archive;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
-import com.google.common.io.ByteStreams;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
@@ -37,7 +36,7 @@ import org.nrg.xft.security.UserI;
 import org.nrg.xnat.DicomObjectIdentifier;
 import org.nrg.xnat.Files;
 import org.nrg.xnat.archive.services.DirectArchiveSessionService;
-import org.nrg.xnat.entities.ArchiveProcessorInstance;
+import org.nrg.xnat.helpers.merge.anonymize.CompiledAnonScriptCache;
 import org.nrg.xnat.helpers.merge.anonymize.DefaultAnonUtils;
 import org.nrg.xnat.helpers.prearchive.DatabaseSession;
 import org.nrg.xnat.helpers.prearchive.PrearcDatabase;
@@ -45,9 +44,11 @@ import org.nrg.xnat.helpers.prearchive.PrearcDatabase.Either;
 import org.nrg.xnat.helpers.prearchive.PrearcUtils;
 import org.nrg.xnat.helpers.prearchive.PrearcUtils.SessionFileLockException;
 import org.nrg.xnat.helpers.prearchive.SessionData;
+import org.nrg.xnat.helpers.prearchive.SessionQuiescenceTimer;
 import org.nrg.xnat.helpers.uri.URIManager;
-import org.nrg.xnat.processor.services.ArchiveProcessorInstanceService;
-import org.nrg.xnat.processors.ArchiveProcessor;
+import org.nrg.xnat.processor.services.ArchiveProcessorChainService;
+import org.nrg.xnat.processors.AbstractArchiveProcessor;
+import org.nrg.xnat.processors.ArchiveProcessorChain;
 import org.nrg.xnat.restlet.actions.importer.ImporterHandler;
 import org.nrg.xnat.restlet.actions.importer.ImporterHandlerA;
 import org.nrg.xnat.restlet.util.FileWriterWrapperI;
@@ -58,6 +59,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.MalformedURLException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.Callable;
@@ -83,11 +87,26 @@ public class GradualDicomImporter extends ImporterHandlerA {
 
         // spring beans
         _mizer = XDAT.getContextService().getBeanSafely(MizerService.class);
-        _processorInstanceService = XDAT.getContextService().getBeanSafely(ArchiveProcessorInstanceService.class);
+        _processorChainService = XDAT.getContextService().getBeanSafely(ArchiveProcessorChainService.class);
+        _anonScriptCache = XDAT.getContextService().getBeanSafely(CompiledAnonScriptCache.class);
         _directArchiveSessionService = XDAT.getContextService().getBeanSafely(DirectArchiveSessionService.class);
         _directArchive &= _directArchiveSessionService != null;
     }
 
+    /**
+     * Sets the archive processor chain to use for custom processing. Callers that import many objects from the same
+     * association or archive should fetch the chain once from the {@link ArchiveProcessorChainService} and set it on
+     * each importer. If the chain isn't set or is no longer current, the importer fetches the chain itself.
+     *
+     * @param processorChain The archive processor chain.
+     *
+     * @return This importer.
+     */
+    public GradualDicomImporter setProcessorChain(final ArchiveProcessorChain processorChain) {
+        _processorChain = processorChain;
+        return this;
+    }
+
     @SuppressWarnings("ResultOfMethodCallIgnored")
     @Override
     public List<String> call() throws ClientException {
@@ -323,9 +342,8 @@ public class GradualDicomImporter extends ImporterHandlerA {
                     try {
                         Configuration c = DefaultAnonUtils.getCachedSitewideAnon();
                         if (c != null && c.getStatus().equals(Configuration.ENABLED_STRING)) {
-                            final MizerService service = XDAT.getContextService().getBeanSafely(MizerService.class);
-                            service.anonymize(outputFile, session.getProject(), session.getSubject(),
-                                    session.getFolderName(), true, c.getId(), c.getContents());
+                            _anonScriptCache.anonymize(outputFile, c.getId(), c.getContents(), session.getProject(),
+                                    session.getSubject(), session.getFolderName(), true);
 
                         } else {
                             log.debug("Anonymization is not enabled, allowing session {} {} {} to proceed without " +
@@ -393,6 +411,14 @@ public class GradualDicomImporter extends ImporterHandlerA {
                     // this code executes for every file received, so any unnecessary sql should be eliminated.
                     PoolDBUtils.ExecuteNonSelectQuery(DatabaseSession.updateSessionLastModSQL(session.getName(), session.getTimestamp(), session.getProject()), null, null);
                 }
+                // Record the new last mod time in the prearchive's receiving session cache as well, or every subsequent
+                // instance would get the old time from the cache and update the row again.
+                final Date lastBuiltDate = Calendar.getInstance().getTime();
+                session.setLastBuiltDate(lastBuiltDate);
+                if (!_directArchive) {
+                    PrearcDatabase.updateReceivingSessionLastBuiltDate(session, lastBuiltDate);
+                    SessionQuiescenceTimer.arm(session);
+                }
             } catch (Exception e) {
                 log.error("An error occurred trying to update the session update timestamp.", e);
             }
@@ -427,6 +453,8 @@ public class GradualDicomImporter extends ImporterHandlerA {
 
         if (!isNew.get()) {
             updateSessionLastMod(session);
+        } else if (!_directArchive) {
+            SessionQuiescenceTimer.arm(session);
         }
         return session;
     }
@@ -451,44 +479,15 @@ public class GradualDicomImporter extends ImporterHandlerA {
     // See XNAT-5441 and commit 73538bf for source of this code
     private boolean iterateOverProcessorsAtLocation(String location, final DicomObject dicom, final SessionData session)
             throws Exception {
-        boolean continueProcessingData = true;
-        Map<Class<? extends ArchiveProcessor>, ArchiveProcessor> processorsMap = getProcessorsMap();
-        //Later this map will be used when iterating over the processorInstances to get the processor for the given instance
-        List<ArchiveProcessorInstance> processorInstances = _processorInstanceService.getAllEnabledSiteProcessorsInOrderForLocation(location);
-        if (processorInstances != null) {
-            for (ArchiveProcessorInstance processorInstance : processorInstances) {
-                Class<? extends ArchiveProcessor> processorClass =
-                        (Class<? extends ArchiveProcessor>) Class.forName(processorInstance.getProcessorClass());
-                ArchiveProcessor processor = processorsMap.get(processorClass);
-                if (processor.accept(dicom, session, _mizer, processorInstance, _parameters)) {
-                    if (!processor.process(dicom, session, _mizer, processorInstance, _parameters)) {
-                        continueProcessingData = false;
-                        break;
-                    }
-                }
-            }
-        }
-        return continueProcessingData;
+        return getProcessorChain().process(location, dicom, session, _mizer, _parameters);
     }
 
-    private Map<Class<? extends ArchiveProcessor>, ArchiveProcessor> getProcessorsMap() {
-        if (_processorsMap == null) {
-            synchronized (this) {
-                if (_processorsMap == null) {
-                    _processorsMap = new HashMap<>();
-                    Map<String, ArchiveProcessor> processorMap =
-                            XDAT.getContextService().getBeansOfType(ArchiveProcessor.class);
-                    if (processorMap != null) {
-                        for (ArchiveProcessor processor : processorMap.values()) {
-                            if (processor != null) {
-                                _processorsMap.put(processor.getClass(), processor);
-                            }
-                        }
-                    }
-                }
-            }
+    private ArchiveProcessorChain getProcessorChain() {
+        final String aeAndPort = AbstractArchiveProcessor.getAeAndPort(_parameters);
+        if (!_processorChainService.isCurrent(_processorChain) || !StringUtils.equals(aeAndPort, _processorChain.getAeAndPort())) {
+            _processorChain = _processorChainService.getProcessorChain(aeAndPort);
         }
-        return _processorsMap;
+        return _processorChain;
     }
 
     private XnatProjectdata getProject(final String alias, final Callable<XnatProjectdata> lookupProject) {
@@ -625,95 +624,114 @@ public class GradualDicomImporter extends ImporterHandlerA {
     private static void write(final DicomObject fmi, final DicomObject dataset, final BufferedInputStream remainder,
                               final File f, final String source)
             throws ClientException, IOException {
-        IOException ioexception = null;
-        final FileOutputStream fos = new FileOutputStream(f);
-        final BufferedOutputStream bos = new BufferedOutputStream(fos);
+        final String tsuid = fmi.getString(Tag.TransferSyntaxUID, DEFAULT_TRANSFER_SYNTAX);
         try {
-            final DicomOutputStream dos = new DicomOutputStream(bos);
+            boolean decompress;
             try {
-                final String tsuid = fmi.getString(Tag.TransferSyntaxUID, DEFAULT_TRANSFER_SYNTAX);
-                try {
-                    if (Decompress.needsDecompress(tsuid) && canDecompress) {
-                        try {
-                            // Read the rest of the object into memory so the pixel data can be decompressed.
-                            final DicomInputStream dis = new DicomInputStream(remainder, tsuid);
-                            try {
-                                dis.readDicomObject(dataset, -1);
-                            } catch (IOException e) {
-                                ioexception = e;
-                                throw new ClientException(Status.CLIENT_ERROR_BAD_REQUEST,
-                                        "error parsing DICOM object", e);
-                            }
-                            final ByteArrayInputStream bis = new ByteArrayInputStream(Decompress.dicomObject2Bytes(dataset, tsuid));
-                            final DicomObject d = Decompress.decompress_image(bis, tsuid);
-                            final String dtsdui = Decompress.getTsuid(d);
-                            try {
-                                fmi.putString(Tag.TransferSyntaxUID, VR.UI, dtsdui);
-                                dos.writeFileMetaInformation(fmi);
-                                dos.writeDataset(d.dataset(), dtsdui);
-                            } catch (Throwable t) {
-                                if (t instanceof IOException) {
-                                    ioexception = (IOException) t;
-                                } else {
-                                    log.error("Unable to write decompressed dataset", t);
-                                }
-                                try {
-                                    dos.close();
-                                } catch (IOException e) {
-                                    throw ioexception = null == ioexception ? e : ioexception;
-                                }
-                            }
-                        } catch (ClientException e) {
-                            throw e;
-                        } catch (Throwable t) {
-                            log.error("Decompression failed; storing in original format " + tsuid, t);
-                            dos.writeFileMetaInformation(fmi);
-                            dos.writeDataset(dataset, tsuid);
-                            if (null != remainder) {
-                                final long copied = ByteStreams.copy(remainder, bos);
-                                log.trace("copied {} additional bytes to {}", copied, f);
-                            }
-                        }
-                    } else {
-                        dos.writeFileMetaInformation(fmi);
-                        dos.writeDataset(dataset, tsuid);
-                        if (null != remainder) {
-                            final long copied = ByteStreams.copy(remainder, bos);
-                            log.trace("copied {} additional bytes to {}", copied, f);
-                        }
-                    }
-                } catch (NoClassDefFoundError t) {
-                    log.error("Unable to check compression status; storing in original format " + tsuid, t);
+                decompress = Decompress.needsDecompress(tsuid) && canDecompress;
+            } catch (NoClassDefFoundError t) {
+                log.error("Unable to check compression status; storing in original format " + tsuid, t);
+                decompress = false;
+            }
+            if (decompress) {
+                writeDecompressed(fmi, dataset, remainder, f, tsuid);
+            } else {
+                try (final FileOutputStream fos = new FileOutputStream(f);
+                     final DicomOutputStream dos = new DicomOutputStream(new BufferedOutputStream(fos))) {
                     dos.writeFileMetaInformation(fmi);
                     dos.writeDataset(dataset, tsuid);
-                    if (null != remainder) {
-                        final long copied = ByteStreams.copy(remainder, bos);
-                        log.trace("copied {} additional bytes to {}", copied, f);
-                    }
+                    transferRemainder(remainder, dos, fos, f);
                 }
-            } catch (IOException e) {
-                throw ioexception = null == ioexception ? e : ioexception;
-            } finally {
-                try {
-                    dos.close();
-                    LoggerFactory.getLogger("org.nrg.xnat.received").info("{}:{}", source, f);
-                } catch (IOException e) {
-                    throw null == ioexception ? e : ioexception;
+            }
+        } finally {
+            LoggerFactory.getLogger("org.nrg.xnat.received").info("{}:{}", source, f);
+        }
+    }
+
+    /**
+     * Writes the object with its pixel data decompressed. The compressed object is spooled to a hidden file next to
+     * the output file rather than being read into memory and then copied into a byte array for decompression, so
+     * large multi-frame objects are only held in memory once, in decompressed form. If decompression fails, the
+     * object is stored in its original transfer syntax straight from the spooled file.
+     */
+    private static void writeDecompressed(final DicomObject fmi, final DicomObject dataset, final BufferedInputStream remainder,
+                                          final File f, final String tsuid)
+            throws ClientException, IOException {
+        final File compressed = new File(f.getParentFile(), "." + f.getName() + ".compressed");
+        try {
+            try (final FileOutputStream fos = new FileOutputStream(compressed);
+                 final DicomOutputStream dos = new DicomOutputStream(new BufferedOutputStream(fos))) {
+                dos.writeDataset(dataset, tsuid);
+                transferRemainder(remainder, dos, fos, compressed);
+            }
+
+            DicomObject decompressed = null;
+            try (final InputStream input = new BufferedInputStream(new FileInputStream(compressed))) {
+                decompressed = Decompress.decompress_image(input, tsuid);
+            } catch (Throwable t) {
+                validate(compressed, tsuid);
+                log.error("Decompression failed; storing in original format " + tsuid, t);
+            }
+
+            try (final FileOutputStream fos = new FileOutputStream(f);
+                 final DicomOutputStream dos = new DicomOutputStream(new BufferedOutputStream(fos))) {
+                if (decompressed != null) {
+                    final String dtsuid = Decompress.getTsuid(decompressed);
+                    fmi.putString(Tag.TransferSyntaxUID, VR.UI, dtsuid);
+                    dos.writeFileMetaInformation(fmi);
+                    dos.writeDataset(decompressed.dataset(), dtsuid);
+                } else {
+                    dos.writeFileMetaInformation(fmi);
+                    dos.flush();
+                    try (final FileChannel spooled = new FileInputStream(compressed).getChannel()) {
+                        final FileChannel channel  = fos.getChannel();
+                        final long        size     = spooled.size();
+                        long              position = 0;
+                        while (position < size) {
+                            position += spooled.transferTo(position, size - position, channel);
+                        }
+                    }
                 }
             }
-        } catch (IOException e) {
-            throw ioexception = e;
         } finally {
-            try {
-                bos.close();
-            } catch (IOException e) {
-                throw null == ioexception ? e : ioexception;
+            if (compressed.exists() && !compressed.delete()) {
+                log.warn("Unable to delete spooled compressed object {}", compressed);
             }
         }
     }
 
+    /**
+     * Moves the rest of the object, i.e. everything after the header that was parsed on receipt, directly into the
+     * output file's channel. This avoids copying the pixel data through the buffered output stream.
+     */
+    private static void transferRemainder(final InputStream remainder, final DicomOutputStream dos, final FileOutputStream fos, final File f) throws IOException {
+        if (null == remainder) {
+            return;
+        }
+        dos.flush();
+        final FileChannel         channel  = fos.getChannel();
+        final ReadableByteChannel source   = Channels.newChannel(remainder);
+        final long                start    = channel.position();
+        long                      position = start;
+        long                      transferred;
+        while ((transferred = channel.transferFrom(source, position, TRANSFER_SIZE)) > 0) {
+            position += transferred;
+        }
+        channel.position(position);
+        log.trace("copied {} additional bytes to {}", position - start, f);
+    }
+
+    private static void validate(final File compressed, final String tsuid) throws ClientException {
+        try (final DicomInputStream dis = new DicomInputStream(new BufferedInputStream(new FileInputStream(compressed)), tsuid)) {
+            dis.readDicomObject(new BasicDicomObject(), -1);
+        } catch (IOException e) {
+            throw new ClientException(Status.CLIENT_ERROR_BAD_REQUEST, "error parsing DICOM object", e);
+        }
+    }
+
     private static final String  DEFAULT_TRANSFER_SYNTAX = TransferSyntax.ExplicitVRLittleEndian.uid();
     private static final String  RENAME_PARAM            = "rename";
+    private static final long    TRANSFER_SIZE           = 8 * 1024 * 1024;
     private static final boolean canDecompress           = initializeCanDecompress();
 
     private final UserProjectCache    _cache;
@@ -727,8 +745,9 @@ public class GradualDicomImporter extends ImporterHandlerA {
     private DicomFilterService _filterService;
 
     private final MizerService _mizer;
-    private final ArchiveProcessorInstanceService _processorInstanceService;
-    private Map<Class<? extends ArchiveProcessor>, ArchiveProcessor> _processorsMap;
+    private final ArchiveProcessorChainService _processorChainService;
+    private final CompiledAnonScriptCache _anonScriptCache;
+    private ArchiveProcessorChain _processorChain;
     private final DirectArchiveSessionService _directArchiveSessionService;
 
     public static final String SENDER_AE_TITLE_PARAM = "Sender-AE-Title";
@@ -14,10 +14,12 @@ import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.lang3.StringUtils;
+import org.nrg.config.entities.Configuration;
 import org.nrg.dcm.xnat.DICOMSessionBuilder;
 import org.nrg.dcm.xnat.XnatAttrDef;
 import org.nrg.dcm.xnat.XnatImagesessiondataBeanFactory;
 import org.nrg.ecat.xnat.PETSessionBuilder;
+import org.nrg.framework.constants.Scope;
 import org.nrg.framework.services.ContextService;
 import org.nrg.framework.utilities.BasicXnatResourceLocator;
 import org.nrg.session.SessionBuilder;
@@ -28,6 +30,8 @@ import org.nrg.xdat.preferences.HandlePetMr;
 import org.nrg.xdat.turbine.utils.PropertiesHelper;
 import org.nrg.xft.XFT;
 import org.nrg.xnat.helpers.prearchive.PrearcTableBuilder;
+import org.nrg.xnat.helpers.prearchive.SessionDataTriple;
+import org.nrg.xnat.helpers.prearchive.SessionBuildStamp;
 import org.springframework.core.io.Resource;
 
 import javax.annotation.Nonnull;
@@ -63,6 +67,8 @@ public class XNATSessionBuilder implements Callable<Boolean> {
     private static final String                                                 SESSION_BUILDER_PROPERTIES   = "session-builder.properties";
     private static final String                                                 SESSION_BUILDER_RESOURCES    = "classpath*:META-INF/xnat/**/*-session-builder.properties";
     private static final String                                                 PROJECT_PARAM                = "project";
+    private static final String                                                 DICOM_CONFIG_TOOL            = "dicom";
+    private static final String                                                 STAMP_PREFIX                 = "builder.";
     private static final String                                                 DICOM                        = "DICOM";
     private static final BuilderConfig                                          DICOM_BUILDER                = new BuilderConfig(DICOM, DICOMSessionBuilder.class, 0);
     private static final String                                                 ECAT                         = "ECAT";
@@ -144,6 +150,26 @@ public class XNATSessionBuilder implements Callable<Boolean> {
     public Boolean call() throws IOException {
         xml.getParentFile().mkdirs();
 
+        if (null == _contextService && SESSION_DATA_FACTORY_CLASSES.isEmpty()) {
+            _contextService = XDAT.getContextService();
+            try {
+                //Legacy support for a bean of a list of classes
+                SESSION_DATA_FACTORY_CLASSES.addAll(_contextService.getBean("sessionDataFactoryClasses", Collection.class));
+            } catch (Exception ignored) {
+                // Ignore
+            }
+        }
+
+        // There's no need to re-read every file in the session if none of them have changed since the session XML
+        // was last built with the same parameters and builder configuration.
+        final SessionDataTriple   prearcSession   = isInPrearchive ? new SessionDataTriple(dir.getName(), dir.getParentFile().getName(), params.get(PROJECT_PARAM)) : null;
+        final Map<String, String> stampParameters = prearcSession != null ? getStampParameters() : null;
+        final String              filesDigest     = stampParameters != null ? SessionBuildStamp.getFilesDigest(dir) : null;
+        if (filesDigest != null && SessionBuildStamp.isBuilt(prearcSession, xml, stampParameters, filesDigest)) {
+            log.info("The session XML {} was built from the current files in the session, skipping rebuild", xml);
+            return Boolean.TRUE;
+        }
+
         // handle resources here
         List<XnatAbstractresourceBean> resources = null;
         if (xml.exists()) {
@@ -156,16 +182,6 @@ public class XNATSessionBuilder implements Callable<Boolean> {
             }
         }
 
-        if (null == _contextService && SESSION_DATA_FACTORY_CLASSES.isEmpty()) {
-            _contextService = XDAT.getContextService();
-            try {
-                //Legacy support for a bean of a list of classes
-                SESSION_DATA_FACTORY_CLASSES.addAll(_contextService.getBean("sessionDataFactoryClasses", Collection.class));
-            } catch (Exception ignored) {
-                // Ignore
-            }
-        }
-
         for (final BuilderConfig bc : BUILDER_CLASSES) {
             switch (bc.getCode()) {
                 case DICOM:
@@ -197,9 +213,48 @@ public class XNATSessionBuilder implements Callable<Boolean> {
             }
         }
 
+        if (filesDigest != null && xml.length() > 0) {
+            SessionBuildStamp.markBuilt(prearcSession, xml, stampParameters, filesDigest);
+        }
+
         return Boolean.TRUE;
     }
 
+    /**
+     * Gets the build parameters along with the builder configuration that determines what's built from the session
+     * files: the session builders, the session data factories, the DICOM fields excluded from import, and the site and
+     * project DICOM routing configurations. A change to any of these means the session has to be rescanned.
+     *
+     * @return The parameters for the session build stamp, or null if the builder configuration couldn't be read.
+     */
+    private Map<String, String> getStampParameters() {
+        try {
+            final Map<String, String> parameters = new HashMap<>(params);
+            parameters.put(STAMP_PREFIX + "builders", BUILDER_CLASSES.stream().map(config -> config.getCode() + "=" + config.getSessionBuilderClass().getName() + ":" + config.getOrder()).collect(Collectors.joining(",")));
+            parameters.put(STAMP_PREFIX + "sessionDataFactoryClasses", SESSION_DATA_FACTORY_CLASSES.stream().map(Class::getName).collect(Collectors.joining(",")));
+            parameters.put(STAMP_PREFIX + "sessionDataFactories", XDAT.getContextService().getBeansOfType(XnatImagesessiondataBeanFactory.class).values().stream().map(factory -> factory.getClass().getName()).sorted().collect(Collectors.joining(",")));
+            parameters.put(STAMP_PREFIX + "excludedDicomImportFields", Objects.toString(XDAT.getContextService().getBean("excludedDicomImportFields", List.class), null));
+            addDicomConfigurations(parameters, Scope.Site, null);
+            final String project = params.get(PROJECT_PARAM);
+            if (StringUtils.isNotBlank(project)) {
+                addDicomConfigurations(parameters, Scope.Project, project);
+            }
+            return parameters;
+        } catch (Exception e) {
+            log.info("Couldn't read the session builder configuration, the session in {} will be rebuilt", dir, e);
+            return null;
+        }
+    }
+
+    private static void addDicomConfigurations(final Map<String, String> parameters, final Scope scope, final String entityId) {
+        final List<Configuration> configurations = XDAT.getConfigService().getConfigsByTool(DICOM_CONFIG_TOOL, scope, entityId);
+        if (configurations != null) {
+            for (final Configuration configuration : configurations) {
+                parameters.put(STAMP_PREFIX + scope.code() + "." + configuration.getPath(), configuration.getStatus() + ":" + configuration.getContents());
+            }
+        }
+    }
+
     private void buildCustomSession(final BuilderConfig builderConfig) throws IOException {
         //this is currently unused... and probably should be re-written.  It was a first pass.
         try (final FileWriter fileWriter = new FileWriter(xml)) {
@@ -39,6 +39,7 @@ import org.nrg.xnat.restlet.actions.importer.ImporterHandlerPackages;
 import org.nrg.xnat.services.PETTracerUtils;
 import org.nrg.xnat.services.archive.DicomInboxImportRequestService;
 import org.nrg.xnat.tracking.services.EventTrackingDataService;
+import org.nrg.xnat.tracking.services.impl.EventTrackingDataServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
@@ -241,6 +242,12 @@ public class ApplicationConfig {
                                new PeriodicTrigger(1, TimeUnit.DAYS));
     }
 
+    @Bean
+    public TriggerTask flushEventTracking(final EventTrackingDataService eventTrackingDataService) {
+        return new TriggerTask(eventTrackingDataService::flushPendingUpdates,
+                               new PeriodicTrigger(EventTrackingDataServiceImpl.FLUSH_INTERVAL));
+    }
+
     @Value("${ehcache.configuration:xnat-cache.xml}")
     private String                     _cacheConfiguration;
     private AsyncOperationsPreferences _asyncOperationsPreferences;
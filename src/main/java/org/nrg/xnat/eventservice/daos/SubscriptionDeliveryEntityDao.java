@@ -18,6 +18,7 @@ import org.nrg.xnat.eventservice.entities.TimedEventStatusEntity;
 import org.nrg.xnat.eventservice.services.SubscriptionDeliveryEntityPaginatedRequest;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -124,6 +125,21 @@ public class SubscriptionDeliveryEntityDao extends AbstractHibernateDAO<Subscrip
         return GenericUtils.convertToTypedList(criteria.list(), getParameterizedType());
     }
 
+    /**
+     * Gets the deliveries with the specified IDs along with their statuses in a single query.
+     *
+     * @param deliveryIds The IDs of the deliveries to get.
+     *
+     * @return The deliveries that were found.
+     */
+    public List<SubscriptionDeliveryEntity> getWithStatuses(final Collection<Long> deliveryIds) {
+        final Criteria criteria = getCriteriaForType();
+        criteria.add(Restrictions.in("id", deliveryIds));
+        criteria.setFetchMode("timedEventStatuses", FetchMode.JOIN);
+        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        return GenericUtils.convertToTypedList(criteria.list(), getParameterizedType());
+    }
+
     public Integer count(final String projectId, final Long subscriptionId, final TimedEventStatusEntity.Status statusToExclude) {
         final Criteria cr = getSession().createCriteria(SubscriptionDeliveryEntity.class);
         if (StringUtils.isNotBlank(projectId)) {
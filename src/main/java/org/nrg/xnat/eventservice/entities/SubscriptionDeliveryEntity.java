@@ -1,6 +1,7 @@
 package org.nrg.xnat.eventservice.entities;
 
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.annotations.DynamicUpdate;
 import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
 
 import javax.persistence.CascadeType;
@@ -20,7 +21,13 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.UUID;
 
+/**
+ * Statuses are written by the status journal in their own transactions, while other code updates the triggering event
+ * and payload of the same delivery in the caller's transaction. Updates only include the columns that changed, so a
+ * delivery loaded before a status was written doesn't overwrite the status when it's updated.
+ */
 @Entity
+@DynamicUpdate
 public class SubscriptionDeliveryEntity extends AbstractHibernateEntity {
 
     public SubscriptionDeliveryEntity() {}
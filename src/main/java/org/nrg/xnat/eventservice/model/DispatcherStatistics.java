@@ -0,0 +1,67 @@
+package org.nrg.xnat.eventservice.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+
+@AutoValue
+@JsonInclude(JsonInclude.Include.ALWAYS)
+public abstract class DispatcherStatistics {
+
+    @JsonProperty("pool-size") public abstract int poolSize();
+    @JsonProperty("active") public abstract int active();
+    @JsonProperty("queue-capacity") public abstract int queueCapacity();
+    @JsonProperty("subscription-concurrency") public abstract int subscriptionConcurrency();
+    @JsonProperty("provider-concurrency") public abstract int providerConcurrency();
+    @JsonProperty("priority-queue-depth") public abstract int priorityQueueDepth();
+    @JsonProperty("bulk-queue-depth") public abstract int bulkQueueDepth();
+    @JsonProperty("priority-dispatched") public abstract long priorityDispatched();
+    @JsonProperty("bulk-dispatched") public abstract long bulkDispatched();
+    @JsonProperty("priority-average-wait-ms") public abstract long priorityAverageWait();
+    @JsonProperty("priority-max-wait-ms") public abstract long priorityMaxWait();
+    @JsonProperty("bulk-average-wait-ms") public abstract long bulkAverageWait();
+    @JsonProperty("bulk-max-wait-ms") public abstract long bulkMaxWait();
+    @JsonProperty("blocked-submissions") public abstract long blockedSubmissions();
+    @JsonProperty("active-by-subscription") public abstract ImmutableMap<Long, Integer> activeBySubscription();
+    @JsonProperty("active-by-provider") public abstract ImmutableMap<String, Integer> activeByProvider();
+
+    public static Builder builder() {return new AutoValue_DispatcherStatistics.Builder();}
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder poolSize(int poolSize);
+
+        public abstract Builder active(int active);
+
+        public abstract Builder queueCapacity(int queueCapacity);
+
+        public abstract Builder subscriptionConcurrency(int subscriptionConcurrency);
+
+        public abstract Builder providerConcurrency(int providerConcurrency);
+
+        public abstract Builder priorityQueueDepth(int priorityQueueDepth);
+
+        public abstract Builder bulkQueueDepth(int bulkQueueDepth);
+
+        public abstract Builder priorityDispatched(long priorityDispatched);
+
+        public abstract Builder bulkDispatched(long bulkDispatched);
+
+        public abstract Builder priorityAverageWait(long priorityAverageWait);
+
+        public abstract Builder priorityMaxWait(long priorityMaxWait);
+
+        public abstract Builder bulkAverageWait(long bulkAverageWait);
+
+        public abstract Builder bulkMaxWait(long bulkMaxWait);
+
+        public abstract Builder blockedSubmissions(long blockedSubmissions);
+
+        public abstract Builder activeBySubscription(ImmutableMap<Long, Integer> activeBySubscription);
+
+        public abstract Builder activeByProvider(ImmutableMap<String, Integer> activeByProvider);
+
+        public abstract DispatcherStatistics build();
+    }
+}
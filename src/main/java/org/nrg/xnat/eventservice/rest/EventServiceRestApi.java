@@ -416,6 +416,12 @@ public class EventServiceRestApi extends AbstractXapiRestController {
     }
 
 
+    @XapiRequestMapping(restrictTo = Admin, value = "/events/dispatcher", method = GET, produces = JSON)
+    @ApiOperation(value = "Get the queue depths, wait times, and running actions of the Event Service action dispatcher")
+    public DispatcherStatistics getDispatcherStatistics() {
+        return eventService.getDispatcherStatistics();
+    }
+
     @XapiRequestMapping(restrictTo = Authenticated, value = {"/events/action"}, params = "actionkey", method = GET)
     @ApiOperation(value = "Get a actions by key in the form of \"ProviderID:ActionID\"")
     @ResponseBody
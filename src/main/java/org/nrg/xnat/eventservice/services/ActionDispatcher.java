@@ -0,0 +1,29 @@
+package org.nrg.xnat.eventservice.services;
+
+import org.nrg.xnat.eventservice.model.DispatcherStatistics;
+
+/**
+ * Runs subscription actions on a bounded pool of worker threads. Actions waiting to run are held in two bounded lanes:
+ * a priority lane for events that a user is likely waiting on and a bulk lane for everything else. Workers always take
+ * from the priority lane first. The number of actions running at once for any one subscription and for any one action
+ * provider is capped, so a flood of deliveries for one subscription can't take over every worker.
+ */
+public interface ActionDispatcher {
+    /**
+     * Queues the action to run. If the lane the action belongs in is full, this blocks until there's room, which pushes
+     * back on the threads that deliver events.
+     *
+     * @param subscriptionId The ID of the subscription the action is for.
+     * @param providerName   The name of the action provider.
+     * @param interactive    Whether the event may have been triggered directly by a user.
+     * @param action         The action to run.
+     */
+    void dispatch(Long subscriptionId, String providerName, boolean interactive, Runnable action);
+
+    /**
+     * Gets the current queue depths, wait times, and running actions.
+     *
+     * @return The dispatcher statistics.
+     */
+    DispatcherStatistics getStatistics();
+}
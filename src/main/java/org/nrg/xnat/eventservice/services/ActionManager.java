@@ -4,6 +4,7 @@ import org.nrg.xft.event.persist.PersistentWorkflowI;
 import org.nrg.xft.security.UserI;
 import org.nrg.xnat.eventservice.events.EventServiceEvent;
 import org.nrg.xnat.eventservice.model.Action;
+import org.nrg.xnat.eventservice.model.DispatcherStatistics;
 import org.nrg.xnat.eventservice.model.Subscription;
 import org.springframework.scheduling.annotation.Async;
 
@@ -37,4 +38,6 @@ public interface ActionManager {
     @Async
     void processAsync(EventServiceActionProvider provider, Subscription subscription, EventServiceEvent esEvent,
                       UserI user, Long deliveryId, PersistentWorkflowI workflow);
+
+    DispatcherStatistics getDispatcherStatistics();
 }
@@ -9,6 +9,7 @@ import org.nrg.xnat.eventservice.exceptions.SubscriptionValidationException;
 import org.nrg.xnat.eventservice.listeners.EventServiceListener;
 import org.nrg.xnat.eventservice.model.Action;
 import org.nrg.xnat.eventservice.model.ActionProvider;
+import org.nrg.xnat.eventservice.model.DispatcherStatistics;
 import org.nrg.xnat.eventservice.model.EventPropertyNode;
 import org.nrg.xnat.eventservice.model.EventServicePrefs;
 import org.nrg.xnat.eventservice.model.JsonPathFilterNode;
@@ -83,6 +84,8 @@ public interface EventService {
     EventServicePrefs getPrefsPojo();
     void updatePrefs(EventServicePrefs prefs);
 
+    DispatcherStatistics getDispatcherStatistics();
+
     void syncReactorRegistrations();
 
 }
@@ -50,6 +50,67 @@ public class EventServicePrefsBean extends AbstractPreferenceBean {
     }
 
 
+    // ** Number of threads that run subscription actions - changes take effect when XNAT restarts ** //
+    @NrgPreference(defaultValue = "8")
+    public Integer getDispatcherPoolSize() {
+        return getIntegerValue("dispatcherPoolSize");
+    }
+    public void setDispatcherPoolSize(final Integer dispatcherPoolSize) {
+        if (dispatcherPoolSize != null) {
+            try {
+                setIntegerValue(dispatcherPoolSize, "dispatcherPoolSize");
+            } catch (InvalidPreferenceName e) {
+                _log.error("Error setting Event Service preference \"dispatcherPoolSize\".", e.getMessage());
+            }
+        }
+    }
+
+    // ** Number of actions that can wait in each of the priority and bulk lanes before event delivery blocks - changes take effect when XNAT restarts ** //
+    @NrgPreference(defaultValue = "1000")
+    public Integer getDispatcherQueueCapacity() {
+        return getIntegerValue("dispatcherQueueCapacity");
+    }
+    public void setDispatcherQueueCapacity(final Integer dispatcherQueueCapacity) {
+        if (dispatcherQueueCapacity != null) {
+            try {
+                setIntegerValue(dispatcherQueueCapacity, "dispatcherQueueCapacity");
+            } catch (InvalidPreferenceName e) {
+                _log.error("Error setting Event Service preference \"dispatcherQueueCapacity\".", e.getMessage());
+            }
+        }
+    }
+
+    // ** Number of actions that can run at once for a single subscription - changes take effect when XNAT restarts ** //
+    @NrgPreference(defaultValue = "2")
+    public Integer getDispatcherSubscriptionConcurrency() {
+        return getIntegerValue("dispatcherSubscriptionConcurrency");
+    }
+    public void setDispatcherSubscriptionConcurrency(final Integer dispatcherSubscriptionConcurrency) {
+        if (dispatcherSubscriptionConcurrency != null) {
+            try {
+                setIntegerValue(dispatcherSubscriptionConcurrency, "dispatcherSubscriptionConcurrency");
+            } catch (InvalidPreferenceName e) {
+                _log.error("Error setting Event Service preference \"dispatcherSubscriptionConcurrency\".", e.getMessage());
+            }
+        }
+    }
+
+    // ** Number of actions that can run at once for a single action provider - changes take effect when XNAT restarts ** //
+    @NrgPreference(defaultValue = "6")
+    public Integer getDispatcherProviderConcurrency() {
+        return getIntegerValue("dispatcherProviderConcurrency");
+    }
+    public void setDispatcherProviderConcurrency(final Integer dispatcherProviderConcurrency) {
+        if (dispatcherProviderConcurrency != null) {
+            try {
+                setIntegerValue(dispatcherProviderConcurrency, "dispatcherProviderConcurrency");
+            } catch (InvalidPreferenceName e) {
+                _log.error("Error setting Event Service preference \"dispatcherProviderConcurrency\".", e.getMessage());
+            }
+        }
+    }
+
+
     public EventServicePrefs toPojo(){
         return EventServicePrefs.builder()
                 .enabled(this.getEnabled())
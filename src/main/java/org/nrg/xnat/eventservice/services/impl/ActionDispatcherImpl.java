@@ -0,0 +1,280 @@
+package org.nrg.xnat.eventservice.services.impl;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnat.eventservice.model.DispatcherStatistics;
+import org.nrg.xnat.eventservice.services.ActionDispatcher;
+import org.nrg.xnat.eventservice.services.EventServicePrefsBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs actions on a fixed set of worker threads. The pool size, lane capacity, and concurrency caps are read from the
+ * event service preferences when the dispatcher starts.
+ * <p>
+ * An action is put in the priority lane when the event isn't a scheduled event and its subscription doesn't already
+ * have actions waiting. Once a subscription has a backlog, e.g. while a bulk rebuild fires an event for every session,
+ * its later actions go to the bulk lane, so events for other subscriptions don't wait behind the backlog.
+ */
+@Slf4j
+@Service
+public class ActionDispatcherImpl implements ActionDispatcher {
+    private static final int  DEFAULT_POOL_SIZE                = 8;
+    private static final int  DEFAULT_QUEUE_CAPACITY           = 1000;
+    private static final int  DEFAULT_SUBSCRIPTION_CONCURRENCY = 2;
+    private static final int  DEFAULT_PROVIDER_CONCURRENCY     = 6;
+    private static final long SHUTDOWN_WAIT                    = 30;
+
+    private final int                   poolSize;
+    private final int                   queueCapacity;
+    private final int                   subscriptionConcurrency;
+    private final int                   providerConcurrency;
+    private final List<Thread>          workers                = new ArrayList<>();
+    private final ReentrantLock         lock                   = new ReentrantLock();
+    private final Condition             available              = lock.newCondition();
+    private final Condition             notFull                = lock.newCondition();
+    private final Deque<Task>           priorityLane           = new ArrayDeque<>();
+    private final Deque<Task>           bulkLane               = new ArrayDeque<>();
+    private final Map<Long, Integer>    queuedBySubscription   = new HashMap<>();
+    private final Map<Long, Integer>    activeBySubscription   = new HashMap<>();
+    private final Map<String, Integer>  activeByProvider       = new HashMap<>();
+    private final LaneStatistics        priorityStatistics     = new LaneStatistics();
+    private final LaneStatistics        bulkStatistics         = new LaneStatistics();
+    private long                        blockedSubmissions;
+    private int                         active;
+    private boolean                     shutdown;
+
+    @Autowired
+    public ActionDispatcherImpl(final EventServicePrefsBean prefs) {
+        poolSize = valueOrDefault(prefs.getDispatcherPoolSize(), DEFAULT_POOL_SIZE);
+        queueCapacity = valueOrDefault(prefs.getDispatcherQueueCapacity(), DEFAULT_QUEUE_CAPACITY);
+        subscriptionConcurrency = valueOrDefault(prefs.getDispatcherSubscriptionConcurrency(), DEFAULT_SUBSCRIPTION_CONCURRENCY);
+        providerConcurrency = valueOrDefault(prefs.getDispatcherProviderConcurrency(), DEFAULT_PROVIDER_CONCURRENCY);
+        for (int index = 0; index < poolSize; index++) {
+            final Thread worker = new Thread(this::work, "event-service-dispatcher-" + index);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        log.info("Started event service dispatcher with {} workers, {} queued actions per lane, {} concurrent actions per subscription and {} per action provider",
+                 poolSize, queueCapacity, subscriptionConcurrency, providerConcurrency);
+    }
+
+    @Override
+    public void dispatch(final Long subscriptionId, final String providerName, final boolean interactive, final Runnable action) {
+        if (workers.contains(Thread.currentThread())) {
+            // Waiting for room in a lane from a worker could leave every worker waiting on the others.
+            runInline(subscriptionId, action);
+            return;
+        }
+        boolean queued = false;
+        lock.lock();
+        try {
+            final boolean     priority = interactive && !queuedBySubscription.containsKey(subscriptionId);
+            final Deque<Task> lane     = priority ? priorityLane : bulkLane;
+            if (lane.size() >= queueCapacity && !shutdown) {
+                blockedSubmissions++;
+                log.debug("The {} lane is full, waiting to queue action for subscription {}", priority ? "priority" : "bulk", subscriptionId);
+                while (lane.size() >= queueCapacity && !shutdown) {
+                    notFull.await();
+                }
+            }
+            if (!shutdown) {
+                lane.addLast(new Task(subscriptionId, providerName, priority, action));
+                queuedBySubscription.merge(subscriptionId, 1, Integer::sum);
+                available.signal();
+                queued = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted waiting to queue action for subscription {}", subscriptionId);
+        } finally {
+            lock.unlock();
+        }
+        if (!queued) {
+            runInline(subscriptionId, action);
+        }
+    }
+
+    @Override
+    public DispatcherStatistics getStatistics() {
+        lock.lock();
+        try {
+            return DispatcherStatistics.builder()
+                                       .poolSize(poolSize)
+                                       .active(active)
+                                       .queueCapacity(queueCapacity)
+                                       .subscriptionConcurrency(subscriptionConcurrency)
+                                       .providerConcurrency(providerConcurrency)
+                                       .priorityQueueDepth(priorityLane.size())
+                                       .bulkQueueDepth(bulkLane.size())
+                                       .priorityDispatched(priorityStatistics.dispatched)
+                                       .bulkDispatched(bulkStatistics.dispatched)
+                                       .priorityAverageWait(priorityStatistics.getAverageWait())
+                                       .priorityMaxWait(priorityStatistics.getMaxWait())
+                                       .bulkAverageWait(bulkStatistics.getAverageWait())
+                                       .bulkMaxWait(bulkStatistics.getMaxWait())
+                                       .blockedSubmissions(blockedSubmissions)
+                                       .activeBySubscription(ImmutableMap.copyOf(activeBySubscription))
+                                       .activeByProvider(ImmutableMap.copyOf(activeByProvider))
+                                       .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets the workers finish the actions already queued, then stops them.
+     */
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            available.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_WAIT);
+        for (final Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        final DispatcherStatistics statistics = getStatistics();
+        if (statistics.priorityQueueDepth() + statistics.bulkQueueDepth() > 0) {
+            log.warn("The event service dispatcher stopped with {} actions still queued", statistics.priorityQueueDepth() + statistics.bulkQueueDepth());
+        }
+    }
+
+    private void work() {
+        while (true) {
+            final Task task;
+            lock.lock();
+            try {
+                Task next;
+                while ((next = next()) == null) {
+                    if (shutdown && priorityLane.isEmpty() && bulkLane.isEmpty()) {
+                        return;
+                    }
+                    available.await();
+                }
+                task = next;
+                start(task);
+            } catch (InterruptedException e) {
+                log.warn("Event service dispatcher worker {} was interrupted", Thread.currentThread().getName());
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                task.action.run();
+            } catch (Throwable e) {
+                log.error("An error occurred running the action for subscription {}", task.subscriptionId, e);
+            } finally {
+                finish(task);
+            }
+        }
+    }
+
+    // Must be called while holding the lock.
+    private Task next() {
+        final Task task = next(priorityLane);
+        return task != null ? task : next(bulkLane);
+    }
+
+    private Task next(final Deque<Task> lane) {
+        for (final Iterator<Task> iterator = lane.iterator(); iterator.hasNext(); ) {
+            final Task task = iterator.next();
+            if (activeBySubscription.getOrDefault(task.subscriptionId, 0) < subscriptionConcurrency
+                && activeByProvider.getOrDefault(task.providerName, 0) < providerConcurrency) {
+                iterator.remove();
+                notFull.signalAll();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    // Must be called while holding the lock.
+    private void start(final Task task) {
+        active++;
+        activeBySubscription.merge(task.subscriptionId, 1, Integer::sum);
+        activeByProvider.merge(task.providerName, 1, Integer::sum);
+        queuedBySubscription.computeIfPresent(task.subscriptionId, (id, count) -> count > 1 ? count - 1 : null);
+        (task.priority ? priorityStatistics : bulkStatistics).record(System.nanoTime() - task.queued);
+    }
+
+    private void finish(final Task task) {
+        lock.lock();
+        try {
+            active--;
+            activeBySubscription.computeIfPresent(task.subscriptionId, (id, count) -> count > 1 ? count - 1 : null);
+            activeByProvider.computeIfPresent(task.providerName, (name, count) -> count > 1 ? count - 1 : null);
+            // Finishing may free up a slot for a subscription or provider whose actions were held back.
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void runInline(final Long subscriptionId, final Runnable action) {
+        log.debug("Running action for subscription {} on the calling thread", subscriptionId);
+        action.run();
+    }
+
+    private static int valueOrDefault(final Integer value, final int defaultValue) {
+        return value != null && value > 0 ? value : defaultValue;
+    }
+
+    private static class Task {
+        private final Long     subscriptionId;
+        private final String   providerName;
+        private final boolean  priority;
+        private final Runnable action;
+        private final long     queued = System.nanoTime();
+
+        Task(final Long subscriptionId, final String providerName, final boolean priority, final Runnable action) {
+            this.subscriptionId = subscriptionId;
+            this.providerName = providerName;
+            this.priority = priority;
+            this.action = action;
+        }
+    }
+
+    private static class LaneStatistics {
+        private long dispatched;
+        private long totalWait;
+        private long maxWait;
+
+        void record(final long wait) {
+            dispatched++;
+            totalWait += wait;
+            maxWait = Math.max(maxWait, wait);
+        }
+
+        long getAverageWait() {
+            return dispatched == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWait / dispatched);
+        }
+
+        long getMaxWait() {
+            return TimeUnit.NANOSECONDS.toMillis(maxWait);
+        }
+    }
+}
@@ -15,8 +15,11 @@ import org.nrg.xft.security.UserI;
 import org.nrg.xnat.eventservice.entities.SubscriptionDeliveryEntity;
 import org.nrg.xnat.eventservice.entities.TimedEventStatusEntity;
 import org.nrg.xnat.eventservice.events.EventServiceEvent;
+import org.nrg.xnat.eventservice.events.ScheduledEvent;
 import org.nrg.xnat.eventservice.model.Action;
+import org.nrg.xnat.eventservice.model.DispatcherStatistics;
 import org.nrg.xnat.eventservice.model.Subscription;
+import org.nrg.xnat.eventservice.services.ActionDispatcher;
 import org.nrg.xnat.eventservice.services.ActionManager;
 import org.nrg.xnat.eventservice.services.EventPropertyService;
 import org.nrg.xnat.eventservice.services.EventServiceActionProvider;
@@ -52,12 +55,14 @@ public class ActionManagerImpl implements ActionManager {
     private final EventServiceComponentManager componentManager;
     private final SubscriptionDeliveryEntityService subscriptionDeliveryEntityService;
     private EventPropertyService eventPropertyService;
+    private final ActionDispatcher actionDispatcher;
 
     @Autowired
-    public ActionManagerImpl(final EventServiceComponentManager componentManager, final SubscriptionDeliveryEntityService subscriptionDeliveryEntityService, final EventPropertyService eventPropertyService) {
+    public ActionManagerImpl(final EventServiceComponentManager componentManager, final SubscriptionDeliveryEntityService subscriptionDeliveryEntityService, final EventPropertyService eventPropertyService, final ActionDispatcher actionDispatcher) {
         this.componentManager = componentManager;
         this.subscriptionDeliveryEntityService = subscriptionDeliveryEntityService;
         this.eventPropertyService = eventPropertyService;
+        this.actionDispatcher = actionDispatcher;
     }
 
 
@@ -307,7 +312,9 @@ public class ActionManagerImpl implements ActionManager {
                     log.error(e.getMessage());
                 }
             }
-            processAsync(provider, subscription, esEvent, user, deliveryId, workflow);
+            // Scheduled events are never waited on by a user, so they always go in the bulk lane.
+            actionDispatcher.dispatch(subscription.id(), provider.getName(), !(esEvent instanceof ScheduledEvent),
+                                      () -> processAsync(provider, subscription, esEvent, user, deliveryId, workflow));
         } else {
             String errorMessage = "Could not find Action Provider for ActionKey: " + subscription.actionKey();
             subscriptionDeliveryEntityService.addStatus(deliveryId, FAILED, new Date(), "Could not find Action Provider for ActionKey: " + subscription.actionKey());
@@ -357,4 +364,9 @@ public class ActionManagerImpl implements ActionManager {
         log.debug("Ending Async process on thread: {}", Thread.currentThread().getName());
     }
 
+    @Override
+    public DispatcherStatistics getDispatcherStatistics() {
+        return actionDispatcher.getStatistics();
+    }
+
 }
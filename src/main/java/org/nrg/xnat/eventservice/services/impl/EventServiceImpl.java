@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
 import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.InvalidPathException;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
@@ -36,6 +37,8 @@ import reactor.bus.EventBus;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static org.nrg.xnat.eventservice.entities.TimedEventStatusEntity.Status.*;
@@ -56,6 +59,7 @@ public class EventServiceImpl implements EventService {
     private final Configuration                       jaywayConf     = Configuration.builder().build().addOptions(Option.ALWAYS_RETURN_LIST, Option.SUPPRESS_EXCEPTIONS);
     private final EventServicePrefsBean               prefs;
     private final XnatAppInfo                         xnatAppInfo;
+    private final ConcurrentMap<Long, CompiledFilter> compiledFilters = new ConcurrentHashMap<>();
 
 
     @Autowired
@@ -120,6 +124,7 @@ public class EventServiceImpl implements EventService {
         subscriptionService.validate(subscription);
         final Subscription original = subscriptionService.getSubscription(subscription.id());
         final Subscription updated  = subscriptionService.update(subscription);
+        compiledFilters.remove(subscription.id());
         if (updated == null) {
             return null;
         }
@@ -142,6 +147,7 @@ public class EventServiceImpl implements EventService {
         throwIfDisabled();
         Subscription toDelete = subscriptionService.getSubscription(id);
         subscriptionService.delete(id);
+        compiledFilters.remove(id);
         cancelEventsForSubscription(toDelete);
     }
 
@@ -325,11 +331,13 @@ public class EventServiceImpl implements EventService {
 
         try {
             log.debug("Event noticed by EventService: " + event.getData().getClass().getSimpleName());
-            String          jsonObject  = null;
-            XnatModelObject modelObject = null;
             if (event.getData() instanceof EventServiceEvent) {
                 EventServiceEvent esEvent = (EventServiceEvent) event.getData();
+                // The payload is the same for every subscription with the same action user, so it's only retrieved and serialized once per user.
+                final Map<String, SerializedPayload> payloads = new HashMap<>();
                 for (Subscription subscription : subscriptionService.getSubscriptionsByListenerId(listener.getInstanceId())) {
+                    String          jsonObject  = null;
+                    XnatModelObject modelObject = null;
                     log.debug("RegKey matched for " + listener.getInstanceId() + "  " + subscription.name());
                     // Create subscription delivery entry
                     Long deliveryId = subscriptionDeliveryEntityService.create(
@@ -355,35 +363,18 @@ public class EventServiceImpl implements EventService {
 
                         if (!(esEvent instanceof ScheduledEvent)) {
                             // ** Serialized event object ** //
-                            try {
-                                Object eventPayloadObject = esEvent.getObject(actionUser);
-                                try {
-                                    modelObject = componentManager.getModelObject(eventPayloadObject, actionUser);
-                                    if (modelObject != null && mapper.canSerialize(modelObject.getClass())) {
-                                        // Serialize data object
-                                        log.debug("Serializing event object as known Model Object.");
-                                        jsonObject = mapper.writeValueAsString(modelObject);
-                                    } else if (eventPayloadObject != null && mapper.canDeserialize(mapper.getTypeFactory().constructType(eventPayloadObject.getClass()))) {
-                                        log.debug("Serializing event object as unknown object type.");
-                                        jsonObject = mapper.writeValueAsString(eventPayloadObject);
-                                    } else {
-                                        log.debug("Could not serialize event object in: " + esEvent.getType());
-                                    }
-                                } catch (JsonProcessingException e) {
-                                    log.error("Exception attempting to serialize: {}", eventPayloadObject != null ? eventPayloadObject.getClass().getCanonicalName() : "null", e);
-                                }
-
-                                if (!Strings.isNullOrEmpty(jsonObject)) {
-                                    String objectSubString = StringUtils.substring(jsonObject, 0, 200);
-                                    log.debug("Serialized Object: " + objectSubString + "...");
-                                    subscriptionDeliveryEntityService.addStatus(deliveryId, OBJECT_SERIALIZED, new Date(), "Payload Object Serialized.");
-                                }
-                            } catch (NullPointerException e) {
-                                log.error("Aborting Event Service object serialization. Exception serializing event object: " + esEvent.getObjectClass().getName());
-                                log.error(e.getMessage());
-                                subscriptionDeliveryEntityService.addStatus(deliveryId, OBJECT_SERIALIZATION_FAULT, new Date(), Strings.isNullOrEmpty(e.getMessage()) ? e.getStackTrace().toString() : e.getMessage());
+                            final SerializedPayload payload = payloads.computeIfAbsent(actionUser.getUsername(), username -> serializePayload(esEvent, actionUser));
+                            if (payload.getFault() != null) {
+                                subscriptionDeliveryEntityService.addStatus(deliveryId, OBJECT_SERIALIZATION_FAULT, new Date(), payload.getFault());
                                 return;
                             }
+                            modelObject = payload.getModelObject();
+                            jsonObject = payload.getJson();
+                            if (!Strings.isNullOrEmpty(jsonObject)) {
+                                String objectSubString = StringUtils.substring(jsonObject, 0, 200);
+                                log.debug("Serialized Object: " + objectSubString + "...");
+                                subscriptionDeliveryEntityService.addStatus(deliveryId, OBJECT_SERIALIZED, new Date(), "Payload Object Serialized.");
+                            }
 
                             try {
                                 //Filter on data object (if filter and object exist)
@@ -394,7 +385,7 @@ public class EventServiceImpl implements EventService {
                                         subscriptionDeliveryEntityService.addStatus(deliveryId, OBJECT_FILTER_MISMATCH_HALT, new Date(), "Event has no object that can be serialized and filtered.");
                                         return;
                                     } else {
-                                        List<String> filterResult = performJsonFilter(subscription, jsonObject);
+                                        List<String> filterResult = getCompiledFilter(subscription).read(payload.getDocument());
                                         String objectSubString = StringUtils.substring(jsonObject, 0, 200);
                                         String filterDebug = subscription.eventFilter().jsonPathFilter();
                                         if (filterResult.isEmpty()) {
@@ -456,8 +447,121 @@ public class EventServiceImpl implements EventService {
     }
 
     public List<String> performJsonFilter(Subscription subscription, String jsonItem) {
-        String jsonFilter = "$[?(" + subscription.eventFilter().jsonPathFilter().replace("'", "\"") + ")]";
-        return JsonPath.using(jaywayConf).parse(jsonItem).read(jsonFilter);
+        return getCompiledFilter(subscription).read(JsonPath.using(jaywayConf).parse(jsonItem));
+    }
+
+    /**
+     * Gets the compiled JSONPath filter for the subscription. Filters are compiled once per subscription and compiled
+     * again if the subscription's filter changes.
+     *
+     * @param subscription The subscription with the filter.
+     *
+     * @return The compiled filter.
+     */
+    private CompiledFilter getCompiledFilter(Subscription subscription) {
+        final String filter = subscription.eventFilter().jsonPathFilter();
+        final Long   id     = subscription.id();
+        if (id == null) {
+            return new CompiledFilter(filter);
+        }
+        final CompiledFilter cached = compiledFilters.get(id);
+        if (cached != null && cached.getFilter().equals(filter)) {
+            return cached;
+        }
+        final CompiledFilter compiled = new CompiledFilter(filter);
+        compiledFilters.put(id, compiled);
+        return compiled;
+    }
+
+    /**
+     * Retrieves the event's payload as the action user and serializes it. Serialization problems are logged and leave
+     * the payload without JSON. If retrieving the payload fails, the fault is recorded so each delivery can report it.
+     *
+     * @param esEvent    The event.
+     * @param actionUser The user retrieving the payload.
+     *
+     * @return The serialized payload.
+     */
+    private SerializedPayload serializePayload(EventServiceEvent esEvent, UserI actionUser) {
+        try {
+            Object          eventPayloadObject = esEvent.getObject(actionUser);
+            XnatModelObject modelObject        = null;
+            String          jsonObject         = null;
+            try {
+                modelObject = componentManager.getModelObject(eventPayloadObject, actionUser);
+                if (modelObject != null && mapper.canSerialize(modelObject.getClass())) {
+                    // Serialize data object
+                    log.debug("Serializing event object as known Model Object.");
+                    jsonObject = mapper.writeValueAsString(modelObject);
+                } else if (eventPayloadObject != null && mapper.canDeserialize(mapper.getTypeFactory().constructType(eventPayloadObject.getClass()))) {
+                    log.debug("Serializing event object as unknown object type.");
+                    jsonObject = mapper.writeValueAsString(eventPayloadObject);
+                } else {
+                    log.debug("Could not serialize event object in: " + esEvent.getType());
+                }
+            } catch (JsonProcessingException e) {
+                log.error("Exception attempting to serialize: {}", eventPayloadObject != null ? eventPayloadObject.getClass().getCanonicalName() : "null", e);
+            }
+            return new SerializedPayload(modelObject, jsonObject, null);
+        } catch (NullPointerException e) {
+            log.error("Aborting Event Service object serialization. Exception serializing event object: " + esEvent.getObjectClass().getName());
+            log.error(e.getMessage());
+            return new SerializedPayload(null, null, Strings.isNullOrEmpty(e.getMessage()) ? e.getStackTrace().toString() : e.getMessage());
+        }
+    }
+
+    private static class CompiledFilter {
+        CompiledFilter(final String filter) {
+            this.filter = filter;
+            this.path = JsonPath.compile("$[?(" + filter.replace("'", "\"") + ")]");
+        }
+
+        String getFilter() {
+            return filter;
+        }
+
+        List<String> read(final DocumentContext document) {
+            return document.read(path);
+        }
+
+        private final String   filter;
+        private final JsonPath path;
+    }
+
+    private class SerializedPayload {
+        SerializedPayload(final XnatModelObject modelObject, final String json, final String fault) {
+            this.modelObject = modelObject;
+            this.json = json;
+            this.fault = fault;
+        }
+
+        XnatModelObject getModelObject() {
+            return modelObject;
+        }
+
+        String getJson() {
+            return json;
+        }
+
+        String getFault() {
+            return fault;
+        }
+
+        /**
+         * Gets the parsed JSON, which is parsed the first time it's needed and shared by all of the subscriptions'
+         * filters.
+         */
+        DocumentContext getDocument() {
+            if (document == null) {
+                document = JsonPath.using(jaywayConf).parse(json);
+            }
+            return document;
+        }
+
+        private final XnatModelObject modelObject;
+        private final String          json;
+        private final String          fault;
+        private       DocumentContext document;
     }
 
     @Override
@@ -567,6 +671,11 @@ public class EventServiceImpl implements EventService {
         }
     }
 
+    @Override
+    public DispatcherStatistics getDispatcherStatistics() {
+        return actionManager.getDispatcherStatistics();
+    }
+
     @Override
     @Async
     @Scheduled(cron = "*/30 * * * * *")
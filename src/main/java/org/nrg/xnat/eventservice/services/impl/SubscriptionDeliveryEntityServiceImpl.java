@@ -20,18 +20,26 @@ import org.nrg.xnat.eventservice.services.EventService;
 import org.nrg.xnat.eventservice.services.EventSubscriptionEntityService;
 import org.nrg.xnat.eventservice.services.SubscriptionDeliveryEntityPaginatedRequest;
 import org.nrg.xnat.eventservice.services.SubscriptionDeliveryEntityService;
+import org.nrg.xnat.eventservice.services.impl.SubscriptionDeliveryStatusJournal.PendingStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Nonnull;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.nrg.xnat.eventservice.entities.TimedEventStatusEntity.Status.EVENT_DETECTED;
@@ -41,13 +49,31 @@ import static org.nrg.xnat.eventservice.entities.TimedEventStatusEntity.Status.E
 @Service
 @Transactional
 public class SubscriptionDeliveryEntityServiceImpl extends AbstractHibernateEntityService<SubscriptionDeliveryEntity, SubscriptionDeliveryEntityDao> implements SubscriptionDeliveryEntityService {
-    private final EventService                   eventService;
-    private final EventSubscriptionEntityService eventSubscriptionEntityService;
+    private static final int  STATUS_GROUP_SIZE     = 100;
+    private static final int  STATUS_MAX_PENDING    = 10000;
+    private static final long STATUS_FLUSH_INTERVAL = 1000;
+
+    private final EventService                      eventService;
+    private final EventSubscriptionEntityService    eventSubscriptionEntityService;
+    private final TransactionTemplate               transactionTemplate;
+    private final SubscriptionDeliveryStatusJournal statusJournal;
 
     @Autowired
-    public SubscriptionDeliveryEntityServiceImpl(@Lazy EventService eventService, @Lazy EventSubscriptionEntityService eventSubscriptionEntityService) {
+    public SubscriptionDeliveryEntityServiceImpl(@Lazy EventService eventService, @Lazy EventSubscriptionEntityService eventSubscriptionEntityService, final TransactionTemplate transactionTemplate) {
         this.eventService = eventService;
         this.eventSubscriptionEntityService = eventSubscriptionEntityService;
+        // Statuses are written in their own transaction, so a failure doesn't roll back a reader that flushed them.
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.statusJournal = new SubscriptionDeliveryStatusJournal(this::writeStatuses, STATUS_GROUP_SIZE, STATUS_MAX_PENDING, STATUS_FLUSH_INTERVAL);
+    }
+
+    /**
+     * Writes any statuses that are still pending before the application shuts down.
+     */
+    @PreDestroy
+    public void flushStatuses() {
+        statusJournal.close();
     }
 
     @Override
@@ -57,9 +83,10 @@ public class SubscriptionDeliveryEntityServiceImpl extends AbstractHibernateEnti
                     (event.getDisplayName() + " : " + event.getCurrentStatus().toString()),
                     actionUserLogin, projectId, actionInputs);
             log.debug("Created new SubscriptionDeliveryEntity for subscription: {} and eventUUID {}", subscription.getName(), event.getEventUUID());
+            // The first statuses are saved along with the new delivery rather than through the status journal.
+            delivery.addTimedEventStatus(EVENT_TRIGGERED, event.getEventTimestamp(), "Event triggered.");
+            delivery.addTimedEventStatus(EVENT_DETECTED, listener.getDetectedTimestamp(), "Event detected.");
             super.create(delivery);
-            addStatus(delivery.getId(), EVENT_TRIGGERED, event.getEventTimestamp(), "Event triggered.");
-            addStatus(delivery.getId(), EVENT_DETECTED, listener.getDetectedTimestamp(), "Event detected.");
             return delivery.getId();
         } catch (Exception e) {
             log.error("Could not create new SubscriptionDeliveryEntity for subscription: {} and eventUUID {}", subscription.getName(), event.getEventUUID(), e);
@@ -67,16 +94,18 @@ public class SubscriptionDeliveryEntityServiceImpl extends AbstractHibernateEnti
         return null;
     }
 
+    /**
+     * Adds the status to the delivery's history. The status is written asynchronously along with other pending statuses,
+     * but is included in anything subsequently read from this service.
+     */
     @Override
     public void addStatus(Long deliveryId, TimedEventStatusEntity.Status status, Date statusTimestamp, String message) {
-        SubscriptionDeliveryEntity subscriptionDeliveryEntity = retrieve(deliveryId);
-        if (subscriptionDeliveryEntity != null) {
-            subscriptionDeliveryEntity.addTimedEventStatus(status, statusTimestamp, message);
-            //update(subscriptionDeliveryEntity);
-            log.debug("Updated SubscriptionDeliveryEntity: {} with status: {}", deliveryId, status.toString());
-        } else {
-            log.error("Could not find SubscriptionDeliveryEntity: {} with status: {}", deliveryId, status.toString());
+        if (deliveryId == null) {
+            log.error("Could not add status: {} to SubscriptionDeliveryEntity without an ID", status.toString());
+            return;
         }
+        statusJournal.add(deliveryId, status, statusTimestamp, message);
+        log.debug("Queued status: {} for SubscriptionDeliveryEntity: {}", status.toString(), deliveryId);
     }
 
     @Override
@@ -120,13 +149,21 @@ public class SubscriptionDeliveryEntityServiceImpl extends AbstractHibernateEnti
         }
     }
 
+    @Override
+    public SubscriptionDeliveryEntity get(final long id) throws NotFoundException {
+        statusJournal.flush();
+        return super.get(id);
+    }
+
     @Override
     public Integer count(String projectId, Long subscriptionId, Boolean includeFilterMismatches) {
+        statusJournal.flush();
         return getDao().count(projectId, subscriptionId, includeFilterMismatches == null || !includeFilterMismatches ? TimedEventStatusEntity.Status.OBJECT_FILTER_MISMATCH_HALT : null);
     }
 
     @Override
     public List<SubscriptionDeliverySummary> getSummaries(String projectId) {
+        statusJournal.flush();
         return toSummaries(getDao().getSummaryDeliveries(projectId));
     }
 
@@ -141,9 +178,37 @@ public class SubscriptionDeliveryEntityServiceImpl extends AbstractHibernateEnti
 
     @Override
     public List<SubscriptionDelivery> get(final String projectId, final Long subscriptionId, final @Nonnull Boolean includeFilterMismatches, final SubscriptionDeliveryEntityPaginatedRequest request, Boolean loadChildren) {
+        statusJournal.flush();
         return toDeliveries(getDao().get(projectId, subscriptionId, !includeFilterMismatches ? TimedEventStatusEntity.Status.OBJECT_FILTER_MISMATCH_HALT : null, request), loadChildren);
     }
 
+    /**
+     * Writes a group of statuses from the status journal in a new transaction, independent of any transaction the
+     * calling thread is in. The deliveries and their existing statuses are loaded with one query, so the only other
+     * statements are the status inserts and delivery updates issued when the transaction is flushed.
+     *
+     * @param statuses The statuses to write.
+     *
+     * @return The statuses whose delivery couldn't be found, in the order they were submitted.
+     */
+    private List<PendingStatus> writeStatuses(final List<PendingStatus> statuses) {
+        return transactionTemplate.execute(transaction -> {
+            final Set<Long> deliveryIds = statuses.stream().map(PendingStatus::getDeliveryId).collect(Collectors.toSet());
+            final Map<Long, SubscriptionDeliveryEntity> deliveries = getDao().getWithStatuses(deliveryIds).stream().collect(Collectors.toMap(SubscriptionDeliveryEntity::getId, Function.identity()));
+            final List<PendingStatus> missing = new ArrayList<>();
+            for (final PendingStatus status : statuses) {
+                final SubscriptionDeliveryEntity delivery = deliveries.get(status.getDeliveryId());
+                if (delivery != null) {
+                    delivery.addTimedEventStatus(status.getStatus(), status.getStatusTimestamp(), status.getMessage());
+                } else {
+                    missing.add(status);
+                }
+            }
+            log.debug("Updated {} SubscriptionDeliveryEntities with {} statuses", deliveries.size(), statuses.size() - missing.size());
+            return missing;
+        });
+    }
+
     private List<SubscriptionDeliverySummary> toSummaries(final List<SubscriptionDeliverySummaryEntity> entities) {
         return entities != null ? entities.stream().map(this::toPojo).filter(Objects::nonNull).collect(Collectors.toList()) : Collections.emptyList();
     }
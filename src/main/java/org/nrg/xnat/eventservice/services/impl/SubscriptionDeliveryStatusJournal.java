@@ -0,0 +1,264 @@
+package org.nrg.xnat.eventservice.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnat.eventservice.entities.TimedEventStatusEntity;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Buffers subscription delivery status transitions and writes them in groups, one transaction per group. Statuses are
+ * written by a background thread once a full group of them is pending or when the flush interval passes, whichever
+ * comes first, so that processing an event doesn't have to wait on a transaction for every step it records. Each
+ * status is still inserted with its own statement, since the status table's keys are generated by the database.
+ * <p>
+ * Statuses are written in the order they were added. The writer returns any statuses whose delivery it couldn't find,
+ * which usually means the transaction that created the delivery hasn't committed yet. Those statuses, along with any
+ * later statuses for the same delivery, are kept for the next flush, until they've been tried {@link #MAX_ATTEMPTS}
+ * times. Code that reads delivery history should call {@link #flush()} first so that it sees every status added so far.
+ */
+@Slf4j
+public class SubscriptionDeliveryStatusJournal {
+    private static final int  MAX_ATTEMPTS = 10;
+    private static final long FLUSH_WAIT   = 5000;
+
+    private final Function<List<PendingStatus>, List<PendingStatus>> writer;
+    private final int                                                groupSize;
+    private final int                                                maxPending;
+    private final BlockingDeque<PendingStatus>                       pending      = new LinkedBlockingDeque<>();
+    private final ReentrantLock                                      flushLock    = new ReentrantLock();
+    private final AtomicBoolean                                      flushQueued  = new AtomicBoolean();
+    private final ScheduledExecutorService                           executor;
+    private volatile boolean                                         closed;
+
+    /**
+     * Creates the journal and starts its flush timer.
+     *
+     * @param writer        Writes a group of statuses in its own transaction, returning the statuses whose delivery
+     *                      couldn't be found. The transaction must be independent of the calling thread's, since
+     *                      {@link #flush()} is called from read paths that may already be in a transaction.
+     * @param groupSize     The number of pending statuses that triggers a flush and the most written per transaction.
+     * @param maxPending    The number of pending statuses at which threads adding statuses flush them directly.
+     * @param flushInterval How often pending statuses are written in milliseconds.
+     */
+    public SubscriptionDeliveryStatusJournal(final Function<List<PendingStatus>, List<PendingStatus>> writer, final int groupSize, final int maxPending, final long flushInterval) {
+        this.writer = writer;
+        this.groupSize = groupSize;
+        this.maxPending = maxPending;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "subscription-delivery-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a status transition to be written with the next group. After the journal is closed, the status is written
+     * immediately.
+     *
+     * @param deliveryId      The ID of the delivery.
+     * @param status          The new status.
+     * @param statusTimestamp When the status changed.
+     * @param message         The status message.
+     */
+    public void add(final Long deliveryId, final TimedEventStatusEntity.Status status, final Date statusTimestamp, final String message) {
+        pending.addLast(new PendingStatus(deliveryId, status, statusTimestamp, message));
+        final int count = pending.size();
+        if (closed || count >= maxPending) {
+            // Don't let statuses pile up faster than they can be written.
+            flush();
+        } else if (count >= groupSize && flushQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Writes all pending statuses. If another thread is already writing statuses, this waits for it to finish, but
+     * only for a few seconds, since that thread may be waiting on rows locked by the calling thread's transaction.
+     * Statuses that fail to be written are kept for the next flush rather than throwing an exception.
+     */
+    public void flush() {
+        try {
+            if (!flushLock.tryLock(FLUSH_WAIT, TimeUnit.MILLISECONDS)) {
+                log.warn("Timed out waiting to write pending subscription delivery statuses, {} are still pending", pending.size());
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            write();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the flush timer and writes all pending statuses.
+     */
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(FLUSH_WAIT, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pending.isEmpty()) {
+            log.error("Couldn't write {} subscription delivery statuses on shutdown", pending.size());
+        }
+    }
+
+    /**
+     * Indicates how many statuses haven't been written yet.
+     *
+     * @return The number of pending statuses.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void write() {
+        final List<PendingStatus> drained = new ArrayList<>();
+        pending.drainTo(drained);
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        final List<PendingStatus> group    = new ArrayList<>(groupSize);
+        final List<PendingStatus> retries  = new ArrayList<>();
+        final Set<Long>           deferred = new HashSet<>();
+        int                       index    = 0;
+        int                       written  = 0;
+        try {
+            while (index < drained.size()) {
+                group.clear();
+                while (index < drained.size() && group.size() < groupSize) {
+                    final PendingStatus status = drained.get(index++);
+                    if (deferred.contains(status.getDeliveryId())) {
+                        // Keep later statuses behind the ones still waiting for their delivery.
+                        retries.add(status);
+                    } else {
+                        group.add(status);
+                    }
+                }
+                if (group.isEmpty()) {
+                    continue;
+                }
+                final List<PendingStatus> missing = writer.apply(group);
+                for (final PendingStatus status : missing) {
+                    status.attempted();
+                    deferred.add(status.getDeliveryId());
+                }
+                retries.addAll(missing);
+                written += group.size() - missing.size();
+            }
+        } catch (RuntimeException e) {
+            // The failed group and everything after it are tried again with the next flush.
+            log.error("An error occurred writing {} subscription delivery statuses, they'll be retried", group.size(), e);
+            group.forEach(status -> status.failed(e));
+            retries.addAll(group);
+            retries.addAll(drained.subList(index, drained.size()));
+        } finally {
+            requeue(retries);
+            log.debug("Wrote {} subscription delivery statuses, {} will be retried", written, retries.size());
+        }
+    }
+
+    private void requeue(final List<PendingStatus> statuses) {
+        // Put the statuses back at the head of the queue, ahead of any added during the flush.
+        for (final ListIterator<PendingStatus> iterator = statuses.listIterator(statuses.size()); iterator.hasPrevious(); ) {
+            final PendingStatus status = iterator.previous();
+            if (status.getAttempts() < MAX_ATTEMPTS) {
+                pending.addFirst(status);
+            } else {
+                final RuntimeException error = status.getError();
+                if (error == null) {
+                    log.error("Could not find SubscriptionDeliveryEntity: {} with status: {} after {} attempts, the status will be discarded", status.getDeliveryId(), status.getStatus(), status.getAttempts());
+                } else {
+                    log.error("Could not write status: {} for SubscriptionDeliveryEntity: {} after {} attempts, the status will be discarded. The last attempt failed with this error:", status.getStatus(), status.getDeliveryId(), status.getAttempts(), error);
+                }
+            }
+        }
+    }
+
+    /**
+     * A status transition that hasn't been written yet.
+     */
+    public static class PendingStatus {
+        private final Long                          deliveryId;
+        private final TimedEventStatusEntity.Status status;
+        private final Date                          statusTimestamp;
+        private final String                        message;
+        private int                                 attempts;
+        private RuntimeException                    error;
+
+        PendingStatus(final Long deliveryId, final TimedEventStatusEntity.Status status, final Date statusTimestamp, final String message) {
+            this.deliveryId = deliveryId;
+            this.status = status;
+            this.statusTimestamp = statusTimestamp;
+            this.message = message;
+        }
+
+        public Long getDeliveryId() {
+            return deliveryId;
+        }
+
+        public TimedEventStatusEntity.Status getStatus() {
+            return status;
+        }
+
+        public Date getStatusTimestamp() {
+            return statusTimestamp;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        int getAttempts() {
+            return attempts;
+        }
+
+        RuntimeException getError() {
+            return error;
+        }
+
+        /**
+         * Records an attempt that didn't find the status's delivery.
+         */
+        void attempted() {
+            attempts++;
+            error = null;
+        }
+
+        /**
+         * Records an attempt that failed with an error.
+         */
+        void failed(final RuntimeException error) {
+            attempts++;
+            this.error = error;
+        }
+    }
+}
@@ -19,6 +19,8 @@ import org.nrg.xft.event.EventMetaI;
 import org.nrg.xft.event.EventUtils;
 import org.nrg.xft.utils.FileUtils;
 import org.nrg.xnat.utils.CatalogUtils;
+import org.nrg.xnat.utils.ChecksumEngine;
+import org.nrg.xnat.utils.IndexedCatalog;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -101,11 +103,15 @@ public class MergeCatCatalog implements Callable<MergeSessionsA.Results<Boolean>
     }
 
     public MergeSessionsA.Results<Boolean> call() throws Exception {
-        return merge(src, dest, overwrite, ci, sourceCatFile, destCatFile, sourceProject, destProject);
+        // Catalogs without a recorded algorithm are treated as MD5 once they have checksums, so overwritten entries
+        // in those catalogs are hashed with MD5 rather than the algorithm configured for new catalogs.
+        final String algorithm = StringUtils.defaultIfBlank(CatalogUtils.getRecordedChecksumAlgorithm(dest), ChecksumEngine.MD5);
+        return merge(src, new IndexedCatalog(dest), algorithm, overwrite, ci, sourceCatFile, destCatFile, sourceProject, destProject);
     }
 
     private static MergeSessionsA.Results<Boolean> merge(final CatCatalogI incomingCatalog,
-                                                         final CatCatalogI existingCatalog,
+                                                         final IndexedCatalog existingCatalog,
+                                                         final String algorithm,
                                                          final boolean overwrite,
                                                          final EventMetaI ci,
                                                          @Nullable final File incomingCatalogFile,
@@ -117,7 +123,7 @@ public class MergeCatCatalog implements Callable<MergeSessionsA.Results<Boolean>
         boolean merge = false;
         final MergeSessionsA.Results<Boolean> result = new MergeSessionsA.Results<>();
         for (final CatCatalogI subCat : incomingCatalog.getSets_entryset()) {
-            final MergeSessionsA.Results<Boolean> r = merge(subCat, existingCatalog, overwrite, ci,
+            final MergeSessionsA.Results<Boolean> r = merge(subCat, existingCatalog, algorithm, overwrite, ci,
                     incomingCatalogFile, existingCatalogFile, incomingCatalogProject, existingCatalogProject);
             if (r.result) {
                 merge = true;
@@ -131,7 +137,7 @@ public class MergeCatCatalog implements Callable<MergeSessionsA.Results<Boolean>
 
             final Optional<CatEntryI> existingEntryOptional = locateExistingEntry(incomingEntry, existingCatalog);
             if (!existingEntryOptional.isPresent()) {
-                existingCatalog.addEntries_entry(incomingEntry);
+                existingCatalog.addEntry(incomingEntry);
                 continue; // Additive change, moving along
             }
 
@@ -148,14 +154,17 @@ public class MergeCatCatalog implements Callable<MergeSessionsA.Results<Boolean>
             throwForDicomUidConflict(incomingEntry, existingCatalog);
             copyEntryToCatalogHistoryAndHandleFilenameChange(incomingEntry, existingEntry, existingCatalogFile,
                     existingCatalogProject, result, ci);
-            updateExistingEntry(incomingEntry, existingEntry, ci, incomingCatalogFile, incomingCatalogProject);
+            existingCatalog.updateEntry(existingEntry, entry -> {
+                updateExistingEntry(incomingEntry, entry, algorithm, ci, incomingCatalogFile, incomingCatalogProject);
+                return null;
+            });
         }
 
         return result.setResult(merge);
     }
 
     private static Optional<CatEntryI> locateExistingEntry(final CatEntryI incomingEntry,
-                                                           final CatCatalogI existingCatalog) {
+                                                           final IndexedCatalog existingCatalog) {
         // Locate entry in the existing catalog that corresponds to the incoming entry
         CatEntryI existingEntry = null;
         if (incomingEntry instanceof CatDcmentryI) {
@@ -163,18 +172,18 @@ public class MergeCatCatalog implements Callable<MergeSessionsA.Results<Boolean>
             // If we should identify by UID, try to do that
             if (XDAT.getSiteConfigPreferences().getUseSopInstanceUidToUniquelyIdentifyDicom()
                     && StringUtils.isNotBlank(uid)) {
-                existingEntry = CatalogUtils.getDCMEntryByUID(existingCatalog, uid);
+                existingEntry = existingCatalog.getDCMEntryByUID(uid);
             }
         }
         // If we are identifying by filename, or if we couldn't find a match based on UID, use URI
         if (existingEntry == null) {
-            existingEntry = CatalogUtils.getEntryByURI(existingCatalog, incomingEntry.getUri());
+            existingEntry = existingCatalog.getEntryByURI(incomingEntry.getUri());
         }
         return Optional.ofNullable(existingEntry);
     }
 
     private static void throwForDicomUidConflict(final CatEntryI incomingEntry,
-                                                 final CatCatalogI existingCatalog)
+                                                 final IndexedCatalog existingCatalog)
             throws DCMEntryConflict {
         if (!(incomingEntry instanceof CatDcmentryI)) {
             // Not DICOM, no potential for UID conflict
@@ -189,7 +198,7 @@ public class MergeCatCatalog implements Callable<MergeSessionsA.Results<Boolean>
 
         // If we identified the existing entry by UID, we want to be sure we don't overwrite a file corresponding to
         // a different entry whose filename happens to match that of the incoming file.
-        final CatEntryI existingEntryByURI = CatalogUtils.getEntryByURI(existingCatalog, incomingEntry.getUri());
+        final CatEntryI existingEntryByURI = existingCatalog.getEntryByURI(incomingEntry.getUri());
         if (existingEntryByURI == null) {
             // No matches, all good
             return;
@@ -265,6 +274,7 @@ public class MergeCatCatalog implements Callable<MergeSessionsA.Results<Boolean>
 
     private static void updateExistingEntry(final CatEntryI incomingEntry,
                                             final CatEntryI existingEntry,
+                                            final String algorithm,
                                             final EventMetaI ci,
                                             @Nullable final File incomingCatalogFile,
                                             final String incomingProject) {
@@ -273,7 +283,7 @@ public class MergeCatCatalog implements Callable<MergeSessionsA.Results<Boolean>
                 CatalogUtils.getFile(incomingEntry, catalogParentFile.getAbsolutePath(), incomingProject) : null;
         if (incomingFile != null) {
             final String relativePath = catalogParentFile.toPath().relativize(incomingFile.toPath()).toString();
-            CatalogUtils.updateExistingCatEntry(existingEntry, incomingFile, relativePath, ci);
+            CatalogUtils.updateExistingCatEntry(existingEntry, incomingFile, relativePath, algorithm, ci);
         } else {
             // We cannot locate the incoming file to update size, checksum, etc. on the entry. We update what we can
             // here, but a catalog refresh will be necessary for accurate metadata.
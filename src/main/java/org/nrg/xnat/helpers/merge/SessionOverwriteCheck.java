@@ -17,6 +17,7 @@ import org.nrg.xdat.model.*;
 import org.nrg.xft.event.EventMetaI;
 import org.nrg.xft.security.UserI;
 import org.nrg.xnat.utils.CatalogUtils;
+import org.nrg.xnat.utils.IndexedCatalog;
 
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -66,7 +67,7 @@ public class SessionOverwriteCheck implements Callable<Boolean> {
 										CatalogUtils.CatalogData.getOrCreateAndClean(destRootPath, (XnatResourcecatalogI) destRes, false, destProject,
                                                 u, c);
 								final CatCatalogBean destCat = destCatalogData.catBean;
-								if (detectOverwrite(srcCat,destCat)) {
+								if (detectOverwrite(srcCat,new IndexedCatalog(destCat))) {
 									return true;
 								}
 							} catch (ServerException e) {
@@ -86,7 +87,7 @@ public class SessionOverwriteCheck implements Callable<Boolean> {
 	}
 
 	
-	private static boolean detectOverwrite(final CatCatalogI src, final CatCatalogI dest)  {
+	private static boolean detectOverwrite(final CatCatalogI src, final IndexedCatalog dest)  {
 		boolean merge=false;
 		for(final CatCatalogI subCat:src.getSets_entryset()){
 			if(detectOverwrite(subCat,dest)){
@@ -96,13 +97,13 @@ public class SessionOverwriteCheck implements Callable<Boolean> {
 		
 		for(final CatEntryI entry: src.getEntries_entry()){
 			if(entry instanceof CatDcmentryI && !StringUtils.isEmpty(((CatDcmentryI)entry).getUid())){
-				final CatDcmentryI destEntry=CatalogUtils.getDCMEntryByUID(dest, ((CatDcmentryI)entry).getUid());
+				final CatDcmentryI destEntry=dest.getDCMEntryByUID(((CatDcmentryI)entry).getUid());
 				if(destEntry!=null){
 					return true;
 				}
 			}
 			
-			final CatEntryI destEntry=CatalogUtils.getEntryByURI(dest, entry.getUri());
+			final CatEntryI destEntry=dest.getEntryByURI(entry.getUri());
 			
 			if(destEntry!=null){
 				return true;
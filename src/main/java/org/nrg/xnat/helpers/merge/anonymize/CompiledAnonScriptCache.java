@@ -0,0 +1,228 @@
+/*
+ * web: org.nrg.xnat.helpers.merge.anonymize.CompiledAnonScriptCache
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.helpers.merge.anonymize;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.io.DicomInputStream;
+import org.dcm4che2.io.DicomOutputStream;
+import org.nrg.dicom.mizer.exceptions.MizerException;
+import org.nrg.dicom.mizer.objects.DicomObjectFactory;
+import org.nrg.dicom.mizer.objects.DicomObjectI;
+import org.nrg.dicom.mizer.service.MizerService;
+import org.nrg.dicom.mizer.service.impl.MizerContextWithScript;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps anonymization scripts registered with the {@link MizerService} so they're parsed once per script and session
+ * rather than once per DICOM instance. Each cached context is bound to the script ID, project, subject, and session
+ * label for which it was created, since those values are set into the context before the script is compiled. A
+ * cached context is only reused when the script text still matches, so a changed script is never applied from a stale
+ * compilation even before {@link #invalidate()} is called.
+ * <p>
+ * A compiled script may carry variable state while it's applied, so a context is only used by one thread at a time.
+ * Each script and session has a small pool of contexts: a thread takes an idle context or compiles a new one, and
+ * returns it to the pool when it's done, so instances of the same session are still anonymized concurrently.
+ */
+@Service
+@Slf4j
+public class CompiledAnonScriptCache {
+    @Autowired
+    public CompiledAnonScriptCache(final MizerService mizer) {
+        _mizer = mizer;
+    }
+
+    /**
+     * Anonymizes the DICOM object in place with the submitted script.
+     *
+     * @param dicom    The DICOM object to anonymize.
+     * @param scriptId The ID of the script configuration.
+     * @param script   The script contents.
+     * @param project  The project ID.
+     * @param subject  The subject label.
+     * @param session  The session label.
+     *
+     * @throws MizerException When the script can't be compiled or applied.
+     */
+    public void anonymize(final DicomObject dicom, final long scriptId, final String script, final String project, final String subject, final String session) throws MizerException {
+        anonymize(DicomObjectFactory.newInstance(dicom), scriptId, script, project, subject, session, false);
+    }
+
+    /**
+     * Anonymizes the DICOM file in place with the submitted script.
+     *
+     * @param file     The DICOM file to anonymize.
+     * @param scriptId The ID of the script configuration.
+     * @param script   The script contents.
+     * @param project  The project ID.
+     * @param subject  The subject label.
+     * @param session  The session label.
+     * @param record   Whether the de-identification method should be recorded in the DICOM header.
+     *
+     * @throws MizerException When the script can't be compiled or applied.
+     * @throws IOException    When the file can't be read or written.
+     */
+    public void anonymize(final File file, final long scriptId, final String script, final String project, final String subject, final String session, final boolean record) throws MizerException, IOException {
+        final DicomObject dicom;
+        try (final DicomInputStream input = new DicomInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            dicom = input.readDicomObject();
+        }
+
+        final DicomObjectI wrapped = DicomObjectFactory.newInstance(dicom);
+        anonymize(wrapped, scriptId, script, project, subject, session, record);
+
+        final File anonymized = new File(file.getParentFile(), "." + file.getName() + ".anon");
+        try (final DicomOutputStream output = new DicomOutputStream(new BufferedOutputStream(new FileOutputStream(anonymized)))) {
+            output.writeDicomFile(wrapped.getDcm4che2Object());
+        }
+        Files.move(anonymized.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Removes all compiled scripts. This should be called when any anonymization script is changed, enabled, or
+     * disabled. Contexts that are in use when this is called are removed when they're released.
+     */
+    public void invalidate() {
+        synchronized (_compiled) {
+            for (final CompiledScript compiled : _compiled.values()) {
+                compiled.retire();
+            }
+            _compiled.clear();
+        }
+        log.debug("Cleared all compiled anonymization scripts");
+    }
+
+    private void anonymize(final DicomObjectI dicom, final long scriptId, final String script, final String project, final String subject, final String session, final boolean record) throws MizerException {
+        final CompiledScript         compiled = getCompiledScript(scriptId, script, project, subject, session, record);
+        final MizerContextWithScript context  = compiled.acquire();
+        try {
+            _mizer.anonymize(dicom, context);
+        } finally {
+            compiled.release(context);
+        }
+    }
+
+    private CompiledScript getCompiledScript(final long scriptId, final String script, final String project, final String subject, final String session, final boolean record) {
+        final List<Object> key = Arrays.asList(scriptId, project, subject, session, record);
+        synchronized (_compiled) {
+            final CompiledScript cached = _compiled.get(key);
+            if (cached != null) {
+                if (StringUtils.equals(script, cached._script)) {
+                    return cached;
+                }
+                cached.retire();
+            }
+            final CompiledScript compiled = new CompiledScript(scriptId, script, project, subject, session, record);
+            _compiled.put(key, compiled);
+            return compiled;
+        }
+    }
+
+    /**
+     * The pool of compiled contexts for one script and session.
+     */
+    private final class CompiledScript {
+        CompiledScript(final long scriptId, final String script, final String project, final String subject, final String session, final boolean record) {
+            _scriptId = scriptId;
+            _script = script;
+            _project = project;
+            _subject = subject;
+            _session = session;
+            _record = record;
+        }
+
+        MizerContextWithScript acquire() throws MizerException {
+            final MizerContextWithScript idle = _idle.poll();
+            if (idle != null) {
+                _idleCount.decrementAndGet();
+                return idle;
+            }
+
+            final MizerContextWithScript context = new MizerContextWithScript();
+            context.setScriptId(_scriptId);
+            context.setElement("project", _project);
+            context.setElement("subject", _subject);
+            context.setElement("session", _session);
+            context.setRecord(_record);
+            context.setScript(_script);
+            if (!_mizer.setContext(context)) {
+                throw new MizerException("Failed to set mizer service context for script " + _scriptId + " in project " + _project);
+            }
+            log.debug("Compiled anonymization script {} for session {}/{}/{}", _scriptId, _project, _subject, _session);
+            return context;
+        }
+
+        void release(final MizerContextWithScript context) {
+            if (!_retired && _idleCount.incrementAndGet() <= MAX_IDLE_CONTEXTS) {
+                _idle.add(context);
+                // Catch a retire() that ran after the check above, so the context isn't left registered.
+                if (_retired) {
+                    removeIdle();
+                }
+                return;
+            }
+            _idleCount.decrementAndGet();
+            _mizer.removeContext(context);
+        }
+
+        void retire() {
+            _retired = true;
+            removeIdle();
+        }
+
+        private void removeIdle() {
+            MizerContextWithScript context;
+            while ((context = _idle.poll()) != null) {
+                _idleCount.decrementAndGet();
+                _mizer.removeContext(context);
+            }
+        }
+
+        private final    long                          _scriptId;
+        private final    String                        _script;
+        private final    String                        _project;
+        private final    String                        _subject;
+        private final    String                        _session;
+        private final    boolean                       _record;
+        private final    Queue<MizerContextWithScript> _idle      = new ConcurrentLinkedQueue<>();
+        private final    AtomicInteger                 _idleCount = new AtomicInteger();
+        private volatile boolean                       _retired;
+    }
+
+    private static final int MAX_COMPILED_SCRIPTS = 256;
+    private static final int MAX_IDLE_CONTEXTS    = Runtime.getRuntime().availableProcessors();
+
+    private final MizerService _mizer;
+
+    // Access-ordered so the least recently used session's scripts are dropped when the cache is full.
+    private final Map<List<Object>, CompiledScript> _compiled = new LinkedHashMap<List<Object>, CompiledScript>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<List<Object>, CompiledScript> eldest) {
+            if (size() > MAX_COMPILED_SCRIPTS) {
+                eldest.getValue().retire();
+                return true;
+            }
+            return false;
+        }
+    };
+}
@@ -38,13 +38,14 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DefaultAnonUtils implements AnonUtils {
     @Autowired
-    public DefaultAnonUtils(final ConfigService configService, final CacheManager cacheManager) throws Exception {
+    public DefaultAnonUtils(final ConfigService configService, final CacheManager cacheManager, final CompiledAnonScriptCache compiledScripts) throws Exception {
         if (_instance != null) {
             throw new Exception("The AnonUtils service is already initialized, try calling getInstance() instead.");
         }
         _instance = this;
         _configService = configService;
         _cache = cacheManager.getCache(ANON_SCRIPT_CACHE);
+        _compiledScripts = compiledScripts;
     }
 
     public static AnonUtils getService() {
@@ -77,6 +78,7 @@ public class DefaultAnonUtils implements AnonUtils {
 
     public static void invalidateSitewideAnonCache() {
         _instance._cache.evict(SITE_WIDE);
+        _instance._compiledScripts.invalidate();
     }
 
     public static Configuration getCachedSitewideAnon() throws Exception {
@@ -267,6 +269,7 @@ public class DefaultAnonUtils implements AnonUtils {
 
     private static DefaultAnonUtils _instance;
 
-    private final Cache         _cache;
-    private final ConfigService _configService;
+    private final Cache                   _cache;
+    private final ConfigService           _configService;
+    private final CompiledAnonScriptCache _compiledScripts;
 }
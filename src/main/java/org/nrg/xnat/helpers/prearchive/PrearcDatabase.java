@@ -14,9 +14,11 @@ import static org.nrg.xnat.helpers.prearchive.SessionException.Error.*;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Striped;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.nrg.action.ClientException;
 import org.nrg.automation.entities.Script;
@@ -60,6 +62,9 @@ import java.nio.file.Paths;
 import java.sql.*;
 import java.util.Date;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 
@@ -86,6 +91,15 @@ public final class PrearcDatabase {
 
     private static String prearcPath;
 
+    // Snapshots of sessions known to be receiving data, keyed on the project, study instance UID, and session name that
+    // eitherGetOrCreateSession() searches on. Lookups for different studies lock different stripes. The snapshots are
+    // never handed out: callers get a copy, so one receiver can't change the session another receiver sees. Entries are
+    // only added, replaced, or removed while holding the stripe for their key.
+    private static final int                                      RECEIVING_SESSION_LOCK_STRIPES = 64;
+    private static final int                                      MAX_RECEIVING_SESSIONS         = 10000;
+    private static final Striped<Lock>                            RECEIVING_SESSION_LOCKS        = Striped.lazyWeakLock(RECEIVING_SESSION_LOCK_STRIPES);
+    private static final ConcurrentMap<List<String>, SessionData> RECEIVING_SESSIONS             = new ConcurrentHashMap<>();
+
     public static final String SPLIT_PETMR_SESSION_ID = "SplitPetMrSessions";
 
     public static final String DEFAULT_SPLIT_PETMR_SESSION_FILTER = "{\n" +
@@ -820,7 +834,11 @@ public final class PrearcDatabase {
         // construct list of timestamps with extant folders
         Set<String> timestamps = PrearcDatabase.getPrearchiveFolderTimestamps();
         // delete all prearchive entries that are not in that timestamp set
-        PrearcDatabase.deleteUnusedPrearchiveEntries(timestamps);
+        try {
+            PrearcDatabase.deleteUnusedPrearchiveEntries(timestamps);
+        } finally {
+            releaseReceivingSessions();
+        }
     }
 
     private static Set<String> getPrearchiveFolderTimestamps() {
@@ -1305,6 +1323,7 @@ public final class PrearcDatabase {
                         return null;
                     }
                 });
+                SessionBuildStamp.delete(new SessionDataTriple(sess, timestamp, proj));
             }
         }.run();
     }
@@ -1343,6 +1362,8 @@ public final class PrearcDatabase {
                         return null;
                     }
                 });
+                releaseReceivingSession(sess, timestamp, proj);
+                SessionBuildStamp.delete(new SessionDataTriple(sess, timestamp, proj));
             }
         };
 
@@ -1382,6 +1403,7 @@ public final class PrearcDatabase {
                         return null;
                     }
                 });
+                SessionBuildStamp.delete(new SessionDataTriple(sess, timestamp, proj));
             }
         }.run();
         return true;
@@ -1927,7 +1949,11 @@ public final class PrearcDatabase {
      * Either retrieve and existing session or create a new one. If a session is created an Either object with the "Right" branch set is returned. If we just retrieve one that is already in the prearchive table an Either object with the "Left" branch set is returned.
      * <p/>
      * This is useful in case the caller needs to know which operation was performed.
+     * <p/>
+     * Sessions that are receiving data are cached in memory, so only the first instance of a study goes to the
+     * database. Calls for different studies don't block each other.
      *
+     * @param sessionData The session data to search for or create.
      * @param tsFile
      * @param autoArchive
      *
@@ -1937,7 +1963,108 @@ public final class PrearcDatabase {
      * @throws SessionException
      * @throws Exception
      */
-    public static synchronized Either<SessionData, SessionData> eitherGetOrCreateSession(final SessionData sessionData, final File tsFile, final PrearchiveCode autoArchive) throws SQLException, SessionException, Exception {
+    public static Either<SessionData, SessionData> eitherGetOrCreateSession(final SessionData sessionData, final File tsFile, final PrearchiveCode autoArchive) throws SQLException, SessionException, Exception {
+        final List<String> key = getReceivingSessionKey(sessionData);
+
+        // Most calls are for instances of a study that's already receiving, so check for that before taking any lock.
+        final SessionData receiving = RECEIVING_SESSIONS.get(key);
+        if (receiving != null) {
+            return new Either<SessionData, SessionData>() {
+            }.setRight(SerializationUtils.clone(receiving));
+        }
+
+        final Lock lock = RECEIVING_SESSION_LOCKS.get(key);
+        lock.lock();
+        try {
+            final SessionData created = RECEIVING_SESSIONS.get(key);
+            if (created != null) {
+                return new Either<SessionData, SessionData>() {
+                }.setRight(SerializationUtils.clone(created));
+            }
+            final Either<SessionData, SessionData> result = findOrCreateSession(sessionData, tsFile, autoArchive);
+            final SessionData session = result.isLeft() ? result.getLeft() : result.getRight();
+            if (session != null && (PrearcStatus.RECEIVING.equals(session.getStatus()) || PrearcStatus.RECEIVING_INTERRUPT.equals(session.getStatus()))) {
+                if (RECEIVING_SESSIONS.size() >= MAX_RECEIVING_SESSIONS) {
+                    log.info("The cache of receiving prearchive sessions reached {} entries, clearing it", MAX_RECEIVING_SESSIONS);
+                    RECEIVING_SESSIONS.clear();
+                }
+                RECEIVING_SESSIONS.put(key, SerializationUtils.clone(session));
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a new last built date for a session returned by {@link #eitherGetOrCreateSession(SessionData, File,
+     * PrearchiveCode)} after the receiver has updated the session's row, so later instances of the same study see the
+     * new date. Nothing is recorded if the session is no longer cached as receiving.
+     *
+     * @param session       The session that was updated.
+     * @param lastBuiltDate The date stored in the session's row.
+     */
+    public static void updateReceivingSessionLastBuiltDate(final SessionData session, final Date lastBuiltDate) {
+        final List<String> key  = getReceivingSessionKey(session);
+        final Lock         lock = RECEIVING_SESSION_LOCKS.get(key);
+        lock.lock();
+        try {
+            final SessionData cached = RECEIVING_SESSIONS.get(key);
+            if (cached != null && isSameSession(cached, session.getFolderName(), session.getTimestamp(), session.getProject())) {
+                RECEIVING_SESSIONS.put(key, SerializationUtils.clone(cached).setLastBuiltDate(lastBuiltDate));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes any cached receiving session that matches the given session, timestamp, and project. This must be called
+     * after a prearchive row is modified or deleted so that {@link #eitherGetOrCreateSession(SessionData, File, PrearchiveCode)}
+     * goes back to the database for that session. The entry is removed while holding its stripe, so a lookup that read
+     * the row before it was changed can't put it back afterwards.
+     *
+     * @param sess      Session label.
+     * @param timestamp The session timestamp.
+     * @param proj      Project name.
+     */
+    private static void releaseReceivingSession(final String sess, final String timestamp, final String proj) {
+        for (final Map.Entry<List<String>, SessionData> entry : RECEIVING_SESSIONS.entrySet()) {
+            if (isSameSession(entry.getValue(), sess, timestamp, proj)) {
+                removeReceivingSession(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Removes all of the cached receiving sessions. This must be called after rows are removed from the prearchive table
+     * in bulk.
+     */
+    private static void releaseReceivingSessions() {
+        for (final List<String> key : RECEIVING_SESSIONS.keySet()) {
+            removeReceivingSession(key);
+        }
+    }
+
+    private static void removeReceivingSession(final List<String> key) {
+        final Lock lock = RECEIVING_SESSION_LOCKS.get(key);
+        lock.lock();
+        try {
+            RECEIVING_SESSIONS.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static List<String> getReceivingSessionKey(final SessionData session) {
+        return Arrays.asList(session.getProject(), session.getTag(), session.getName());
+    }
+
+    private static boolean isSameSession(final SessionData session, final String sess, final String timestamp, final String proj) {
+        return StringUtils.equals(sess, session.getFolderName()) && StringUtils.equals(timestamp, session.getTimestamp()) && StringUtils.equals(proj, session.getProject());
+    }
+
+    private static Either<SessionData, SessionData> findOrCreateSession(final SessionData sessionData, final File tsFile, final PrearchiveCode autoArchive) throws Exception {
         return new PredicatedOp<SessionData, SessionData>() {
             SessionData _sessionData;
 
@@ -2103,6 +2230,8 @@ public final class PrearcDatabase {
             }.run();
         } catch (SessionException e) {
             // should never happen
+        } finally {
+            releaseReceivingSessions();
         }
     }
 
@@ -2491,7 +2620,11 @@ public final class PrearcDatabase {
                 return null;
             }
         });
-        return op.run();
+        try {
+            return op.run();
+        } finally {
+            releaseReceivingSession(sess, timestamp, proj);
+        }
     }
 
     @SuppressWarnings("serial")
@@ -0,0 +1,190 @@
+/*
+ * web: org.nrg.xnat.helpers.prearchive.SessionBuildStamp
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.helpers.prearchive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records what a prearchive session XML was built from, so a later rebuild of an unchanged session can be skipped. The
+ * stamp holds the size and modification time of the session XML, a digest of the build parameters and builder
+ * configuration, and a digest of the path, size, modification time, and file key of every file in the session
+ * directory, taken before the build started. Checking the stamp only lists the session directory and stats its files,
+ * rather than re-reading every DICOM header. The stamp is kept in the cache space, next to the prearchive file locks, so
+ * it doesn't end up in the session directory or the archive. Nothing is recorded while instances are being received or
+ * when a file in the session was modified too recently for a later change to show up in its modification time.
+ */
+@Slf4j
+public class SessionBuildStamp {
+    private SessionBuildStamp() {
+        // Static utility class
+    }
+
+    /**
+     * Gets a digest of the files in the session directory. This should be called before the session XML is built and
+     * the value passed to {@link #markBuilt(SessionDataTriple, File, Map, String)} afterwards, so files written while
+     * the build is running cause the next build to rescan the session.
+     *
+     * @param sessionDir The session directory.
+     *
+     * @return The digest of the files in the session directory, or null if the directory can't be read or a file in it
+     *         was modified too recently to be sure a later change would be noticed.
+     */
+    public static String getFilesDigest(final File sessionDir) {
+        if (!sessionDir.isDirectory()) {
+            return null;
+        }
+        final Path root    = sessionDir.toPath();
+        final long started = System.currentTimeMillis();
+        try (final Stream<Path> paths = Files.walk(root)) {
+            final List<Path>    files  = paths.filter(Files::isRegularFile).filter(path -> isSessionFile(root, path)).sorted().collect(Collectors.toList());
+            final MessageDigest digest = DigestUtils.getSha256Digest();
+            for (final Path path : files) {
+                final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                // Some file systems only record modification times to the second, so a file written in the same second
+                // as the build started could change again without its modification time changing.
+                if (attributes.lastModifiedTime().toMillis() > started - MODIFICATION_TIME_RESOLUTION) {
+                    log.debug("The file {} in session directory {} was modified too recently to record a build stamp", path, sessionDir);
+                    return null;
+                }
+                update(digest, root.relativize(path).toString());
+                update(digest, Long.toString(attributes.size()));
+                update(digest, Long.toString(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)));
+                update(digest, Objects.toString(attributes.fileKey(), null));
+            }
+            return files.size() + ":" + Hex.encodeHexString(digest.digest());
+        } catch (IOException | UncheckedIOException e) {
+            log.info("Couldn't list the files in session directory {}, the session will be rebuilt", sessionDir, e);
+            return null;
+        }
+    }
+
+    /**
+     * Records that the session XML was built from the files in the session directory with the submitted parameters.
+     *
+     * @param session     The session.
+     * @param xml         The session XML that was built.
+     * @param parameters  The parameters and builder configuration used to build the session XML.
+     * @param filesDigest The value returned by {@link #getFilesDigest(File)} before the build started.
+     */
+    public static void markBuilt(final SessionDataTriple session, final File xml, final Map<String, String> parameters, final String filesDigest) {
+        if (filesDigest == null || !xml.exists()) {
+            return;
+        }
+        final File stamp = getStampFile(session);
+        try {
+            Files.createDirectories(stamp.getParentFile().toPath());
+            Files.write(stamp.toPath(), getStamp(xml, parameters, filesDigest).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // The stamp is only an optimization, so without it the session will just be rebuilt from its files.
+            log.warn("Couldn't write the build stamp for session {}", session, e);
+        }
+    }
+
+    /**
+     * Indicates whether the session XML was built from the same files with the same parameters, so that re-scanning
+     * the session directory to rebuild it would produce the same result.
+     *
+     * @param session     The session.
+     * @param xml         The session XML.
+     * @param parameters  The parameters and builder configuration that would be used to build the session XML.
+     * @param filesDigest The value returned by {@link #getFilesDigest(File)} for the session directory.
+     *
+     * @return Returns <b>true</b> if the session XML doesn't need to be rebuilt.
+     */
+    public static boolean isBuilt(final SessionDataTriple session, final File xml, final Map<String, String> parameters, final String filesDigest) {
+        final File stamp = getStampFile(session);
+        if (filesDigest == null || !xml.exists() || !stamp.exists()) {
+            return false;
+        }
+        try {
+            return StringUtils.equals(new String(Files.readAllBytes(stamp.toPath()), StandardCharsets.UTF_8), getStamp(xml, parameters, filesDigest));
+        } catch (IOException e) {
+            log.warn("Couldn't read the build stamp {} for session {}", stamp, session, e);
+            return false;
+        }
+    }
+
+    /**
+     * Removes the build stamp for the session.
+     *
+     * @param session The session.
+     */
+    public static void delete(final SessionDataTriple session) {
+        final File stamp = getStampFile(session);
+        if (stamp.exists() && !stamp.delete()) {
+            log.warn("Couldn't delete the build stamp {} for session {}", stamp, session);
+        }
+    }
+
+    private static String getStamp(final File xml, final Map<String, String> parameters, final String filesDigest) {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        for (final Map.Entry<String, String> parameter : new TreeMap<>(parameters).entrySet()) {
+            update(digest, parameter.getKey());
+            update(digest, parameter.getValue());
+        }
+        return StringUtils.joinWith(SEPARATOR, getLastModified(xml), xml.length(), Hex.encodeHexString(digest.digest()), filesDigest);
+    }
+
+    private static long getLastModified(final File file) throws IOException {
+        return Files.getLastModifiedTime(file.toPath()).to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds the value to the digest prefixed with its length, so that different sequences of values can't produce the
+     * same input to the digest.
+     */
+    private static void update(final MessageDigest digest, final String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    private static boolean isSessionFile(final Path root, final Path path) {
+        final Path   relative = root.relativize(path);
+        final String name     = path.getFileName().toString();
+        return !relative.startsWith(LOGS_DIR) && !StringUtils.endsWithAny(name, ".xml", ".log");
+    }
+
+    private static File getStampFile(final SessionDataTriple session) {
+        return org.nrg.xnat.utils.FileUtils.buildCacheSubDir(STAMP_CACHE, session.getProject(), session.getTimestamp(), session.getFolderName() + STAMP_EXTENSION);
+    }
+
+    private static final String STAMP_CACHE     = "prearc_build_stamps";
+    private static final String STAMP_EXTENSION = ".built";
+    private static final String LOGS_DIR        = "logs";
+    private static final String SEPARATOR       = "\t";
+
+    private static final long MODIFICATION_TIME_RESOLUTION = TimeUnit.SECONDS.toMillis(2);
+}
@@ -0,0 +1,132 @@
+/*
+ * web: org.nrg.xnat.helpers.prearchive.SessionQuiescenceTimer
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.helpers.prearchive;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks when each receiving prearchive session will have gone quiet for the configured session XML rebuilder interval,
+ * so the {@link SessionXMLRebuilder} only has to look at the sessions that are due rather than every row in the
+ * prearchive table. Sessions are armed when they're created and re-armed each time their last modified time is
+ * updated. Each session has at most one entry in the deadline queue: when an entry expires and the session has been
+ * modified since it was queued, it's simply queued again for the new deadline.
+ */
+@Slf4j
+public final class SessionQuiescenceTimer {
+    private SessionQuiescenceTimer() {
+        // Static utility class
+    }
+
+    /**
+     * Sets the number of minutes a session must go without receiving data before it's due.
+     *
+     * @param interval The quiet interval in minutes.
+     */
+    public static void setInterval(final double interval) {
+        _interval = (long) (interval * 60000);
+    }
+
+    /**
+     * Arms or re-arms the timer for the session using its last built date.
+     *
+     * @param session The session to arm.
+     */
+    public static void arm(final SessionData session) {
+        final Date lastModified = session.getLastBuiltDate();
+        arm(session.getSessionDataTriple(), lastModified != null ? lastModified.getTime() : System.currentTimeMillis());
+    }
+
+    /**
+     * Arms or re-arms the timer for the session.
+     *
+     * @param session      The session to arm.
+     * @param lastModified The time the session was last modified.
+     */
+    public static void arm(final SessionDataTriple session, final long lastModified) {
+        final Long previous = LAST_MODIFIED.put(session, lastModified);
+        if (previous == null) {
+            DEADLINES.add(new Deadline(session, lastModified + _interval));
+        }
+    }
+
+    /**
+     * Removes all sessions whose quiet interval has expired and returns them. Callers should re-arm any session that
+     * turns out not to be ready yet.
+     *
+     * @return The sessions that have gone quiet.
+     */
+    public static List<SessionDataTriple> drainExpired() {
+        final List<SessionDataTriple> expired = new ArrayList<>();
+        Deadline deadline;
+        while ((deadline = DEADLINES.poll()) != null) {
+            final SessionDataTriple session      = deadline.getSession();
+            final Long              lastModified = LAST_MODIFIED.get(session);
+            if (lastModified == null) {
+                continue;
+            }
+            final long due = lastModified + _interval;
+            if (due > System.currentTimeMillis() || !LAST_MODIFIED.remove(session, lastModified)) {
+                // Modified since it was queued, so wait for the new deadline instead.
+                DEADLINES.add(new Deadline(session, due));
+                continue;
+            }
+            expired.add(session);
+        }
+        log.debug("Found {} quiet sessions, {} sessions still armed", expired.size(), LAST_MODIFIED.size());
+        return expired;
+    }
+
+    /**
+     * Clears all armed sessions.
+     */
+    public static void clear() {
+        LAST_MODIFIED.clear();
+        DEADLINES.clear();
+    }
+
+    private static final class Deadline implements Delayed {
+        Deadline(final SessionDataTriple session, final long deadline) {
+            _session = session;
+            _deadline = deadline;
+        }
+
+        SessionDataTriple getSession() {
+            return _session;
+        }
+
+        @Override
+        public long getDelay(@Nonnull final TimeUnit unit) {
+            return unit.convert(_deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(@Nonnull final Delayed other) {
+            return other instanceof Deadline ? Long.compare(_deadline, ((Deadline) other)._deadline) : Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+
+        private final SessionDataTriple _session;
+        private final long              _deadline;
+    }
+
+    private static final ConcurrentMap<SessionDataTriple, Long> LAST_MODIFIED = new ConcurrentHashMap<>();
+    private static final DelayQueue<Deadline>                   DEADLINES     = new DelayQueue<>();
+
+    private static volatile long _interval = TimeUnit.MINUTES.toMillis(5);
+}
@@ -28,8 +28,10 @@ import javax.inject.Provider;
 import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.nrg.xnat.archive.Operation.Rebuild;
 
@@ -52,6 +54,7 @@ public class SessionXMLRebuilder extends AbstractXnatTask {
         _provider = provider;
         _interval = interval;
         _jmsTemplate = jmsTemplate;
+        SessionQuiescenceTimer.setInterval(interval);
     }
 
     /**
@@ -72,50 +75,36 @@ public class SessionXMLRebuilder extends AbstractXnatTask {
             }
 
             log.trace("Running prearc job as {}", user.getLogin());
-            final List<SessionData> allSessions       = PrearcDatabase.getAllSessions();
-            final int               totalSessionCount = allSessions.size();
 
-            int updatedSessionCount   = 0;
-            int processedSessionCount = 0;
-            log.info("Checking whether any prearc entries should be processed, found {} sessions", totalSessionCount);
-            if (!allSessions.isEmpty()) {
+            // The whole prearchive table is only scanned on the first run and periodically after that, to seed the
+            // quiescence timer and pick up sessions that weren't armed on this node, e.g. sessions received by another
+            // node in a cluster. Otherwise only the sessions whose quiet interval has expired need to be checked.
+            final List<SessionData> sessions;
+            if (TICKS.get() % RECONCILE_TICKS == 0) {
+                sessions = PrearcDatabase.getAllSessions();
+                log.info("Checking whether any prearc entries should be processed, found {} sessions", sessions.size());
+            } else {
+                sessions = new ArrayList<>();
+                for (final SessionDataTriple triple : SessionQuiescenceTimer.drainExpired()) {
+                    final SessionData sessionData = PrearcDatabase.getSessionIfExists(triple.getFolderName(), triple.getTimestamp(), triple.getProject());
+                    if (sessionData != null) {
+                        sessions.add(sessionData);
+                    }
+                }
+                log.debug("Checking whether any prearc entries should be processed, found {} quiet sessions", sessions.size());
+            }
+            TICKS.incrementAndGet();
+
+            final int totalSessionCount     = sessions.size();
+            int       updatedSessionCount   = 0;
+            int       processedSessionCount = 0;
+            if (!sessions.isEmpty()) {
                 final long now = Calendar.getInstance().getTimeInMillis();
-                for (final SessionData sessionData : allSessions) {
+                for (final SessionData sessionData : sessions) {
                     processedSessionCount++;
-                    final SessionDataTriple        triple            = sessionData.getSessionDataTriple();
-                    final PrearcUtils.PrearcStatus status            = sessionData.getStatus();
-                    final Boolean                  preventAutoCommit = sessionData.getPreventAutoCommit();
-                    final String                   source            = sessionData.getSource();
-
-                    log.debug("Testing session #{} of {} total, '{}' with status {}, prevent auto commit {}, source {}", processedSessionCount, totalSessionCount, triple, status, preventAutoCommit, source);
-
-                    if (status.equals(PrearcUtils.PrearcStatus.RECEIVING) && !preventAutoCommit && !StringUtils.trimToEmpty(source).equals(SessionData.UPLOADER)) {
-                        try {
-                            final File   sessionDir = PrearcUtils.getPrearcSessionDir(user, sessionData.getProject(), sessionData.getTimestamp(), sessionData.getFolderName(), false);
-                            final long   then       = sessionData.getLastBuiltDate().getTime();
-                            final double diff       = diffInMinutes(then, now);
-
-                            log.debug("Prearchive session '{}' is {} minutes old", sessionData, diff);
-
-                            if (diff >= _interval && !PrearcUtils.isSessionReceiving(triple)) {
-                                updatedSessionCount++;
-                                log.info("Update #{}: prearchive session {} is {} minutes old, greater than configured interval {}, creating JMS queue entry for {} to archive {}", updatedSessionCount, sessionData, diff, _interval, user.getUsername(), sessionData.getExternalUrl());
-                                XDAT.sendJmsRequest(_jmsTemplate, new PrearchiveOperationRequest(user, Rebuild, sessionData, sessionDir));
-                            } else if (diff >= (_interval * 10)) {
-                                log.error(String.format("Prearchive session locked for an abnormally large time within CACHE_DIR/prearc_locks/%1$s/%2$s/%3$s", sessionData.getProject(), sessionData.getTimestamp(), sessionData.getName()));
-                            } else if (diff < _interval) {
-                                log.debug("Prearchive session {} is {} minutes old, less than configured interval {}, remaining in RECEIVING status", sessionData, diff, _interval);
-                            }
-                        } catch (IOException e) {
-                            final String message = String.format("An error occurred trying to write the session %s %s %s.", sessionData.getFolderName(), sessionData.getTimestamp(), sessionData.getProject());
-                            log.error(message, e);
-                        } catch (InvalidPermissionException e) {
-                            final String message = String.format("A permissions error occurred trying to write the session %s %s %s.", sessionData.getFolderName(), sessionData.getTimestamp(), sessionData.getProject());
-                            log.error(message, e);
-                        } catch (Exception e) {
-                            final String message = String.format("An unknown error occurred trying to write the session %s %s %s.", sessionData.getFolderName(), sessionData.getTimestamp(), sessionData.getProject());
-                            log.error(message, e);
-                        }
+                    log.debug("Testing session #{} of {} total, '{}' with status {}, prevent auto commit {}, source {}", processedSessionCount, totalSessionCount, sessionData.getSessionDataTriple(), sessionData.getStatus(), sessionData.getPreventAutoCommit(), sessionData.getSource());
+                    if (processSession(user, sessionData, now, updatedSessionCount + 1)) {
+                        updatedSessionCount++;
                     }
                 }
             }
@@ -137,6 +126,59 @@ public class SessionXMLRebuilder extends AbstractXnatTask {
         }
     }
 
+    /**
+     * Sends a rebuild request for the session if it's been receiving data and has been quiet for the configured
+     * interval. Receiving sessions that aren't ready yet are re-armed in the {@link SessionQuiescenceTimer}.
+     *
+     * @param user        The user to run the rebuild as.
+     * @param sessionData The session to check.
+     * @param now         The current time.
+     * @param update      The number to log for this update if a rebuild is requested.
+     *
+     * @return Returns <b>true</b> if a rebuild request was sent for the session.
+     */
+    private boolean processSession(final UserI user, final SessionData sessionData, final long now, final int update) {
+        final SessionDataTriple        triple            = sessionData.getSessionDataTriple();
+        final PrearcUtils.PrearcStatus status            = sessionData.getStatus();
+        final Boolean                  preventAutoCommit = sessionData.getPreventAutoCommit();
+        final String                   source            = sessionData.getSource();
+
+        if (!status.equals(PrearcUtils.PrearcStatus.RECEIVING) || preventAutoCommit || StringUtils.trimToEmpty(source).equals(SessionData.UPLOADER)) {
+            return false;
+        }
+
+        try {
+            final File   sessionDir = PrearcUtils.getPrearcSessionDir(user, sessionData.getProject(), sessionData.getTimestamp(), sessionData.getFolderName(), false);
+            final long   then       = sessionData.getLastBuiltDate().getTime();
+            final double diff       = diffInMinutes(then, now);
+
+            log.debug("Prearchive session '{}' is {} minutes old", sessionData, diff);
+
+            if (diff >= _interval && !PrearcUtils.isSessionReceiving(triple)) {
+                log.info("Update #{}: prearchive session {} is {} minutes old, greater than configured interval {}, creating JMS queue entry for {} to archive {}", update, sessionData, diff, _interval, user.getUsername(), sessionData.getExternalUrl());
+                XDAT.sendJmsRequest(_jmsTemplate, new PrearchiveOperationRequest(user, Rebuild, sessionData, sessionDir));
+                return true;
+            }
+            if (diff >= (_interval * 10)) {
+                log.error(String.format("Prearchive session locked for an abnormally large time within CACHE_DIR/prearc_locks/%1$s/%2$s/%3$s", sessionData.getProject(), sessionData.getTimestamp(), sessionData.getName()));
+            } else if (diff < _interval) {
+                log.debug("Prearchive session {} is {} minutes old, less than configured interval {}, remaining in RECEIVING status", sessionData, diff, _interval);
+            }
+            // Files are still locked or the session was modified elsewhere, so check it again once it's been quiet.
+            SessionQuiescenceTimer.arm(triple, diff < _interval ? then : now);
+        } catch (IOException e) {
+            final String message = String.format("An error occurred trying to write the session %s %s %s.", sessionData.getFolderName(), sessionData.getTimestamp(), sessionData.getProject());
+            log.error(message, e);
+        } catch (InvalidPermissionException e) {
+            final String message = String.format("A permissions error occurred trying to write the session %s %s %s.", sessionData.getFolderName(), sessionData.getTimestamp(), sessionData.getProject());
+            log.error(message, e);
+        } catch (Exception e) {
+            final String message = String.format("An unknown error occurred trying to write the session %s %s %s.", sessionData.getFolderName(), sessionData.getTimestamp(), sessionData.getProject());
+            log.error(message, e);
+        }
+        return false;
+    }
+
     /**
      * Diff in minutes.
      *
@@ -149,6 +191,10 @@ public class SessionXMLRebuilder extends AbstractXnatTask {
         return Math.floor(Math.floor((double) (end - start) / 1000) / 60);
     }
 
+    // Scan the whole prearchive table every this many runs. Between scans, only quiet sessions are checked.
+    private static final int           RECONCILE_TICKS = 10;
+    private static final AtomicInteger TICKS           = new AtomicInteger();
+
     private final Provider<UserI> _provider;
     private final double          _interval;
     private final JmsTemplate     _jmsTemplate;
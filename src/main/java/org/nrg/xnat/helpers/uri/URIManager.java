@@ -12,6 +12,7 @@ package org.nrg.xnat.helpers.uri;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import org.apache.commons.lang3.StringUtils;
+import org.nrg.framework.services.ContextService;
 import org.nrg.xdat.XDAT;
 import org.nrg.xdat.model.XnatAbstractresourceI;
 import org.nrg.xdat.om.XnatExperimentdata;
@@ -26,6 +27,8 @@ import org.restlet.util.Template;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
@@ -129,6 +132,18 @@ public class URIManager {
         return getInstance().TEMPLATES.get(type);
     }
 
+    /**
+     * Gets the trie compiled from the templates registered for the specified type. This matches data URIs in the same
+     * order and with the same results as running each of the {@link #getTemplates(TEMPLATE_TYPE) templates} in turn.
+     *
+     * @param type The template type.
+     *
+     * @return The compiled templates for the type.
+     */
+    static UriTemplateTrie getTemplateTrie(TEMPLATE_TYPE type) {
+        return getInstance().TRIES.get(type);
+    }
+
     public static class TemplateInfo<A extends DataURIA> {
         public final String   key;
         public final int      MODE;
@@ -239,13 +254,25 @@ public class URIManager {
     }
 
     final Multimap<TEMPLATE_TYPE, TemplateInfo> TEMPLATES = ArrayListMultimap.create();
+    final Map<TEMPLATE_TYPE, UriTemplateTrie>   TRIES     = createTries();
 
     private void add(final TEMPLATE_TYPE type, final String template, final int MODE, final Class<? extends URIManager.DataURIA> clazz) {
-        TEMPLATES.put(type, new TemplateInfo<>(template, MODE, clazz));
+        final TemplateInfo<?> info = new TemplateInfo<>(template, MODE, clazz);
+        TEMPLATES.put(type, info);
+        TRIES.get(type).add(info);
     }
     
     private Collection<ManageableXnatURIContainer> getUriContainers(){
-        return XDAT.getContextService().getBeansOfType(ManageableXnatURIContainer.class).values();
+        final ContextService contextService = XDAT.getContextService();
+        return contextService != null ? contextService.getBeansOfType(ManageableXnatURIContainer.class).values() : Collections.<ManageableXnatURIContainer>emptyList();
+    }
+
+    private static Map<TEMPLATE_TYPE, UriTemplateTrie> createTries() {
+        final Map<TEMPLATE_TYPE, UriTemplateTrie> tries = new EnumMap<>(TEMPLATE_TYPE.class);
+        for (final TEMPLATE_TYPE type : TEMPLATE_TYPE.values()) {
+            tries.put(type, new UriTemplateTrie());
+        }
+        return tries;
     }
 
 }
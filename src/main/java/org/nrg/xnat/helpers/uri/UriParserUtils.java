@@ -54,11 +54,9 @@ public final class UriParserUtils {
                 return new URIManager.PrearchiveURI(Collections.<String, Object>emptyMap(), dataUri);
             }
 
-            for (final URIManager.TemplateInfo template : URIManager.getTemplates(URIManager.TEMPLATE_TYPE.PREARC)) {
-                final URIManager.DataURIA uri = mapTemplateInfo(template, dataUri);
-                if (uri != null) {
-                    return uri;
-                }
+            final URIManager.DataURIA uri = mapTemplates(URIManager.TEMPLATE_TYPE.PREARC, dataUri);
+            if (uri != null) {
+                return uri;
             }
         } else if (dataUri.startsWith("/archive")) {
             if (dataUri.equals("/archive")) {
@@ -66,11 +64,9 @@ public final class UriParserUtils {
                 return new URIManager.ArchiveURI(Collections.<String, Object>emptyMap(), dataUri);
             }
 
-            for (final URIManager.TemplateInfo template : URIManager.getTemplates(URIManager.TEMPLATE_TYPE.ARC)) {
-                final URIManager.DataURIA uri = mapTemplateInfo(template, dataUri);
-                if (uri != null) {
-                    return uri;
-                }
+            final URIManager.DataURIA uri = mapTemplates(URIManager.TEMPLATE_TYPE.ARC, dataUri);
+            if (uri != null) {
+                return uri;
             }
         } else if (dataUri.startsWith("/user")) {
             if (dataUri.equals("/user")) {
@@ -78,11 +74,9 @@ public final class UriParserUtils {
                 return new URIManager.UserCacheURI(Collections.<String, Object>emptyMap(), dataUri);
             }
 
-            for (final URIManager.TemplateInfo template : URIManager.getTemplates(URIManager.TEMPLATE_TYPE.CACHE)) {
-                final URIManager.DataURIA uri = mapTemplateInfo(template, dataUri);
-                if (uri != null) {
-                    return uri;
-                }
+            final URIManager.DataURIA uri = mapTemplates(URIManager.TEMPLATE_TYPE.CACHE, dataUri);
+            if (uri != null) {
+                return uri;
             }
         } else if(dataUri.startsWith("/services/triage")){
 			if(dataUri.equals("/services/triage")){
@@ -90,11 +84,9 @@ public final class UriParserUtils {
 				return new URIManager.TriageURI(t,dataUri);
 			}
 			
-			for(final URIManager.TemplateInfo template: URIManager.getTemplates(URIManager.TEMPLATE_TYPE.TRIAGE)){
-				Map<String,Object> map=new UriParser(template.key,template.MODE).readUri(dataUri);
-				if(map.size()>0){
-					return template.wrap(map,dataUri);
-				}
+			final List<UriTemplateTrie.Match> matches=URIManager.getTemplateTrie(URIManager.TEMPLATE_TYPE.TRIAGE).match(dataUri);
+			if(!matches.isEmpty()){
+				return matches.get(0).wrap(dataUri);
 			}
 			
 		} else {
@@ -113,11 +105,9 @@ public final class UriParserUtils {
         				}
         			}
         			
-        			for(final URIManager.TemplateInfo template: URIManager.getTemplates(uriContainer.getTemplateType())){
-        				Map<String,Object> map=new UriParser(template.key,template.MODE).readUri(dataUri);
-        				if(map.size()>0){
-        					return template.wrap(map,dataUri);
-        				}
+        			final List<UriTemplateTrie.Match> matches=URIManager.getTemplateTrie(uriContainer.getTemplateType()).match(dataUri);
+        			if(!matches.isEmpty()){
+        				return matches.get(0).wrap(dataUri);
         			}
         		}
         	}
@@ -256,11 +246,13 @@ public final class UriParserUtils {
         return list;
     }
 
-    private static URIManager.DataURIA mapTemplateInfo(final URIManager.TemplateInfo template, final String dataUri) {
-        final Map<String, Object> map = new UriParser(template.key, template.MODE).readUri(dataUri);
-        if (map.size() > 0) {
-            log.debug("Found {} parameters from the data URI {}: {}", map.size(), dataUri, map);
-            return template.wrap(map, dataUri);
+    private static URIManager.DataURIA mapTemplates(final URIManager.TEMPLATE_TYPE type, final String dataUri) {
+        for (final UriTemplateTrie.Match match : URIManager.getTemplateTrie(type).match(dataUri)) {
+            log.debug("Found {} parameters from the data URI {} with the template {}: {}", match.getProperties().size(), dataUri, match.getTemplate().key, match.getProperties());
+            final URIManager.DataURIA uri = match.wrap(dataUri);
+            if (uri != null) {
+                return uri;
+            }
         }
         log.debug("Found no parameters from the data URI {}", dataUri);
         return null;
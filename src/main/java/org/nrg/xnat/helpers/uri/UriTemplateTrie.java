@@ -0,0 +1,276 @@
+/*
+ * web: org.nrg.xnat.helpers.uri.UriTemplateTrie
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.helpers.uri;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.restlet.util.Template;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches data URIs against the templates registered for a single {@link URIManager.TEMPLATE_TYPE template type}. The
+ * templates are compiled into a trie keyed on path segments when they're added, so a URI is matched by walking its
+ * segments once instead of building and running a restlet {@link Template} for each registered template. Matching
+ * follows the same rules as {@link UriParserUtils.UriParser#readUri(String)}: each variable matches a non-empty run of
+ * URI segment characters, {@link Template#MODE_EQUALS} templates must match the entire URI, and
+ * {@link Template#MODE_STARTS_WITH} templates may match a prefix of the URI, with the rest of the URI stored as
+ * {@link UriParserUtils#_REMAINDER}. Templates that can't be split into literal and variable segments, e.g.
+ * <b>/files/{NAME}.{EXT}</b>, are still matched with a restlet template.
+ */
+@Slf4j
+class UriTemplateTrie {
+    /**
+     * A registered template that matched a URI along with the properties parsed from the URI.
+     */
+    static class Match {
+        Match(final int index, final URIManager.TemplateInfo<?> template, final Map<String, Object> properties) {
+            _index = index;
+            _template = template;
+            _properties = properties;
+        }
+
+        URIManager.TemplateInfo<?> getTemplate() {
+            return _template;
+        }
+
+        Map<String, Object> getProperties() {
+            return _properties;
+        }
+
+        URIManager.DataURIA wrap(final String uri) {
+            return _template.wrap(_properties, uri);
+        }
+
+        private final int                        _index;
+        private final URIManager.TemplateInfo<?> _template;
+        private final Map<String, Object>        _properties;
+    }
+
+    /**
+     * Compiles the template into the trie. Templates are matched in the order in which they're added.
+     *
+     * @param template The template to add.
+     */
+    void add(final URIManager.TemplateInfo<?> template) {
+        final int          index    = _count++;
+        final List<String> segments = getSegments(template.key);
+
+        if (segments == null) {
+            log.debug("The template {} can't be split into segments, it will be matched with a restlet template", template.key);
+            _unsegmented.add(new Terminal(index, template, null, null));
+            return;
+        }
+
+        final List<String> variables = new ArrayList<>();
+        final int          last      = segments.size() - 1;
+        Node               node      = _root;
+        for (int position = 0; position < last; position++) {
+            node = node.getChild(segments.get(position), variables);
+        }
+
+        final String  segment  = segments.get(last);
+        final boolean variable = getVariable(segment) != null;
+        if (!variable && template.MODE == Template.MODE_STARTS_WITH) {
+            // A trailing literal can match the start of a longer segment, e.g. ".../files" matches ".../filesXYZ".
+            node._prefixes.add(new Terminal(index, template, variables.toArray(new String[0]), segment));
+        } else {
+            node = node.getChild(segment, variables);
+            node._terminals.add(new Terminal(index, template, variables.toArray(new String[0]), null));
+        }
+        _maxVariables = Math.max(_maxVariables, variables.size());
+    }
+
+    /**
+     * Finds all of the templates that match the URI and parse at least one property from it, in the order in which the
+     * templates were added.
+     *
+     * @param uri The URI to match.
+     *
+     * @return The matching templates and the properties parsed for each.
+     */
+    List<Match> match(final String uri) {
+        final List<Match> matches = new ArrayList<>();
+        if (uri == null) {
+            return matches;
+        }
+        walk(_root, uri, 0, new String[_maxVariables], 0, matches);
+        for (final Terminal terminal : _unsegmented) {
+            final Map<String, Object> properties = new UriParserUtils.UriParser(terminal._template.key, terminal._template.MODE).readUri(uri);
+            if (!properties.isEmpty()) {
+                matches.add(new Match(terminal._index, terminal._template, properties));
+            }
+        }
+        if (matches.size() > 1) {
+            Collections.sort(matches, MATCH_ORDER);
+        }
+        return matches;
+    }
+
+    private static void walk(final Node node, final String uri, final int position, final String[] values, final int depth, final List<Match> matches) {
+        final int length = uri.length();
+        for (final Terminal terminal : node._terminals) {
+            if (terminal._template.MODE != Template.MODE_EQUALS || position == length) {
+                terminal.addMatch(uri, position, values, matches);
+            }
+        }
+        if (position >= length || uri.charAt(position) != '/') {
+            return;
+        }
+
+        final int start = position + 1;
+        for (final Terminal prefix : node._prefixes) {
+            if (uri.startsWith(prefix._literal, start)) {
+                prefix.addMatch(uri, start + prefix._literal.length(), values, matches);
+            }
+        }
+        if (!node._literals.isEmpty()) {
+            final int  slash = uri.indexOf('/', start);
+            final int  end   = slash < 0 ? length : slash;
+            final Node child = node._literals.get(uri.substring(start, end));
+            if (child != null) {
+                walk(child, uri, end, values, depth, matches);
+            }
+        }
+        if (node._variable != null) {
+            final int end = scanSegment(uri, start);
+            if (end > start) {
+                values[depth] = uri.substring(start, end);
+                walk(node._variable, uri, end, values, depth + 1, matches);
+            }
+        }
+    }
+
+    /**
+     * Finds the end of the run of URI segment characters, i.e. unreserved characters, sub-delimiters, ':', '@', and
+     * percent-encoded octets, starting at the specified position. This is the same set of characters that a restlet
+     * {@link org.restlet.util.Variable#TYPE_URI_SEGMENT} variable matches.
+     */
+    private static int scanSegment(final String uri, final int start) {
+        final int length = uri.length();
+        int       index  = start;
+        while (index < length) {
+            final char character = uri.charAt(index);
+            if (character == '%') {
+                if (index + 2 < length && isHex(uri.charAt(index + 1)) && isHex(uri.charAt(index + 2))) {
+                    index += 3;
+                    continue;
+                }
+                break;
+            }
+            if (character >= SEGMENT_CHARACTERS.length || !SEGMENT_CHARACTERS[character]) {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isHex(final char character) {
+        return character >= '0' && character <= '9' || character >= 'a' && character <= 'f' || character >= 'A' && character <= 'F';
+    }
+
+    /**
+     * Splits the template into segments. Returns null if the template doesn't start with a slash, has a segment that
+     * mixes literal text and variables, or uses the same variable more than once.
+     */
+    private static List<String> getSegments(final String template) {
+        if (StringUtils.isEmpty(template) || template.charAt(0) != '/') {
+            return null;
+        }
+        final List<String> segments  = Arrays.asList(template.substring(1).split("/", -1));
+        final Set<String>  variables = new HashSet<>();
+        for (final String segment : segments) {
+            final String variable = getVariable(segment);
+            if (variable != null ? !variables.add(variable) : StringUtils.containsAny(segment, '{', '}')) {
+                return null;
+            }
+        }
+        return segments;
+    }
+
+    private static String getVariable(final String segment) {
+        final Matcher matcher = VARIABLE.matcher(segment);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    private static class Node {
+        Node getChild(final String segment, final List<String> variables) {
+            final String variable = getVariable(segment);
+            if (variable == null) {
+                Node child = _literals.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    _literals.put(segment, child);
+                }
+                return child;
+            }
+            variables.add(variable);
+            if (_variable == null) {
+                _variable = new Node();
+            }
+            return _variable;
+        }
+
+        private final Map<String, Node> _literals  = new HashMap<>();
+        private final List<Terminal>    _terminals = new ArrayList<>();
+        private final List<Terminal>    _prefixes  = new ArrayList<>();
+        private       Node              _variable;
+    }
+
+    private static class Terminal {
+        Terminal(final int index, final URIManager.TemplateInfo<?> template, final String[] variables, final String literal) {
+            _index = index;
+            _template = template;
+            _variables = variables;
+            _literal = literal;
+        }
+
+        void addMatch(final String uri, final int matched, final String[] values, final List<Match> matches) {
+            final Map<String, Object> properties = new HashMap<>();
+            for (int index = 0; index < _variables.length; index++) {
+                properties.put(_variables[index], values[index]);
+            }
+            if (matched < uri.length()) {
+                properties.put(UriParserUtils._REMAINDER, uri.substring(matched));
+            }
+            if (!properties.isEmpty()) {
+                matches.add(new Match(_index, _template, properties));
+            }
+        }
+
+        private final int                        _index;
+        private final URIManager.TemplateInfo<?> _template;
+        private final String[]                   _variables;
+        private final String                     _literal;
+    }
+
+    private static final Pattern           VARIABLE           = Pattern.compile("\\{([^{}]+)}");
+    private static final boolean[]         SEGMENT_CHARACTERS = new boolean[128];
+    private static final Comparator<Match> MATCH_ORDER        = new Comparator<Match>() {
+        @Override
+        public int compare(final Match first, final Match second) {
+            return Integer.compare(first._index, second._index);
+        }
+    };
+
+    static {
+        for (final char character : "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-._~!$&'()*+,;=:@".toCharArray()) {
+            SEGMENT_CHARACTERS[character] = true;
+        }
+    }
+
+    private final Node           _root        = new Node();
+    private final List<Terminal> _unsegmented = new ArrayList<>();
+    private       int            _count;
+    private       int            _maxVariables;
+}
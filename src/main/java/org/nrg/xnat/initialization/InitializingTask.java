@@ -9,7 +9,9 @@
 
 package org.nrg.xnat.initialization;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
 public interface InitializingTask extends Callable<Boolean> {
@@ -26,4 +28,36 @@ public interface InitializingTask extends Callable<Boolean> {
     boolean isMaxedOut();
 
     int executions();
+
+    /**
+     * Gets the tasks that must finish before this task is called. A task isn't queued until all of the tasks it depends
+     * on have completed or reached their maximum number of executions.
+     *
+     * @return The classes of the tasks this task depends on.
+     */
+    default Set<Class<? extends InitializingTask>> getDependencies() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Indicates whether this task can run at the same time as any other task other than those it {@link
+     * #getDependencies() depends on}. Tasks that can't are run one at a time in the order they were registered. Only
+     * return true once the task has been checked against every other initializing task, e.g. that it doesn't change
+     * tables, configurations, or caches that another task reads or changes.
+     *
+     * @return Returns true if the task can run concurrently with other tasks.
+     */
+    default boolean canRunConcurrently() {
+        return false;
+    }
+
+    /**
+     * Indicates whether the system is ready for this task to be called. This should be a cheap check, e.g. whether XFT
+     * has finished initializing. When this returns false, the task isn't called and is checked again later.
+     *
+     * @return Returns true if the task can be called now.
+     */
+    default boolean isReady() {
+        return true;
+    }
 }
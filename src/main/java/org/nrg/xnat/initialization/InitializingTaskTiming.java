@@ -0,0 +1,50 @@
+/*
+ * web: org.nrg.xnat.initialization.InitializingTaskTiming
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.initialization;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import io.swagger.annotations.ApiModel;
+import lombok.Value;
+import lombok.experimental.Accessors;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Describes when an initializing task ran during startup and how long it spent waiting and running. The dependency wait
+ * is the time from when the initializing tasks were started until all of the task's dependencies finished. The
+ * readiness wait is the time after that until the task finished that it didn't spend running, i.e. waiting for the
+ * system to be ready, waiting between attempts, or waiting for a free thread.
+ */
+@ApiModel(description = "Describes when an initializing task ran during startup and how long it spent waiting and running.")
+@Value
+@Accessors(prefix = "_")
+@JsonPropertyOrder({"taskName", "status", "dependencies", "attempts", "queuedAt", "startedAt", "finishedAt", "dependencyWait", "readinessWait", "runTime"})
+public class InitializingTaskTiming {
+    public enum Status {
+        Blocked,
+        Queued,
+        Running,
+        Waiting,
+        Completed,
+        MaxedOut
+    }
+
+    String       _taskName;
+    Status       _status;
+    List<String> _dependencies;
+    int          _attempts;
+    Date         _queuedAt;
+    Date         _startedAt;
+    Date         _finishedAt;
+    long         _dependencyWait;
+    long         _readinessWait;
+    long         _runTime;
+}
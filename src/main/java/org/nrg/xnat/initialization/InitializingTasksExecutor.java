@@ -9,8 +9,10 @@
 
 package org.nrg.xnat.initialization;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.nrg.xft.schema.XFTManager;
+import org.nrg.xnat.initialization.InitializingTaskTiming.Status;
 import org.nrg.xnat.task.AbstractXnatRunnable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
@@ -18,10 +20,26 @@ import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
-import java.util.List;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+/**
+ * Runs the {@link InitializingTask initializing tasks} once XFT has been initialized. Each task is queued as soon as
+ * the tasks it {@link InitializingTask#getDependencies() depends on} have finished. Tasks are run one at a time in the
+ * order they were registered, as they always have been, unless a task {@link InitializingTask#canRunConcurrently()
+ * can run concurrently}, in which case it's run on a small pool alongside the other tasks. A task that {@link
+ * InitializingTask#isReady() isn't ready} or that doesn't complete is tried again after a delay that starts at one
+ * second and doubles up to fifteen seconds, while the tasks queued after it go ahead. When and how long each task
+ * waited and ran is available from {@link #getTimeline()}.
+ */
 @Component
 @Slf4j
 public class InitializingTasksExecutor {
@@ -31,59 +49,307 @@ public class InitializingTasksExecutor {
         log.debug("Creating InitializingTasksExecutor bean with a scheduler of type {} and {} tasks", scheduler.getClass().getName(), tasks.size());
         _tasks = tasks;
         _scheduler = scheduler;
+        _serial = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("initializing-task-%d").setDaemon(true).build());
+        _pool = Executors.newFixedThreadPool(POOL_SIZE, new ThreadFactoryBuilder().setNameFormat("concurrent-initializing-task-%d").setDaemon(true).build());
     }
 
     @EventListener
-    public void executeOnContextRefresh(final ContextRefreshedEvent event) {
+    public synchronized void executeOnContextRefresh(final ContextRefreshedEvent event) {
         log.debug("Handling context refreshed event at {}", event.getTimestamp());
-        if (_future == null || _future.isCancelled()) {
-            log.info("Scheduling CheckTasks with delay of 15,000");
-            _future = _scheduler.scheduleWithFixedDelay(new CheckTasks(), 15000);
+        if ((_future == null || _future.isCancelled()) && _remaining.get() == 0) {
+            log.info("Scheduling CheckTasks with delay of {}", XFT_CHECK_INTERVAL);
+            _future = _scheduler.scheduleWithFixedDelay(new CheckTasks(), XFT_CHECK_INTERVAL);
         }
     }
 
+    /**
+     * Gets the timing for each initializing task from the most recent time the tasks were started. This is empty until
+     * XFT has been initialized and the tasks have been started.
+     *
+     * @return The timing for each initializing task.
+     */
+    public List<InitializingTaskTiming> getTimeline() {
+        return _nodes.stream().map(TaskNode::getTiming).collect(Collectors.toList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        _serial.shutdownNow();
+        _pool.shutdownNow();
+    }
+
     private class CheckTasks extends AbstractXnatRunnable {
         @Override
         protected void runTask() {
             if (!XFTManager.isInitialized()) {
-                log.info("XFTManager not yet initialized. Delaying check for initializing tasks.");
+                log.debug("XFTManager not yet initialized. Delaying start of initializing tasks.");
                 return;
             }
-            if (_tasks.size() == 0) {
-                log.info("No initializing tasks found, cancelling future executions of initializing tasks.");
-                _future.cancel(false);
-            }
-            int completedTasks = 0, incompleteTasks = 0;
-            for (final InitializingTask task : _tasks) {
-                if (!task.isCompleted() && !task.isMaxedOut()) {
-                    log.debug("Beginning execution {} for initializing task \"{}\".", task.executions() + 1, task.getTaskName());
-                    try {
-                        final boolean completed = task.call();
-                        if (completed) {
-                            log.info("Task \"{}\" completed at {}, {} completed tasks found.", task.getTaskName(), task.completedAt(), ++completedTasks);
-                        } else {
-                            log.debug("Task \"{}\" not yet completed, {} executions attempted, {} incomplete tasks found.", task.getTaskName(), task.executions(), ++incompleteTasks);
-                        }
-                    } catch (Exception e) {
-                        log.error("An error occurred while running the task \"{}\", {} incomplete tasks found.", task.getTaskName(), ++incompleteTasks, e);
-                    }
-                } else if (task.isCompleted()) {
-                    log.debug("Found task \"{}\", but it is marked as already completed, {} completed tasks found.", task.getTaskName(), ++completedTasks);
-                } else {
-                    log.debug("Found task \"{}\", but it is marked as maxed out: {} total executions completed, {} completed tasks found.", task.getTaskName(), task.executions(), ++completedTasks);
+            launch();
+        }
+    }
+
+    /**
+     * Builds the dependency graph for the initializing tasks and queues the tasks that don't depend on any others.
+     */
+    synchronized void launch() {
+        if (_future != null) {
+            _future.cancel(false);
+        }
+
+        final long                    launchedAt = System.currentTimeMillis();
+        final Map<Class<?>, TaskNode> nodes      = new LinkedHashMap<>();
+        for (final InitializingTask task : _tasks) {
+            nodes.put(ClassUtils.getUserClass(task), new TaskNode(task, launchedAt));
+        }
+        for (final TaskNode node : nodes.values()) {
+            for (final Class<? extends InitializingTask> dependency : node.getTask().getDependencies()) {
+                final TaskNode prerequisite = nodes.get(dependency);
+                if (prerequisite == null) {
+                    log.warn("The initializing task \"{}\" depends on {}, but no initializing task of that type was found. Ignoring that dependency.", node.getName(), dependency.getName());
+                } else if (prerequisite != node) {
+                    node.getPrerequisites().add(prerequisite);
                 }
             }
-            if (incompleteTasks > 0) {
-                log.debug("There are {} completed initializing tasks, with {} incomplete initializing tasks remaining. Will continue processing initializing tasks at regular intervals.", completedTasks, incompleteTasks);
+        }
+        removeCycles(nodes.values());
+
+        final List<TaskNode> roots = new ArrayList<>();
+        for (final TaskNode node : nodes.values()) {
+            node.getPending().set(node.getPrerequisites().size());
+            node.getPrerequisites().forEach(prerequisite -> prerequisite.getDependents().add(node));
+            if (node.getPrerequisites().isEmpty()) {
+                roots.add(node);
+            }
+        }
+
+        _nodes = new ArrayList<>(nodes.values());
+        _remaining.set(_nodes.size());
+        if (_nodes.isEmpty()) {
+            log.info("No initializing tasks found.");
+            return;
+        }
+        log.info("Starting {} initializing tasks, {} of which have no dependencies", _nodes.size(), roots.size());
+        roots.forEach(this::queue);
+    }
+
+    private void queue(final TaskNode node) {
+        node.queued();
+        try {
+            (node.getTask().canRunConcurrently() ? _pool : _serial).execute(() -> run(node));
+        } catch (RejectedExecutionException e) {
+            log.info("Couldn't queue the initializing task \"{}\", the system is shutting down.", node.getName());
+        }
+    }
+
+    private void run(final TaskNode node) {
+        final InitializingTask task = node.getTask();
+        if (task.isCompleted()) {
+            log.debug("Found task \"{}\", but it is marked as already completed.", node.getName());
+            finish(node, Status.Completed);
+            return;
+        }
+        if (task.isMaxedOut()) {
+            log.debug("Found task \"{}\", but it is marked as maxed out: {} total executions completed.", node.getName(), task.executions());
+            finish(node, Status.MaxedOut);
+            return;
+        }
+
+        boolean completed = false;
+        if (task.isReady()) {
+            log.debug("Beginning execution {} for initializing task \"{}\".", task.executions() + 1, node.getName());
+            final long start = node.started();
+            try {
+                completed = task.call();
+            } catch (Exception e) {
+                log.error("An error occurred while running the task \"{}\".", node.getName(), e);
+            } finally {
+                node.stopped(start);
+            }
+        } else {
+            log.debug("Initializing task \"{}\" isn't ready to run yet.", node.getName());
+        }
+
+        if (completed) {
+            log.info("Task \"{}\" completed at {}.", node.getName(), task.completedAt());
+            finish(node, Status.Completed);
+        } else {
+            final long delay = node.waiting();
+            log.debug("Task \"{}\" not yet completed, {} executions attempted, trying again in {} ms.", node.getName(), task.executions(), delay);
+            try {
+                _scheduler.schedule(() -> queue(node), new Date(System.currentTimeMillis() + delay));
+            } catch (RejectedExecutionException e) {
+                log.info("Couldn't reschedule the initializing task \"{}\", the system is shutting down.", node.getName());
+            }
+        }
+    }
+
+    private void finish(final TaskNode node, final Status status) {
+        node.finished(status);
+        for (final TaskNode dependent : node.getDependents()) {
+            if (dependent.getPending().decrementAndGet() == 0) {
+                queue(dependent);
+            }
+        }
+        if (_remaining.decrementAndGet() == 0 && log.isInfoEnabled()) {
+            log.info("{} initializing tasks completed, no incomplete tasks remaining:\n{}", _nodes.size(), getTimeline().stream().map(InitializingTasksExecutor::format).collect(Collectors.joining("\n")));
+        }
+    }
+
+    /**
+     * Removes any dependency that would make the dependencies circular, so that every task can eventually run. Each
+     * dependency that's found to close a cycle is logged and dropped.
+     */
+    private static void removeCycles(final Collection<TaskNode> nodes) {
+        final Set<TaskNode> visited = new HashSet<>();
+        final Set<TaskNode> path    = new HashSet<>();
+        for (final TaskNode node : nodes) {
+            removeCycles(node, visited, path);
+        }
+    }
+
+    private static void removeCycles(final TaskNode node, final Set<TaskNode> visited, final Set<TaskNode> path) {
+        if (!visited.add(node)) {
+            return;
+        }
+        path.add(node);
+        for (final Iterator<TaskNode> iterator = node.getPrerequisites().iterator(); iterator.hasNext(); ) {
+            final TaskNode prerequisite = iterator.next();
+            if (path.contains(prerequisite)) {
+                log.error("The initializing task \"{}\" depends on \"{}\", which already depends on it. Ignoring that dependency.", node.getName(), prerequisite.getName());
+                iterator.remove();
             } else {
-                log.info("{} initializing tasks completed, no incomplete tasks remaining, terminating further initializing tasks processing.", completedTasks);
-                _future.cancel(false);
+                removeCycles(prerequisite, visited, path);
             }
         }
+        path.remove(node);
+    }
+
+    /**
+     * Gets how long to wait before trying a task again: one second after the first attempt, doubling after each
+     * attempt after that up to fifteen seconds.
+     *
+     * @param previous The previous delay, or 0 if the task hasn't been retried yet.
+     *
+     * @return The delay in milliseconds.
+     */
+    static long getRetryDelay(final long previous) {
+        return previous == 0 ? INITIAL_RETRY_DELAY : Math.min(previous * 2, MAX_RETRY_DELAY);
     }
 
+    private static String format(final InitializingTaskTiming timing) {
+        return String.format(" * %-50s %-9s %3d attempts, waited %6d ms for dependencies and %6d ms to be ready, ran for %6d ms", timing.getTaskName(), timing.getStatus(), timing.getAttempts(), timing.getDependencyWait(), timing.getReadinessWait(), timing.getRunTime());
+    }
+
+    /**
+     * Tracks a task's place in the dependency graph along with when it was queued, started, and finished. The timing
+     * fields are only updated by the thread currently running the task, but may be read at any time for the timeline.
+     */
+    private static class TaskNode {
+        TaskNode(final InitializingTask task, final long launchedAt) {
+            _task = task;
+            _name = task.getTaskName();
+            _launchedAt = launchedAt;
+        }
+
+        InitializingTask getTask() {
+            return _task;
+        }
+
+        String getName() {
+            return _name;
+        }
+
+        Set<TaskNode> getPrerequisites() {
+            return _prerequisites;
+        }
+
+        List<TaskNode> getDependents() {
+            return _dependents;
+        }
+
+        AtomicInteger getPending() {
+            return _pending;
+        }
+
+        synchronized void queued() {
+            if (_queuedAt == 0) {
+                _queuedAt = System.currentTimeMillis();
+            }
+            _status = Status.Queued;
+        }
+
+        synchronized long started() {
+            final long now = System.currentTimeMillis();
+            if (_startedAt == 0) {
+                _startedAt = now;
+            }
+            _attempts++;
+            _status = Status.Running;
+            return now;
+        }
+
+        synchronized void stopped(final long start) {
+            _runTime += System.currentTimeMillis() - start;
+        }
+
+        synchronized long waiting() {
+            _delay = getRetryDelay(_delay);
+            _status = Status.Waiting;
+            return _delay;
+        }
+
+        synchronized void finished(final Status status) {
+            _finishedAt = System.currentTimeMillis();
+            _status = status;
+        }
+
+        synchronized InitializingTaskTiming getTiming() {
+            final long now   = System.currentTimeMillis();
+            final long until = _finishedAt == 0 ? now : _finishedAt;
+            return new InitializingTaskTiming(_name,
+                                              _status,
+                                              _prerequisites.stream().map(TaskNode::getName).collect(Collectors.toList()),
+                                              _attempts,
+                                              toDate(_queuedAt),
+                                              toDate(_startedAt),
+                                              toDate(_finishedAt),
+                                              (_queuedAt == 0 ? now : _queuedAt) - _launchedAt,
+                                              _queuedAt == 0 ? 0 : Math.max(0, until - _queuedAt - _runTime),
+                                              _runTime);
+        }
+
+        private static Date toDate(final long timestamp) {
+            return timestamp == 0 ? null : new Date(timestamp);
+        }
+
+        private final InitializingTask _task;
+        private final String           _name;
+        private final long             _launchedAt;
+        private final Set<TaskNode>    _prerequisites = new LinkedHashSet<>();
+        private final List<TaskNode>   _dependents    = new ArrayList<>();
+        private final AtomicInteger    _pending       = new AtomicInteger();
+
+        private Status _status = Status.Blocked;
+        private int    _attempts;
+        private long   _queuedAt;
+        private long   _startedAt;
+        private long   _finishedAt;
+        private long   _runTime;
+        private long   _delay;
+    }
+
+    private static final int  POOL_SIZE           = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long XFT_CHECK_INTERVAL  = 1000;
+    private static final long INITIAL_RETRY_DELAY = 1000;
+    private static final long MAX_RETRY_DELAY     = 15000;
+
     private final TaskScheduler          _scheduler;
     private final List<InitializingTask> _tasks;
+    private final ExecutorService        _serial;
+    private final ExecutorService        _pool;
+    private final AtomicInteger          _remaining = new AtomicInteger();
 
-    private ScheduledFuture<?> _future;
+    private ScheduledFuture<?>      _future;
+    private volatile List<TaskNode> _nodes = Collections.emptyList();
 }
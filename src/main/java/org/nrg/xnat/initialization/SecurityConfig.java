@@ -121,6 +121,11 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         return new XnatProviderManager(_preferences, eventPublisher(), _userAuthService, _providers);
     }
 
+    @Bean
+    public VerifiedCredentialsCache verifiedCredentialsCache() {
+        return new VerifiedCredentialsCache(_securityPreferences, _preferences, _aliasTokenService, _template);
+    }
+
     @Bean
     public AuthenticationEventPublisher eventPublisher() {
         return new XnatAuthenticationEventPublisher(_userAuthService, _preferences, _providers);
@@ -18,6 +18,7 @@ import org.nrg.xft.db.PoolDBUtils;
 import org.nrg.xft.exception.DBPoolException;
 import org.nrg.xft.generators.SQLUpdateGenerator;
 import org.nrg.xft.schema.XFTManager;
+import org.nrg.xnat.initialization.InitializingTask;
 import org.nrg.xnat.services.XnatAppInfo;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -26,7 +27,9 @@ import org.springframework.stereotype.Component;
 
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 @Component
 @Slf4j
@@ -43,6 +46,15 @@ public class CreateOrUpdateDatabaseViews extends AbstractInitializingTask {
         return "Create or update database views";
     }
 
+    /**
+     * Views are created only after database tables are migrated, since migrating a column drops and restores the views
+     * that depend on its table.
+     */
+    @Override
+    public Set<Class<? extends InitializingTask>> getDependencies() {
+        return Collections.singleton(MigrateDatabaseTables.class);
+    }
+
     @Override
     protected void callImpl() throws InitializingTaskException {
         if (_appInfo.isPrimaryNode()) {
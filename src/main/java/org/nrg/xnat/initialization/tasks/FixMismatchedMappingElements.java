@@ -18,13 +18,16 @@ import org.nrg.xdat.security.UserGroupServiceI;
 import org.nrg.xdat.security.helpers.Users;
 import org.nrg.xdat.security.user.exceptions.UserInitException;
 import org.nrg.xdat.security.user.exceptions.UserNotFoundException;
+import org.nrg.xnat.initialization.InitializingTask;
 import org.nrg.xnat.services.XnatAppInfo;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Component
 @Slf4j
@@ -42,6 +45,15 @@ public class FixMismatchedMappingElements extends AbstractInitializingTask {
         return "Fixes mismatched field mapping elements.";
     }
 
+    /**
+     * Mapping elements are checked only after new secure definitions have been added, so that the element security
+     * entries for newly added data types are checked as well.
+     */
+    @Override
+    public Set<Class<? extends InitializingTask>> getDependencies() {
+        return Collections.singleton(UpdateNewSecureDefinitions.class);
+    }
+
     @Override
     protected void callImpl() throws InitializingTaskException {
         if (_appInfo.isPrimaryNode()) {
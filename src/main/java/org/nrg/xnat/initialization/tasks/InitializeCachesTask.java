@@ -39,6 +39,11 @@ public class InitializeCachesTask extends AbstractInitializingTask {
         return "Initialize all caches that implement the Initializing interface.";
     }
 
+    @Override
+    public boolean isReady() {
+        return XFTManager.isComplete();
+    }
+
     @Override
     protected void callImpl() throws InitializingTaskException {
         if (!XFTManager.isComplete()) {
@@ -24,6 +24,19 @@ public class InitializeXftElementsTask extends AbstractInitializingTask {
         return "Initialize the XFT elements for the data access API.";
     }
 
+    @Override
+    public boolean isReady() {
+        return XFTManager.isComplete();
+    }
+
+    /**
+     * Only reads the XFT schema elements into the data access API's own maps and doesn't touch the database.
+     */
+    @Override
+    public boolean canRunConcurrently() {
+        return true;
+    }
+
     @Override
     protected void callImpl() throws InitializingTaskException {
         if (!XFTManager.isComplete()) {
@@ -50,6 +50,14 @@ public class RecordNodeInfo extends AbstractInitializingTask {
         return "Record node information";
     }
 
+    /**
+     * Only reads and writes the node info table, which no other initializing task uses.
+     */
+    @Override
+    public boolean canRunConcurrently() {
+        return true;
+    }
+
     /* (non-Javadoc)
      * @see org.nrg.xnat.initialization.tasks.AbstractInitializingTask#callImpl()
      */
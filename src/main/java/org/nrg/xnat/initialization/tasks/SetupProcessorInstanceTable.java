@@ -12,6 +12,7 @@ package org.nrg.xnat.initialization.tasks;
 import org.nrg.framework.constants.Scope;
 import org.nrg.xnat.archive.GradualDicomImporter;
 import org.nrg.xnat.entities.ArchiveProcessorInstance;
+import org.nrg.xnat.processor.services.ArchiveProcessorChainService;
 import org.nrg.xnat.processor.services.ArchiveProcessorInstanceService;
 import org.nrg.xnat.processors.MizerArchiveProcessor;
 import org.nrg.xnat.processors.StudyRemappingArchiveProcessor;
@@ -24,10 +25,11 @@ import java.util.Collections;
 @Component
 public class SetupProcessorInstanceTable extends AbstractInitializingTask {
     @Autowired
-    public SetupProcessorInstanceTable(final JdbcTemplate template, final ArchiveProcessorInstanceService archiveProcessorInstanceService) {
+    public SetupProcessorInstanceTable(final JdbcTemplate template, final ArchiveProcessorInstanceService archiveProcessorInstanceService, final ArchiveProcessorChainService archiveProcessorChainService) {
         super();
         _template = template;
         _archiveProcessorInstanceService = archiveProcessorInstanceService;
+        _archiveProcessorChainService = archiveProcessorChainService;
     }
 
     @Override
@@ -61,9 +63,11 @@ public class SetupProcessorInstanceTable extends AbstractInitializingTask {
             defaultSiteAnonProcessor.setScpBlacklist(Collections.emptySet());
             defaultSiteAnonProcessor.setScpWhitelist(Collections.emptySet());
             _archiveProcessorInstanceService.create(defaultRemappingProcessor);
+            _archiveProcessorChainService.invalidate();
         }
     }
 
     private final JdbcTemplate                    _template;
     private final ArchiveProcessorInstanceService _archiveProcessorInstanceService;
+    private final ArchiveProcessorChainService    _archiveProcessorChainService;
 }
@@ -0,0 +1,85 @@
+package org.nrg.xnat.preferences;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.annotations.XnatMixIn;
+import org.nrg.framework.beans.ProxiedBeanMixIn;
+import org.nrg.prefs.annotations.NrgPreference;
+import org.nrg.prefs.annotations.NrgPreferenceBean;
+import org.nrg.prefs.beans.AbstractPreferenceBean;
+import org.nrg.prefs.exceptions.InvalidPreferenceName;
+import org.nrg.prefs.services.NrgPreferenceService;
+
+/**
+ * Manages when scan snapshots and thumbnails are rendered. By default they're rendered the first time they're viewed.
+ * When pre-rendering is enabled, the configured snapshot and thumbnail views for every scan are rendered in the
+ * background once a session has been archived. Views are given as comma-separated grid dimensions in the same format
+ * as the snapshot API, e.g. "1X1, 4X4".
+ */
+@NrgPreferenceBean(toolId = SnapshotPreferences.SNAPSHOTS_TOOL_ID,
+                   toolName = "XNAT Snapshot Preferences",
+                   description = "Manages preferences and settings for scan snapshot and thumbnail generation.")
+@XnatMixIn(ProxiedBeanMixIn.class)
+@Slf4j
+public class SnapshotPreferences extends AbstractPreferenceBean {
+    public static final String SNAPSHOTS_TOOL_ID = "snapshots";
+
+    public SnapshotPreferences(final NrgPreferenceService preferenceService) {
+        super(preferenceService);
+    }
+
+    @NrgPreference(defaultValue = "false")
+    public boolean isPreRenderEnabled() {
+        return getBooleanValue("preRenderEnabled");
+    }
+
+    @SuppressWarnings("unused")
+    public void setPreRenderEnabled(final boolean preRenderEnabled) {
+        try {
+            setBooleanValue(preRenderEnabled, "preRenderEnabled");
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name preRenderEnabled: something is very wrong here.", e);
+        }
+    }
+
+    @NrgPreference(defaultValue = "1X1")
+    public String getPreRenderSnapshotViews() {
+        return getValue("preRenderSnapshotViews");
+    }
+
+    @SuppressWarnings("unused")
+    public void setPreRenderSnapshotViews(final String preRenderSnapshotViews) {
+        try {
+            set(preRenderSnapshotViews, "preRenderSnapshotViews");
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name preRenderSnapshotViews: something is very wrong here.", e);
+        }
+    }
+
+    @NrgPreference(defaultValue = "1X1")
+    public String getPreRenderThumbnailViews() {
+        return getValue("preRenderThumbnailViews");
+    }
+
+    @SuppressWarnings("unused")
+    public void setPreRenderThumbnailViews(final String preRenderThumbnailViews) {
+        try {
+            set(preRenderThumbnailViews, "preRenderThumbnailViews");
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name preRenderThumbnailViews: something is very wrong here.", e);
+        }
+    }
+
+    @NrgPreference(defaultValue = "2")
+    public int getPreRenderPoolSize() {
+        return getIntegerValue("preRenderPoolSize");
+    }
+
+    @SuppressWarnings("unused")
+    public void setPreRenderPoolSize(final int preRenderPoolSize) {
+        try {
+            setIntegerValue(preRenderPoolSize, "preRenderPoolSize");
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name preRenderPoolSize: something is very wrong here.", e);
+        }
+    }
+}
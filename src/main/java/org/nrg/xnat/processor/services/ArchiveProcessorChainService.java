@@ -0,0 +1,44 @@
+/*
+ * web: org.nrg.xnat.processor.services.ArchiveProcessorChainService
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.processor.services;
+
+import org.nrg.xnat.processors.ArchiveProcessorChain;
+
+/**
+ * Compiles and caches the {@link ArchiveProcessorChain archive processor chain} for each SCP receiver, so importers
+ * can resolve the configured processors once per association or archive instead of once per DICOM instance.
+ */
+public interface ArchiveProcessorChainService {
+    /**
+     * Gets the current processor chain for the specified SCP receiver, compiling it if the processor configuration
+     * has changed since it was last compiled.
+     *
+     * @param aeAndPort The receiver AE title and port in the form <b>aeTitle:port</b>, or null for data that didn't
+     *                  come in through an SCP receiver.
+     *
+     * @return The processor chain for the receiver.
+     */
+    ArchiveProcessorChain getProcessorChain(final String aeAndPort);
+
+    /**
+     * Indicates whether the submitted chain was compiled from the current processor configuration.
+     *
+     * @param chain The chain to check.
+     *
+     * @return Returns <b>true</b> if the chain is still current, <b>false</b> if it should be fetched again.
+     */
+    boolean isCurrent(final ArchiveProcessorChain chain);
+
+    /**
+     * Discards all compiled chains. This should be called whenever archive processor instances are created, updated,
+     * or deleted.
+     */
+    void invalidate();
+}
@@ -0,0 +1,112 @@
+/*
+ * web: org.nrg.xnat.processor.services.impl.DefaultArchiveProcessorChainService
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.processor.services.impl;
+
+import com.google.common.collect.ImmutableList;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.nrg.xnat.archive.GradualDicomImporter;
+import org.nrg.xnat.entities.ArchiveProcessorInstance;
+import org.nrg.xnat.processor.services.ArchiveProcessorChainService;
+import org.nrg.xnat.processor.services.ArchiveProcessorInstanceService;
+import org.nrg.xnat.processors.AbstractArchiveProcessor;
+import org.nrg.xnat.processors.ArchiveProcessor;
+import org.nrg.xnat.processors.ArchiveProcessorChain;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+public class DefaultArchiveProcessorChainService implements ArchiveProcessorChainService {
+    @Autowired
+    public DefaultArchiveProcessorChainService(final ArchiveProcessorInstanceService service, final List<ArchiveProcessor> processors) {
+        _service = service;
+        for (final ArchiveProcessor processor : processors) {
+            _processors.put(processor.getClass().getName(), processor);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArchiveProcessorChain getProcessorChain(final String aeAndPort) {
+        final String                key     = StringUtils.defaultString(aeAndPort);
+        final long                  version = _version.get();
+        final ArchiveProcessorChain cached  = _chains.get(key);
+        if (cached != null && cached.getVersion() == version) {
+            return cached;
+        }
+        final ArchiveProcessorChain chain = compile(version, aeAndPort);
+        // Don't cache a chain if the configuration changed while it was being compiled.
+        if (version == _version.get()) {
+            _chains.put(key, chain);
+        }
+        return chain;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCurrent(final ArchiveProcessorChain chain) {
+        return chain != null && chain.getVersion() == _version.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidate() {
+        final long version = _version.incrementAndGet();
+        _chains.clear();
+        log.debug("Archive processor configuration changed, compiled processor chains are now at version {}", version);
+    }
+
+    private ArchiveProcessorChain compile(final long version, final String aeAndPort) {
+        final Map<String, List<Pair<ArchiveProcessorInstance, ArchiveProcessor>>> processors = new HashMap<>();
+        for (final String location : LOCATIONS) {
+            final List<ArchiveProcessorInstance> instances = _service.getAllEnabledSiteProcessorsInOrderForLocation(location);
+            if (instances == null || instances.isEmpty()) {
+                continue;
+            }
+            final List<Pair<ArchiveProcessorInstance, ArchiveProcessor>> links = new ArrayList<>();
+            for (final ArchiveProcessorInstance instance : instances) {
+                if (!AbstractArchiveProcessor.isConfiguredForScpReceiver(instance, aeAndPort)) {
+                    continue;
+                }
+                final ArchiveProcessor processor = _processors.get(instance.getProcessorClass());
+                if (processor == null) {
+                    log.warn("The archive processor instance {} is configured with the processor class {}, but no processor of that class is available", instance.getId(), instance.getProcessorClass());
+                }
+                links.add(new ImmutablePair<>(instance, processor));
+            }
+            processors.put(location, links);
+        }
+        log.debug("Compiled version {} of the archive processor chain for receiver {}", version, aeAndPort);
+        return new ArchiveProcessorChain(version, aeAndPort, processors);
+    }
+
+    private static final List<String> LOCATIONS = ImmutableList.of(GradualDicomImporter.NAME_OF_LOCATION_AT_BEGINNING_AFTER_DICOM_OBJECT_IS_READ,
+                                                                   GradualDicomImporter.NAME_OF_LOCATION_AFTER_PROJECT_HAS_BEEN_ASSIGNED,
+                                                                   GradualDicomImporter.NAME_OF_LOCATION_NEAR_END_AFTER_SESSION_HAS_BEEN_ADDED_TO_THE_PREARCHIVE_DATABASE);
+
+    private final ArchiveProcessorInstanceService              _service;
+    private final Map<String, ArchiveProcessor>                _processors = new HashMap<>();
+    private final ConcurrentMap<String, ArchiveProcessorChain> _chains     = new ConcurrentHashMap<>();
+    private final AtomicLong                                   _version    = new AtomicLong();
+}
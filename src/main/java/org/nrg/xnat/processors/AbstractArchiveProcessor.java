@@ -31,14 +31,35 @@ public abstract class AbstractArchiveProcessor implements ArchiveProcessor {
         return processorConfiguredForDataComingInToThisScpReceiverAndProject(sessionData, instance, aeParameters);
     }
 
-    protected boolean processorConfiguredForDataComingInToThisScpReceiverAndProject(final SessionData sessionData, ArchiveProcessorInstance instance, Map<String, Object> aeParameters) {
-        final Object aeTitle   = aeParameters.get(GradualDicomImporter.RECEIVER_AE_TITLE_PARAM);
-        final Object port      = aeParameters.get(GradualDicomImporter.RECEIVER_PORT_PARAM);
-        final String aeAndPort = aeTitle != null && port != null ? aeTitle.toString() + ':' + port : null;
+    /**
+     * Gets the receiver AE title and port from the submitted parameters in the form <b>aeTitle:port</b>.
+     *
+     * @param aeParameters The parameters passed to the importer.
+     *
+     * @return The receiver AE title and port, or null if the data didn't come in through an SCP receiver.
+     */
+    public static String getAeAndPort(final Map<String, Object> aeParameters) {
+        final Object aeTitle = aeParameters.get(GradualDicomImporter.RECEIVER_AE_TITLE_PARAM);
+        final Object port    = aeParameters.get(GradualDicomImporter.RECEIVER_PORT_PARAM);
+        return aeTitle != null && port != null ? aeTitle.toString() + ':' + port : null;
+    }
 
+    /**
+     * Indicates whether the SCP whitelist and blacklist for the processor instance allow data from the specified receiver.
+     *
+     * @param instance  The archive processor instance.
+     * @param aeAndPort The receiver AE title and port, or null if the data didn't come in through an SCP receiver.
+     *
+     * @return Returns <b>true</b> if the processor instance should process data from the receiver.
+     */
+    public static boolean isConfiguredForScpReceiver(final ArchiveProcessorInstance instance, final String aeAndPort) {
         final Set<String> scpWhitelist = instance.getScpWhitelist();
         final Set<String> scpBlacklist = instance.getScpBlacklist();
-        if (!scpWhitelist.isEmpty() && !scpWhitelist.contains(aeAndPort) || !scpBlacklist.isEmpty() && scpBlacklist.contains(aeAndPort)) {
+        return !(!scpWhitelist.isEmpty() && !scpWhitelist.contains(aeAndPort) || !scpBlacklist.isEmpty() && scpBlacklist.contains(aeAndPort));
+    }
+
+    protected boolean processorConfiguredForDataComingInToThisScpReceiverAndProject(final SessionData sessionData, ArchiveProcessorInstance instance, Map<String, Object> aeParameters) {
+        if (!isConfiguredForScpReceiver(instance, getAeAndPort(aeParameters))) {
             return false;
         }
         //This SCP receiver is set up to use this processor.
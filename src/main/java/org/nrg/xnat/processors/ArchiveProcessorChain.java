@@ -0,0 +1,107 @@
+/*
+ * web: org.nrg.xnat.processors.ArchiveProcessorChain
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.processors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.dcm4che2.data.DicomObject;
+import org.nrg.action.ServerException;
+import org.nrg.dicom.mizer.service.MizerService;
+import org.nrg.xnat.entities.ArchiveProcessorInstance;
+import org.nrg.xnat.helpers.prearchive.SessionData;
+import org.restlet.data.Status;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The enabled archive processor instances for a single SCP receiver, resolved to their processor beans and ordered by
+ * priority for each location in the import process. Chains are immutable: when the processor configuration changes, a
+ * new chain with a higher version is compiled rather than updating existing chains.
+ */
+@Slf4j
+public class ArchiveProcessorChain {
+    public ArchiveProcessorChain(final long version, final String aeAndPort, final Map<String, List<Pair<ArchiveProcessorInstance, ArchiveProcessor>>> processors) {
+        _version = version;
+        _aeAndPort = aeAndPort;
+        final ImmutableMap.Builder<String, List<Pair<ArchiveProcessorInstance, ArchiveProcessor>>> builder = ImmutableMap.builder();
+        for (final Map.Entry<String, List<Pair<ArchiveProcessorInstance, ArchiveProcessor>>> entry : processors.entrySet()) {
+            builder.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
+        }
+        _processors = builder.build();
+    }
+
+    /**
+     * The version of the processor configuration from which this chain was compiled.
+     *
+     * @return The configuration version.
+     */
+    public long getVersion() {
+        return _version;
+    }
+
+    /**
+     * The SCP receiver for which this chain was compiled, in the form <b>aeTitle:port</b>.
+     *
+     * @return The receiver AE title and port, or null if the chain is for data that didn't come in through an SCP receiver.
+     */
+    public String getAeAndPort() {
+        return _aeAndPort;
+    }
+
+    /**
+     * Indicates whether any processors are configured for the specified location.
+     *
+     * @param location The location in the import process.
+     *
+     * @return Returns <b>true</b> if there are processors to run at the location.
+     */
+    public boolean hasProcessors(final String location) {
+        return _processors.containsKey(location) && !_processors.get(location).isEmpty();
+    }
+
+    /**
+     * Runs each processor configured for the location that accepts the submitted data, in order, stopping if any
+     * processor indicates that processing should not continue.
+     *
+     * @param location     The location in the import process.
+     * @param dicom        The DICOM object being imported.
+     * @param session      The session the object is being imported into, if known at this location.
+     * @param mizer        The mizer service.
+     * @param aeParameters The parameters passed to the importer.
+     *
+     * @return Returns <b>true</b> if the data should continue to be imported, <b>false</b> otherwise.
+     *
+     * @throws ServerException When a processor fails or a configured processor class can't be found.
+     */
+    public boolean process(final String location, final DicomObject dicom, final SessionData session, final MizerService mizer, final Map<String, Object> aeParameters) throws ServerException {
+        if (!_processors.containsKey(location)) {
+            return true;
+        }
+        for (final Pair<ArchiveProcessorInstance, ArchiveProcessor> link : _processors.get(location)) {
+            final ArchiveProcessorInstance instance  = link.getKey();
+            final ArchiveProcessor         processor = link.getValue();
+            if (processor == null) {
+                throw new ServerException(Status.SERVER_ERROR_INTERNAL, "No archive processor of class " + instance.getProcessorClass() + " was found for the processor instance " + instance.getId());
+            }
+            if (processor.accept(dicom, session, mizer, instance, aeParameters) && !processor.process(dicom, session, mizer, instance, aeParameters)) {
+                log.debug("Archive processor instance {} at location {} indicated that processing should not continue", instance.getId(), location);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final long                                                                _version;
+    private final String                                                              _aeAndPort;
+    private final Map<String, List<Pair<ArchiveProcessorInstance, ArchiveProcessor>>> _processors;
+}
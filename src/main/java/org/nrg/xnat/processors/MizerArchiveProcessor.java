@@ -5,9 +5,11 @@ import org.dcm4che2.data.DicomObject;
 import org.nrg.action.ServerException;
 import org.nrg.config.entities.Configuration;
 import org.nrg.xnat.entities.ArchiveProcessorInstance;
+import org.nrg.xnat.helpers.merge.anonymize.CompiledAnonScriptCache;
 import org.nrg.xnat.helpers.merge.anonymize.DefaultAnonUtils;
 import org.nrg.xnat.helpers.prearchive.SessionData;
 import org.restlet.data.Status;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.nrg.dicom.mizer.service.MizerService;
 
@@ -16,6 +18,10 @@ import java.util.Map;
 @Component
 @Slf4j
 public class MizerArchiveProcessor extends AbstractArchiveProcessor {
+    @Autowired
+    public MizerArchiveProcessor(final CompiledAnonScriptCache anonScriptCache) {
+        _anonScriptCache = anonScriptCache;
+    }
 
     @Override
     public boolean process(final DicomObject dicomData, final SessionData sessionData, final MizerService mizer, ArchiveProcessorInstance instance, Map<String, Object> aeParameters) throws ServerException{
@@ -32,7 +38,7 @@ public class MizerArchiveProcessor extends AbstractArchiveProcessor {
                     subj = sessionData.getSubject();
                     folder = sessionData.getFolderName();
                 }
-                mizer.anonymize(dicomData, proj, subj, folder, c.getContents());
+                _anonScriptCache.anonymize(dicomData, scriptId, c.getContents(), proj, subj, folder);
             } else {
                 log.debug("Anonymization is not enabled, allowing session {} {} {} to proceed without anonymization.", sessionData.getProject(), sessionData.getSubject(), sessionData.getName());
             }
@@ -65,4 +71,6 @@ public class MizerArchiveProcessor extends AbstractArchiveProcessor {
             throw new ServerException(Status.SERVER_ERROR_INTERNAL, e);
         }
     }
+
+    private final CompiledAnonScriptCache _anonScriptCache;
 }
@@ -9,6 +9,7 @@
 
 package org.nrg.xnat.restlet.representations;
 
+import org.apache.commons.text.StringEscapeUtils;
 import org.nrg.xft.XFTTable;
 import org.restlet.data.MediaType;
 import org.restlet.resource.OutputRepresentation;
@@ -17,12 +18,14 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Hashtable;
 import java.util.Map;
 
 @SuppressWarnings("unused")
 public class CSVTableRepresentation extends OutputRepresentation {
 	XFTTable table = null;
+	StreamingTableQuery query = null;
 	Hashtable<String,Object> tableProperties = null;
 	Map<String,Map<String,String>> cp= new Hashtable<>();
 	
@@ -44,12 +47,50 @@ public class CSVTableRepresentation extends OutputRepresentation {
 		if(columnProperties!=null)this.cp=columnProperties;
 	}
 
+	/**
+	 * Writes the results of the query to the response as they're read from the database.
+	 */
+	public CSVTableRepresentation(StreamingTableQuery query,Map<String,Map<String,String>> columnProperties,Hashtable<String,Object> metaFields,MediaType mediaType) {
+		super(mediaType);
+		this.query=query;
+		this.tableProperties=metaFields;
+		if(columnProperties!=null)this.cp=columnProperties;
+	}
+
 	@Override
 	public void write(OutputStream os) throws IOException {
 		OutputStreamWriter sw = new OutputStreamWriter(os);
 		BufferedWriter writer = new BufferedWriter(sw);
-		table.toCSV(writer);
+		if(query!=null){
+			writeRows(writer);
+		}else{
+			table.toCSV(writer);
+		}
 	    writer.flush();
 	    
 	}
+
+	private void writeRows(final Writer writer) throws IOException {
+		query.stream(new StreamingTableQuery.RowHandler() {
+			@Override
+			public void columns(String[] columns) throws IOException {
+				writeLine(writer, columns);
+			}
+
+			@Override
+			public void row(Object[] values) throws IOException {
+				writeLine(writer, values);
+			}
+		});
+	}
+
+	private static void writeLine(final Writer writer, final Object[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				writer.write(",");
+			}
+			writer.write(values[i] == null ? "" : StringEscapeUtils.escapeCsv(values[i].toString()));
+		}
+		writer.write("\n");
+	}
 }
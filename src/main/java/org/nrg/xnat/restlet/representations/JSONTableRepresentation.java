@@ -9,6 +9,8 @@
 
 package org.nrg.xnat.restlet.representations;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.nrg.xft.XFTTable;
 import org.restlet.data.MediaType;
 import org.restlet.resource.OutputRepresentation;
@@ -17,6 +19,7 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -24,6 +27,7 @@ import java.util.Map;
 
 public class JSONTableRepresentation extends OutputRepresentation {
 	XFTTable table = null;
+	StreamingTableQuery query = null;
 	Hashtable<String, Object> tableProperties = null;
 	Map<String,Map<String,String>> cp=new Hashtable<String,Map<String,String>>();
 	
@@ -45,6 +49,17 @@ public class JSONTableRepresentation extends OutputRepresentation {
 		if(columnProperties!=null)this.cp=columnProperties; 
 	}
 
+	/**
+	 * Writes the results of the query to the response as they're read from the database. The number of rows is added
+	 * to the metadata as totalRecords unless the metadata already has a value for it.
+	 */
+	public JSONTableRepresentation(StreamingTableQuery query,Map<String,Map<String,String>> columnProperties,Hashtable<String,Object> metaFields,MediaType mediaType) {
+		super(mediaType);
+		this.query=query;
+		this.tableProperties=metaFields;
+		if(columnProperties!=null)this.cp=columnProperties;
+	}
+
 	@Override
 	public void write(OutputStream os) throws IOException {
 		OutputStreamWriter sw = new OutputStreamWriter(os);
@@ -71,7 +86,11 @@ public class JSONTableRepresentation extends OutputRepresentation {
 		    writer.write("],");
 	    }
 	    writer.write("\"Result\":");
-		table.toJSON(writer,cp);
+	    if(query!=null){
+	    	writeResult(writer);
+	    }else{
+	    	table.toJSON(writer,cp);
+	    }
 		if (tableProperties != null  && tableProperties.size() > 0) {
 			writer.write(", ");
 			String appendMeta = "";
@@ -103,6 +122,33 @@ public class JSONTableRepresentation extends OutputRepresentation {
 		writer.flush();
 	}
 	
+	private void writeResult(final Writer writer) throws IOException {
+		final JsonGenerator generator = JSON_FACTORY.createGenerator(writer);
+		generator.writeStartArray();
+		final long rows = query.stream(new StreamingTableQuery.RowHandler() {
+			private String[] columns;
+
+			@Override
+			public void columns(String[] columns) {
+				this.columns = columns;
+			}
+
+			@Override
+			public void row(Object[] values) throws IOException {
+				generator.writeStartObject();
+				for (int i = 0; i < values.length; i++) {
+					generator.writeStringField(columns[i], values[i] == null ? "" : values[i].toString());
+				}
+				generator.writeEndObject();
+			}
+		});
+		generator.writeEndArray();
+		generator.flush();
+		if (tableProperties != null && !tableProperties.containsKey(StreamingTableQuery.TOTAL_RECORDS)) {
+			tableProperties.put(StreamingTableQuery.TOTAL_RECORDS, rows);
+		}
+	}
+
 	private String flattenValue(Object v) {
 		if (v == null) return "\"\"";
 		if(v instanceof ArrayList){
@@ -124,4 +170,5 @@ public class JSONTableRepresentation extends OutputRepresentation {
 		}
 	}
 
+	private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 }
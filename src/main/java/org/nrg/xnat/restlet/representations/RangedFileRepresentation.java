@@ -0,0 +1,80 @@
+/*
+ * web: org.nrg.xnat.restlet.representations.RangedFileRepresentation
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.restlet.representations;
+
+import com.noelios.restlet.ext.servlet.ServletCall;
+import com.noelios.restlet.http.HttpRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnat.web.http.RangedFileDelivery;
+import org.restlet.data.Form;
+import org.restlet.data.MediaType;
+import org.restlet.data.Request;
+import org.restlet.data.Tag;
+import org.restlet.resource.FileRepresentation;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Date;
+
+/**
+ * A file representation with an entity tag and modification date, so that restlet answers conditional requests for
+ * it, that also delivers a single byte range when one's requested. Restlet doesn't handle ranges itself, so the status
+ * and <b>Content-Range</b> header for partial content are set directly on the servlet response just before the content
+ * is written. When the request didn't come through the servlet container, ranges are ignored and the whole file is
+ * delivered. See {@link RangedFileDelivery} for how requests are evaluated.
+ */
+@Slf4j
+public class RangedFileRepresentation extends FileRepresentation {
+    public RangedFileRepresentation(final File file, final MediaType mediaType, final String digest, final Request request) {
+        super(file, mediaType);
+        final HttpServletResponse response = getServletResponse(request);
+        final Form                headers  = response == null ? null : (Form) request.getAttributes().get(HEADERS_ATTRIBUTE);
+        _response = response;
+        _delivery = new RangedFileDelivery(file, digest, request.getMethod().getName(), name -> headers == null ? null : headers.getFirstValue(name, true));
+        setTag(new Tag(_delivery.getEntityTag(), !_delivery.isStrong()));
+        setModificationDate(new Date(_delivery.getLastModified()));
+        setSize(_delivery.getLength());
+    }
+
+    @Override
+    public void write(final OutputStream outputStream) throws IOException {
+        write(Channels.newChannel(outputStream));
+    }
+
+    @Override
+    public void write(final WritableByteChannel writableChannel) throws IOException {
+        if (_response != null) {
+            _response.setStatus(_delivery.getStatus());
+            _response.setHeader(RangedFileDelivery.ACCEPT_RANGES, "bytes");
+            final String contentRange = _delivery.getContentRange();
+            if (contentRange != null) {
+                _response.setHeader(RangedFileDelivery.CONTENT_RANGE, contentRange);
+            }
+        }
+        _delivery.transferTo(writableChannel);
+    }
+
+    private static HttpServletResponse getServletResponse(final Request request) {
+        if (request instanceof HttpRequest && ((HttpRequest) request).getHttpCall() instanceof ServletCall) {
+            return ((ServletCall) ((HttpRequest) request).getHttpCall()).getResponse();
+        }
+        log.debug("The request for {} didn't come through the servlet container, so byte ranges won't be delivered", request.getResourceRef());
+        return null;
+    }
+
+    private static final String HEADERS_ATTRIBUTE = "org.restlet.http.headers";
+
+    private final HttpServletResponse _response;
+    private final RangedFileDelivery  _delivery;
+}
@@ -0,0 +1,139 @@
+/*
+ * web: org.nrg.xnat.restlet.representations.StreamingTableQuery
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.restlet.representations;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.*;
+
+/**
+ * Runs a query for one of the table representations and hands each row to a {@link RowHandler} as it's read from the
+ * database, so the representation can write the row to the response without the result set ever being held in memory
+ * the way it is in an {@link org.nrg.xft.XFTTable}. Rows are read through a cursor: the query runs with auto-commit off
+ * and a fetch size, which is what the PostgreSQL driver needs to fetch rows in batches instead of all at once.
+ */
+@Slf4j
+public class StreamingTableQuery {
+    public static final String TOTAL_RECORDS      = "totalRecords";
+    public static final int    DEFAULT_FETCH_SIZE = 1000;
+
+    /**
+     * Receives the columns and rows from the query.
+     */
+    public interface RowHandler {
+        /**
+         * Called once before any rows with the column labels from the query.
+         *
+         * @param columns The column labels.
+         *
+         * @throws IOException When an error occurs writing the columns.
+         */
+        void columns(String[] columns) throws IOException;
+
+        /**
+         * Called for each row returned by the query. The array is reused for each row.
+         *
+         * @param values The values for the row, in the same order as the columns.
+         *
+         * @throws IOException When an error occurs writing the row.
+         */
+        void row(Object[] values) throws IOException;
+    }
+
+    public StreamingTableQuery(final JdbcTemplate template, final String query) {
+        this(template, query, DEFAULT_FETCH_SIZE);
+    }
+
+    public StreamingTableQuery(final JdbcTemplate template, final String query, final int fetchSize) {
+        _template = template;
+        _query = query;
+        _fetchSize = fetchSize;
+    }
+
+    public String getQuery() {
+        return _query;
+    }
+
+    /**
+     * Counts the rows the query returns. This is for representations that have to write the number of rows before the
+     * rows themselves.
+     *
+     * @return The number of rows returned by the query.
+     */
+    public long count() {
+        final Long count = _template.queryForObject("SELECT COUNT(*) FROM (" + _query + ") AS streaming_query", Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Runs the query, passing the columns and then each row to the handler.
+     *
+     * @param handler The handler for the columns and rows.
+     *
+     * @return The number of rows that were passed to the handler.
+     *
+     * @throws IOException When the handler throws an exception writing a row.
+     */
+    public long stream(final RowHandler handler) throws IOException {
+        final long start = System.currentTimeMillis();
+        try {
+            final Long rows = _template.execute((ConnectionCallback<Long>) connection -> stream(connection, handler));
+            log.debug("Streamed {} rows in {} ms for the query: {}", rows, System.currentTimeMillis() - start, _query);
+            return rows != null ? rows : 0;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long stream(final Connection connection, final RowHandler handler) throws SQLException {
+        // The connection may already be part of a transaction, in which case it's left alone.
+        final boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        try (final Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(_fetchSize);
+            try (final ResultSet results = statement.executeQuery(_query)) {
+                final ResultSetMetaData metaData = results.getMetaData();
+                final String[]          columns  = new String[metaData.getColumnCount()];
+                for (int index = 0; index < columns.length; index++) {
+                    columns[index] = metaData.getColumnLabel(index + 1);
+                }
+                handler.columns(columns);
+
+                final Object[] values = new Object[columns.length];
+                long           rows   = 0;
+                while (results.next()) {
+                    for (int index = 0; index < values.length; index++) {
+                        values[index] = results.getObject(index + 1);
+                    }
+                    handler.row(values);
+                    rows++;
+                }
+                return rows;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (autoCommit) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private final JdbcTemplate _template;
+    private final String       _query;
+    private final int          _fetchSize;
+}
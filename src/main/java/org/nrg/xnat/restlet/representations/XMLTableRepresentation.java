@@ -9,6 +9,7 @@
 
 package org.nrg.xnat.restlet.representations;
 
+import org.apache.commons.text.StringEscapeUtils;
 import org.nrg.xft.XFTTable;
 import org.restlet.data.MediaType;
 import org.restlet.resource.OutputRepresentation;
@@ -17,11 +18,13 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Hashtable;
 import java.util.Map;
 
 public class XMLTableRepresentation extends OutputRepresentation {
 	XFTTable table = null;
+	StreamingTableQuery query = null;
 	Hashtable<String,Object> tableProperties = null;
 	Map<String,Map<String,String>> cp=new Hashtable<String,Map<String,String>>();
 	
@@ -43,10 +46,24 @@ public class XMLTableRepresentation extends OutputRepresentation {
 		if(columnProperties!=null)this.cp=columnProperties;
 	}
 
+	/**
+	 * Writes the results of the query to the response as they're read from the database. The number of rows has to be
+	 * written before the rows, so unless the metadata already has a value for totalRecords, the rows are counted first.
+	 */
+	public XMLTableRepresentation(StreamingTableQuery query,Map<String,Map<String,String>> columnProperties,Hashtable<String,Object> metaFields,MediaType mediaType) {
+		super(mediaType);
+		this.query=query;
+		this.tableProperties=metaFields;
+		if(columnProperties!=null)this.cp=columnProperties;
+	}
+
 	@Override
 	public void write(OutputStream os) throws IOException {
 		OutputStreamWriter sw = new OutputStreamWriter(os);
 		BufferedWriter writer = new BufferedWriter(sw);
+		if(query!=null && tableProperties!=null && !tableProperties.containsKey(StreamingTableQuery.TOTAL_RECORDS)){
+			tableProperties.put(StreamingTableQuery.TOTAL_RECORDS, query.count());
+		}
 		writer.write("<ResultSet");
 		if(tableProperties!=null && tableProperties.size()>0){
 			for(Map.Entry<String,Object> entry : this.tableProperties.entrySet()){
@@ -56,10 +73,44 @@ public class XMLTableRepresentation extends OutputRepresentation {
 			}
 		}
 		writer.write(">");
-		table.toXMLList(writer,this.cp,null);
+		if(query!=null){
+			writeResults(writer);
+		}else{
+			table.toXMLList(writer,this.cp,null);
+		}
 		writer.write("</ResultSet>");
 	    writer.flush();
 	    
 	}
 
+	private void writeResults(final Writer writer) throws IOException {
+		writer.write("<results>");
+		query.stream(new StreamingTableQuery.RowHandler() {
+			@Override
+			public void columns(String[] columns) throws IOException {
+				writer.write("<columns>");
+				for (final String column : columns) {
+					writer.write("<column");
+					if(cp.get(column)!=null){
+						for(Map.Entry<String,String> property:cp.get(column).entrySet()){
+							writer.write(" " + property.getKey() + "=\"" + StringEscapeUtils.escapeXml10(property.getValue()) + "\"");
+						}
+					}
+					writer.write(">" + StringEscapeUtils.escapeXml10(column) + "</column>");
+				}
+				writer.write("</columns><rows>");
+			}
+
+			@Override
+			public void row(Object[] values) throws IOException {
+				writer.write("<row>");
+				for (final Object value : values) {
+					writer.write("<cell>" + (value == null ? "" : StringEscapeUtils.escapeXml10(value.toString())) + "</cell>");
+				}
+				writer.write("</row>");
+			}
+		});
+		writer.write("</rows></results>");
+	}
+
 }
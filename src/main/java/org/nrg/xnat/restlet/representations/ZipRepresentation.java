@@ -18,8 +18,8 @@ import org.jetbrains.annotations.NotNull;
 import org.nrg.xdat.XDAT;
 import org.nrg.xft.utils.zip.TarUtils;
 import org.nrg.xft.utils.zip.ZipI;
-import org.nrg.xft.utils.zip.ZipUtils;
 import org.nrg.xnat.restlet.resources.SecureResource;
+import org.nrg.xnat.utils.zip.ParallelZipWriter;
 import org.restlet.data.MediaType;
 import org.restlet.resource.OutputRepresentation;
 
@@ -71,15 +71,26 @@ public class ZipRepresentation extends OutputRepresentation {
     @Override
     public void write(final OutputStream output) throws IOException {
         final MediaType mediaType = getMediaType();
-        try (final ZipI zip = initializeZip(output, mediaType)) {
-            for (final ZipEntry zipEntry : _entries) {
-                if (zipEntry instanceof ZipFileEntry) {
-                    final File file = ((ZipFileEntry) zipEntry).getFile();
-                    if (!file.isDirectory()) {
-                        zip.write(zipEntry.getPath(), file);
-                    }
-                } else {
-                    zip.write(zipEntry.getPath(), ((ZipStreamEntry) zipEntry).getInputStream());
+        try {
+            if (mediaType.equals(MediaType.APPLICATION_GNU_TAR) || mediaType.equals(MediaType.APPLICATION_TAR)) {
+                try (final ZipI zip = initializeTar(output, mediaType)) {
+                    writeEntries(zip::write, zip::write);
+                }
+            } else {
+                try (final ParallelZipWriter zip = initializeZip(output)) {
+                    writeEntries((path, file) -> {
+                        if (zip.hasEntry(path)) {
+                            log.warn("Skipping duplicate zip entry {} for file {}", path, file.getAbsolutePath());
+                        } else {
+                            zip.write(path, file);
+                        }
+                    }, (path, input) -> {
+                        if (zip.hasEntry(path)) {
+                            log.warn("Skipping duplicate zip entry {}", path);
+                        } else {
+                            zip.write(path, input);
+                        }
+                    });
                 }
             }
         } finally {
@@ -223,28 +234,50 @@ public class ZipRepresentation extends OutputRepresentation {
         return _tokens.size() > 1 ? "various" : _tokens.get(0);
     }
 
+    private void writeEntries(final EntryWriter<File> files, final EntryWriter<InputStream> streams) throws IOException {
+        for (final ZipEntry zipEntry : _entries) {
+            if (zipEntry instanceof ZipFileEntry) {
+                final File file = ((ZipFileEntry) zipEntry).getFile();
+                if (!file.isDirectory()) {
+                    files.write(zipEntry.getPath(), file);
+                }
+            } else {
+                streams.write(zipEntry.getPath(), ((ZipStreamEntry) zipEntry).getInputStream());
+            }
+        }
+    }
+
     @NotNull
-    private ZipI initializeZip(final OutputStream output, final MediaType mediaType) throws IOException {
-        final ZipI zip;
+    private ZipI initializeTar(final OutputStream output, final MediaType mediaType) throws IOException {
+        final ZipI zip = new TarUtils();
         if (mediaType.equals(MediaType.APPLICATION_GNU_TAR)) {
-            zip = new TarUtils();
             zip.setOutputStream(output, ZipOutputStream.DEFLATED);
             setDownloadName(getTokenName() + ".tar.gz");
-            setDownloadable(true);
-        } else if (mediaType.equals(MediaType.APPLICATION_TAR)) {
-            zip = new TarUtils();
+        } else {
             zip.setOutputStream(output, ZipOutputStream.STORED);
             setDownloadName(getTokenName() + ".tar");
-            setDownloadable(true);
-        } else {
-            zip = new ZipUtils();
-            zip.setOutputStream(output, _compression);
-            setDownloadName(getTokenName() + ".zip");
-            setDownloadable(true);
         }
+        setDownloadable(true);
         return zip;
     }
 
+    /**
+     * Zip and XAR downloads are written with the {@link ParallelZipWriter}, which stores files that are already
+     * compressed and deflates the rest in parallel. When the configured compression method is STORED, every file is
+     * stored.
+     */
+    @NotNull
+    private ParallelZipWriter initializeZip(final OutputStream output) {
+        setDownloadName(getTokenName() + ".zip");
+        setDownloadable(true);
+        return new ParallelZipWriter(output, _compression);
+    }
+
+    @FunctionalInterface
+    private interface EntryWriter<T> {
+        void write(final String path, final T source) throws IOException;
+    }
+
     public abstract class ZipEntry {
         ZipEntry(final String path) {
             _path = path;
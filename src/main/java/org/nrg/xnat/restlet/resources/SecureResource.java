@@ -558,6 +558,41 @@ public abstract class SecureResource extends Resource {
         }
     }
 
+    /**
+     * Indicates whether results in the specified format can be written with {@link #representTable(StreamingTableQuery,
+     * MediaType, Hashtable, Map)} rather than from an {@link XFTTable}. Tables are still needed when the request sorts
+     * the results or when there's an extension representation for the format.
+     *
+     * @param mt The requested media type.
+     *
+     * @return Returns true if the results can be streamed from the database.
+     */
+    public boolean canStreamTable(final MediaType mt) {
+        return mt != null && (mt.equals(MediaType.TEXT_XML) || mt.equals(MediaType.APPLICATION_JSON) || mt.equals(MediaType.APPLICATION_EXCEL) || mt.equals(TEXT_CSV))
+               && getQueryVariable("sortBy") == null && !isQueryVariableFalse("streaming") && !getExtensionTableRepresentations().containsKey(mt.toString());
+    }
+
+    /**
+     * Writes the results of the query in the requested format as the rows are read from the database. This should only
+     * be called when {@link #canStreamTable(MediaType)} returns true for the media type.
+     *
+     * @param query            The query for the results.
+     * @param mt               The requested media type.
+     * @param params           The metadata for the results.
+     * @param columnProperties The column properties for the results.
+     *
+     * @return The representation for the results.
+     */
+    public Representation representTable(final StreamingTableQuery query, final MediaType mt, final Hashtable<String, Object> params, final Map<String, Map<String, String>> columnProperties) {
+        if (mt.equals(MediaType.TEXT_XML)) {
+            return new XMLTableRepresentation(query, columnProperties, params, MediaType.TEXT_XML);
+        } else if (mt.equals(MediaType.APPLICATION_JSON)) {
+            return new JSONTableRepresentation(query, columnProperties, params, MediaType.APPLICATION_JSON);
+        } else {
+            return new CSVTableRepresentation(query, columnProperties, params, mt);
+        }
+    }
+
     public String getCurrentURI() {
         return getRequest().getResourceRef().getPath();
     }
@@ -688,15 +723,27 @@ public abstract class SecureResource extends Resource {
     }
 
     public FileRepresentation representFile(final File file, final MediaType incoming) {
+        return representFile(file, incoming, null);
+    }
+
+    /**
+     * Represents the file so that conditional and byte range requests for it can be answered. When the file's digest is
+     * known, e.g. from its catalog entry, it's used as a strong entity tag for the file.
+     *
+     * @param file     The file to represent.
+     * @param incoming The requested media type.
+     * @param digest   The file's digest, if known.
+     *
+     * @return The representation of the file.
+     */
+    public FileRepresentation representFile(final File file, final MediaType incoming, final String digest) {
         final MediaType mediaType = buildMediaType(incoming, file.getName());
 
         if (forceDownload(file, mediaType)) {
             setContentDisposition(file.getName());
         }
 
-        final FileRepresentation representation = new FileRepresentation(file, mediaType);
-        representation.setModificationDate(new Date(file.lastModified()));
-        return representation;
+        return new RangedFileRepresentation(file, mediaType, digest, getRequest());
     }
 
     public boolean allowDataDeletion() {
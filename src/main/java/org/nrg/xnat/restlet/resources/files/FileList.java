@@ -805,7 +805,7 @@ public class FileList extends XNATCatalogTemplate {
                             }
                         } else {
                             // Return the requested file
-                            return getFileRepresentation(file, buildMediaType(mediaType, filename));
+                            return getFileRepresentation(file, buildMediaType(mediaType, filename), entry.getDigest());
                         }
                     } catch (ZipException e) {
                         getResponse().setStatus(Status.CLIENT_ERROR_UNSUPPORTED_MEDIA_TYPE, e.getMessage());
@@ -1135,13 +1135,13 @@ public class FileList extends XNATCatalogTemplate {
     }
 
     private FileRepresentation getFileRepresentation(File f, MediaType mt) {
-        return setFileRepresentation(f, mt);
+        return getFileRepresentation(f, mt, null);
     }
 
-    private FileRepresentation setFileRepresentation(File f, MediaType mt) {
+    private FileRepresentation getFileRepresentation(File f, MediaType mt, String digest) {
         FileAccessLogger.LogFileResourceAccess(getUser().getUsername(), getRequest(), f.getAbsolutePath(), "");
         setResponseHeader("Cache-Control", "must-revalidate");
-        return representFile(f, mt);
+        return representFile(f, mt, digest);
     }
 
     @Nullable
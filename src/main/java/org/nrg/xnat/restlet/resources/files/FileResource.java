@@ -367,7 +367,7 @@ public class FileResource extends ItemResource {
 					this.getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND,"Unable to identify specified file.");
 				}else{
 					File f = new File(catalogData.catPath, entry.getUri());
-					return representFile(f,mt);
+					return representFile(f,mt,entry.getDigest());
 				}
 				
 			} catch (ElementNotFoundException e) {
@@ -13,6 +13,7 @@ import com.noelios.restlet.ext.servlet.ServletCall;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.lang3.StringUtils;
+import org.nrg.xdat.XDAT;
 import org.nrg.xdat.collections.DisplayFieldCollection.DisplayFieldNotFoundException;
 import org.nrg.xdat.display.DisplayFieldReferenceI;
 import org.nrg.xdat.display.HTMLLink;
@@ -34,6 +35,7 @@ import org.nrg.xft.schema.Wrappers.XMLWrapper.SAXReader;
 import org.nrg.xft.security.UserI;
 import org.nrg.xft.utils.XftStringUtils;
 import org.nrg.xnat.restlet.presentation.RESTHTMLPresenter;
+import org.nrg.xnat.restlet.representations.StreamingTableQuery;
 import org.nrg.xnat.restlet.resources.SecureResource;
 import org.restlet.Context;
 import org.restlet.data.MediaType;
@@ -52,9 +54,10 @@ import java.util.*;
 
 public class SearchResource extends SecureResource {
     private static final Logger   logger    = LoggerFactory.getLogger(SearchResource.class);
-    private              XFTTable table     = null;
-    private              Long     rows      = null;
-    private              String   tableName = null;
+    private              XFTTable      table         = null;
+    private              DisplaySearch displaySearch = null;
+    private              Long          rows          = null;
+    private              String        tableName     = null;
 
     private String rootElementName = null;
 
@@ -210,7 +213,9 @@ public class SearchResource extends SecureResource {
                     if (mt != null && mt.equals(SecureResource.APPLICATION_XLIST)) {
                         table = (XFTTable) ds.execute(new RESTHTMLPresenter(TurbineUtils.GetRelativePath(ServletCall.getRequest(getRequest())), null, user, sortBy), user.getLogin());
                     } else {
-                        table = (XFTTable) ds.execute(null, user.getLogin());
+                        // The search is run in represent() once the response format is known, so that formats that
+                        // can be streamed don't load the whole search into a table first.
+                        displaySearch = ds;
                     }
                     //table=(XFTTable)ds.execute(null,user.getLogin());
 
@@ -268,6 +273,26 @@ public class SearchResource extends SecureResource {
 
     @Override
     public Representation represent(Variant variant) {
+        MediaType mt = overrideVariant(variant);
+
+        if (table == null && displaySearch != null) {
+            try {
+                if (canStreamTable(mt)) {
+                    // Write the rows to the response as they're read rather than loading the whole search into a table.
+                    // Without a presenter, execute() loads the table from the same query returned by getSQLQuery().
+                    if (rootElementName != null) {
+                        tableParams.put("rootElementName", rootElementName);
+                    }
+                    return representTable(new StreamingTableQuery(XDAT.getJdbcTemplate(), displaySearch.getSQLQuery(null)), mt, tableParams, cp);
+                }
+                table = (XFTTable) displaySearch.execute(null, getUser().getLogin());
+            } catch (Exception e) {
+                logger.error("Failed POST", e);
+                getResponse().setStatus(Status.SERVER_ERROR_INTERNAL);
+                return null;
+            }
+        }
+
         if (tableName != null) {
             tableParams.put("ID", tableName);
         }
@@ -282,8 +307,6 @@ public class SearchResource extends SecureResource {
             tableParams.put("rootElementName", rootElementName);
         }
 
-        MediaType mt = overrideVariant(variant);
-
         return representTable(table, mt, tableParams, cp);
     }
 
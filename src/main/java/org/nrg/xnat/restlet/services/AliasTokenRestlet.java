@@ -20,6 +20,7 @@ import org.nrg.xdat.security.helpers.Roles;
 import org.nrg.xdat.services.AliasTokenService;
 import org.nrg.xft.security.UserI;
 import org.nrg.xnat.restlet.resources.SecureResource;
+import org.nrg.xnat.security.VerifiedCredentialsCache;
 import org.restlet.Context;
 import org.restlet.data.MediaType;
 import org.restlet.data.Request;
@@ -150,6 +151,10 @@ public class AliasTokenRestlet extends SecureResource {
 
             case OP_INVALIDATE:
                 _service.invalidateToken(_token);
+                final VerifiedCredentialsCache verifiedCredentialsCache = XDAT.getContextService().getBean(VerifiedCredentialsCache.class);
+                if (verifiedCredentialsCache != null) {
+                    verifiedCredentialsCache.invalidateLogin(_token);
+                }
                 return new StringRepresentation("{\"result\": \"OK\"}", MediaType.APPLICATION_JSON);
 
             default:
@@ -0,0 +1,260 @@
+/*
+ * web: org.nrg.xnat.security.VerifiedCredentialsCache
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.xdat.entities.AliasToken;
+import org.nrg.xdat.om.XdatUser;
+import org.nrg.xdat.preferences.SiteConfigPreferences;
+import org.nrg.xdat.services.AliasTokenService;
+import org.nrg.xft.event.XftItemEventI;
+import org.nrg.xft.event.methods.AbstractXftItemEventHandlerMethod;
+import org.nrg.xft.event.methods.XftItemEventCriteria;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnat.security.preferences.SecurityPreferences;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.core.Authentication;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches recently verified credentials for basic and alias token authentication. Scripted clients usually send
+ * credentials with every request, so without this each request runs through the full authentication provider chain and
+ * records another login. Passwords and token secrets aren't stored: each entry holds a keyed hash of the credentials
+ * along with the authentication that was returned when they were verified. Entries expire after the
+ * {@link SecurityPreferences#getVerifiedCredentialsTimeout() configured number of seconds}, setting that to 0 disables
+ * the cache. All entries for a user are removed whenever the user's account is updated, e.g. when the password is
+ * changed or roles are added or removed.
+ * <p>
+ * Accounts can also be locked or disabled, and alias tokens invalidated, without an event for the user, e.g. by failed
+ * logins or the token cleanup. Each time an entry is used, the account is checked to still be enabled and not locked
+ * out and, for an alias token, the token is checked to still be valid. Single-use alias tokens are never cached, since
+ * they have to be consumed by the alias token service when they're used.
+ */
+@Slf4j
+public class VerifiedCredentialsCache extends AbstractXftItemEventHandlerMethod {
+    public VerifiedCredentialsCache(final SecurityPreferences preferences, final SiteConfigPreferences siteConfigPreferences, final AliasTokenService aliasTokenService, final NamedParameterJdbcTemplate template) {
+        super(XftItemEventCriteria.getXsiTypeCriteria(XdatUser.SCHEMA_ELEMENT_NAME));
+        _preferences = preferences;
+        _siteConfigPreferences = siteConfigPreferences;
+        _aliasTokenService = aliasTokenService;
+        _template = template;
+        _cache = CacheBuilder.newBuilder().maximumSize(Math.max(1, preferences.getVerifiedCredentialsMaxEntries())).expireAfterWrite(MAX_TIMEOUT, TimeUnit.SECONDS).build();
+        final byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        _key = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    /**
+     * Gets the authentication for the login if the same credentials were verified within the configured timeout and the
+     * account and alias token are still valid.
+     *
+     * @param login    The login as submitted, including the provider prefix if there was one.
+     * @param password The submitted password or alias token secret.
+     *
+     * @return The authentication from when the credentials were verified, or null if they need to be verified.
+     */
+    public Authentication getAuthentication(final String login, final String password) {
+        final long timeout = getTimeout();
+        if (timeout <= 0) {
+            return null;
+        }
+        final Entry entry = _cache.getIfPresent(login);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.getVerifiedAt() > timeout) {
+            _cache.asMap().remove(login, entry);
+            return null;
+        }
+        if (!MessageDigest.isEqual(entry.getDigest(), digest(password))) {
+            return null;
+        }
+        if (!isAccountUsable(entry.getUsername()) || !isTokenUsable(login, entry.getUsername())) {
+            log.debug("The account or alias token for the login {} is no longer valid, removing its verified credentials", login);
+            _cache.asMap().remove(login, entry);
+            return null;
+        }
+        return entry.getAuthentication();
+    }
+
+    /**
+     * Stores the authentication for credentials that were just verified by the authentication providers. Logins with
+     * single-use alias tokens aren't stored.
+     *
+     * @param login          The login as submitted, including the provider prefix if there was one.
+     * @param password       The submitted password or alias token secret.
+     * @param authentication The authentication returned by the authentication providers.
+     */
+    public void putAuthentication(final String login, final String password, final Authentication authentication) {
+        if (getTimeout() <= 0 || authentication == null || !authentication.isAuthenticated()) {
+            return;
+        }
+        final Object principal = authentication.getPrincipal();
+        final String username  = principal instanceof UserI ? ((UserI) principal).getUsername() : authentication.getName();
+        if (!isTokenUsable(login, username)) {
+            log.debug("Not caching the verified credentials for the login {}, the alias token is single-use or no longer valid", login);
+            return;
+        }
+        _cache.put(login, new Entry(digest(password), authentication, username));
+    }
+
+    /**
+     * Indicates whether a login should be recorded for a request authenticated from the cache. This returns true at
+     * most once per {@link SecurityPreferences#getVerifiedCredentialsLoginInterval() configured interval} for each
+     * entry, so that frequent requests don't each add a login record and access log entry.
+     *
+     * @param login The login as submitted, including the provider prefix if there was one.
+     *
+     * @return Returns true if the login should be recorded.
+     */
+    public boolean shouldRecordLogin(final String login) {
+        final Entry entry = _cache.getIfPresent(login);
+        return entry == null || entry.claimLoginRecord(TimeUnit.SECONDS.toMillis(_preferences.getVerifiedCredentialsLoginInterval()));
+    }
+
+    /**
+     * Removes any entries for the login, with or without a provider prefix. This is used when an alias token is
+     * invalidated, so that its entries are removed right away rather than when they're next used.
+     *
+     * @param login The login or alias to remove.
+     */
+    public void invalidateLogin(final String login) {
+        _cache.asMap().keySet().removeIf(key -> StringUtils.equals(key, login) || StringUtils.endsWith(key, "/" + login));
+        log.debug("Removed verified credentials for the login {}", login);
+    }
+
+    /**
+     * Removes all entries that authenticated as the specified user.
+     *
+     * @param username The username of the user whose entries should be removed.
+     */
+    public void invalidateUser(final String username) {
+        _cache.asMap().entrySet().removeIf(entry -> StringUtils.equals(entry.getValue().getUsername(), username));
+        log.debug("Removed verified credentials for the user {}", username);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void invalidateAll() {
+        _cache.invalidateAll();
+    }
+
+    @Override
+    protected boolean handleEventImpl(final XftItemEventI event) {
+        final String username = event.getId();
+        if (StringUtils.isBlank(username)) {
+            log.debug("Got a user event without a username, removing all verified credentials: {}", event);
+            invalidateAll();
+        } else {
+            invalidateUser(username);
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the user's account is still enabled and hasn't been locked out by failed logins. Lockouts and
+     * failed login counts are kept in the user auth table, which doesn't send a user event when it's updated.
+     */
+    private boolean isAccountUsable(final String username) {
+        final int           maxFailedLogins = _siteConfigPreferences.getMaxFailedLogins();
+        final List<Boolean> usable          = _template.query(QUERY_ACCOUNT_STATE, new MapSqlParameterSource("username", username), (results, rowNum) -> results.getInt("enabled") == 1 && (maxFailedLogins <= 0 || results.getInt("failed_login_attempts") < maxFailedLogins));
+        return usable.size() == 1 && usable.get(0);
+    }
+
+    /**
+     * Checks that the alias token for the login, if the login is an alias, still exists, is enabled, belongs to the
+     * user, and isn't single-use. Logins that aren't aliases always pass this check.
+     */
+    private boolean isTokenUsable(final String login, final String username) {
+        final String alias = StringUtils.contains(login, '/') ? StringUtils.substringAfter(login, "/") : login;
+        if (!AliasToken.isAliasFormat(alias)) {
+            return true;
+        }
+        final AliasToken token = _aliasTokenService.locateToken(alias);
+        return token != null && token.isEnabled() && !token.isSingleUse() && StringUtils.equals(token.getXdatUserId(), username);
+    }
+
+    private long getTimeout() {
+        return TimeUnit.SECONDS.toMillis(Math.min(MAX_TIMEOUT, _preferences.getVerifiedCredentialsTimeout()));
+    }
+
+    private byte[] digest(final String password) {
+        try {
+            final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(_key);
+            return mac.doFinal(StringUtils.defaultString(password).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("The " + HMAC_ALGORITHM + " algorithm should always be available", e);
+        }
+    }
+
+    private static class Entry {
+        Entry(final byte[] digest, final Authentication authentication, final String username) {
+            _digest = digest;
+            _authentication = authentication;
+            _username = username;
+            _verifiedAt = System.currentTimeMillis();
+            _lastRecorded = new AtomicLong(_verifiedAt);
+        }
+
+        byte[] getDigest() {
+            return _digest;
+        }
+
+        Authentication getAuthentication() {
+            return _authentication;
+        }
+
+        String getUsername() {
+            return _username;
+        }
+
+        long getVerifiedAt() {
+            return _verifiedAt;
+        }
+
+        boolean claimLoginRecord(final long interval) {
+            final long now          = System.currentTimeMillis();
+            final long lastRecorded = _lastRecorded.get();
+            return now - lastRecorded >= interval && _lastRecorded.compareAndSet(lastRecorded, now);
+        }
+
+        private final byte[]         _digest;
+        private final Authentication _authentication;
+        private final String         _username;
+        private final long           _verifiedAt;
+        private final AtomicLong     _lastRecorded;
+    }
+
+    private static final String HMAC_ALGORITHM      = "HmacSHA256";
+    private static final long   MAX_TIMEOUT         = 3600;
+    private static final String QUERY_ACCOUNT_STATE = "SELECT u.enabled, coalesce(max(a.failed_login_attempts), 0) AS failed_login_attempts FROM xdat_user u LEFT JOIN xhbm_xdat_user_auth a ON u.login = a.xdat_username WHERE u.login = :username GROUP BY u.enabled";
+
+    private final SecurityPreferences        _preferences;
+    private final SiteConfigPreferences      _siteConfigPreferences;
+    private final AliasTokenService          _aliasTokenService;
+    private final NamedParameterJdbcTemplate _template;
+    private final Cache<String, Entry>       _cache;
+    private final SecretKeySpec              _key;
+}
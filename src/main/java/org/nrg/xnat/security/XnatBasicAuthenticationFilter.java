@@ -61,6 +61,11 @@ public class XnatBasicAuthenticationFilter extends BasicAuthenticationFilter {
         _authenticationStrategy = strategy;
     }
 
+    @Autowired
+    public void setVerifiedCredentialsCache(final VerifiedCredentialsCache verifiedCredentialsCache) {
+        _verifiedCredentialsCache = verifiedCredentialsCache;
+    }
+
     @Override
     protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response, final FilterChain chain) throws IOException, ServletException {
         final Pair<String, String> credentials;
@@ -82,24 +87,23 @@ public class XnatBasicAuthenticationFilter extends BasicAuthenticationFilter {
             final String password = credentials.getRight();
 
             if (StringUtils.isNotBlank(username) && authenticationIsRequired(username)) {
-                final UsernamePasswordAuthenticationToken authRequest;
-                if (StringUtils.isBlank(providerName)) {
-                    authRequest = _providerManager.buildUPTokenForAuthMethod(_providerManager.retrieveAuthMethod(username),
-                            username, password);
-                } else {
-                    authRequest = _providerManager.buildUPTokenForProviderName(providerName, username, password);
-                }
-                authRequest.setDetails(_authenticationDetailsSource.buildDetails(request));
-
+                final String login = credentials.getLeft();
                 try {
-                    final Authentication authResult = getAuthenticationManager().authenticate(authRequest);
+                    final Authentication verified   = _verifiedCredentialsCache.getAuthentication(login, password);
+                    final Authentication authResult = verified != null ? verified : getAuthenticationManager().authenticate(buildAuthenticationRequest(request, providerName, username, password));
                     _authenticationStrategy.onAuthentication(authResult, request, response);
 
-                    AccessLogger.LogServiceAccess(username, request, "Authentication", "SUCCESS");
-                    log.debug("Authentication success, got principal of type {}", authResult.getClass().getName());
-
                     SecurityContextHolder.getContext().setAuthentication(authResult);
-                    onSuccessfulAuthentication(request, response, authResult);
+                    if (verified == null) {
+                        _verifiedCredentialsCache.putAuthentication(login, password, authResult);
+                    }
+                    if (verified == null || _verifiedCredentialsCache.shouldRecordLogin(login)) {
+                        AccessLogger.LogServiceAccess(username, request, "Authentication", "SUCCESS");
+                        log.debug("Authentication success, got principal of type {}", authResult.getClass().getName());
+                        onSuccessfulAuthentication(request, response, authResult);
+                    } else {
+                        log.trace("Authenticated {} with recently verified credentials", username);
+                    }
                 } catch (AuthenticationException failed) {
                     // Authentication failed
                     log.info("Authentication request for user: '{}' failed: {}", username, failed.getMessage());
@@ -129,6 +133,18 @@ public class XnatBasicAuthenticationFilter extends BasicAuthenticationFilter {
         super.onSuccessfulAuthentication(request, response, authentication);
     }
 
+    private UsernamePasswordAuthenticationToken buildAuthenticationRequest(final HttpServletRequest request, final String providerName, final String username, final String password) {
+        final UsernamePasswordAuthenticationToken authRequest;
+        if (StringUtils.isBlank(providerName)) {
+            authRequest = _providerManager.buildUPTokenForAuthMethod(_providerManager.retrieveAuthMethod(username),
+                    username, password);
+        } else {
+            authRequest = _providerManager.buildUPTokenForProviderName(providerName, username, password);
+        }
+        authRequest.setDetails(_authenticationDetailsSource.buildDetails(request));
+        return authRequest;
+    }
+
     private boolean authenticationIsRequired(final String username) {
         // Only re-authenticate if username doesn't match SecurityContextHolder and user isn't authenticated
         // (see SEC-53)
@@ -165,5 +181,6 @@ public class XnatBasicAuthenticationFilter extends BasicAuthenticationFilter {
     private final AliasTokenService              _aliasTokenService;
     private       XnatProviderManager            _providerManager;
     private       SessionAuthenticationStrategy  _authenticationStrategy;
+    private       VerifiedCredentialsCache       _verifiedCredentialsCache;
     private final NamedParameterJdbcTemplate     _template;
 }
@@ -39,4 +39,43 @@ public class SecurityPreferences extends EventTriggeringAbstractPreferenceBean {
             log.error("Invalid preference name 'allowInsecureCookies': something is very wrong here.", e);
         }
     }
+
+    @NrgPreference(defaultValue = "60")
+    public int getVerifiedCredentialsTimeout() {
+        return getIntegerValue("verifiedCredentialsTimeout");
+    }
+
+    public void setVerifiedCredentialsTimeout(final int verifiedCredentialsTimeout) {
+        try {
+            setIntegerValue(verifiedCredentialsTimeout, "verifiedCredentialsTimeout");
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'verifiedCredentialsTimeout': something is very wrong here.", e);
+        }
+    }
+
+    @NrgPreference(defaultValue = "1000")
+    public int getVerifiedCredentialsMaxEntries() {
+        return getIntegerValue("verifiedCredentialsMaxEntries");
+    }
+
+    public void setVerifiedCredentialsMaxEntries(final int verifiedCredentialsMaxEntries) {
+        try {
+            setIntegerValue(verifiedCredentialsMaxEntries, "verifiedCredentialsMaxEntries");
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'verifiedCredentialsMaxEntries': something is very wrong here.", e);
+        }
+    }
+
+    @NrgPreference(defaultValue = "300")
+    public int getVerifiedCredentialsLoginInterval() {
+        return getIntegerValue("verifiedCredentialsLoginInterval");
+    }
+
+    public void setVerifiedCredentialsLoginInterval(final int verifiedCredentialsLoginInterval) {
+        try {
+            setIntegerValue(verifiedCredentialsLoginInterval, "verifiedCredentialsLoginInterval");
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'verifiedCredentialsLoginInterval': something is very wrong here.", e);
+        }
+    }
 }
@@ -91,6 +91,19 @@ public interface CatalogService {
      */
     CatCatalogI getCachedCatalog(final UserI user, final String catalogId) throws InsufficientPrivilegesException;
 
+    /**
+     * Retrieves the file in which the catalog with the submitted ID is cached. This is useful when delivering the
+     * catalog as is, since the file can be used to answer conditional and byte range requests.
+     *
+     * @param user      The user requesting the catalog.
+     * @param catalogId The ID of the catalog to be retrieved.
+     *
+     * @return The file containing the specified catalog.
+     *
+     * @throws InsufficientPrivilegesException When the user doesn't have access to one or more requested resources.
+     */
+    File getCachedCatalogFile(final UserI user, final String catalogId) throws InsufficientPrivilegesException;
+
     /**
      * Returns the size of the requested catalog. This is useful when making the catalog available for download.
      *
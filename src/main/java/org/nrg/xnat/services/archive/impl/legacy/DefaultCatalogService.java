@@ -16,6 +16,7 @@ import static org.nrg.xnat.restlet.util.XNATRestConstants.getPrearchiveTimestamp
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
@@ -106,8 +107,9 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -159,138 +161,36 @@ public class DefaultCatalogService implements CatalogService {
         final List<String> unescapedScanTypes   = unescapeList(scanTypes);
         final List<String> unescapedScanFormats = unescapeList(scanFormats);
 
-        final AtomicLong totalSize              = new AtomicLong();
-        final AtomicLong resourcesOfUnknownSize = new AtomicLong();
-
         final Map<String, Map<String, Map<String, String>>> projects = parseAndVerifySessions(resolvedUser, sessions, unescapedScanTypes, unescapedScanFormats);
 
+        // Look up the scans, resources, reconstructions, and assessors for all of the sessions at once, then build the
+        // session catalogs on the catalog builder pool. The session catalogs are added in the same order as they'd be
+        // built one after the other.
+        final SessionRows sessionRows = findSessionRows(projects, unescapedScanTypes, unescapedScanFormats, resources, reconstructions, assessors);
+
+        final LongAdder                      totalSize              = new LongAdder();
+        final LongAdder                      resourcesOfUnknownSize = new LongAdder();
+        final List<Callable<CatCatalogBean>> tasks                  = new ArrayList<>();
         for (final String project : projects.keySet()) {
             final Map<String, Map<String, String>> subjects = projects.get(project);
             for (final String subject : subjects.keySet()) {
                 final Map<String, String> sessionMap = subjects.get(subject);
-                final Set<String>         sessionIds = sessionMap.keySet();
-                for (final String sessionId : sessionIds) {
+                for (final String sessionId : sessionMap.keySet()) {
                     final String label = sessionMap.get(sessionId);
-
-                    final CatCatalogBean sessionCatalog = new CatCatalogBean();
-                    sessionCatalog.setId(sessionId);
-                    sessionCatalog.setDescription("Project: " + project + ", subject: " + subject + ", label: " + label);
-
-                    CatCatalogI               sessionsByScanTypesAndFormats    = null;
-                    final Map<String, Object> sessionsByScanTypesAndFormatsMap = getSessionScans(project, subject, label, sessionId, unescapedScanTypes, unescapedScanFormats, options);
-                    if (sessionsByScanTypesAndFormatsMap != null) {
-                        Object catalogObj = sessionsByScanTypesAndFormatsMap.get("catalog");
-                        if (catalogObj != null && CatCatalogI.class.isAssignableFrom(catalogObj.getClass())) {
-                            sessionsByScanTypesAndFormats = (CatCatalogI) catalogObj;
-                        }
-                        if (withSize) {
-                            try {
-                                Object sizeObj = sessionsByScanTypesAndFormatsMap.get("size");
-                                long   objSize = Long.parseLong(sizeObj.toString());
-                                totalSize.getAndAdd(objSize);
-                            } catch (Exception ignored) {
-                            }
-                            try {
-                                Object unknownObj   = sessionsByScanTypesAndFormatsMap.get("resourcesOfUnknownSize");
-                                long   unknownCount = Long.parseLong(unknownObj.toString());
-                                resourcesOfUnknownSize.getAndAdd(unknownCount);
-                            } catch (Exception ignored) {
-                            }
-                        }
-                    }
-                    if (sessionsByScanTypesAndFormats != null) {
-                        addSafeEntrySet(sessionCatalog, sessionsByScanTypesAndFormats);
-                    }
-
-                    CatCatalogI               resourcesCatalog = null;
-                    final Map<String, Object> resourcesMap     = getRelatedData(project, subject, label, sessionId, resources, "resources", options);
-                    if (resourcesMap != null) {
-                        Object catalogObj = resourcesMap.get("catalog");
-                        if (catalogObj != null && CatCatalogI.class.isAssignableFrom(catalogObj.getClass())) {
-                            resourcesCatalog = (CatCatalogI) catalogObj;
-                        }
-                        if (withSize) {
-                            try {
-                                Object sizeObj = resourcesMap.get("size");
-                                long   objSize = Long.parseLong(sizeObj.toString());
-                                totalSize.getAndAdd(objSize);
-                            } catch (Exception ignored) {
-                            }
-                            try {
-                                Object unknownObj   = resourcesMap.get("resourcesOfUnknownSize");
-                                long   unknownCount = Long.parseLong(unknownObj.toString());
-                                resourcesOfUnknownSize.getAndAdd(unknownCount);
-                            } catch (Exception ignored) {
-                            }
-                        }
-                    }
-                    if (resourcesCatalog != null) {
-                        addSafeEntrySet(sessionCatalog, resourcesCatalog);
-                    }
-
-                    CatCatalogI               reconstructionsCatalog = null;
-                    final Map<String, Object> reconstructionsMap     = getRelatedData(project, subject, subject, sessionId, reconstructions, "reconstructions", options);
-                    if (reconstructionsMap != null) {
-                        Object catalogObj = reconstructionsMap.get("catalog");
-                        if (catalogObj != null && CatCatalogI.class.isAssignableFrom(catalogObj.getClass())) {
-                            reconstructionsCatalog = (CatCatalogI) catalogObj;
-                        }
-                        if (withSize) {
-                            try {
-                                Object sizeObj = reconstructionsMap.get("size");
-                                long   objSize = Long.parseLong(sizeObj.toString());
-                                totalSize.getAndAdd(objSize);
-                            } catch (Exception ignored) {
-                            }
-                            try {
-                                Object unknownObj   = reconstructionsMap.get("resourcesOfUnknownSize");
-                                long   unknownCount = Long.parseLong(unknownObj.toString());
-                                resourcesOfUnknownSize.getAndAdd(unknownCount);
-                            } catch (Exception ignored) {
-                            }
-                        }
-                    }
-                    if (reconstructionsCatalog != null) {
-                        addSafeEntrySet(sessionCatalog, reconstructionsCatalog);
-                    }
-
-                    CatCatalogI               assessorsCatalog = null;
-                    final Map<String, Object> assessorsMap     = getSessionAssessors(project, subject, sessionId, assessors, options, resolvedUser);
-                    if (assessorsMap != null) {
-                        Object catalogObj = assessorsMap.get("catalog");
-                        if (catalogObj != null && CatCatalogI.class.isAssignableFrom(catalogObj.getClass())) {
-                            assessorsCatalog = (CatCatalogI) catalogObj;
-                        }
-                        if (withSize) {
-                            try {
-                                Object sizeObj = assessorsMap.get("size");
-                                long   objSize = Long.parseLong(sizeObj.toString());
-                                totalSize.getAndAdd(objSize);
-                            } catch (Exception ignored) {
-                            }
-                            try {
-                                Object unknownObj   = assessorsMap.get("resourcesOfUnknownSize");
-                                long   unknownCount = Long.parseLong(unknownObj.toString());
-                                resourcesOfUnknownSize.getAndAdd(unknownCount);
-                            } catch (Exception ignored) {
-                            }
-                        }
-                    }
-                    if (assessorsCatalog != null) {
-                        addSafeEntrySet(sessionCatalog, assessorsCatalog);
-                    }
-
-                    catalog.addSets_entryset(sessionCatalog);
+                    tasks.add(() -> buildSessionCatalog(project, subject, label, sessionId, sessionRows, options, resolvedUser, totalSize, resourcesOfUnknownSize));
                 }
             }
         }
+        for (final CatCatalogBean sessionCatalog : buildSessionCatalogs(tasks)) {
+            catalog.addSets_entryset(sessionCatalog);
+        }
 
         storeToCache(resolvedUser, catalog);
 
         final Map<String, String> idAndSize = new HashMap<>();
         idAndSize.put("id", catalog.getId());
-        idAndSize.put("size", totalSize.toString());
-        idAndSize.put("resourcesOfUnknownSize", resourcesOfUnknownSize.toString());
+        idAndSize.put("size", withSize ? totalSize.toString() : "0");
+        idAndSize.put("resourcesOfUnknownSize", withSize ? resourcesOfUnknownSize.toString() : "0");
         return idAndSize;
     }
 
@@ -304,6 +204,15 @@ public class DefaultCatalogService implements CatalogService {
         return catalog;
     }
 
+    @Override
+    public File getCachedCatalogFile(final UserI user, final String catalogId) throws InsufficientPrivilegesException {
+        final File file = _userDataCache.getUserDataCacheFile(user, Paths.get("catalogs", catalogId + ".xml"));
+        if (!file.exists()) {
+            throw new InsufficientPrivilegesException(user.getUsername());
+        }
+        return file;
+    }
+
     @Override
     public long getCatalogSize(final UserI user, final String catalogId)
             throws InsufficientPrivilegesException, IOException {
@@ -1759,41 +1668,147 @@ public class DefaultCatalogService implements CatalogService {
         return scanTypes.stream().filter(Objects::nonNull).map(type -> StringUtils.replace(type, "\\", "\\\\")).collect(Collectors.toList());
     }
 
-    private Map<String, Object> getSessionScans(final String project, final String subject, final String label, final String session, final List<String> scanTypes, final List<String> scanFormats, final DownloadArchiveOptions options) {
-        if (StringUtils.isBlank(session)) {
-            throw new NrgServiceRuntimeException(NrgServiceError.Uninitialized, "Got a blank session to retrieve, that shouldn't happen.");
+    /**
+     * Finds the scans, resources, reconstructions, and assessors for all of the sessions in the download with one query
+     * for each type rather than one query per session for each type. Assessors are queried once per project, since the
+     * assessor labels and sharing depend on the project through which the session is being downloaded.
+     */
+    private SessionRows findSessionRows(final Map<String, Map<String, Map<String, String>>> projects, final List<String> scanTypes, final List<String> scanFormats, final List<String> resources, final List<String> reconstructions, final List<String> assessorTypes) {
+        final Map<String, Set<String>> sessionIdsByProject = new HashMap<>();
+        final Set<String>              sessionIds          = new HashSet<>();
+        for (final String project : projects.keySet()) {
+            final Set<String> projectSessionIds = projects.get(project).values().stream().flatMap(sessionMap -> sessionMap.keySet().stream()).collect(Collectors.toSet());
+            sessionIdsByProject.put(project, projectSessionIds);
+            sessionIds.addAll(projectSessionIds);
+        }
+        if (sessionIds.isEmpty()) {
+            return new SessionRows(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
         }
 
+        final Map<String, List<Map<String, Object>>> scans;
         // If there's any one of these that is null or has no value, that should
         // filter out everything, so don't even bother with the whole exercise.
         if (isAnyBlankList(scanTypes, scanFormats)) {
-            return null;
-        }
-
-        final AtomicLong totalSize              = new AtomicLong();
-        final AtomicLong resourcesOfUnknownSize = new AtomicLong();
-
-        final CatCatalogBean catalog = new CatCatalogBean();
-        catalog.setId("RAW");
-        try {
-            final MapSqlParameterSource parameters = new MapSqlParameterSource();
-            parameters.addValue("sessionId", session);
-
+            scans = Collections.emptyMap();
+        } else {
             final List<String> scanTypesWithNullRemoved   = cleanupScanTypes(scanTypes);
             final List<String> scanFormatsWithNullRemoved = cleanupScanFormats(scanFormats);
 
+            final MapSqlParameterSource parameters = new MapSqlParameterSource();
             parameters.addValue("scanTypes", scanTypesWithNullRemoved);
             parameters.addValue("scanFormats", scanFormatsWithNullRemoved);
 
             final String scanTypesClause     = getScanQueryClause(scanTypes, scanTypesWithNullRemoved, SCAN_TYPE_CLAUSES);
             final String scanFormatsClause   = getScanQueryClause(scanFormats, scanFormatsWithNullRemoved, SCAN_FORMAT_CLAUSES);
             final String scansQueryToPerform = StringSubstitutor.replace(QUERY_FIND_SCANS_BY_TYPE_AND_FORMAT, ImmutableMap.of("scanTypesClause", scanTypesClause, "scanFormatsClause", scanFormatsClause));
+            scans = queryBySession(scansQueryToPerform, parameters, sessionIds, "session_id");
+        }
 
-            final List<Map<String, Object>> scans = _parameterized.queryForList(scansQueryToPerform, parameters);
-            if (scans.isEmpty()) {
-                return null;
+        final Map<String, List<Map<String, Object>>> assessors = new HashMap<>();
+        if (assessorTypes != null && !assessorTypes.isEmpty()) {
+            for (final String project : sessionIdsByProject.keySet()) {
+                final MapSqlParameterSource parameters = new MapSqlParameterSource();
+                parameters.addValue("projectId", project);
+                parameters.addValue("assessorTypes", assessorTypes);
+                queryBySession(QUERY_SESSION_ASSESSORS, parameters, sessionIdsByProject.get(project), "session_id").forEach((sessionId, rows) -> assessors.put(project + ":" + sessionId, rows));
+            }
+        }
+
+        return new SessionRows(scans, findSessionResources(sessionIds, resources), findSessionResources(sessionIds, reconstructions), assessors);
+    }
+
+    private Map<String, List<Map<String, Object>>> findSessionResources(final Set<String> sessionIds, final List<String> resources) {
+        if (resources == null || resources.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // Limit the resource URIs to those associated with the requested sessions.
+        final MapSqlParameterSource parameters = new MapSqlParameterSource();
+        parameters.addValue("resourceIds", resources);
+        return queryBySession(QUERY_SESSION_RESOURCES, parameters, sessionIds, "session_id");
+    }
+
+    /**
+     * Runs the query for the session IDs, a limited number of sessions at a time, and groups the returned rows by the
+     * value in the session ID column. The order of the rows for each session is the order in which they were returned.
+     */
+    private Map<String, List<Map<String, Object>>> queryBySession(final String query, final MapSqlParameterSource parameters, final Set<String> sessionIds, final String sessionIdColumn) {
+        final Map<String, List<Map<String, Object>>> rowsBySession = new HashMap<>();
+        for (final List<String> partition : Iterables.partition(sessionIds, MAX_SESSIONS_PER_QUERY)) {
+            parameters.addValue("sessionIds", partition);
+            for (final Map<String, Object> row : _parameterized.queryForList(query, parameters)) {
+                rowsBySession.computeIfAbsent((String) row.get(sessionIdColumn), sessionId -> new ArrayList<>()).add(row);
             }
+        }
+        return rowsBySession;
+    }
 
+    /**
+     * Builds the catalogs on the catalog builder pool and returns them in the same order as the tasks. A single task is
+     * just run on the calling thread.
+     */
+    private List<CatCatalogBean> buildSessionCatalogs(final List<Callable<CatCatalogBean>> tasks) {
+        try {
+            if (tasks.size() == 1) {
+                return Collections.singletonList(tasks.get(0).call());
+            }
+            final List<CatCatalogBean> catalogs = new ArrayList<>(tasks.size());
+            for (final Future<CatCatalogBean> future : CATALOG_BUILDERS.invokeAll(tasks)) {
+                catalogs.add(future.get());
+            }
+            return catalogs;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new NrgServiceRuntimeException(NrgServiceError.Unknown, "An error occurred trying to build a session catalog for download.", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NrgServiceRuntimeException(NrgServiceError.Unknown, "Interrupted while building session catalogs for download.", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new NrgServiceRuntimeException(NrgServiceError.Unknown, "An error occurred trying to build a session catalog for download.", e);
+        }
+    }
+
+    private CatCatalogBean buildSessionCatalog(final String project, final String subject, final String label, final String sessionId, final SessionRows sessionRows, final DownloadArchiveOptions options, final UserI user, final LongAdder totalSize, final LongAdder resourcesOfUnknownSize) {
+        final CatCatalogBean sessionCatalog = new CatCatalogBean();
+        sessionCatalog.setId(sessionId);
+        sessionCatalog.setDescription("Project: " + project + ", subject: " + subject + ", label: " + label);
+
+        final CatCatalogI sessionsByScanTypesAndFormats = getSessionScans(project, subject, label, sessionId, sessionRows.getScans(sessionId), options, totalSize, resourcesOfUnknownSize);
+        if (sessionsByScanTypesAndFormats != null) {
+            addSafeEntrySet(sessionCatalog, sessionsByScanTypesAndFormats);
+        }
+
+        final CatCatalogI resourcesCatalog = getRelatedData(project, subject, label, sessionId, sessionRows.getResources(sessionId), "resources", options, totalSize, resourcesOfUnknownSize);
+        if (resourcesCatalog != null) {
+            addSafeEntrySet(sessionCatalog, resourcesCatalog);
+        }
+
+        final CatCatalogI reconstructionsCatalog = getRelatedData(project, subject, subject, sessionId, sessionRows.getReconstructions(sessionId), "reconstructions", options, totalSize, resourcesOfUnknownSize);
+        if (reconstructionsCatalog != null) {
+            addSafeEntrySet(sessionCatalog, reconstructionsCatalog);
+        }
+
+        final CatCatalogI assessorsCatalog = getSessionAssessors(project, subject, sessionId, sessionRows.getAssessors(project, sessionId), options, user, totalSize, resourcesOfUnknownSize);
+        if (assessorsCatalog != null) {
+            addSafeEntrySet(sessionCatalog, assessorsCatalog);
+        }
+
+        return sessionCatalog;
+    }
+
+    private CatCatalogI getSessionScans(final String project, final String subject, final String label, final String session, final List<Map<String, Object>> scans, final DownloadArchiveOptions options, final LongAdder totalSize, final LongAdder resourcesOfUnknownSize) {
+        if (scans.isEmpty()) {
+            return null;
+        }
+
+        final CatCatalogBean catalog = new CatCatalogBean();
+        catalog.setId("RAW");
+        try {
             for (final Map<String, Object> scan : scans) {
                 final CatEntryBean entry    = new CatEntryBean();
                 final String       scanId   = (String) scan.get("scan_id");
@@ -1830,44 +1845,19 @@ public class DefaultCatalogService implements CatalogService {
                 entry.setUri("/archive/experiments/" + session + "/scans/" + scanId + "/resources/" + resource + "/files");
                 log.debug("Created session scan entry for project {} session {} scan {} ({}) with name {}: {}", project, session, scanId, resource, entry.getName(), entry.getUri());
                 catalog.addEntries_entry(entry);
-
-                if (scanSize != null) {
-                    totalSize.getAndAdd(scanSize);
-                } else {
-                    resourcesOfUnknownSize.getAndIncrement();
-                }
+                addSize(scanSize, totalSize, resourcesOfUnknownSize);
             }
         } catch (UnsupportedEncodingException ignored) {
             //
         }
-        if (catalog.getEntries_entry().isEmpty()) {
-            return null;
-        } else {
-            final Map<String, Object> catalogAndSize = new HashMap<>();
-            catalogAndSize.put("catalog", catalog);
-            catalogAndSize.put("size", totalSize.longValue());
-            catalogAndSize.put("resourcesOfUnknownSize", resourcesOfUnknownSize.longValue());
-            return catalogAndSize;
-        }
+        return catalog.getEntries_entry().isEmpty() ? null : catalog;
     }
 
-    private Map<String, Object> getRelatedData(final String project, final String subject, final String label, final String session, final List<String> resources, final String type, final DownloadArchiveOptions options) {
-        if (resources == null || resources.isEmpty()) {
-            return null;
-        }
-
-        // Limit the resource URIs to those associated with the current session.
-        final MapSqlParameterSource parameters = new MapSqlParameterSource();
-        parameters.addValue("sessionId", session);
-        parameters.addValue("resourceIds", resources);
-        final List<Map<String, Object>> existing = _parameterized.queryForList(QUERY_SESSION_RESOURCES, parameters);
+    private CatCatalogI getRelatedData(final String project, final String subject, final String label, final String session, final List<Map<String, Object>> existing, final String type, final DownloadArchiveOptions options, final LongAdder totalSize, final LongAdder resourcesOfUnknownSize) {
         if (existing.isEmpty()) {
             return null;
         }
 
-        final AtomicLong totalSize              = new AtomicLong();
-        final AtomicLong resourcesOfUnknownSize = new AtomicLong();
-
         final CatCatalogBean catalog = new CatCatalogBean();
         catalog.setId(StringUtils.upperCase(type));
 
@@ -1881,44 +1871,22 @@ public class DefaultCatalogService implements CatalogService {
                 entry.setUri("/archive/experiments/" + session + "/resources/" + resourceId + "/files");
                 log.debug("Created resource entry for project {} session {} resource {} of type {} with name {}: {}", project, session, resourceString, type, entry.getName(), entry.getUri());
                 catalog.addEntries_entry(entry);
-                if (resourceSize != null) {
-                    totalSize.getAndAdd(resourceSize);
-                } else {
-                    resourcesOfUnknownSize.getAndIncrement();
-                }
+                addSize(resourceSize, totalSize, resourcesOfUnknownSize);
             } catch (UnsupportedEncodingException ignored) {
                 //
             }
         }
-        if (catalog.getEntries_entry().isEmpty()) {
-            return null;
-        } else {
-            final Map<String, Object> catalogAndSize = new HashMap<>();
-            catalogAndSize.put("catalog", catalog);
-            catalogAndSize.put("size", totalSize.longValue());
-            catalogAndSize.put("resourcesOfUnknownSize", resourcesOfUnknownSize.longValue());
-            return catalogAndSize;
-        }
+        return catalog.getEntries_entry().isEmpty() ? null : catalog;
     }
 
-    private Map<String, Object> getSessionAssessors(final String project, final String subject, final String sessionId, final List<String> assessorTypes, final DownloadArchiveOptions options, final UserI user) {
-        if ((assessorTypes == null) || assessorTypes.isEmpty()) {
+    private CatCatalogI getSessionAssessors(final String project, final String subject, final String sessionId, final List<Map<String, Object>> resources, final DownloadArchiveOptions options, final UserI user, final LongAdder totalSize, final LongAdder resourcesOfUnknownSize) {
+        if (resources.isEmpty()) {
             return null;
         }
 
-        final AtomicLong totalSize              = new AtomicLong();
-        final AtomicLong resourcesOfUnknownSize = new AtomicLong();
-
         final CatCatalogBean catalog = new CatCatalogBean();
         catalog.setId(StringUtils.upperCase("assessors"));
 
-        // Limit the resource URIs to those associated with the current session.
-        final MapSqlParameterSource parameters = new MapSqlParameterSource();
-        parameters.addValue("projectId", project);
-        parameters.addValue("sessionId", sessionId);
-        parameters.addValue("assessorTypes", assessorTypes);
-        final List<Map<String, Object>> resources = _parameterized.queryForList(QUERY_SESSION_ASSESSORS, parameters);
-
         try {
             for (final Map<String, Object> resource : resources) {
                 final CatEntryBean entry            = new CatEntryBean();
@@ -1934,11 +1902,7 @@ public class DefaultCatalogService implements CatalogService {
                         entry.setUri(StringSubstitutor.replace("/archive/experiments/${session_id}/assessors/${assessor_id}/out/resources/${resource_label}/files", resource));
                         log.debug("Created session assessor entry for project {} session {} assessor {} resource {} with name {}: {}", project, sessionId, assessorLabel, resourceLabel, entry.getName(), entry.getUri());
                         catalog.addEntries_entry(entry);
-                        if (scanSize != null) {
-                            totalSize.getAndAdd(scanSize);
-                        } else {
-                            resourcesOfUnknownSize.getAndIncrement();
-                        }
+                        addSize(scanSize, totalSize, resourcesOfUnknownSize);
                     }
                 } catch (Exception e) {
                     log.warn("An error occurred trying to get session assessors for a project.", e);
@@ -1947,14 +1911,14 @@ public class DefaultCatalogService implements CatalogService {
         } catch (UnsupportedEncodingException ignored) {
             //
         }
-        if (catalog.getEntries_entry().isEmpty()) {
-            return null;
+        return catalog.getEntries_entry().isEmpty() ? null : catalog;
+    }
+
+    private static void addSize(final Long size, final LongAdder totalSize, final LongAdder resourcesOfUnknownSize) {
+        if (size != null) {
+            totalSize.add(size);
         } else {
-            HashMap<String, Object> catalogAndSize = new HashMap<>();
-            catalogAndSize.put("catalog", catalog);
-            catalogAndSize.put("size", totalSize.longValue());
-            catalogAndSize.put("resourcesOfUnknownSize", resourcesOfUnknownSize.longValue());
-            return catalogAndSize;
+            resourcesOfUnknownSize.increment();
         }
     }
 
@@ -2028,11 +1992,57 @@ public class DefaultCatalogService implements CatalogService {
         return matcher.matches() ? matcher.group("scanId") : null;
     }
 
+    /**
+     * The rows found for all of the sessions in a download, grouped by session ID. Assessors are grouped by project and
+     * session ID. These are only read once they've been found, so they can be shared by the session catalog builders.
+     */
+    private static class SessionRows {
+        SessionRows(final Map<String, List<Map<String, Object>>> scans, final Map<String, List<Map<String, Object>>> resources, final Map<String, List<Map<String, Object>>> reconstructions, final Map<String, List<Map<String, Object>>> assessors) {
+            _scans = scans;
+            _resources = resources;
+            _reconstructions = reconstructions;
+            _assessors = assessors;
+        }
+
+        List<Map<String, Object>> getScans(final String sessionId) {
+            return _scans.getOrDefault(sessionId, Collections.emptyList());
+        }
+
+        List<Map<String, Object>> getResources(final String sessionId) {
+            return _resources.getOrDefault(sessionId, Collections.emptyList());
+        }
+
+        List<Map<String, Object>> getReconstructions(final String sessionId) {
+            return _reconstructions.getOrDefault(sessionId, Collections.emptyList());
+        }
+
+        List<Map<String, Object>> getAssessors(final String project, final String sessionId) {
+            return _assessors.getOrDefault(project + ":" + sessionId, Collections.emptyList());
+        }
+
+        private final Map<String, List<Map<String, Object>>> _scans;
+        private final Map<String, List<Map<String, Object>>> _resources;
+        private final Map<String, List<Map<String, Object>>> _reconstructions;
+        private final Map<String, List<Map<String, Object>>> _assessors;
+    }
+
     private static final Pattern SCAN_PATTERN             = Pattern.compile("^.*/SCANS/(?<scanId>[^/]+).*$");
     private static final String  EXPERIMENT_ROOT_URI      = "/archive/experiments/";
     private static final String  CATALOG_FORMAT           = "%s-%s";
     private static final String  CATALOG_SERVICE_CACHE    = DefaultCatalogService.class.getSimpleName() + "Cache";
     private static final String  CATALOG_CACHE_KEY_FORMAT = DefaultCatalogService.class.getSimpleName() + ".%s.%s";
+    private static final int     MAX_SESSIONS_PER_QUERY   = 1000;
+
+    private static final ExecutorService CATALOG_BUILDERS = Executors.newFixedThreadPool(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())), new ThreadFactory() {
+        private final AtomicInteger _count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "catalog-builder-" + _count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
     private static final String              CLAUSE_SCAN_TYPES              = "scan.type IN (:scanTypes)";
     private static final String              CLAUSE_NULL_SCAN_TYPES         = "scan.type IS NULL";
@@ -2065,6 +2075,7 @@ public class DefaultCatalogService implements CatalogService {
                                                                             "  ${scanTypesClause} AND " +
                                                                             "  ${scanFormatsClause}";
     private static final String QUERY_FIND_SCANS_BY_TYPE_AND_FORMAT       = "SELECT " +
+                                                                            "  scan.image_session_id AS session_id, " +
                                                                             "  scan.id   AS scan_id, " +
                                                                             "  scan.type AS scan_type, " +
                                                                             "  coalesce(res.label, res.xnat_abstractresource_id :: VARCHAR) AS resource," +
@@ -2072,22 +2083,23 @@ public class DefaultCatalogService implements CatalogService {
                                                                             "FROM xnat_imagescandata scan " +
                                                                             "  JOIN xnat_abstractResource res ON scan.xnat_imagescandata_id = res.xnat_imagescandata_xnat_imagescandata_id " +
                                                                             "WHERE " +
-                                                                            "  scan.image_session_id = :sessionId AND " +
+                                                                            "  scan.image_session_id IN (:sessionIds) AND " +
                                                                             "  ${scanTypesClause} AND " +
                                                                             "  ${scanFormatsClause} " +
-                                                                            "ORDER BY scan_id";
+                                                                            "ORDER BY session_id, scan_id";
     private static final String QUERY_FIND_XSI_TYPE_FOR_EXPERIMENT_ID     = "SELECT " +
                                                                             "  xme.element_name " +
                                                                             "FROM xnat_experimentData expt " +
                                                                             "  LEFT JOIN xdat_meta_element xme ON expt.extension=xme.xdat_meta_element_id " +
                                                                             "WHERE expt.id = :id";
-    private static final String QUERY_SESSION_RESOURCES                   = "SELECT res.label resource, " +
+    private static final String QUERY_SESSION_RESOURCES                   = "SELECT expt.id AS session_id, " +
+                                                                            "  res.label resource, " +
                                                                             "  res.file_size AS size " +
                                                                             "FROM xnat_abstractresource res " +
                                                                             "  LEFT JOIN xnat_experimentdata_resource exptRes " +
                                                                             "    ON exptRes.xnat_abstractresource_xnat_abstractresource_id = res.xnat_abstractresource_id " +
                                                                             "  LEFT JOIN xnat_experimentdata expt ON expt.id = exptRes.xnat_experimentdata_id " +
-                                                                            "WHERE expt.ID = :sessionId AND res.label IN (:resourceIds)";
+                                                                            "WHERE expt.ID IN (:sessionIds) AND res.label IN (:resourceIds)";
     private static final String QUERY_SESSION_ASSESSORS                   = "SELECT " +
                                                                             "  abstract.xnat_abstractresource_id AS resource_id, " +
                                                                             "  coalesce(abstract.label, abstract.xnat_abstractresource_id :: VARCHAR) AS resource_label, " +
@@ -2110,7 +2122,7 @@ public class DefaultCatalogService implements CatalogService {
                                                                             "WHERE " +
                                                                             "  :projectId IN (share.project, assessor.project) AND " +
                                                                             "  xme.element_name IN (:assessorTypes) AND " +
-                                                                            "  session.id = :sessionId";
+                                                                            "  session.id IN (:sessionIds)";
     @SuppressWarnings({"unused", "RedundantSuppression"})
     private static final String QUERY_SESSION_ASSESSORS_WITH_ALL_PROJECTS = "SELECT " +
                                                                             "  abstract.xnat_abstractresource_id AS resource_id, " +
@@ -109,9 +109,10 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
         _jmsTemplate     = jmsTemplate;
         _helper          = helper;
         _totalCounts     = new ConcurrentHashMap<>();
-        _missingElements = new HashMap<>();
+        _missingElements = new ConcurrentHashMap<>();
         _userChecks      = new ConcurrentHashMap<>();
         _initialized     = new AtomicBoolean(false);
+        _loader          = new SingleFlightLoader();
         if(_helper.tableExists("xnat_projectdata")) {
             resetTotalCounts();
         }
@@ -226,7 +227,8 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
         }
 
         log.trace("Initializing browseable element displays for user '{}' with cache ID '{}'", username, cacheId);
-        final Map<String, ElementDisplay> browseables = buildImmutableMap(Arrays.asList(initBrowseableElementDisplaysForUser(cacheId, user), guestBrowseableElementDisplays));
+        final Map<String, ElementDisplay> initialized = _loader.load(cacheId, () -> getCachedMap(cacheId), () -> initBrowseableElementDisplaysForUser(cacheId, user));
+        final Map<String, ElementDisplay> browseables = buildImmutableMap(Arrays.asList(initialized, guestBrowseableElementDisplays));
         log.debug("Initialized browseable element displays for user '{}' with cache ID '{}' with {} entries (including guest browseable element displays)", username, cacheId, browseables.size());
         return browseables;
     }
@@ -897,7 +899,9 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
             for (final String username : usernames) {
                 try {
                     final String cacheIdForUserGroups = getCacheIdForUserGroups(username);
-                    evict(Arrays.asList(cacheIdForUserGroups, getCacheIdForUserElements(username, READABLE), getCacheIdForUserElements(username, SEARCHABLE), getCacheIdForUserElements(username, BROWSEABLE), getCacheIdForUserElementAccessManagers(username), getCacheIdForActionElements(username)));
+                    final List<String> cacheIds = Arrays.asList(cacheIdForUserGroups, getCacheIdForUserElements(username, READABLE), getCacheIdForUserElements(username, SEARCHABLE), getCacheIdForUserElements(username, BROWSEABLE), getCacheIdForUserElementAccessManagers(username), getCacheIdForActionElements(username));
+                    evict(cacheIds);
+                    _loader.await(cacheIds);
 
                     initUserGroupIds(cacheIdForUserGroups, username);
                     initBrowseableElementDisplaysForUser(getCacheIdForUserElements(username, BROWSEABLE), username);
@@ -1066,22 +1070,14 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
         String cacheId = getCacheIdForUserElements(username, READABLE);
 
         log.trace("Retrieving readable counts for user {} through cache ID {}", username, cacheId);
-        Map<String, Long> cachedReadableCounts = getCachedMap(cacheId);
+        final Map<String, Long> cachedReadableCounts = getCachedMap(cacheId);
         if(cachedReadableCounts != null) {
             log.debug("Found cached readable counts entry for user '{}' with cache ID '{}' containing {} entries", username, cacheId, cachedReadableCounts.size());
             return cachedReadableCounts;
         }
 
-        synchronized (this){
-            //check if another thread set the counts
-            cachedReadableCounts = getCachedMap(cacheId);
-            if(cachedReadableCounts != null) {
-                log.debug("Found cached readable counts entry for user '{}' with cache ID '{}' containing {} entries", username, cacheId, cachedReadableCounts.size());
-                return cachedReadableCounts;
-            }
-
-            return initReadableCountsForUser(cacheId, username);
-        }
+        // Concurrent misses for this user share a single load, while misses for other users load in parallel.
+        return _loader.load(cacheId, () -> getCachedMap(cacheId), () -> initReadableCountsForUser(cacheId, username));
     }
 
     private ListMultimap<String, ElementDisplay> getActionElementDisplays(final String username) {
@@ -1128,7 +1124,7 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
             log.debug("Found a cache entry for user '{}' element access managers by ID '{}' with {} entries", username, cacheId, cachedElementAccessManagers.size());
             return cachedElementAccessManagers;
         }
-        return initElementAccessManagersForUser(cacheId, username);
+        return _loader.load(cacheId, () -> getCachedMap(cacheId), () -> initElementAccessManagersForUser(cacheId, username));
     }
 
     private Map<String, ElementDisplay> getGuestBrowseableElementDisplays() {
@@ -1136,7 +1132,7 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
         if(guestBrowseableElementDisplays != null) {
             return guestBrowseableElementDisplays;
         }
-        return resetBrowseableElementDisplays(getGuest());
+        return _loader.load(GUEST_CACHE_ID, () -> getCachedMap(GUEST_CACHE_ID), () -> resetBrowseableElementDisplays(getGuest()));
     }
 
     private void clearAllUserProjectAccess() {
@@ -1227,7 +1223,7 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
     }
 
     @CacheLock(true)
-    private synchronized List<String> initTag(final String cacheId, final String tag) {
+    private List<String> initTag(final String cacheId, final String tag) {
         // If there's a blank tag...
         if(StringUtils.isBlank(tag)) {
             throw new IllegalArgumentException("Can not request a blank tag, that's not a thing.");
@@ -1260,12 +1256,12 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
     }
 
     @CacheLock(true)
-    private synchronized Map<String, ElementDisplay> initBrowseableElementDisplaysForUser(final String cacheId, final UserI user) {
+    private Map<String, ElementDisplay> initBrowseableElementDisplaysForUser(final String cacheId, final UserI user) {
         return initBrowseableElementDisplaysForUser(cacheId, user.getUsername());
     }
 
     @CacheLock(true)
-    private synchronized Map<String, ElementDisplay> initBrowseableElementDisplaysForUser(final String cacheId, final String username) {
+    private Map<String, ElementDisplay> initBrowseableElementDisplaysForUser(final String cacheId, final String username) {
         log.info("Initializing browseable element displays cache entry for user '{}' with cache ID '{}'", username, cacheId);
         final Map<String, Long> counts = getReadableCounts(username);
         log.debug("Found {} readable counts for user {}: {}", counts.size(), username, counts);
@@ -1294,12 +1290,10 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
             cacheObject(cacheId, browseableElements);
             return browseableElements;
         } catch (ElementNotFoundException e) {
-            if(!_missingElements.containsKey(e.ELEMENT)) {
+            final long count = _missingElements.merge(e.ELEMENT, 1L, Long::sum);
+            if(count == 1) {
                 log.warn("Element '{}' not found. This may be a data type that was installed previously but can't be located now. This warning will only be displayed once. Set logging level to DEBUG to see a message each time this occurs for each element, along with a count of the number of times the element was referenced.", e.ELEMENT);
-                _missingElements.put(e.ELEMENT, 1L);
             } else {
-                final long count = _missingElements.get(e.ELEMENT) + 1;
-                _missingElements.put(e.ELEMENT, count);
                 log.debug("Element '{}' not found. This element has been referenced {} times.", e.ELEMENT, count);
             }
         } catch (XFTInitException e) {
@@ -1326,21 +1320,21 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
         return initActionElementDisplays(username, false);
     }
 
-    private synchronized ListMultimap<String, ElementDisplay> initActionElementDisplays(final String username, final boolean evict) {
+    private ListMultimap<String, ElementDisplay> initActionElementDisplays(final String username, final boolean evict) {
         final String cacheId = getCacheIdForActionElements(username);
         log.info("Initializing action element displays cache entry {} for user '{}', evict is {}", cacheId, username, evict);
 
-        // If they want to evict the cache entry, then do that and proceed. They explicitly don't want any cached entry to be returned.
+        // If they want to evict the cache entry, then do that and proceed. They explicitly don't want any cached entry to be returned,
+        // including one that's being loaded right now with what may be out-of-date permissions.
         if(evict) {
             evict(cacheId);
-        } else {
-            final ListMultimap<String, ElementDisplay> cachedObject = getCachedListMultimap(cacheId);
-            if(cachedObject != null) {
-                log.debug("Found an existing cached entry for cache ID {}, which probably means the cache was initialized while this call was locked out by method sync", cacheId);
-                return cachedObject;
-            }
+            _loader.await(cacheId);
+            return loadActionElementDisplays(cacheId, username);
         }
+        return _loader.load(cacheId, () -> getCachedListMultimap(cacheId), () -> loadActionElementDisplays(cacheId, username));
+    }
 
+    private ListMultimap<String, ElementDisplay> loadActionElementDisplays(final String cacheId, final String username) {
         final ListMultimap<String, ElementDisplay> elementDisplays = ArrayListMultimap.create();
         try {
             final List<ElementSecurity> securities = ElementSecurity.GetSecureElements();
@@ -1447,6 +1441,7 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
         if(cachedReadableCounts != null) {
             try {
                 log.debug("Found a cache entry for user '{}' readable counts by ID '{}', updating cache entry", username, cacheId);
+                _loader.await(cacheId, getCacheIdForUserElements(username, BROWSEABLE));
                 final XDATUser user = (XDATUser) Users.getUser(username);
                 initReadableCountsForUser(cacheId, user);
                 initBrowseableElementDisplaysForUser(getCacheIdForUserElements(username, BROWSEABLE), user);
@@ -1460,7 +1455,7 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
         }
     }
 
-    private synchronized List<UserGroupI> initGroups(final List<UserGroupI> groups) {
+    private List<UserGroupI> initGroups(final List<UserGroupI> groups) {
         log.debug("Caching {} groups", groups.size());
         for (final UserGroupI group : groups) {
             initGroup(group.getId(), group);
@@ -1661,7 +1656,7 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
             return groupIds;
         }
 
-        return initTag(getCacheIdForTag(tag), tag);
+        return _loader.load(cacheId, () -> getCachedList(cacheId), () -> initTag(cacheId, tag));
     }
 
     private List<String> getGroupIdsForUser(final String username) throws UserNotFoundException {
@@ -2092,6 +2087,7 @@ public class DefaultGroupsAndPermissionsCache extends AbstractXftItemAndCacheEve
     private final Map<String, Long>          _missingElements;
     private final Map<String, Boolean>       _userChecks;
     private final AtomicBoolean              _initialized;
+    private final SingleFlightLoader         _loader;
 
     private Listener _listener;
     private XDATUser _guest;
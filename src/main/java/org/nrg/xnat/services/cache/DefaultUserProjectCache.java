@@ -10,12 +10,13 @@
 package org.nrg.xnat.services.cache;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Striped;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.ehcache.CacheException;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -63,8 +64,11 @@ import javax.annotation.Nullable;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -110,12 +114,16 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
     @Async
     @Override
     public Future<Boolean> initialize() {
+        final ArrayListMultimap<String, String> projectsAndAliases = ArrayListMultimap.create();
         _template.query(QUERY_GET_IDS_AND_ALIASES, resultSet -> {
             final String projectId = resultSet.getString("project_id");
             final String idOrAlias = resultSet.getString("id_or_alias");
             _aliasMapping.put(idOrAlias, projectId);
-            _projectsAndAliases.put(projectId, idOrAlias);
+            projectsAndAliases.put(projectId, idOrAlias);
         });
+        for (final String projectId : projectsAndAliases.keySet()) {
+            _projectsAndAliases.put(projectId, ImmutableList.copyOf(projectsAndAliases.get(projectId)));
+        }
         _initialized.set(true);
         return new AsyncResult<>(true);
     }
@@ -359,7 +367,7 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
                 break;
 
             case DELETE:
-                final List<String> aliases = _projectsAndAliases.removeAll(projectId);
+                final List<String> aliases = ObjectUtils.defaultIfNull(_projectsAndAliases.remove(projectId), Collections.<String>emptyList());
                 log.debug("The project {} was deleted, so evicting cache entry and removing ID and any aliases: {}", projectId, aliases);
                 _aliasMapping.remove(projectId);
                 for (final String alias : aliases) {
@@ -384,17 +392,7 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
         final String eventId = event.getId();
         if (StringUtils.equalsAny(eventId, Groups.ALL_DATA_ADMIN_GROUP, Groups.ALL_DATA_ACCESS_GROUP)) {
             final UserGroupI group = getGroup(eventId);
-            switch (group.getId()) {
-                case Groups.ALL_DATA_ADMIN_GROUP:
-                    _dataAdmins.clear();
-                    _dataAdmins.addAll(group.getUsernames());
-                    break;
-
-                case Groups.ALL_DATA_ACCESS_GROUP:
-                    _dataAccess.clear();
-                    _dataAccess.addAll(group.getUsernames());
-                    break;
-            }
+            setAllDataGroupMembers(group.getId(), group.getUsernames());
             return true;
         }
         final Pair<String, String> idAndAccess = Groups.getProjectIdAndAccessFromGroupId(eventId);
@@ -424,28 +422,41 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
         }
 
         //noinspection unchecked
-        final Collection<String> users        = (Collection<String>) properties.get(Groups.USERS);
-        final ProjectCache       projectCache = getProjectCache(projectId);
+        final Collection<String> users = (Collection<String>) properties.get(Groups.USERS);
+        if (getProjectCache(projectId) == null) {
+            log.debug("Users had access level {} {} for project {}, but that project's not in the cache: {}", access, StringUtils.equals(operation, OPERATION_ADD_USERS) ? "added" : "revoked", projectId, users);
+            return true;
+        }
+        final long levels = getAccessMask(ObjectUtils.defaultIfNull(GROUP_ACCESS_LEVELS.get(access), Collections.singletonList(access)));
         if (StringUtils.equals(operation, OPERATION_ADD_USERS)) {
-            if (projectCache == null) {
-                log.debug("Users had access level {} added for project {}, but that project's not in the cache: {}", access, projectId, users);
-                return true;
-            }
-            for (final String username : users) {
-                projectCache.addUser(username, access);
-            }
+            updateProjectCache(projectId, projectCache -> projectCache.withUsers(users, levels, 0));
         } else {
-            if (projectCache == null) {
-                log.debug("Users had access level {} revoked for project {}, but that project's not in the cache: {}", access, projectId, users);
-                return true;
-            }
-            for (final String username : users) {
-                projectCache.removeUser(username, access);
-            }
+            updateProjectCache(projectId, projectCache -> projectCache.withUsers(users, 0, levels));
         }
         return true;
     }
 
+    /**
+     * Replaces the members of the all-data-admin or all-data-access group. The new membership is swapped in in one
+     * step, so no request sees the set while it's empty.
+     *
+     * @param groupId   The ID of the group, either {@link Groups#ALL_DATA_ADMIN_GROUP} or {@link Groups#ALL_DATA_ACCESS_GROUP}.
+     * @param usernames The usernames of the group's members.
+     */
+    void setAllDataGroupMembers(final String groupId, final Collection<String> usernames) {
+        final Set<String> members = ConcurrentHashMap.newKeySet();
+        members.addAll(usernames);
+        switch (groupId) {
+            case Groups.ALL_DATA_ADMIN_GROUP:
+                _dataAdmins = members;
+                break;
+
+            case Groups.ALL_DATA_ACCESS_GROUP:
+                _dataAccess = members;
+                break;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private boolean handleUserEvent(final XftItemEventI event) {
         final String         username   = event.getId();
@@ -585,7 +596,7 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
         final boolean  isSiteAdmin;
         final boolean  isDataAdmin;
         final boolean  isDataAccess;
-        if (!_nonAdmins.contains(userId) && !_dataAdmins.contains(userId) && !_dataAdmins.contains(userId) && !_siteAdmins.contains(userId)) {
+        if (!_nonAdmins.contains(userId) && !_dataAdmins.contains(userId) && !_dataAccess.contains(userId) && !_siteAdmins.contains(userId)) {
             try {
                 // Get the user...
                 user = new XDATUser(userId);
@@ -644,11 +655,14 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
             }
 
             // If the user isn't already cached...
-            if (!projectCache.hasUser(userId)) {
-                // Cache the user!
-                projectCache.addUser(userId, getUserProjectAccess(ObjectUtils.defaultIfNull(user, new XDATUser(userId)), projectId));
+            if (projectCache.hasUser(userId)) {
+                return projectCache.hasAccess(userId, accessLevel);
             }
-            return CollectionUtils.containsAny(projectCache.getUserAccessLevels(userId), ACCESS_LEVELS.get(accessLevel));
+
+            // Cache the user! Another thread may have published a newer snapshot in the meantime, so the user is added to whatever's current.
+            final long levels = getAccessMask(getUserProjectAccess(ObjectUtils.defaultIfNull(user, new XDATUser(userId)), projectId));
+            updateProjectCache(projectId, current -> current.hasUser(userId) ? current : current.withUsers(Collections.singletonList(userId), levels, 0));
+            return (levels & ACCESS_MASKS.get(accessLevel)) != 0;
         } catch (UserInitException e) {
             log.error("Something bad happened trying to retrieve the user {}", userId, e);
         } catch (UserNotFoundException e) {
@@ -730,14 +744,15 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
     }
 
     /**
-     * Initializes the cache for the specified project.
+     * Initializes the cache for the specified project. Concurrent requests for the same project share one load, while
+     * different projects are loaded in parallel.
      *
      * @param projectId The ID of the project to retrieve.
      *
      * @return Returns a new cache object for the indicated project if it exists, null otherwise.
      */
     @Nullable
-    private synchronized ProjectCache initializeProjectCache(final String projectId) {
+    private ProjectCache initializeProjectCache(final String projectId) {
         // Get the canonical project ID using the submitted project ID. This should return the same value.
         final String canonicalProjectId = getCanonicalProjectId(projectId);
         if (StringUtils.isBlank(canonicalProjectId)) {
@@ -754,7 +769,12 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
             return cachedProjectCache;
         }
 
-        log.info("Locking and initializing project cache for ID '{}'", projectId);
+        return _loader.load(projectId, () -> getCachedProjectCache(projectId), () -> loadProjectCache(projectId));
+    }
+
+    @Nullable
+    private ProjectCache loadProjectCache(final String projectId) {
+        log.info("Initializing project cache for ID '{}'", projectId);
         final XnatProjectdata project = AutoXnatProjectdata.getXnatProjectdatasById(projectId, null, false);
         if (project == null) {
             log.error("Could not find a project for the ID '{}'", projectId);
@@ -764,36 +784,76 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
         // Hooray, we found the project, so let's cache the ID and all the aliases.
         cacheProjectIdsAndAliases(projectId);
 
-        // Create the project cache and user list.
-        final ProjectCache projectCache = new ProjectCache(project);
-
         // This caches all the users from the standard user groups and their permissions ahead of time in the most efficient way possible.
+        final Map<String, Long> userAccess = new HashMap<>();
         for (final String accessLevel : USER_GROUP_SUFFIXES.keySet()) {
-            final List<AccessLevel> accessLevelPermissions = USER_GROUP_SUFFIXES.get(accessLevel);
+            final long accessLevelPermissions = getAccessMask(USER_GROUP_SUFFIXES.get(accessLevel));
             for (final String userIdByAccess : _template.queryForList(QUERY_USERS_BY_GROUP, getProjectAccessParameterSource(projectId, accessLevel), String.class)) {
                 log.debug("Caching user {} for access level {} on project {}", userIdByAccess, accessLevel, projectId);
-                projectCache.addUser(userIdByAccess, accessLevelPermissions);
+                userAccess.merge(userIdByAccess, accessLevelPermissions, (first, second) -> first | second);
             }
         }
 
+        // Create the project cache and user list.
+        final ProjectCache projectCache = new ProjectCache(project, userAccess);
+
         log.debug("Caching project cache for {}", projectId);
-        cacheObject(projectId, projectCache);
+        final Lock lock = _projectLocks.get(projectId);
+        lock.lock();
+        try {
+            cacheObject(projectId, projectCache);
+        } finally {
+            lock.unlock();
+        }
 
         return projectCache;
     }
 
     private void refreshProjectCache(final String projectId) {
         evictProjectCache(projectId);
+        // Don't let a load that started before the eviction finish afterwards and replace the refreshed entry.
+        _loader.await(projectId);
         initializeProjectCache(projectId);
     }
 
+    /**
+     * Replaces the cached snapshot for the project with an updated copy. Updates to the same project are applied one at
+     * a time, so concurrent updates aren't lost, while readers keep using whichever snapshot was current when they got it.
+     *
+     * @param projectId The ID of the project to update.
+     * @param update    Creates the updated snapshot from the current one.
+     */
+    private void updateProjectCache(final String projectId, final Function<ProjectCache, ProjectCache> update) {
+        final Lock lock = _projectLocks.get(projectId);
+        lock.lock();
+        try {
+            final ProjectCache current = getCachedProjectCache(projectId);
+            if (current == null) {
+                log.debug("The project {} isn't cached, so there's nothing to update", projectId);
+                return;
+            }
+            final ProjectCache updated = update.apply(current);
+            if (updated != current) {
+                forceCacheObject(projectId, updated);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private void evictProjectCache(final String projectId) {
         final ProjectCache projectCache = getCachedProjectCache(projectId);
         if (projectCache == null || projectCache.getProject() == null) {
             log.info("No cache found for the project '{}', nothing much to be done.", projectId);
         } else {
             log.info("Found project cache for project {}, evicting the project cache.", projectId);
-            evict(projectId);
+            final Lock lock = _projectLocks.get(projectId);
+            lock.lock();
+            try {
+                evict(projectId);
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
@@ -811,11 +871,7 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
         for (final String alias : aliases) {
             _aliasMapping.put(alias, projectId);
         }
-        if (_projectsAndAliases.containsKey(projectId)) {
-            _projectsAndAliases.removeAll(projectId);
-        }
-        _projectsAndAliases.put(projectId, projectId);
-        _projectsAndAliases.putAll(projectId, aliases);
+        _projectsAndAliases.put(projectId, ImmutableList.<String>builder().add(projectId).addAll(aliases).build());
         log.debug("Just cached ID and aliases for project {}: {}", projectId, aliases);
     }
 
@@ -866,47 +922,61 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
         return levels;
     }
 
+    private static long getAccessMask(final Collection<AccessLevel> levels) {
+        long mask = 0;
+        for (final AccessLevel level : levels) {
+            mask |= 1L << level.ordinal();
+        }
+        return mask;
+    }
+
     private static MapSqlParameterSource getProjectAccessParameterSource(final String projectId, final String accessLevel) {
         return new MapSqlParameterSource(QUERY_KEY_PROJECT_ID, projectId).addValue(QUERY_KEY_ACCESS_LEVEL, accessLevel);
     }
 
-    private static class ProjectCache {
-        ProjectCache(final XnatProjectdata project) {
+    /**
+     * An immutable snapshot of a project and the access levels of the users known to the cache, with each user's levels
+     * stored as a bit mask of {@link AccessLevel} ordinals. Changes are made by creating an updated copy and caching it
+     * in place of the previous snapshot, so access checks never need to lock.
+     */
+    static final class ProjectCache {
+        ProjectCache(final XnatProjectdata project, final Map<String, Long> userAccess) {
             _project = project;
+            _userAccess = ImmutableMap.copyOf(userAccess);
         }
 
         public XnatProjectdata getProject() {
             return _project;
         }
 
-        public void removeUser(final String username, final AccessLevel access) {
-            _userCache.remove(username, access);
-        }
-
-        @SuppressWarnings("unused")
-        public void removeUser(final String username) {
-            _userCache.removeAll(username);
-        }
-
         boolean hasUser(final String userId) {
-            return _userCache.containsKey(userId);
-        }
-
-        Collection<AccessLevel> getUserAccessLevels(final String userId) {
-            return _userCache.get(userId);
+            return _userAccess.containsKey(userId);
         }
 
-        void addUser(final String userId, final List<AccessLevel> userProjectAccess) {
-            _userCache.putAll(userId, userProjectAccess);
+        boolean hasAccess(final String userId, final AccessLevel accessLevel) {
+            final Long levels = _userAccess.get(userId);
+            return levels != null && (levels & ACCESS_MASKS.get(accessLevel)) != 0;
         }
 
-        void addUser(final String userId, final AccessLevel userProjectAccess) {
-            _userCache.put(userId, userProjectAccess);
+        /**
+         * Creates a copy of this snapshot with access levels added to and removed from the specified users.
+         *
+         * @param userIds The users to update.
+         * @param added   The access levels to add.
+         * @param removed The access levels to remove.
+         *
+         * @return The updated snapshot.
+         */
+        ProjectCache withUsers(final Collection<String> userIds, final long added, final long removed) {
+            final Map<String, Long> userAccess = new HashMap<>(_userAccess);
+            for (final String userId : userIds) {
+                userAccess.put(userId, (userAccess.getOrDefault(userId, 0L) | added) & ~removed);
+            }
+            return new ProjectCache(_project, userAccess);
         }
 
-        private final XnatProjectdata _project;
-
-        private final ArrayListMultimap<String, AccessLevel> _userCache = ArrayListMultimap.create();
+        private final XnatProjectdata            _project;
+        private final ImmutableMap<String, Long> _userAccess;
     }
 
     private static final Predicate<XftItemEventI> PREDICATE_IS_ROLE_OPERATION = event -> {
@@ -922,6 +992,8 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
                                                                                                             .put(Edit, Stream.of(DELETABLE_ACCESS, WRITABLE_ACCESS).flatMap(Collection::stream).collect(Collectors.toList()))
                                                                                                             .put(Read, Stream.of(DELETABLE_ACCESS, WRITABLE_ACCESS, READABLE_ACCESS).flatMap(Collection::stream).collect(Collectors.toList())).build();
     private static final Map<String, List<AccessLevel>>      USER_GROUP_SUFFIXES              = ImmutableMap.of("owner", DELETABLE_ACCESS, "member", WRITABLE_ACCESS, "collaborator", READABLE_ACCESS);
+    private static final Map<AccessLevel, List<AccessLevel>> GROUP_ACCESS_LEVELS              = ImmutableMap.of(Owner, DELETABLE_ACCESS, Member, WRITABLE_ACCESS, Collaborator, READABLE_ACCESS);
+    private static final Map<AccessLevel, Long>              ACCESS_MASKS                     = ImmutableMap.of(Delete, getAccessMask(ACCESS_LEVELS.get(Delete)), Edit, getAccessMask(ACCESS_LEVELS.get(Edit)), Read, getAccessMask(ACCESS_LEVELS.get(Read)));
     private static final String                              QUERY_KEY_PROJECT_ID             = "projectId";
     private static final String                              QUERY_KEY_ACCESS_LEVEL           = "accessLevel";
     private static final String                              CACHE_NAME                       = "UserProjectCacheManagerCache";
@@ -956,13 +1028,16 @@ public class DefaultUserProjectCache extends AbstractXftItemAndCacheEventHandler
                                                             "FROM xnat_projectdata project " +
                                                             "ORDER BY project_id, id_or_alias";
 
-    private final Set<String>                       _siteAdmins         = new HashSet<>();
-    private final Set<String>                       _dataAdmins         = new HashSet<>();
-    private final Set<String>                       _dataAccess         = new HashSet<>();
-    private final Set<String>                       _nonAdmins          = new HashSet<>();
-    private final Map<String, String>               _aliasMapping       = new HashMap<>();
-    private final ArrayListMultimap<String, String> _projectsAndAliases = ArrayListMultimap.create();
-    private final AtomicBoolean                     _initialized        = new AtomicBoolean(false);
+    private final Set<String>               _siteAdmins         = ConcurrentHashMap.newKeySet();
+    private final Set<String>               _nonAdmins          = ConcurrentHashMap.newKeySet();
+    private final Map<String, String>       _aliasMapping       = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> _projectsAndAliases = new ConcurrentHashMap<>();
+    private final AtomicBoolean             _initialized        = new AtomicBoolean(false);
+    private final SingleFlightLoader        _loader             = new SingleFlightLoader();
+    private final Striped<Lock>             _projectLocks       = Striped.lazyWeakLock(64);
+
+    private volatile Set<String> _dataAdmins = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> _dataAccess = ConcurrentHashMap.newKeySet();
 
     private final GroupsAndPermissionsCache  _cache;
     private final NamedParameterJdbcTemplate _template;
@@ -0,0 +1,130 @@
+/*
+ * web: org.nrg.xnat.services.cache.SingleFlightLoader
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.services.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coordinates loading cache entries so that only one thread computes a missing entry at a time. Threads that miss the
+ * same entry while it's being loaded wait for and share that result, while misses for different entries are loaded in
+ * parallel. This replaces locking the whole cache while an entry is initialized, which made every request wait on the
+ * slowest entry being loaded.
+ * <p>
+ * Code that refreshes entries after they've been evicted should call {@link #await(Collection)} first, so that a load
+ * that started before the eviction can't finish afterwards and leave its out-of-date result in the cache.
+ */
+@Slf4j
+public class SingleFlightLoader {
+    /**
+     * Gets the cached value for the key or, if there isn't one, loads it. If another thread is already loading the same
+     * key, this waits for that thread's result instead of loading it again.
+     *
+     * @param key    The cache ID being loaded.
+     * @param cached Gets the cached value, returning null if the value isn't cached.
+     * @param loader Loads and caches the value.
+     * @param <T>    The type of the value.
+     *
+     * @return The cached or loaded value.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(final String key, final Supplier<T> cached, final Supplier<T> loader) {
+        final Loading loading = new Loading();
+        final Loading existing = _loading.putIfAbsent(key, loading);
+        if (existing != null) {
+            if (existing.isOwner()) {
+                // Loading this key needed the key itself, so there's nothing to wait for.
+                return loader.get();
+            }
+            log.debug("Waiting for another thread to finish loading cache entry {}", key);
+            return (T) join(existing);
+        }
+        try {
+            // The entry may have been cached between the caller's check and registering this load.
+            final T value = cached.get();
+            final T result = value != null ? value : loader.get();
+            loading.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            _loading.remove(key, loading);
+        }
+    }
+
+    /**
+     * Waits for any loads of the specified keys running on other threads to finish.
+     *
+     * @param keys The cache IDs to wait for.
+     */
+    public void await(final String... keys) {
+        await(Arrays.asList(keys));
+    }
+
+    /**
+     * Waits for any loads of the specified keys running on other threads to finish.
+     *
+     * @param keys The cache IDs to wait for.
+     */
+    public void await(final Collection<String> keys) {
+        for (final String key : keys) {
+            final Loading loading = _loading.get(key);
+            if (loading != null && !loading.isOwner()) {
+                try {
+                    loading.join();
+                } catch (CompletionException e) {
+                    log.debug("Loading cache entry {} failed while waiting for it to finish", key, e.getCause());
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates how many keys are being loaded right now.
+     *
+     * @return The number of keys being loaded.
+     */
+    public int getLoadingCount() {
+        return _loading.size();
+    }
+
+    private static Object join(final Loading loading) {
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static class Loading extends CompletableFuture<Object> {
+        boolean isOwner() {
+            return _owner == Thread.currentThread();
+        }
+
+        private final Thread _owner = Thread.currentThread();
+    }
+
+    private final ConcurrentMap<String, Loading> _loading = new ConcurrentHashMap<>();
+}
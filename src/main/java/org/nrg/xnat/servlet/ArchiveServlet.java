@@ -30,7 +30,6 @@ import org.nrg.xft.schema.Wrappers.GenericWrapper.GenericWrapperField;
 import org.nrg.xft.schema.design.SchemaElementI;
 import org.nrg.xft.search.ItemSearch;
 import org.nrg.xft.security.UserI;
-import org.nrg.xft.utils.FileUtils;
 import org.nrg.xft.utils.ResourceFile;
 import org.nrg.xft.utils.XftStringUtils;
 import org.nrg.xft.utils.zip.ZipI;
@@ -38,6 +37,7 @@ import org.nrg.xft.utils.zip.ZipUtils;
 import org.nrg.xnat.turbine.utils.ArcSpecManager;
 import org.nrg.xnat.utils.CatalogUtils;
 import org.nrg.xnat.utils.UserUtils;
+import org.nrg.xnat.web.http.RangedFileDelivery;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -81,7 +81,7 @@ public class ArchiveServlet extends HttpServlet {
         if (rootElementName.equals("stored")) {
             File f = Users.getUserCacheFile(user, "catalogs/" + path);
             if (f.exists()) {
-                writeFile(f, res);
+                writeFile(f, req, res);
                 return;
             } else {
                 return;
@@ -196,26 +196,20 @@ public class ArchiveServlet extends HttpServlet {
         return null;
     }
 
-    protected void writeFile(File _return, HttpServletResponse res) throws IOException {
-        writeFile(_return, res, _return.getName());
+    protected void writeFile(File _return, HttpServletRequest req, HttpServletResponse res) throws IOException {
+        writeFile(_return, req, res, _return.getName());
     }
 
-    protected void writeFile(File _return, HttpServletResponse res, String name) throws IOException {
+    /**
+     * Writes the file to the response, answering conditional and byte range requests for it. Only GET and HEAD
+     * requests are conditional or ranged, so the whole file is always written for POST requests.
+     */
+    protected void writeFile(File _return, HttpServletRequest req, HttpServletResponse res, String name) throws IOException {
         TurbineUtils.setContentDisposition(res, name, false);
-
-        OutputStream os = res.getOutputStream();
-        java.io.FileInputStream in = new java.io.FileInputStream(_return);
-        byte[] buf = new byte[FileUtils.LARGE_DOWNLOAD];
-        int len;
-        while ((len = in.read(buf)) > 0) {
-            os.write(buf, 0, len);
-            os.flush();
-        }
-        os.flush();
-        in.close();
+        RangedFileDelivery.forRequest(req, _return, null).deliver(res);
     }
 
-    protected void getDataFile(UserI user, String path, HttpServletResponse response) throws ServletException, IOException {
+    protected void getDataFile(UserI user, String path, HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         String rootElementName = path.substring(0, path.indexOf("/"));
         path = path.substring(path.indexOf("/") + 1);
         String value = path.substring(0, path.indexOf("/"));
@@ -355,7 +349,7 @@ public class ArchiveServlet extends HttpServlet {
                 }
 
                 if (_return != null) {
-                    writeFile(_return, response);
+                    writeFile(_return, request, response);
                 }
             }
         } catch (XFTInitException e) {
@@ -394,14 +388,14 @@ public class ArchiveServlet extends HttpServlet {
                 if (filePath != null) {
                     File f = new File(filePath);
                     if (f.exists()) {
-                        writeFile(f, res);
+                        writeFile(f, req, res);
                     }
                 }
             } catch (Exception e) {
                 log.error("", e);
             }
         } else if (user != null) {
-            getDataFile(user, path, res);
+            getDataFile(user, path, req, res);
         }
     }
 
@@ -6,9 +6,11 @@ import org.dcm4che3.imageio.plugins.dcm.DicomImageReader;
 import org.dcm4che3.imageio.plugins.dcm.DicomImageReaderSpi;
 
 import javax.imageio.*;
+import javax.imageio.spi.ImageWriterSpi;
 import javax.imageio.stream.FileImageInputStream;
 import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -17,6 +19,8 @@ import java.text.MessageFormat;
 import java.util.Iterator;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.stream.StreamSupport;
 
 /**
@@ -24,6 +28,9 @@ import java.util.stream.StreamSupport;
  *
  * It is dcm4che3's Dcm2jpg class stripped of command line utility and hardcoded to gif.
  * The reader is hardcoded to dcm4che3's DicomImageReader due to collisions with v2.
+ *
+ * Readers and writers are reset and kept in small shared pools after each use, since creating them, and finding the
+ * writer in the ImageIO registry, costs more than decoding a small slice.
  */
 @Slf4j
 public class DicomImageRenderer {
@@ -34,14 +41,11 @@ public class DicomImageRenderer {
     }
 
     public ImageWriter getImageWriter() {
-        final Iterator<ImageWriter> imageWriters = ImageIO.getImageWritersByFormatName(FORMAT_DEFAULT);
-        if (!imageWriters.hasNext()) {
-            throw new IllegalArgumentException(MessageFormat.format("output image format: {0} not supported", FORMAT_DEFAULT));
+        try {
+            return getImageWriterSpi().createWriterInstance();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(MessageFormat.format("Couldn't create Image Writer: {0} for format {1}", ENCODER_DEFAULT, FORMAT_DEFAULT), e);
         }
-        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(imageWriters, Spliterator.CONCURRENT), true)
-                            .filter(clazz -> clazz.getClass().getName().startsWith(ENCODER_DEFAULT))
-                            .findFirst()
-                            .orElseThrow(() -> new IllegalArgumentException(MessageFormat.format("No Image Writer: {0} for format {1} found", ENCODER_DEFAULT, FORMAT_DEFAULT)));
     }
 
     /**
@@ -55,10 +59,31 @@ public class DicomImageRenderer {
      * @throws IOException When an error occurs reading the DICOM frame.
      */
     protected BufferedImage readImage(final File file, final int frame) throws IOException {
+        return readImages(file, new int[]{frame})[0];
+    }
+
+    /**
+     * Read the specified frames from the DICOM image in the submitted file, opening the file only once.
+     *
+     * @param file   The file from which to read.
+     * @param frames The frames to read.
+     *
+     * @return The contents of the specified frames in image buffers, in the same order as the frames.
+     *
+     * @throws IOException When an error occurs reading the DICOM frames.
+     */
+    protected BufferedImage[] readImages(final File file, final int[] frames) throws IOException {
+        final ImageReader imageReader = borrowImageReader();
         try (final ImageInputStream iis = new FileImageInputStream(file)) {
-            final ImageReader imageReader = getImageReader();
             imageReader.setInput(iis);
-            return imageReader.read(frame, readParam(imageReader));
+            final ImageReadParam  param  = readParam(imageReader);
+            final BufferedImage[] images = new BufferedImage[frames.length];
+            for (int index = 0; index < frames.length; index++) {
+                images[index] = imageReader.read(frames[index], param);
+            }
+            return images;
+        } finally {
+            release(imageReader);
         }
     }
 
@@ -72,17 +97,64 @@ public class DicomImageRenderer {
      */
     public void writeImage(final File destination, final BufferedImage image) throws IOException {
         log.info("Preparing to write image to file {}", destination.getAbsolutePath());
-        try (final RandomAccessFile output = new RandomAccessFile(destination, "rw")) {
+        final ImageWriter imageWriter = borrowImageWriter();
+        try (final RandomAccessFile output = new RandomAccessFile(destination, "rw");
+             final ImageOutputStream stream = new FileImageOutputStream(output)) {
             output.setLength(0);
-            final ImageWriter     imageWriter = getImageWriter();
-            final ImageWriteParam parameters  = imageWriter.getDefaultWriteParam();
+            final ImageWriteParam parameters = imageWriter.getDefaultWriteParam();
             parameters.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
             parameters.setCompressionType(COMPRESSION_DEFAULT);
-            imageWriter.setOutput(new FileImageOutputStream(output));
+            imageWriter.setOutput(stream);
             imageWriter.write(null, new IIOImage(image, null, null), parameters);
         } catch (IOException e) {
             log.error("An error occurred trying to write to the file {}", destination.getAbsolutePath(), e);
+        } finally {
+            release(imageWriter);
+        }
+    }
+
+    private ImageReader borrowImageReader() {
+        final ImageReader pooled = READERS.poll();
+        return pooled != null ? pooled : getImageReader();
+    }
+
+    private ImageWriter borrowImageWriter() {
+        final ImageWriter pooled = WRITERS.poll();
+        return pooled != null ? pooled : getImageWriter();
+    }
+
+    // Only the default implementations are pooled, since a subclass may hand out readers or writers that can't be shared.
+    private static void release(final ImageReader reader) {
+        reader.reset();
+        if (!(reader instanceof DicomImageReader) || !READERS.offer(reader)) {
+            reader.dispose();
+        }
+    }
+
+    private static void release(final ImageWriter writer) {
+        writer.reset();
+        if (writer.getOriginatingProvider() != getImageWriterSpi() || !WRITERS.offer(writer)) {
+            writer.dispose();
+        }
+    }
+
+    private static ImageWriterSpi getImageWriterSpi() {
+        if (_imageWriterSpi == null) {
+            synchronized (DicomImageRenderer.class) {
+                if (_imageWriterSpi == null) {
+                    final Iterator<ImageWriter> imageWriters = ImageIO.getImageWritersByFormatName(FORMAT_DEFAULT);
+                    if (!imageWriters.hasNext()) {
+                        throw new IllegalArgumentException(MessageFormat.format("output image format: {0} not supported", FORMAT_DEFAULT));
+                    }
+                    _imageWriterSpi = StreamSupport.stream(Spliterators.spliteratorUnknownSize(imageWriters, Spliterator.ORDERED), false)
+                                                   .filter(writer -> writer.getClass().getName().startsWith(ENCODER_DEFAULT))
+                                                   .findFirst()
+                                                   .map(ImageWriter::getOriginatingProvider)
+                                                   .orElseThrow(() -> new IllegalArgumentException(MessageFormat.format("No Image Writer: {0} for format {1} found", ENCODER_DEFAULT, FORMAT_DEFAULT)));
+                }
+            }
         }
+        return _imageWriterSpi;
     }
 
     private static ImageReadParam readParam(final ImageReader imageReader) {
@@ -111,4 +183,10 @@ public class DicomImageRenderer {
     private static final String  FORMAT_DEFAULT          = "GIF";
     private static final String  ENCODER_DEFAULT         = "com.sun.imageio.plugins.";
     private static final String  COMPRESSION_DEFAULT     = null;
+    private static final int     POOL_SIZE               = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final BlockingQueue<ImageReader> READERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final BlockingQueue<ImageWriter> WRITERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private static volatile ImageWriterSpi _imageWriterSpi;
 }
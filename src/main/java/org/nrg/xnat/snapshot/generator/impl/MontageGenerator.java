@@ -10,7 +10,12 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class to generate montage images of variable dimensions from a list of DICOM files.
@@ -21,6 +26,8 @@ import java.util.List;
  * The imageWriter is hardcoded to GIF but this could be made configurable fairly easily.
  *
  * Assumes all images are of the same type. Does not center smaller images in montage panel.
+ *
+ * The selected slices are decoded in parallel on a small pool of threads shared by all montages.
  */
 @Slf4j
 public class MontageGenerator extends DicomImageRenderer {
@@ -68,15 +75,7 @@ public class MontageGenerator extends DicomImageRenderer {
             List<SliceCoordinate> sliceCoordinates = sliceCoordinateCalculator.getSliceCoordinates(nPanels, nSlices, files);
 
             // Read the selected files into BufferedImages.
-            final List<BufferedImage> bis = new ArrayList<>();
-            for (final SliceCoordinate sc : sliceCoordinates) {
-                final File file = new File(files.get(sc.getFileNumber()));
-                try {
-                    bis.add(readImage(file, sc.getFrameNumber()));
-                } catch (IOException e) {
-                    throw new InitializationException("An error occurred trying to read image data from the file " + file.getAbsolutePath(), e);
-                }
-            }
+            final List<BufferedImage> bis = readPanels(files, sliceCoordinates);
 
             // Create the BufferedImage for the montage.
             BufferedImage montageBufferedImage;
@@ -102,17 +101,9 @@ public class MontageGenerator extends DicomImageRenderer {
 
                 // Write the individual images into the panels.
                 // TODO: This puts images smaller than the panel in the upper left corner of the panel instead of the more aesthetically pleasing center.
-                int ib = 0;
-                for (int ir = 0; ir < rows; ir++) {
-                    for (int ic = 0; ic < cols; ic++) {
-                        if (ib < bis.size()) {
-                            BufferedImage bi = bis.get(ib);
-                            addPanel(bi, srcDimensions, montageBufferedImage, ir, ic);
-                            ib++;
-                        } else {
-                            break;
-                        }
-                    }
+                final int panels = Math.min(bis.size(), nPanels);
+                for (int ib = 0; ib < panels; ib++) {
+                    addPanel(bis.get(ib), srcDimensions, montageBufferedImage, ib / cols, ib % cols);
                 }
             }
             return montageBufferedImage;
@@ -121,6 +112,72 @@ public class MontageGenerator extends DicomImageRenderer {
         }
     }
 
+    /**
+     * Decodes the selected slices on the shared decoder pool. Slices are decoded in chunks: each chunk holds frames from
+     * a single file, so every file is opened once per chunk rather than once per slice, while the frames of a large
+     * multi-frame file are still split between threads.
+     *
+     * @param files            The list of files from which to draw the montage images.
+     * @param sliceCoordinates The file and frame for each panel.
+     *
+     * @return The decoded images in panel order.
+     *
+     * @throws InitializationException When an error occurs reading any of the images.
+     */
+    private List<BufferedImage> readPanels(final List<String> files, final List<SliceCoordinate> sliceCoordinates) throws InitializationException {
+        final Map<Integer, List<Integer>> panelsByFile = new LinkedHashMap<>();
+        for (int panel = 0; panel < sliceCoordinates.size(); panel++) {
+            panelsByFile.computeIfAbsent(sliceCoordinates.get(panel).getFileNumber(), fileNumber -> new ArrayList<>()).add(panel);
+        }
+
+        final BufferedImage[]      images    = new BufferedImage[sliceCoordinates.size()];
+        final int                  chunkSize = Math.max(1, (sliceCoordinates.size() + DECODE_THREADS - 1) / DECODE_THREADS);
+        final List<Callable<Void>> chunks    = new ArrayList<>();
+        for (final Map.Entry<Integer, List<Integer>> entry : panelsByFile.entrySet()) {
+            final File          file   = new File(files.get(entry.getKey()));
+            final List<Integer> panels = entry.getValue();
+            for (int start = 0; start < panels.size(); start += chunkSize) {
+                final List<Integer> chunk = panels.subList(start, Math.min(start + chunkSize, panels.size()));
+                chunks.add(() -> {
+                    final int[] frames = chunk.stream().mapToInt(panel -> sliceCoordinates.get(panel).getFrameNumber()).toArray();
+                    try {
+                        final BufferedImage[] decoded = readImages(file, frames);
+                        for (int index = 0; index < decoded.length; index++) {
+                            images[chunk.get(index)] = decoded[index];
+                        }
+                    } catch (IOException e) {
+                        throw new InitializationException("An error occurred trying to read image data from the file " + file.getAbsolutePath(), e);
+                    }
+                    return null;
+                });
+            }
+        }
+
+        try {
+            if (chunks.size() == 1) {
+                chunks.get(0).call();
+            } else {
+                for (final Future<Void> future : DECODERS.invokeAll(chunks)) {
+                    future.get();
+                }
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof InitializationException) {
+                throw (InitializationException) cause;
+            }
+            throw new InitializationException("An error occurred trying to read image data", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InitializationException("Interrupted while reading image data", e);
+        } catch (InitializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new InitializationException("An error occurred trying to read image data", e);
+        }
+        return Arrays.asList(images);
+    }
+
     /**
      * A convenient local class to fling dimensions around.
      */
@@ -135,7 +192,8 @@ public class MontageGenerator extends DicomImageRenderer {
     }
 
     /**
-     * Draw the source image into the destination image at panel x, y.
+     * Draw the source image into the destination image at panel x, y. Images of the same type as the destination are
+     * copied straight into its raster, which gives the same result as drawing them without going through Java2D.
      *
      * @param sbi            The source image.
      * @param panelDimension The dimension of the panels in the destination image
@@ -144,6 +202,10 @@ public class MontageGenerator extends DicomImageRenderer {
      * @param ir             The row index of the panel.
      */
     private void addPanel(BufferedImage sbi, Dimensions panelDimension, BufferedImage dbi, int ir, int ic) {
+        if (sbi.getType() == dbi.getType() && sbi.getType() != BufferedImage.TYPE_CUSTOM) {
+            dbi.getRaster().setRect(ic * panelDimension.cols, ir * panelDimension.rows, sbi.getRaster());
+            return;
+        }
         Graphics2D g2d = dbi.createGraphics();
         g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f));
         g2d.drawImage(sbi, ic * panelDimension.cols, ir * panelDimension.rows, null);
@@ -166,5 +228,17 @@ public class MontageGenerator extends DicomImageRenderer {
         return max;
     }
 
+    private static final int             DECODE_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final ExecutorService DECODERS       = Executors.newFixedThreadPool(DECODE_THREADS, new ThreadFactory() {
+        private final AtomicInteger _count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "montage-decoder-" + _count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     private final SliceCoordinateCalculator sliceCoordinateCalculator;
 }
@@ -102,7 +102,7 @@ public class SnapshotGenerationApi extends AbstractXapiRestController {
         }
 
         final GridviewDimensions     dimensions   = new GridviewDimensions(view);
-        final Optional<FileResource> fileResource = _snapshotService.getSnapshot(session, scanId, dimensions.rows, dimensions.columns);
+        final Optional<FileResource> fileResource = _snapshotService.getSnapshot(sessionId, scanId, dimensions.rows, dimensions.columns);
 
         final File resource = fileResource.orElseThrow(() -> new NotFoundException("snapshot", String.format("SessionId: %s, ScanId: %s", sessionId, scanId))).getFile();
         log.debug("Snapshot path for scan {} of session {} with grid view {} found at path {}", scanId, sessionId, StringUtils.defaultIfBlank(view, "none"), fileResource.get().getRoot());
@@ -116,7 +116,7 @@ public class SnapshotGenerationApi extends AbstractXapiRestController {
         }
 
         final GridviewDimensions     dimensions   = new GridviewDimensions(view);
-        final Optional<FileResource> fileResource = _snapshotService.getThumbnail(session, scanId, dimensions.rows, dimensions.columns, 0.5f, 0.5f);
+        final Optional<FileResource> fileResource = _snapshotService.getThumbnail(sessionId, scanId, dimensions.rows, dimensions.columns, 0.5f, 0.5f);
 
         File resource = fileResource.orElseThrow(() -> new NotFoundException("thumbnail", String.format("SessionId: %s, ScanId: %s", sessionId, scanId))).getFile();
         log.debug("Thumbnail path for scan {} of session {} with grid view {} found at path {}", scanId, sessionId, StringUtils.defaultIfBlank(view, "none"), fileResource.get().getRoot());
@@ -6,6 +6,7 @@ import org.nrg.xapi.exceptions.NotFoundException;
 import org.nrg.xnat.snapshot.FileResource;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -39,4 +40,14 @@ public interface SnapshotGenerationService {
      * @return The URI to the specified thumbnail.
      */
     Optional<FileResource> getThumbnail(final String sessionId, final String scanId, final int rows, int cols, float scaleRows, float scaleCols) throws DataFormatException, NotFoundException, InitializationException, IOException;
+
+    /**
+     * Queues the snapshots and thumbnails configured for pre-rendering to be generated for each of the specified scans.
+     * This returns immediately and does nothing if pre-rendering is disabled. Requests for a snapshot or thumbnail that's
+     * still being rendered wait for that render to finish rather than starting another one.
+     *
+     * @param sessionId The ID of the session containing the scans.
+     * @param scanIds   The IDs of the scans for which snapshots and thumbnails should be generated.
+     */
+    void preRender(final String sessionId, final List<String> scanIds);
 }
@@ -1,16 +1,23 @@
 package org.nrg.xnat.snapshot.services.impl;
 
+import com.google.common.util.concurrent.Striped;
 import lombok.extern.slf4j.Slf4j;
 import org.nrg.xapi.exceptions.DataFormatException;
 import org.nrg.xapi.exceptions.InitializationException;
 import org.nrg.xapi.exceptions.NotFoundException;
+import org.nrg.xnat.preferences.SnapshotPreferences;
 import org.nrg.xnat.snapshot.FileResource;
+import org.nrg.xnat.snapshot.generator.SnapshotResourceGenerator;
 import org.nrg.xnat.snapshot.services.SnapshotGenerationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Implementation of SnapshotGenerationService.
@@ -19,8 +26,18 @@ import java.util.Optional;
 @Slf4j
 public class SnapshotGenerationServiceImpl implements SnapshotGenerationService {
     @Autowired
-    public SnapshotGenerationServiceImpl(final SnapshotProviderPool snapshotProviderPool) {
+    public SnapshotGenerationServiceImpl(final SnapshotProviderPool snapshotProviderPool, final SnapshotPreferences preferences) {
         _snapshotProviderPool = snapshotProviderPool;
+        _preferences = preferences;
+
+        final int           poolSize = Math.max(1, preferences.getPreRenderPoolSize());
+        final AtomicInteger count    = new AtomicInteger();
+        _preRenderExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(PRE_RENDER_QUEUE_CAPACITY), runnable -> {
+            final Thread thread = new Thread(runnable, "snapshot-pre-render-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (runnable, executor) -> log.warn("The snapshot pre-rendering queue is full, the scan will be rendered when it's first viewed"));
+        _preRenderExecutor.allowCoreThreadTimeOut(true);
     }
 
     /**
@@ -41,11 +58,44 @@ public class SnapshotGenerationServiceImpl implements SnapshotGenerationService
         return provideSnapshotOrThumbnail(sessionId, scanId, rows, cols, scaleRows, scaleCols);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void preRender(final String sessionId, final List<String> scanIds) {
+        if (!_preferences.isPreRenderEnabled()) {
+            log.debug("Snapshot pre-rendering is disabled, skipping {} scans of session {}", scanIds.size(), sessionId);
+            return;
+        }
+        final List<SnapshotView> views = new ArrayList<>(SnapshotView.parse(_preferences.getPreRenderSnapshotViews(), -1, -1));
+        views.addAll(SnapshotView.parse(_preferences.getPreRenderThumbnailViews(), THUMBNAIL_SCALE, THUMBNAIL_SCALE));
+        if (views.isEmpty()) {
+            log.debug("No snapshot or thumbnail views are configured for pre-rendering, skipping {} scans of session {}", scanIds.size(), sessionId);
+            return;
+        }
+        log.info("Queueing pre-rendering of views {} for {} scans of session {}", views, scanIds.size(), sessionId);
+        for (final String scanId : scanIds) {
+            _preRenderExecutor.execute(() -> preRenderScan(sessionId, scanId, views));
+        }
+    }
+
+    /**
+     * Stops the pre-rendering threads. Scans that haven't been pre-rendered yet get rendered when they're first viewed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        final List<Runnable> pending = _preRenderExecutor.shutdownNow();
+        if (!pending.isEmpty()) {
+            log.info("Stopped snapshot pre-rendering with {} scans still queued", pending.size());
+        }
+    }
+
     /**
      * Provide the requested Resource.
      *
-     * Pool deals one SnapshotProvider per scan, blocks if there are two requests for the same scan. No two requests will
-     * be working simultaneously on the same scan.
+     * Only one thread works on a scan at a time, since the views of a scan share a single resource catalog. A request
+     * for a view that's already being rendered, either by another request or by pre-rendering, waits for that render
+     * and returns its result instead of rendering the view again.
      *
      * @param sessionId    The ID of the session
      * @param scanId       The ID of the scan
@@ -57,11 +107,82 @@ public class SnapshotGenerationServiceImpl implements SnapshotGenerationService
      * @return The generated snapshot or thumbnail file.
      */
     private Optional<FileResource> provideSnapshotOrThumbnail(final String sessionId, final String scanId, final int rows, final int columns, float scaleRows, float scaleColumns) {
-        final String lockCode = getLockCode(sessionId, scanId);
-        try (final SnapshotProvider provider = _snapshotProviderPool.borrowObject(lockCode)) {
-            return provider.provideSnapshotOrThumbnail(sessionId, scanId, rows, columns, scaleRows, scaleColumns);
+        final String                                    lockCode  = getLockCode(sessionId, scanId);
+        final String                                    renderKey = getRenderKey(lockCode, SnapshotResourceGenerator.getContentName(rows, columns, scaleRows, scaleColumns));
+        final CompletableFuture<Optional<FileResource>> render    = new CompletableFuture<>();
+        final CompletableFuture<Optional<FileResource>> inFlight  = _inFlight.putIfAbsent(renderKey, render);
+        if (inFlight != null) {
+            log.debug("Waiting for the render of {} that's already in progress", renderKey);
+            return await(renderKey, inFlight);
+        }
+        try {
+            render.complete(withScanLock(lockCode, provider -> provider.provideSnapshotOrThumbnail(sessionId, scanId, rows, columns, scaleRows, scaleColumns)));
         } catch (Exception e) {
             log.warn("Exception from snapshot-provider pool", e);
+            render.complete(Optional.empty());
+        } finally {
+            _inFlight.remove(renderKey, render);
+        }
+        return render.join();
+    }
+
+    /**
+     * Renders the views of the scan that aren't already being rendered and adds them to the scan's SNAPSHOTS resource
+     * together. Requests for those views that come in while this runs wait for it rather than rendering them again.
+     *
+     * @param sessionId The ID of the session
+     * @param scanId    The ID of the scan
+     * @param views     The views to render.
+     */
+    private void preRenderScan(final String sessionId, final String scanId, final List<SnapshotView> views) {
+        final String                                                 lockCode = getLockCode(sessionId, scanId);
+        final Map<String, CompletableFuture<Optional<FileResource>>> claimed  = new LinkedHashMap<>();
+        final List<SnapshotView>                                     pending  = new ArrayList<>();
+        for (final SnapshotView view : views) {
+            final CompletableFuture<Optional<FileResource>> render = new CompletableFuture<>();
+            if (_inFlight.putIfAbsent(getRenderKey(lockCode, view.getContent()), render) == null) {
+                claimed.put(view.getContent(), render);
+                pending.add(view);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<String, Optional<FileResource>> provided = Collections.emptyMap();
+        try {
+            provided = withScanLock(lockCode, provider -> provider.provideSnapshotsAndThumbnails(sessionId, scanId, pending));
+            log.debug("Pre-rendered views {} for scan {} of session {}", pending, scanId, sessionId);
+        } catch (Exception e) {
+            log.warn("An error occurred pre-rendering views {} for scan {} of session {}", pending, scanId, sessionId, e);
+        } finally {
+            for (final Map.Entry<String, CompletableFuture<Optional<FileResource>>> entry : claimed.entrySet()) {
+                entry.getValue().complete(provided.getOrDefault(entry.getKey(), Optional.empty()));
+                _inFlight.remove(getRenderKey(lockCode, entry.getKey()), entry.getValue());
+            }
+        }
+    }
+
+    private <T> T withScanLock(final String lockCode, final SnapshotProviderFunction<T> function) throws Exception {
+        final Lock lock = _scanLocks.get(lockCode);
+        if (!lock.tryLock(MAX_WAIT, TimeUnit.MINUTES)) {
+            throw new TimeoutException("Timed out waiting for another snapshot of " + lockCode + " to finish rendering");
+        }
+        try (final SnapshotProvider provider = _snapshotProviderPool.borrowObject(lockCode)) {
+            return function.apply(provider);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Optional<FileResource> await(final String renderKey, final CompletableFuture<Optional<FileResource>> render) {
+        try {
+            return render.get(MAX_WAIT, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Gave up waiting for the render of {} already in progress", renderKey, e);
             return Optional.empty();
         }
     }
@@ -70,5 +191,23 @@ public class SnapshotGenerationServiceImpl implements SnapshotGenerationService
         return String.join(":", sessionId, scanId);
     }
 
-    private final SnapshotProviderPool _snapshotProviderPool;
+    private static String getRenderKey(final String lockCode, final String content) {
+        return String.join(":", lockCode, content);
+    }
+
+    @FunctionalInterface
+    private interface SnapshotProviderFunction<T> {
+        T apply(final SnapshotProvider provider) throws Exception;
+    }
+
+    private static final float THUMBNAIL_SCALE           = 0.5f;
+    private static final long  MAX_WAIT                  = 2;
+    private static final int   SCAN_LOCK_STRIPES         = 256;
+    private static final int   PRE_RENDER_QUEUE_CAPACITY = 10000;
+
+    private final SnapshotProviderPool                                             _snapshotProviderPool;
+    private final SnapshotPreferences                                              _preferences;
+    private final ThreadPoolExecutor                                               _preRenderExecutor;
+    private final Striped<Lock>                                                    _scanLocks = Striped.lazyWeakLock(SCAN_LOCK_STRIPES);
+    private final ConcurrentMap<String, CompletableFuture<Optional<FileResource>>> _inFlight  = new ConcurrentHashMap<>();
 }
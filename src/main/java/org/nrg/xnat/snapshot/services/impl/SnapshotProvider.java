@@ -26,13 +26,19 @@ import org.restlet.data.Status;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * SnapshotProvider: return existing snapshot or create it as necessary.
  *
- * Not thread safe but does not need to be if no two threads are working on the same scan.
+ * Not thread safe but does not need to be if no two threads are working on the same scan, which the snapshot generation
+ * service ensures by locking the scan while it uses the provider.
  */
 @Slf4j
 public class SnapshotProvider implements AutoCloseable {
@@ -84,6 +90,47 @@ public class SnapshotProvider implements AutoCloseable {
         return Optional.empty();
     }
 
+    /**
+     * Renders each of the views that doesn't already exist for the scan and adds all of the rendered files to the
+     * SNAPSHOTS resource with a single catalog update.
+     *
+     * @param sessionId The ID of the session containing the scan.
+     * @param scanId    The ID of the scan.
+     * @param views     The snapshot and thumbnail views to provide.
+     *
+     * @return The snapshot or thumbnail for each view, keyed by content name.
+     */
+    public Map<String, Optional<FileResource>> provideSnapshotsAndThumbnails(final String sessionId, final String scanId, final List<SnapshotView> views) throws DataFormatException, NotFoundException, InitializationException, IOException {
+        log.debug("Provide views {} for scan {} of session {}", views, scanId, sessionId);
+        final Map<String, Optional<FileResource>> provided = new LinkedHashMap<>();
+        final Optional<XnatResourcecatalog>       existing = getSnapshotResourceCatalog(sessionId, scanId);
+        final List<FileResource>                  created  = new ArrayList<>();
+        for (final SnapshotView view : views) {
+            final Optional<FileResource> snapshot = existing.isPresent() ? getResourceFile(existing.get(), view.getContent()) : Optional.empty();
+            if (snapshot.isPresent()) {
+                provided.put(view.getContent(), snapshot);
+            } else {
+                createSnapshot(sessionId, scanId, view.getRows(), view.getCols(), view.getScaleRows(), view.getScaleCols()).ifPresent(created::add);
+            }
+        }
+        if (!created.isEmpty()) {
+            final Optional<XnatResourcecatalog> catalog = existing.isPresent() ? existing : createSnapshotResourceCatalog(sessionId, scanId);
+            if (catalog.isPresent()) {
+                addFilesToResource(catalog.get(), created);
+                final XnatResourcecatalog retrieved = existing.isPresent() ? catalog.get() : getSnapshotResourceCatalog(sessionId, scanId).orElseThrow(() -> new InitializationException("Tried to retrieve the newly created snapshot resource catalog for session " + sessionId + " scan " + scanId + " but nothing was returned"));
+                for (final FileResource resource : created) {
+                    provided.put(resource.getContent(), getResourceFile(retrieved, resource.getContent()));
+                }
+            } else {
+                created.forEach(resource -> FileUtils.deleteQuietly(resource.getFile()));
+            }
+        }
+        for (final SnapshotView view : views) {
+            provided.putIfAbsent(view.getContent(), Optional.empty());
+        }
+        return provided;
+    }
+
     private Optional<FileResource> createSnapshot(final String sessionId, final String scanId, final int rows, final int cols, float scaleRows, float scaleCols) throws InitializationException, IOException {
         return (scaleRows < 0.0 || scaleCols < 0.0) ?
                _snapshotResourceGenerator.createSnapshot(sessionId, scanId, rows, cols) :
@@ -131,13 +178,21 @@ public class SnapshotProvider implements AutoCloseable {
     }
 
     private void addFileToResource(final XnatResourcecatalog catalog, final FileResource resource) throws InitializationException {
+        addFilesToResource(catalog, Collections.singletonList(resource));
+    }
+
+    private void addFilesToResource(final XnatResourcecatalog catalog, final List<FileResource> resources) throws InitializationException {
         try {
-            log.debug("Adding file {} to the catalog {}", resource, catalog.getUri());
-            final XnatResourceInfoMap resourceInfoMap = XnatResourceInfoMap.builder().resource(resource.getName(), resource.getFile(), resource.getFormat(), resource.getContent()).build();
-            _catalogService.insertResources(getResourceOwner(catalog), catalog, resourceInfoMap);
-            FileUtils.deleteQuietly(resource.getFile());
+            log.debug("Adding files {} to the catalog {}", resources, catalog.getUri());
+            final XnatResourceInfoMap.Builder builder = XnatResourceInfoMap.builder();
+            for (final FileResource resource : resources) {
+                builder.resource(resource.getName(), resource.getFile(), resource.getFormat(), resource.getContent());
+            }
+            _catalogService.insertResources(getResourceOwner(catalog), catalog, builder.build());
         } catch (Exception e) {
-            throw new InitializationException("An error occurred trying to add the file " + resource.getFile().getAbsolutePath(), e);
+            throw new InitializationException("An error occurred trying to add the files " + resources.stream().map(resource -> resource.getFile().getAbsolutePath()).collect(Collectors.joining(", ")), e);
+        } finally {
+            resources.forEach(resource -> FileUtils.deleteQuietly(resource.getFile()));
         }
     }
 
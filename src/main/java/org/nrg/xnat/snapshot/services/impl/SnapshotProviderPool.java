@@ -5,6 +5,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+/**
+ * Recycles snapshot providers per scan. The snapshot generation service only borrows a provider while holding the lock
+ * for its scan, so borrowing doesn't wait on other requests for the same scan.
+ */
 @Component
 public class SnapshotProviderPool extends GenericKeyedObjectPool<String, SnapshotProvider> {
     @Autowired
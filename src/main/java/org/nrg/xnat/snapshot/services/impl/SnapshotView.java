@@ -0,0 +1,78 @@
+package org.nrg.xnat.snapshot.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.xnat.snapshot.generator.SnapshotResourceGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The grid dimensions and scaling of a snapshot or thumbnail. Snapshots have negative scaling factors.
+ */
+@Slf4j
+class SnapshotView {
+    SnapshotView(final int rows, final int cols, final float scaleRows, final float scaleCols) {
+        _rows = rows;
+        _cols = cols;
+        _scaleRows = scaleRows;
+        _scaleCols = scaleCols;
+    }
+
+    /**
+     * Parses a comma-separated list of grid dimensions like "1X1, 4X4" into views. Entries that can't be parsed are
+     * logged and skipped.
+     *
+     * @param views     The grid dimensions to parse.
+     * @param scaleRows The scaling factor for rows, negative for snapshots.
+     * @param scaleCols The scaling factor for columns, negative for snapshots.
+     *
+     * @return The parsed views.
+     */
+    static List<SnapshotView> parse(final String views, final float scaleRows, final float scaleCols) {
+        final List<SnapshotView> parsed = new ArrayList<>();
+        for (final String view : StringUtils.split(StringUtils.defaultString(views), ',')) {
+            final Matcher matcher = DIMENSIONS.matcher(view);
+            if (matcher.matches()) {
+                parsed.add(new SnapshotView(Integer.parseInt(matcher.group("y")), Integer.parseInt(matcher.group("x")), scaleRows, scaleCols));
+            } else if (StringUtils.isNotBlank(view)) {
+                log.warn("Ignoring invalid snapshot view \"{}\", views should look like 4X4", view);
+            }
+        }
+        return parsed;
+    }
+
+    int getRows() {
+        return _rows;
+    }
+
+    int getCols() {
+        return _cols;
+    }
+
+    float getScaleRows() {
+        return _scaleRows;
+    }
+
+    float getScaleCols() {
+        return _scaleCols;
+    }
+
+    String getContent() {
+        return SnapshotResourceGenerator.getContentName(_rows, _cols, _scaleRows, _scaleCols);
+    }
+
+    @Override
+    public String toString() {
+        return getContent();
+    }
+
+    private static final Pattern DIMENSIONS = Pattern.compile("^\\s*(?<x>\\d+)\\s*X\\s*(?<y>\\d+)\\s*$", Pattern.CASE_INSENSITIVE);
+
+    private final int   _rows;
+    private final int   _cols;
+    private final float _scaleRows;
+    private final float _scaleCols;
+}
@@ -25,6 +25,24 @@ public interface EventTrackingDataHibernateService extends BaseHibernateService<
      */
     void createOrUpdate(TrackableEvent eventData) throws IllegalAccessException;
 
+    /**
+     * Get event tracking data by key, creating it if it doesn't exist
+     * @param key the key
+     * @param userId the user
+     * @return the event tracking data
+     * @throws IllegalAccessException if user cannot read this event tracking data
+     */
+    EventTrackingData findOrCreateByKey(String key, Integer userId) throws IllegalAccessException;
+
+    /**
+     * Replace the payload of the event tracking data with key, creating the event tracking data if it doesn't exist
+     * @param key the key
+     * @param userId the user
+     * @param payload the payload
+     * @throws IllegalAccessException if user cannot read this event tracking data
+     */
+    void updatePayload(String key, Integer userId, String payload) throws IllegalAccessException;
+
     /**
      * Find event tracking data by key
      * @param key the key
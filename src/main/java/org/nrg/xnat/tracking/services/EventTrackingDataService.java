@@ -45,7 +45,8 @@ public interface EventTrackingDataService {
     void createOrRestartWithKey(String key, UserI user) throws IllegalAccessException;
 
     /**
-     * Create or update eventTrackingData with TrackableEvent.
+     * Create or update eventTrackingData with TrackableEvent. Updates to the payload may be held in memory and written
+     * by {@link #flushPendingUpdates()}, completion is always written immediately.
      * <strong>Not safe across JVMs</strong>
      *
      * @param eventData the trackable event
@@ -53,6 +54,11 @@ public interface EventTrackingDataService {
      */
     void createOrUpdate(TrackableEvent eventData) throws IllegalAccessException;
 
+    /**
+     * Write payload updates that are being held in memory
+     */
+    void flushPendingUpdates();
+
     /**
      * Remove entries older than 1 month
      */
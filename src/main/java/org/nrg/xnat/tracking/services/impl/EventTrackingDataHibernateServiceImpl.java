@@ -60,6 +60,17 @@ public class EventTrackingDataHibernateServiceImpl extends AbstractHibernateEnti
         update(eventTrackingData);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public void updatePayload(String key, Integer userId, String payload) throws IllegalAccessException {
+        EventTrackingData eventTrackingData = findOrCreateByKey(key, userId);
+        eventTrackingData.setPayload(payload);
+        update(eventTrackingData);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -89,13 +100,11 @@ public class EventTrackingDataHibernateServiceImpl extends AbstractHibernateEnti
     }
 
     /**
-     * Get EventListenerData entity by key
-     * @param key the key
-     * @param userId the user
-     * @return the entity
-     * @throws IllegalAccessException if user cannot read this event tracking data
+     * {@inheritDoc}
      */
-    private EventTrackingData findOrCreateByKey(String key, Integer userId) throws IllegalAccessException {
+    @Override
+    @Transactional
+    public EventTrackingData findOrCreateByKey(String key, Integer userId) throws IllegalAccessException {
         try {
             return findByKey(key, userId);
         } catch (NotFoundException e) {
@@ -9,6 +9,7 @@
 
 package org.nrg.xnat.tracking.services.impl;
 
+import com.google.common.util.concurrent.Striped;
 import lombok.extern.slf4j.Slf4j;
 import org.nrg.framework.exceptions.NotFoundException;
 import org.nrg.xft.security.UserI;
@@ -19,12 +20,32 @@ import org.nrg.xnat.tracking.services.EventTrackingDataService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.util.Calendar;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
+/**
+ * Tracks events in the database. Updates for the same key are serialized on a striped lock rather than on the service,
+ * so events with different keys don't wait on each other. Payload updates for a key are merged in memory and written at
+ * most once per {@link #FLUSH_INTERVAL}, with anything left over written by {@link #flushPendingUpdates()}, so a burst
+ * of progress events, e.g. one per file in a large upload, results in a handful of writes instead of one per event.
+ * Completion is written immediately after any pending payload. Requests for the payload return the merged payload while
+ * updates are pending, so progress never appears to go backwards.
+ */
 @Slf4j
 @Service
 public class EventTrackingDataServiceImpl implements EventTrackingDataService {
+    public static final long FLUSH_INTERVAL = 1000;
+
+    private static final long IDLE_TIMEOUT = 60000;
+
     private final EventTrackingDataHibernateService eventTrackingDataHibernateService;
+    private final Striped<Lock>                     locks          = Striped.lazyWeakLock(64);
+    private final Map<String, PendingUpdate>        pendingUpdates = new ConcurrentHashMap<>();
 
     @Autowired
     public EventTrackingDataServiceImpl(final EventTrackingDataHibernateService eventTrackingDataHibernateService) {
@@ -44,7 +65,15 @@ public class EventTrackingDataServiceImpl implements EventTrackingDataService {
      */
     @Override
     public EventTrackingDataPojo getPojoByKey(String key, UserI user) throws NotFoundException {
-        return eventTrackingDataHibernateService.findByKey(key, user.getID()).toPojo();
+        // Get the pending payload first: it's written to the database before it's removed, so the stored payload is at
+        // least as recent if there's no longer a pending update when the database is checked.
+        final PendingUpdate         pendingUpdate = pendingUpdates.get(key);
+        final String                payload       = pendingUpdate != null && pendingUpdate.isFor(user.getID()) ? pendingUpdate.getPayload() : null;
+        final EventTrackingDataPojo pojo          = eventTrackingDataHibernateService.findByKey(key, user.getID()).toPojo();
+        if (payload != null) {
+            pojo.setPayload(payload);
+        }
+        return pojo;
     }
 
     /**
@@ -52,15 +81,82 @@ public class EventTrackingDataServiceImpl implements EventTrackingDataService {
      */
     @Override
     public void createOrRestartWithKey(String key, UserI user) throws IllegalAccessException {
-        eventTrackingDataHibernateService.createOrRestartWithKey(key, user.getID());
+        final Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            flush(key);
+            eventTrackingDataHibernateService.createOrRestartWithKey(key, user.getID());
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void createOrUpdate(TrackableEvent eventData) throws IllegalAccessException {
-        eventTrackingDataHibernateService.createOrUpdate(eventData);
+    public void createOrUpdate(TrackableEvent eventData) throws IllegalAccessException {
+        final String key  = eventData.getTrackingId();
+        final Lock   lock = locks.get(key);
+        lock.lock();
+        try {
+            if (eventData.isCompleted()) {
+                flush(key);
+                eventTrackingDataHibernateService.createOrUpdate(eventData);
+                return;
+            }
+
+            final Integer userId        = eventData.getUserId();
+            PendingUpdate pendingUpdate = pendingUpdates.get(key);
+            if (pendingUpdate != null && !pendingUpdate.isFor(userId)) {
+                // Another user can't add to this payload, let the hibernate service check access
+                eventTrackingDataHibernateService.createOrUpdate(eventData);
+                return;
+            }
+            if (pendingUpdate == null) {
+                pendingUpdate = new PendingUpdate(userId, eventTrackingDataHibernateService.findOrCreateByKey(key, userId).getPayload());
+                pendingUpdates.put(key, pendingUpdate);
+            }
+            try {
+                pendingUpdate.setPayload(eventData.updateTrackingPayload(pendingUpdate.getPayload()));
+            } catch (IOException e) {
+                log.error("Unable to parse payload, not updating event tracking data payload for {}", key, e);
+                return;
+            }
+            if (pendingUpdate.isFlushDue()) {
+                write(key, pendingUpdate);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @PreDestroy
+    public void flushPendingUpdates() {
+        for (final String key : pendingUpdates.keySet()) {
+            final Lock lock = locks.get(key);
+            lock.lock();
+            try {
+                final PendingUpdate pendingUpdate = pendingUpdates.get(key);
+                if (pendingUpdate == null) {
+                    continue;
+                }
+                if (pendingUpdate.isDirty()) {
+                    write(key, pendingUpdate);
+                } else if (pendingUpdate.isIdle()) {
+                    pendingUpdates.remove(key);
+                }
+            } catch (IllegalAccessException e) {
+                log.error("Unable to write the pending event tracking data payload for {}, discarding it", key, e);
+                pendingUpdates.remove(key);
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     /**
@@ -73,4 +169,78 @@ public class EventTrackingDataServiceImpl implements EventTrackingDataService {
         cal.add(Calendar.MONTH, -1);
         eventTrackingDataHibernateService.deleteEntriesOlderThan(cal.getTime());
     }
+
+    /**
+     * Writes any pending payload for the key and stops holding updates for it. Must be called with the key's lock held.
+     */
+    private void flush(final String key) throws IllegalAccessException {
+        final PendingUpdate pendingUpdate = pendingUpdates.get(key);
+        if (pendingUpdate == null) {
+            return;
+        }
+        try {
+            if (pendingUpdate.isDirty()) {
+                write(key, pendingUpdate);
+            }
+        } finally {
+            pendingUpdates.remove(key);
+        }
+    }
+
+    private void write(final String key, final PendingUpdate pendingUpdate) throws IllegalAccessException {
+        eventTrackingDataHibernateService.updatePayload(key, pendingUpdate.getUserId(), pendingUpdate.getPayload());
+        pendingUpdate.setFlushed();
+    }
+
+    /**
+     * The merged payload for a key. Only the payload is read without holding the key's lock.
+     */
+    private static class PendingUpdate {
+        PendingUpdate(final Integer userId, final String payload) {
+            this.userId = userId;
+            this.payload = payload;
+            updated = System.currentTimeMillis();
+        }
+
+        Integer getUserId() {
+            return userId;
+        }
+
+        boolean isFor(final Integer userId) {
+            return Objects.equals(this.userId, userId);
+        }
+
+        String getPayload() {
+            return payload;
+        }
+
+        void setPayload(final String payload) {
+            this.payload = payload;
+            updated = System.currentTimeMillis();
+            dirty = true;
+        }
+
+        boolean isDirty() {
+            return dirty;
+        }
+
+        boolean isFlushDue() {
+            return dirty && System.currentTimeMillis() - flushed >= FLUSH_INTERVAL;
+        }
+
+        boolean isIdle() {
+            return System.currentTimeMillis() - updated >= IDLE_TIMEOUT;
+        }
+
+        void setFlushed() {
+            flushed = System.currentTimeMillis();
+            dirty = false;
+        }
+
+        private final    Integer userId;
+        private volatile String  payload;
+        private          long    updated;
+        private          long    flushed;
+        private          boolean dirty;
+    }
 }
@@ -0,0 +1,256 @@
+/*
+ * web: org.nrg.xnat.utils.CatalogCache
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.config.exceptions.ConfigServiceException;
+import org.nrg.xdat.XDAT;
+import org.nrg.xdat.bean.CatCatalogBean;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * Caches parsed catalogs so that catalogs read over and over again, e.g. while a session is archived or while
+ * snapshots and downloads are built, aren't locked, parsed, and hashed each time. Each cached catalog is keyed by the
+ * path of the catalog file and is only used while the file still has the same size, modification time, and file key
+ * (the inode on most file systems) as when it was parsed, which can be checked without locking or reading the file.
+ * <p>
+ * Cached catalogs are stored in serialized form and every hit is deserialized into a new bean, since callers are free
+ * to modify the catalog they get back. Nothing handed to a caller is ever shared with the cache or with another caller.
+ * Because {@link CatalogUtils#writeCatalogToFile(CatalogUtils.CatalogData, boolean, java.util.Map)} replaces the
+ * catalog file rather than writing over it, each write gets a new file key, so a change is detected even when it
+ * leaves the size and modification time as they were. Files modified within the last couple of seconds aren't cached
+ * at all, since another write within the resolution of the file system's timestamps couldn't be told apart.
+ * <p>
+ * The total size of the serialized catalogs is limited by the <b>catalogCacheMaxBytes</b> site configuration property.
+ * Setting it to 0 disables the cache.
+ */
+@Slf4j
+public final class CatalogCache {
+    private CatalogCache() {
+        // Static utility class
+    }
+
+    /**
+     * Gets the identity of the catalog file as it is right now. When a catalog is read, this should be called before
+     * the file is parsed, with the file locked, and passed to {@link #put(FileIdentity, CatCatalogBean, String)}.
+     *
+     * @param file The catalog file.
+     *
+     * @return The identity of the file, or null if the file can't be read.
+     */
+    @Nullable
+    public static FileIdentity identify(final File file) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return new FileIdentity(getKey(file), attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Couldn't read the attributes of catalog file {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets a copy of the cached catalog for the file if the file hasn't changed since the catalog was cached.
+     *
+     * @param file The catalog file.
+     *
+     * @return The cached catalog, or null if the catalog isn't cached or the file has changed.
+     */
+    @Nullable
+    public static CachedCatalog get(final File file) {
+        final Cache<String, Entry> cache = getCache();
+        if (cache == null) {
+            return null;
+        }
+        final String key   = getKey(file);
+        final Entry  entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.getIdentity().equals(identify(file))) {
+            cache.asMap().remove(key, entry);
+            return null;
+        }
+        try (final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(entry.getCatalog()))) {
+            return new CachedCatalog((CatCatalogBean) input.readObject(), entry.getChecksum());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Couldn't restore the cached catalog for {}, it will be read from the file", file, e);
+            cache.asMap().remove(key, entry);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the catalog parsed from the file. This must be called before the catalog is modified.
+     *
+     * @param identity The identity of the file from before it was parsed.
+     * @param catalog  The parsed catalog.
+     * @param checksum The checksum of the file.
+     */
+    public static void put(@Nullable final FileIdentity identity, final CatCatalogBean catalog, final String checksum) {
+        final Cache<String, Entry> cache = getCache();
+        if (cache == null || identity == null || identity.getLastModified() > System.currentTimeMillis() - RACY_INTERVAL) {
+            return;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(catalog);
+        } catch (IOException e) {
+            log.warn("Couldn't serialize the catalog for {}, it won't be cached", identity.getPath(), e);
+            return;
+        }
+        cache.put(identity.getPath(), new Entry(identity, bytes.toByteArray(), checksum));
+    }
+
+    /**
+     * Removes any cached catalog for the file.
+     *
+     * @param file The catalog file.
+     */
+    public static void invalidate(final File file) {
+        final Cache<String, Entry> cache = getCache();
+        if (cache != null) {
+            cache.invalidate(getKey(file));
+        }
+    }
+
+    /**
+     * A catalog restored from the cache along with the checksum of the file it was parsed from.
+     */
+    public static final class CachedCatalog {
+        CachedCatalog(final CatCatalogBean catalog, final String checksum) {
+            _catalog = catalog;
+            _checksum = checksum;
+        }
+
+        public CatCatalogBean getCatalog() {
+            return _catalog;
+        }
+
+        public String getChecksum() {
+            return _checksum;
+        }
+
+        private final CatCatalogBean _catalog;
+        private final String         _checksum;
+    }
+
+    /**
+     * The path, size, modification time, and file key of a catalog file.
+     */
+    public static final class FileIdentity {
+        FileIdentity(final String path, final long size, final long lastModified, final Object fileKey) {
+            _path = path;
+            _size = size;
+            _lastModified = lastModified;
+            _fileKey = fileKey;
+        }
+
+        public String getPath() {
+            return _path;
+        }
+
+        public long getLastModified() {
+            return _lastModified;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof FileIdentity)) {
+                return false;
+            }
+            final FileIdentity identity = (FileIdentity) other;
+            return _size == identity._size && _lastModified == identity._lastModified && _path.equals(identity._path) && Objects.equals(_fileKey, identity._fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_path, _size, _lastModified, _fileKey);
+        }
+
+        private final String _path;
+        private final long   _size;
+        private final long   _lastModified;
+        private final Object _fileKey;
+    }
+
+    private static final class Entry {
+        Entry(final FileIdentity identity, final byte[] catalog, final String checksum) {
+            _identity = identity;
+            _catalog = catalog;
+            _checksum = checksum;
+        }
+
+        FileIdentity getIdentity() {
+            return _identity;
+        }
+
+        byte[] getCatalog() {
+            return _catalog;
+        }
+
+        String getChecksum() {
+            return _checksum;
+        }
+
+        private final FileIdentity _identity;
+        private final byte[]       _catalog;
+        private final String       _checksum;
+    }
+
+    private static String getKey(final File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    @Nullable
+    private static Cache<String, Entry> getCache() {
+        if (!_initialized) {
+            synchronized (CatalogCache.class) {
+                if (!_initialized) {
+                    _cache = createCache();
+                    _initialized = true;
+                }
+            }
+        }
+        return _cache;
+    }
+
+    @Nullable
+    private static Cache<String, Entry> createCache() {
+        long maxBytes = DEFAULT_MAX_BYTES;
+        try {
+            maxBytes = Long.parseLong(XDAT.getSiteConfigurationProperty("catalogCacheMaxBytes", Long.toString(DEFAULT_MAX_BYTES)));
+        } catch (ConfigServiceException | NumberFormatException e) {
+            log.warn("Couldn't read the configured catalog cache size, using {} bytes", DEFAULT_MAX_BYTES, e);
+        }
+        if (maxBytes <= 0) {
+            log.info("The catalog cache is disabled");
+            return null;
+        }
+        log.info("Caching up to {} bytes of parsed catalogs", maxBytes);
+        return CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher((String path, Entry entry) -> path.length() + entry.getCatalog().length).build();
+    }
+
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long RACY_INTERVAL     = 2000L;
+
+    private static volatile Cache<String, Entry> _cache;
+    private static volatile boolean              _initialized;
+}
@@ -14,7 +14,6 @@ import static org.apache.commons.io.FileUtils.listFiles;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.filefilter.*;
 import org.apache.commons.lang3.RegExUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -53,13 +52,9 @@ import javax.annotation.Nullable;
 import java.io.*;
 import java.net.URI;
 import java.net.URLDecoder;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -83,8 +78,10 @@ public class CatalogUtils {
     public static final String ABSOLUTE_PATH = "absolutePath";
     public static final String LOCATOR       = "locator";
     public static final String URI           = "URI";
+    public static final String TEMP_CATALOG_PREFIX = ".~catalog-";
+
     public static final IOFileFilter XNAT_CATALOGABLE_FILE_FILTER = new AndFileFilter(new NotFileFilter(new SuffixFileFilter("_catalog.xml")),
-            new NotFileFilter(new PrefixFileFilter(ThreadAndProcessFileLock.LOCKFILE_PREFIX)));
+            new NotFileFilter(new PrefixFileFilter(ThreadAndProcessFileLock.LOCKFILE_PREFIX, TEMP_CATALOG_PREFIX)));
 
     public static class CatalogEntryAttributes {
         public String relativePath;
@@ -167,7 +164,13 @@ public class CatalogUtils {
             this.catPath = this.catFile.getParent();
             this.catRes  = catRes;
             if (this.catFile.exists()) {
-                this.catBean = readCatalogBeanFromCatalogFile(catId);
+                final CatalogCache.CachedCatalog cached = CatalogCache.get(this.catFile);
+                if (cached != null) {
+                    this.catBean = cached.getCatalog();
+                    this.catFileChecksum = cached.getChecksum();
+                } else {
+                    this.catBean = readCatalogBeanFromCatalogFile(catId);
+                }
             } else if (create) {
                 CatCatalogBean cat = new CatCatalogBean();
                 if (StringUtils.isNotBlank(catId)) cat.setId(catId);
@@ -195,6 +198,8 @@ public class CatalogUtils {
                 final ThreadAndProcessFileLock fl = ThreadAndProcessFileLock.getThreadAndProcessFileLock(catFile, true);
                 fl.tryLock(2L, TimeUnit.MINUTES);
                 //log.trace("{} reader start: {}", System.currentTimeMillis(), fl.toString());
+                final CatalogCache.FileIdentity identity = CatalogCache.identify(catFile);
+                boolean cacheable = true;
                 try (FileInputStream fis = new FileInputStream(catFile)) {
                     if (catFile.getName().endsWith(".gz")) {
                         inputStream = new GZIPInputStream(fis);
@@ -212,6 +217,7 @@ public class CatalogUtils {
                             final CatCatalogBean catalog = new CatCatalogBean();
                             catalog.setId(catId);
                             base = catalog;
+                            cacheable = false;
                         } else {
                             throw exception;
                         }
@@ -222,6 +228,9 @@ public class CatalogUtils {
                         if (StringUtils.isBlank(catFileChecksum)) {
                             throw new ServerException("Unable to compute checksum for " + catFile + ". This will be needed to safely write the catalog");
                         }
+                        if (cacheable) {
+                            CatalogCache.put(identity, cat, catFileChecksum);
+                        }
                     }
                 } catch (FileNotFoundException exception) {
                     log.error("Couldn't find file: {}", catFile, exception);
@@ -370,40 +379,111 @@ public class CatalogUtils {
     }
 
     public static void calculateResourceChecksums(final CatalogData catalogData) {
-        for (CatEntryI entry : catalogData.catBean.getEntries_entry()) {
-            CatalogUtils.setChecksum(entry, catalogData.catPath, catalogData.project);
+        setChecksums(catalogData.catBean, catalogData.catPath, catalogData.project);
+    }
+
+    /**
+     * Gets the checksum algorithm for the catalog's entries. This is the algorithm recorded in the catalog's
+     * {@link #CHECKSUM_ALGORITHM} metafield if set. Catalogs without a recorded algorithm that already have checksums
+     * were created with MD5, while catalogs without any checksums use the algorithm configured for the site.
+     *
+     * @param catalog The catalog.
+     *
+     * @return The checksum algorithm for the catalog.
+     */
+    public static String getChecksumAlgorithm(final CatCatalogI catalog) {
+        final String recorded = getRecordedChecksumAlgorithm(catalog);
+        if (recorded != null) {
+            return recorded;
         }
+        return hasChecksums(catalog) ? ChecksumEngine.MD5 : ChecksumEngine.getConfiguredAlgorithm();
     }
 
     /**
-     * Set digest field on entry with corresponding MD5
+     * Gets the checksum algorithm recorded in the catalog's {@link #CHECKSUM_ALGORITHM} metafield.
+     *
+     * @param catalog The catalog.
      *
-     * @param entry CatEntryI for operation
-     * @param path  Path to catalog (used for relative paths)
+     * @return The recorded checksum algorithm, null if the catalog doesn't have a supported algorithm recorded.
+     */
+    public static String getRecordedChecksumAlgorithm(final CatCatalogI catalog) {
+        for (final CatCatalogMetafieldI metafield : catalog.getMetafields_metafield()) {
+            if (CHECKSUM_ALGORITHM.equals(metafield.getName()) && ChecksumEngine.isSupported(metafield.getMetafield())) {
+                return metafield.getMetafield();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Set digest field on entries in the catalog and its entry sets that don't have a checksum yet. The files are
+     * hashed in parallel with the catalog's {@link #getChecksumAlgorithm(CatCatalogI) checksum algorithm}, which is
+     * recorded in the catalog.
+     *
+     * @param catalog The catalog for operation
+     * @param path    Path to catalog (used for relative paths)
      * @param project The project
-     * @return true if entry was modified, false if not.
+     * @return true if any entry was modified, false if not.
      */
-    private static boolean setChecksum(final CatEntryI entry, final String path, final String project) {
-        if (StringUtils.isBlank(entry.getDigest())) {//this should only occur if the MD5 isn't already there.
-            // Catalogs are sometimes generated by client tools / contain remote URLs.
-            // Thus, URI may not stay relative to the catalog, as XNAT would make them.
-            final File file = CatalogUtils.getFile(entry, path, project);
-            if (file != null && file.exists()) {//fail safe to missing files, maybe the files haven't been put in place yet...
-                final String checksum = getHash(file);
-                if (StringUtils.isNotBlank(checksum)) {
-                    entry.setDigest(checksum);
-                    return true;
+    private static boolean setChecksums(final CatCatalogI catalog, final String path, final String project) {
+        final List<CatEntryI> entries = new ArrayList<>();
+        final List<File>      files   = new ArrayList<>();
+        findEntriesWithoutChecksums(catalog, path, project, entries, files);
+        if (files.isEmpty()) {
+            return false;
+        }
+
+        final String       algorithm = getChecksumAlgorithm(catalog);
+        final List<String> checksums = ChecksumEngine.hashAll(files, file -> getHash(file, true, algorithm));
+        boolean            modified  = false;
+        for (int index = 0; index < entries.size(); index++) {
+            final String checksum = checksums.get(index);
+            if (StringUtils.isNotBlank(checksum)) {
+                entries.get(index).setDigest(checksum);
+                modified = true;
+            }
+        }
+        if (modified && catalog instanceof CatCatalogBean) {
+            setMetaFieldByName((CatCatalogBean) catalog, CHECKSUM_ALGORITHM, algorithm);
+        }
+        return modified;
+    }
+
+    private static void findEntriesWithoutChecksums(final CatCatalogI catalog, final String path, final String project, final List<CatEntryI> entries, final List<File> files) {
+        for (final CatCatalogI subset : catalog.getSets_entryset()) {
+            findEntriesWithoutChecksums(subset, path, project, entries, files);
+        }
+        for (final CatEntryI entry : catalog.getEntries_entry()) {
+            if (StringUtils.isBlank(entry.getDigest())) {//this should only occur if the checksum isn't already there.
+                // Catalogs are sometimes generated by client tools / contain remote URLs.
+                // Thus, URI may not stay relative to the catalog, as XNAT would make them.
+                final File file = CatalogUtils.getFile(entry, path, project);
+                if (file != null && file.exists()) {//fail safe to missing files, maybe the files haven't been put in place yet...
+                    entries.add(entry);
+                    files.add(file);
                 }
             }
         }
+    }
 
+    private static boolean hasChecksums(final CatCatalogI catalog) {
+        for (final CatEntryI entry : catalog.getEntries_entry()) {
+            if (StringUtils.isNotBlank(entry.getDigest())) {
+                return true;
+            }
+        }
+        for (final CatCatalogI subset : catalog.getSets_entryset()) {
+            if (hasChecksums(subset)) {
+                return true;
+            }
+        }
         return false;
     }
 
     /**
-     * Calculates a checksum hash for the submitted file based on the currently configured hash algorithm. Note that
-     * currently XNAT only supports MD5 hashes. If an error occurs while calculating the checksum, the error is
-     * logged and this method returns an empty string.
+     * Calculates an MD5 checksum hash for the submitted file. Use {@link #getHash(File, boolean, String)} to hash a
+     * file for a catalog with the catalog's {@link #getChecksumAlgorithm(CatCatalogI) checksum algorithm}. If an error
+     * occurs while calculating the checksum, the error is logged and this method returns an empty string.
      *
      * Note that this method will attempt to obtain a read lock for this file. If you already have the lock, use
      * {@link #getHash(File, boolean)}
@@ -418,9 +498,8 @@ public class CatalogUtils {
     }
 
     /**
-     * Calculates a checksum hash for the submitted file based on the currently configured hash algorithm. Note that
-     * currently XNAT only supports MD5 hashes. If an error occurs while calculating the checksum, the error is
-     * logged and this method returns an empty string.
+     * Calculates an MD5 checksum hash for the submitted file. If an error occurs while calculating the checksum, the
+     * error is logged and this method returns an empty string.
      *
      * @param file The file for which the checksum should be calculated.
      * @param needLock set to false if you already have a lock for the file (attempting to acquire another would
@@ -429,47 +508,42 @@ public class CatalogUtils {
      */
     @Nonnull
     public static String getHash(File file, boolean needLock) {
-        return getHash(file, needLock, "MD5");
+        return getHash(file, needLock, ChecksumEngine.MD5);
     }
 
-    @SuppressWarnings("SameParameterValue")
+    /**
+     * Calculates a checksum hash for the submitted file with the specified algorithm, which must be one of the
+     * {@link ChecksumEngine#ALGORITHMS supported algorithms}. If an error occurs while calculating the checksum, the
+     * error is logged and this method returns an empty string.
+     *
+     * @param file      The file for which the checksum should be calculated.
+     * @param needLock  set to false if you already have a lock for the file (attempting to acquire another would
+     *                  result in deadlock)
+     * @param algorithm The checksum algorithm.
+     * @return The checksum for the file if successful, an empty string otherwise.
+     */
     @Nonnull
-    private static String getHash(File file, boolean needLock, String hashType) {
+    public static String getHash(File file, boolean needLock, String algorithm) {
         String digest = "";
         try {
-            MessageDigest md5 = MessageDigest.getInstance(hashType);
-
-            //read into buffer and update md5
+            ThreadAndProcessFileLock fl = null;
+            if (needLock) {
+                fl = ThreadAndProcessFileLock.getThreadAndProcessFileLock(file, true);
+                fl.tryLock(10L, TimeUnit.SECONDS);
+            }
             try {
-                ThreadAndProcessFileLock fl = null;
-                if (needLock) {
-                    fl = ThreadAndProcessFileLock.getThreadAndProcessFileLock(file, true);
-                    fl.tryLock(10L, TimeUnit.SECONDS);
-                }
-                try (RandomAccessFile store = new RandomAccessFile(file, "r");
-                     FileChannel channel = store.getChannel()) {
-                    ByteBuffer buffer = ByteBuffer.allocate(1024);
-                    while (channel.read(buffer) > 0) {
-                        buffer.flip();
-                        md5.update(buffer);
-                        buffer.clear();
-                    }
-
-                    //compute hex
-                    digest = Hex.encodeHexString(md5.digest());
-
-                } catch (IOException e) {
-                    log.error("Error computing file hash for {}", file.getAbsolutePath(), e);
-                } finally {
-                    if (needLock) fl.unlock();
-                }
+                digest = ChecksumEngine.hash(file, algorithm);
             } catch (IOException e) {
-                log.error("Unable to obtain read lock for file {}", file.getAbsolutePath(), e);
+                log.error("Error computing file hash for {}", file.getAbsolutePath(), e);
+            } catch (IllegalArgumentException e) {
+                log.error("Unsupported hashing algorithm {}", algorithm, e);
             } finally {
-                if (needLock) ThreadAndProcessFileLock.removeThreadAndProcessFileLock(file);
+                if (needLock) fl.unlock();
             }
-        } catch(NoSuchAlgorithmException e){
-            log.error("Unsupported hashing algorithm {}", hashType, e);
+        } catch (IOException e) {
+            log.error("Unable to obtain read lock for file {}", file.getAbsolutePath(), e);
+        } finally {
+            if (needLock) ThreadAndProcessFileLock.removeThreadAndProcessFileLock(file);
         }
         return digest;
     }
@@ -934,22 +1008,12 @@ public class CatalogUtils {
         final Map<String, CatalogMapEntry> catalogMap = buildCatalogMap(catalogData);
 
         final Path catalogPath = Paths.get(catalogData.catPath);
+        final List<Pair<Path, BasicFileAttributes>> visited = new ArrayList<>();
         try {
             Files.walkFileTree(catalogPath, new SimpleFileVisitor<Path>() {
                 @Override
                 public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                    boolean mod = false;
                     File f = file.toFile();
-                    final String relative = catalogPath.relativize(file).toString();
-                    final String format, content;
-                    if (resources != null && resources.containsKey(relative)) {
-                        format = resources.get(relative).getFormat();
-                        content = resources.get(relative).getContent();
-                    } else {
-                        format = null;
-                        content = null;
-                    }
-
                     if (f.equals(catalogData.catFile)) {
                         //don't add the catalog xml
                         return FileVisitResult.CONTINUE;
@@ -968,31 +1032,7 @@ public class CatalogUtils {
                         return FileVisitResult.CONTINUE;
                     }
 
-                    //check if file exists in catalog already
-                    if (catalogMap.containsKey(relative)) {
-                        CatalogMapEntry mapEntry = catalogMap.get(relative);
-                        mapEntry.entryExists = true; //mark that file exists
-                        mod = updateExistingCatEntry(mapEntry.entry, null, relative, f.getName(), attrs.size(),
-                                checksums ? getHash(f) : null, format, content, info, eventMeta);
-                        if (mod) modded.getAndIncrement();
-                    } else {
-                        if (addUnreferencedFiles) {
-                            //this used to be run as part of writeCatalogFile
-                            String digest = checksums ? getHash(f) : null;
-
-                            CatEntryBean entry = populateAndAddCatEntry(catalogData.catBean, relative, relative,
-                                    f.getName(), attrs.size(), info, digest, format, content, null);
-                            catalogMap.put(relative, new CatalogMapEntry(entry, catalogData.catBean, true));
-
-                            mod = true;
-                            added.getAndIncrement();
-                        }
-                    }
-
-                    //if we traverse any file and add or modify its entry, set rtn=1
-                    //if no file entries are modified during the whole walk, rtn will remain 0
-                    if (mod) rtn.set(1);
-
+                    visited.add(Pair.of(file, attrs));
                     return FileVisitResult.CONTINUE;
                 }
 
@@ -1016,12 +1056,73 @@ public class CatalogUtils {
             throw new AssertionError("Files.walkFileTree shouldn't throw IOException since we modified SimpleFileVisitor not to do so");
         }
 
-        int rtn_val = rtn.get();
-        if (rtn_val == -1) {
+        if (rtn.get() == -1) {
             //multiple catalog files
             return Pair.of(false, null);
         }
 
+        //hash all of the files that will be added or updated in parallel before updating the catalog
+        final Map<File, String> digests = new HashMap<>();
+        final String algorithm = checksums ? getChecksumAlgorithm(catalogData.catBean) : null;
+        if (checksums) {
+            final List<File> toHash = new ArrayList<>();
+            for (final Pair<Path, BasicFileAttributes> visit : visited) {
+                if (addUnreferencedFiles || catalogMap.containsKey(catalogPath.relativize(visit.getKey()).toString())) {
+                    toHash.add(visit.getKey().toFile());
+                }
+            }
+            final List<String> hashes = ChecksumEngine.hashAll(toHash, f -> getHash(f, true, algorithm));
+            for (int index = 0; index < toHash.size(); index++) {
+                digests.put(toHash.get(index), hashes.get(index));
+            }
+        }
+
+        for (final Pair<Path, BasicFileAttributes> visit : visited) {
+            boolean mod = false;
+            final File f = visit.getKey().toFile();
+            final long fileSize = visit.getValue().size();
+            final String relative = catalogPath.relativize(visit.getKey()).toString();
+            final String format, content;
+            if (resources != null && resources.containsKey(relative)) {
+                format = resources.get(relative).getFormat();
+                content = resources.get(relative).getContent();
+            } else {
+                format = null;
+                content = null;
+            }
+
+            //check if file exists in catalog already
+            if (catalogMap.containsKey(relative)) {
+                CatalogMapEntry mapEntry = catalogMap.get(relative);
+                mapEntry.entryExists = true; //mark that file exists
+                mod = updateExistingCatEntry(mapEntry.entry, null, relative, f.getName(), fileSize,
+                        digests.get(f), format, content, info, eventMeta);
+                if (mod) modded.getAndIncrement();
+            } else {
+                if (addUnreferencedFiles) {
+                    //this used to be run as part of writeCatalogFile
+                    String digest = digests.get(f);
+
+                    CatEntryBean entry = populateAndAddCatEntry(catalogData.catBean, relative, relative,
+                            f.getName(), fileSize, info, digest, format, content, null);
+                    catalogMap.put(relative, new CatalogMapEntry(entry, catalogData.catBean, true));
+
+                    mod = true;
+                    added.getAndIncrement();
+                }
+            }
+
+            //if we traverse any file and add or modify its entry, set rtn=1
+            //if no file entries are modified during the whole walk, rtn will remain 0
+            if (mod) rtn.set(1);
+        }
+
+        if (checksums && digests.values().stream().anyMatch(StringUtils::isNotBlank) && setMetaFieldByName(catalogData.catBean, CHECKSUM_ALGORITHM, algorithm)) {
+            rtn.set(1);
+        }
+
+        int rtn_val = rtn.get();
+
         //For resource stats
         final AtomicLong size = new AtomicLong(0);
         final AtomicInteger count = new AtomicInteger(0);
@@ -1426,10 +1527,24 @@ public class CatalogUtils {
         return StringUtils.contains(content,"URI=\"" + uri + "\"");
     }
 
+    /**
+     * Finds the entry with the specified URI, or with the URL-decoded form of the URI, in the catalog or its entry
+     * sets. This walks the whole catalog, so use an {@link IndexedCatalog} when looking up many entries.
+     *
+     * @param cat  The catalog to search.
+     * @param name The URI to find.
+     *
+     * @return The matching entry, or null if no entry matches.
+     */
     public static CatEntryI getEntryByURI(CatCatalogI cat, String name) {
+        //URLDecoder is horribly non-performant, so only decode once for the whole catalog.
+        return getEntryByURI(cat, name, new AtomicReference<>());
+    }
+
+    private static CatEntryI getEntryByURI(CatCatalogI cat, String name, AtomicReference<String> decoded) {
         CatEntryI e;
         for (CatCatalogI subset : cat.getSets_entryset()) {
-            e = getEntryByURI(subset, name);
+            e = getEntryByURI(subset, name, decoded);
             if (e != null) return e;
         }
 
@@ -1439,29 +1554,44 @@ public class CatalogUtils {
             }
         }
 
-        //do the decoded check after the basic match.  URLDecoder is horribly non-performant.
-        final String decoded = URLDecoder.decode(name);
-        if (decoded != null) {
-            for (CatEntryI entry : cat.getEntries_entry()) {
-                if ((entry.getUri().equals(decoded))) {
-                    return entry;
-                }
+        //do the decoded check after the basic match.
+        if (cat.getEntries_entry().isEmpty()) {
+            return null;
+        }
+        if (decoded.get() == null) {
+            decoded.set(URLDecoder.decode(name));
+        }
+        for (CatEntryI entry : cat.getEntries_entry()) {
+            if ((entry.getUri().equals(decoded.get()))) {
+                return entry;
             }
         }
 
         return null;
     }
 
+    /**
+     * Finds the entry with the specified name, or with the URL-decoded form of the name, in the catalog or its entry
+     * sets. This walks the whole catalog, so use an {@link IndexedCatalog} when looking up many entries.
+     *
+     * @param cat  The catalog to search.
+     * @param name The name to find.
+     *
+     * @return The matching entry, or null if no entry matches.
+     */
     @SuppressWarnings("unused")
     public static CatEntryI getEntryByName(CatCatalogI cat, String name) {
+        return getEntryByName(cat, name, URLDecoder.decode(name));
+    }
+
+    private static CatEntryI getEntryByName(CatCatalogI cat, String name, String decoded) {
         CatEntryI e;
         for (CatCatalogI subset : cat.getSets_entryset()) {
-            e = getEntryByName(subset, name);
+            e = getEntryByName(subset, name, decoded);
             if (e != null) return e;
         }
 
         for (CatEntryI entry : cat.getEntries_entry()) {
-            String decoded = URLDecoder.decode(name);
             if (entry.getName().equals(name) || entry.getName().equals(decoded)) {
                 return entry;
             }
@@ -2001,11 +2131,8 @@ public class CatalogUtils {
                             catalogData.catFile + " since I last read it or I don't have a previous checksum to compare. " +
                             "To avoid overwriting changes, I'm throwing an exception.");
                 }
-                try (final FileOutputStream fos = new FileOutputStream(catalogData.catFile)) {
-                    final OutputStreamWriter fw = new OutputStreamWriter(fos);
-                    catalogData.catBean.toXML(fw);
-                    fw.flush();
-                }
+                CatalogCache.invalidate(catalogData.catFile);
+                writeCatalogBean(catalogData.catBean, catalogData.catFile);
                 // update checksum after we write so this catalogData object will allow a future write
                 catalogData.catFileChecksum = getHash(catalogData.catFile, false);
             } finally {
@@ -2020,6 +2147,51 @@ public class CatalogUtils {
         }
     }
 
+    /**
+     * Writes the catalog to a temporary file alongside the catalog file and then moves it into place, so the catalog
+     * file is replaced in a single step rather than written over. Readers that already have the file open keep reading
+     * the previous version and the replacement gets a new file key, which lets {@link CatalogCache} tell the versions
+     * apart. Symbolic links are still written through so the link itself isn't replaced.
+     *
+     * @param catBean The catalog to write.
+     * @param catFile The catalog file.
+     *
+     * @throws Exception When the catalog can't be written.
+     */
+    private static void writeCatalogBean(final CatCatalogBean catBean, final File catFile) throws Exception {
+        final Path target = catFile.toPath();
+        if (Files.isSymbolicLink(target)) {
+            try (final FileOutputStream fos = new FileOutputStream(catFile)) {
+                final OutputStreamWriter fw = new OutputStreamWriter(fos);
+                catBean.toXML(fw);
+                fw.flush();
+            }
+            return;
+        }
+        final File temp = new File(catFile.getParentFile(), TEMP_CATALOG_PREFIX + UUID.randomUUID() + "-" + catFile.getName());
+        try {
+            try (final FileOutputStream fos = new FileOutputStream(temp)) {
+                final OutputStreamWriter fw = new OutputStreamWriter(fos);
+                catBean.toXML(fw);
+                fw.flush();
+            }
+            if (Files.exists(target)) {
+                try {
+                    Files.setPosixFilePermissions(temp.toPath(), Files.getPosixFilePermissions(target));
+                } catch (UnsupportedOperationException | IOException e) {
+                    log.debug("Couldn't copy the permissions of {} to the new catalog file", catFile, e);
+                }
+            }
+            try {
+                Files.move(temp.toPath(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
     @Nonnull
     public static File getOrCreateCatalogFile(String rootPath, XnatResourcecatalogI resource, @Nullable String project)
             throws ServerException {
@@ -2229,7 +2401,8 @@ public class CatalogUtils {
      * @return true if catalog was modified, otherwise false
      */
     public static boolean formalizeCatalog(final CatCatalogI cat, final String catPath, final String project, UserI user, EventMetaI now, boolean createChecksums, boolean removeMissingFiles) {
-        return formalizeCatalog(cat, catPath, project,"", user, now, createChecksums, removeMissingFiles);
+        final boolean modified = formalizeCatalog(cat, catPath, project,"", user, now, removeMissingFiles);
+        return (createChecksums && setChecksums(cat, catPath, project)) || modified;
     }
 
     public static String getFullPath(String rootPath, XnatResourcecatalogI resource) {
@@ -2478,7 +2651,13 @@ public class CatalogUtils {
         } else {
             String digest = null;
             try {
-                digest = getChecksumConfiguration() ? getHash(f) : null;
+                if (getChecksumConfiguration()) {
+                    final String algorithm = getChecksumAlgorithm(catalogData.catBean);
+                    digest = getHash(f, true, algorithm);
+                    if (StringUtils.isNotBlank(digest)) {
+                        setMetaFieldByName(catalogData.catBean, CHECKSUM_ALGORITHM, algorithm);
+                    }
+                }
             } catch (ConfigServiceException e) {
                 // Ignore
             }
@@ -2497,10 +2676,19 @@ public class CatalogUtils {
 
     public static boolean updateExistingCatEntry(CatEntryI entry, File f, String relativePath,
                                                  final EventMetaI eventMeta) {
+        return updateExistingCatEntry(entry, f, relativePath, ChecksumEngine.MD5, eventMeta);
+    }
+
+    /**
+     * Updates the entry from the file, calculating its checksum with the specified algorithm, which should be the
+     * {@link #getChecksumAlgorithm(CatCatalogI) checksum algorithm} of the catalog containing the entry.
+     */
+    public static boolean updateExistingCatEntry(CatEntryI entry, File f, String relativePath, final String algorithm,
+                                                 final EventMetaI eventMeta) {
         String digest = null;
         try {
             if (getChecksumConfiguration()) {
-                digest = getHash(f);
+                digest = getHash(f, true, algorithm);
             }
         } catch (ConfigServiceException ignored) {
             //Ignore
@@ -2832,11 +3020,11 @@ public class CatalogUtils {
         return unreferenced;
     }
 
-    private static boolean formalizeCatalog(final CatCatalogI cat, final String catPath, final String project, String header, UserI user, EventMetaI now, final boolean createChecksum, final boolean removeMissingFiles) {
+    private static boolean formalizeCatalog(final CatCatalogI cat, final String catPath, final String project, String header, UserI user, EventMetaI now, final boolean removeMissingFiles) {
         boolean modified = false;
 
         for (CatCatalogI subSet : cat.getSets_entryset()) {
-            if (formalizeCatalog(subSet, catPath, project, FileUtils.AppendSlash(header,"") + subSet.getId(), user, now, createChecksum, removeMissingFiles)) {
+            if (formalizeCatalog(subSet, catPath, project, FileUtils.AppendSlash(header,"") + subSet.getId(), user, now, removeMissingFiles)) {
                 modified = true;
             }
         }
@@ -2857,12 +3045,6 @@ public class CatalogUtils {
                 modified = true;
             }
 
-            if (createChecksum) {
-                if (setChecksum(entry, catPath, project)) {
-                    modified = true;
-                }
-            }
-
             if (removeMissingFiles) {
                 File f = getFile(entry, catPath, project);
                 if (f == null) {
@@ -2894,10 +3076,11 @@ public class CatalogUtils {
         return _jdbcTemplate.get();
     }
 
-    public static final String RELATIVE_PATH = "RELATIVE_PATH";
-    public static final String SIZE          = "SIZE";
-    public static final String PROJECT       = "PROJECT";
-    public static final String ORIG_URI      = "ORIG_URI";
+    public static final String RELATIVE_PATH      = "RELATIVE_PATH";
+    public static final String SIZE               = "SIZE";
+    public static final String PROJECT            = "PROJECT";
+    public static final String ORIG_URI           = "ORIG_URI";
+    public static final String CHECKSUM_ALGORITHM = "CHECKSUM_ALGORITHM";
 
     private static final String PREMATURE_EOF = "Premature end of file";
     private static final String UNSET_STRING  = "NULL";
@@ -0,0 +1,358 @@
+/*
+ * web: org.nrg.xnat.utils.ChecksumEngine
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.config.exceptions.ConfigServiceException;
+import org.nrg.xdat.XDAT;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Calculates file checksums for catalog entries. Files are read through large heap buffers that are reused across
+ * calls, so hashing isn't bound by lots of small reads. Files can be hashed on a shared, bounded pool with
+ * {@link #hashAll(List, Function)}, which is used when a whole catalog's checksums are calculated.
+ * <p>
+ * The supported algorithms are {@link #MD5}, {@link #SHA_256}, and {@link #XXH64}. MD5 remains the default. The
+ * algorithm used for new catalogs can be changed with the <b>checksumAlgorithm</b> site configuration property and the
+ * number of threads in the pool with the <b>checksumThreads</b> property, which is read when the pool is first used.
+ * Digests don't identify the algorithm that produced them, so the algorithm is recorded in the catalog, as described
+ * in {@link CatalogUtils#getChecksumAlgorithm(org.nrg.xdat.model.CatCatalogI)}.
+ */
+@Slf4j
+public final class ChecksumEngine {
+    public static final String       MD5        = "MD5";
+    public static final String       SHA_256    = "SHA-256";
+    public static final String       XXH64      = "XXH64";
+    public static final List<String> ALGORITHMS = ImmutableList.of(MD5, SHA_256, XXH64);
+
+    private ChecksumEngine() {
+        // Static utility class
+    }
+
+    /**
+     * Gets the checksum algorithm configured for the site. If the configured value isn't a supported algorithm, a
+     * warning is logged and {@link #MD5} is returned.
+     *
+     * @return The configured checksum algorithm.
+     */
+    public static String getConfiguredAlgorithm() {
+        try {
+            final String algorithm = XDAT.getSiteConfigurationProperty("checksumAlgorithm", MD5);
+            if (isSupported(algorithm)) {
+                return getSupportedAlgorithm(algorithm);
+            }
+            log.warn("The configured checksum algorithm {} isn't supported, using {} instead. Supported algorithms are: {}", algorithm, MD5, ALGORITHMS);
+        } catch (ConfigServiceException e) {
+            log.warn("Couldn't read the configured checksum algorithm, using {}", MD5, e);
+        }
+        return MD5;
+    }
+
+    /**
+     * Indicates whether the specified algorithm is supported. Algorithm names aren't case-sensitive.
+     *
+     * @param algorithm The algorithm name.
+     *
+     * @return Returns <b>true</b> if the algorithm is supported.
+     */
+    public static boolean isSupported(final String algorithm) {
+        return getSupportedAlgorithm(algorithm) != null;
+    }
+
+    /**
+     * Calculates the checksum for the file with the specified algorithm.
+     *
+     * @param file      The file to hash.
+     * @param algorithm The algorithm to use.
+     *
+     * @return The checksum as a lower-case hex string.
+     *
+     * @throws IOException When the file can't be read.
+     */
+    public static String hash(final File file, final String algorithm) throws IOException {
+        final Hasher hasher = getHasher(algorithm);
+        final byte[] buffer = acquireBuffer();
+        try (final InputStream input = new FileInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                hasher.update(ByteBuffer.wrap(buffer, 0, read));
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+        return Hex.encodeHexString(hasher.digest());
+    }
+
+    /**
+     * Calculates checksums for a number of files in parallel on the shared pool. The hash function is responsible for
+     * locking and error handling, e.g. returning an empty string for files that can't be read.
+     *
+     * @param files  The files to hash.
+     * @param hasher The function used to hash each file.
+     *
+     * @return The checksums for the submitted files, in the same order.
+     */
+    public static List<String> hashAll(final List<File> files, final Function<File, String> hasher) {
+        return hashAll(files, Workers.THREADS, hasher);
+    }
+
+    /**
+     * Calculates checksums for a number of files in parallel using up to the specified number of threads from the
+     * shared pool. If the pool is busy hashing other catalogs, the files wait for a free thread.
+     *
+     * @param files      The files to hash.
+     * @param maxThreads The maximum number of threads to use.
+     * @param hasher     The function used to hash each file.
+     *
+     * @return The checksums for the submitted files, in the same order.
+     */
+    public static List<String> hashAll(final List<File> files, final int maxThreads, final Function<File, String> hasher) {
+        final int threads = Math.min(Math.min(maxThreads, Workers.THREADS), files.size());
+        if (threads <= 1) {
+            final List<String> checksums = new ArrayList<>(files.size());
+            for (final File file : files) {
+                checksums.add(apply(hasher, file));
+            }
+            return checksums;
+        }
+
+        // Each task takes the next file from the list until there are none left, so one catalog never has more than
+        // the requested number of threads from the pool.
+        final String[]        checksums = new String[files.size()];
+        final AtomicInteger   next      = new AtomicInteger();
+        final List<Future<?>> tasks     = new ArrayList<>(threads);
+        for (int task = 0; task < threads; task++) {
+            tasks.add(Workers.EXECUTOR.submit(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < checksums.length) {
+                    checksums[index] = apply(hasher, files.get(index));
+                }
+            }));
+        }
+        try {
+            for (final Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while hashing {} files, some checksums weren't calculated", files.size());
+            Thread.currentThread().interrupt();
+            next.set(checksums.length);
+            tasks.forEach(task -> task.cancel(true));
+        } catch (ExecutionException e) {
+            log.error("Error computing file hashes", e.getCause());
+        }
+        log.debug("Calculated checksums for {} files on {} threads", checksums.length, threads);
+        return Arrays.stream(checksums).map(StringUtils::defaultString).collect(Collectors.toList());
+    }
+
+    private static String apply(final Function<File, String> hasher, final File file) {
+        try {
+            return hasher.apply(file);
+        } catch (RuntimeException e) {
+            log.error("Error computing file hash for {}", file, e);
+            return "";
+        }
+    }
+
+    private static int getThreadCount() {
+        final int defaultThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+        try {
+            return Math.max(1, Integer.parseInt(XDAT.getSiteConfigurationProperty("checksumThreads", Integer.toString(defaultThreads))));
+        } catch (ConfigServiceException | RuntimeException e) {
+            log.warn("Couldn't read the configured number of checksum threads, using {}", defaultThreads, e);
+            return defaultThreads;
+        }
+    }
+
+    private static byte[] acquireBuffer() {
+        final byte[] buffer = BUFFERS.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    private static void releaseBuffer(final byte[] buffer) {
+        // If the pool is already full, the buffer is just left for the garbage collector.
+        BUFFERS.offer(buffer);
+    }
+
+    private static String getSupportedAlgorithm(final String algorithm) {
+        for (final String supported : ALGORITHMS) {
+            if (StringUtils.equalsIgnoreCase(supported, StringUtils.trim(algorithm))) {
+                return supported;
+            }
+        }
+        return null;
+    }
+
+    private static Hasher getHasher(final String algorithm) {
+        final String supported = getSupportedAlgorithm(algorithm);
+        if (supported == null) {
+            throw new IllegalArgumentException("Unsupported checksum algorithm " + algorithm + ", supported algorithms are: " + ALGORITHMS);
+        }
+        if (XXH64.equals(supported)) {
+            return new Xxh64Hasher();
+        }
+        try {
+            return new MessageDigestHasher(MessageDigest.getInstance(supported));
+        } catch (NoSuchAlgorithmException e) {
+            // All Java platforms are required to support MD5 and SHA-256.
+            throw new IllegalStateException("The JVM doesn't support the " + supported + " message digest", e);
+        }
+    }
+
+    private interface Hasher {
+        void update(final ByteBuffer buffer);
+
+        byte[] digest();
+    }
+
+    private static final class MessageDigestHasher implements Hasher {
+        MessageDigestHasher(final MessageDigest digest) {
+            _digest = digest;
+        }
+
+        @Override
+        public void update(final ByteBuffer buffer) {
+            _digest.update(buffer);
+        }
+
+        @Override
+        public byte[] digest() {
+            return _digest.digest();
+        }
+
+        private final MessageDigest _digest;
+    }
+
+    /**
+     * Streaming implementation of the 64-bit xxHash algorithm with a seed of 0. The digest is the hash value in
+     * big-endian order, matching the canonical representation used by the xxHash command-line tools.
+     */
+    private static final class Xxh64Hasher implements Hasher {
+        @Override
+        public void update(final ByteBuffer buffer) {
+            final ByteBuffer input = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(buffer.limit());
+            _length += input.remaining();
+
+            if (_pending.position() > 0) {
+                while (_pending.hasRemaining() && input.hasRemaining()) {
+                    _pending.put(input.get());
+                }
+                if (_pending.hasRemaining()) {
+                    return;
+                }
+                _pending.flip();
+                stripe(_pending);
+                _pending.clear();
+            }
+            while (input.remaining() >= STRIPE) {
+                stripe(input);
+            }
+            _pending.put(input);
+        }
+
+        @Override
+        public byte[] digest() {
+            long hash;
+            if (_length >= STRIPE) {
+                hash = Long.rotateLeft(_v1, 1) + Long.rotateLeft(_v2, 7) + Long.rotateLeft(_v3, 12) + Long.rotateLeft(_v4, 18);
+                hash = merge(hash, _v1);
+                hash = merge(hash, _v2);
+                hash = merge(hash, _v3);
+                hash = merge(hash, _v4);
+            } else {
+                hash = PRIME5;
+            }
+            hash += _length;
+
+            _pending.flip();
+            while (_pending.remaining() >= 8) {
+                hash ^= round(0, _pending.getLong());
+                hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            }
+            if (_pending.remaining() >= 4) {
+                hash ^= (_pending.getInt() & 0xFFFFFFFFL) * PRIME1;
+                hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            }
+            while (_pending.hasRemaining()) {
+                hash ^= (_pending.get() & 0xFFL) * PRIME5;
+                hash = Long.rotateLeft(hash, 11) * PRIME1;
+            }
+
+            hash ^= hash >>> 33;
+            hash *= PRIME2;
+            hash ^= hash >>> 29;
+            hash *= PRIME3;
+            hash ^= hash >>> 32;
+            return ByteBuffer.allocate(8).putLong(hash).array();
+        }
+
+        private void stripe(final ByteBuffer input) {
+            _v1 = round(_v1, input.getLong());
+            _v2 = round(_v2, input.getLong());
+            _v3 = round(_v3, input.getLong());
+            _v4 = round(_v4, input.getLong());
+        }
+
+        private static long round(final long accumulator, final long input) {
+            return Long.rotateLeft(accumulator + input * PRIME2, 31) * PRIME1;
+        }
+
+        private static long merge(final long hash, final long accumulator) {
+            return (hash ^ round(0, accumulator)) * PRIME1 + PRIME4;
+        }
+
+        private static final int  STRIPE = 32;
+        private static final long PRIME1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME3 = 0x165667B19E3779F9L;
+        private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+        private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+        private final ByteBuffer _pending = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+
+        private long _v1 = PRIME1 + PRIME2;
+        private long _v2 = PRIME2;
+        private long _v3 = 0;
+        private long _v4 = -PRIME1;
+        private long _length;
+    }
+
+    /**
+     * Holds the pool used to hash catalogs, so it's created when it's first used rather than when the class is loaded.
+     */
+    private static final class Workers {
+        static final int             THREADS  = getThreadCount();
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, new ThreadFactoryBuilder().setNameFormat("checksum-%d").setDaemon(true).build());
+    }
+
+    // Buffers are kept below half of the smallest G1 region size, so they aren't allocated as humongous objects.
+    private static final int BUFFER_SIZE        = 256 * 1024;
+    private static final int MAX_POOLED_BUFFERS = Runtime.getRuntime().availableProcessors();
+
+    private static final BlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+}
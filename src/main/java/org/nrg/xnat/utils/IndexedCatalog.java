@@ -0,0 +1,372 @@
+/*
+ * web: org.nrg.xnat.utils.IndexedCatalog
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xdat.model.CatCatalogI;
+import org.nrg.xdat.model.CatDcmentryI;
+import org.nrg.xdat.model.CatEntryI;
+import org.nrg.xft.event.EventMetaI;
+import org.nrg.xnat.helpers.resource.XnatResourceInfo;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Wraps a catalog with hash indexes on its entries' URIs, IDs, names, and DICOM UIDs, so that looking up entries
+ * doesn't require walking every entry set. The indexes are built the first time they're needed and return the same
+ * entries as the corresponding {@link CatalogUtils} methods, e.g. {@link CatalogUtils#getEntryByURI(CatCatalogI,
+ * String)}, including which entry is returned when more than one matches and when a URL-decoded path matches.
+ * <p>
+ * Entries must be added, updated, and removed through this wrapper to keep the indexes consistent. If the catalog is
+ * modified some other way, call {@link #invalidate()} before the next lookup. Like the catalog beans, instances of this
+ * class aren't thread-safe.
+ */
+@Slf4j
+public class IndexedCatalog {
+    public IndexedCatalog(final CatCatalogI catalog) {
+        _catalog = catalog;
+    }
+
+    /**
+     * Gets the wrapped catalog.
+     *
+     * @return The catalog.
+     */
+    public CatCatalogI getCatalog() {
+        return _catalog;
+    }
+
+    /**
+     * Finds the entry with the specified URI, or with the URL-decoded form of the URI.
+     *
+     * @param uri The URI to find.
+     *
+     * @return The matching entry, or null if no entry matches.
+     *
+     * @see CatalogUtils#getEntryByURI(CatCatalogI, String)
+     */
+    public CatEntryI getEntryByURI(final String uri) {
+        build();
+        final CatEntryI exact   = _byUri.get(uri);
+        final CatEntryI decoded = _byUri.get(decode(uri));
+        // CatalogUtils checks each entry set for exact matches before decoded matches.
+        if (exact == null || decoded == null) {
+            return exact != null ? exact : decoded;
+        }
+        return _ranks.get(exact) <= (_ranks.get(decoded) | DECODED_PHASE) ? exact : decoded;
+    }
+
+    /**
+     * Finds the entry with the specified name, or with the URL-decoded form of the name.
+     *
+     * @param name The name to find.
+     *
+     * @return The matching entry, or null if no entry matches.
+     *
+     * @see CatalogUtils#getEntryByName(CatCatalogI, String)
+     */
+    public CatEntryI getEntryByName(final String name) {
+        build();
+        return first(_byName.get(name), _byName.get(decode(name)));
+    }
+
+    /**
+     * Finds the entry with the specified ID.
+     *
+     * @param id The ID to find.
+     *
+     * @return The matching entry, or null if no entry matches.
+     *
+     * @see CatalogUtils#getEntryById(CatCatalogI, String)
+     */
+    public CatEntryI getEntryById(final String id) {
+        build();
+        return _byId.get(id);
+    }
+
+    /**
+     * Finds the entry with the specified URI, or failing that the specified ID.
+     *
+     * @param path The URI or ID to find.
+     *
+     * @return The matching entry, or null if no entry matches.
+     *
+     * @see CatalogUtils#getEntryByURIOrId(org.nrg.xdat.bean.CatCatalogBean, String)
+     */
+    public CatEntryI getEntryByURIOrId(final String path) {
+        final CatEntryI entry = getEntryByURI(path);
+        return entry != null ? entry : getEntryById(path);
+    }
+
+    /**
+     * Finds the DICOM entry with the specified SOP instance UID.
+     *
+     * @param uid The UID to find.
+     *
+     * @return The matching entry, or null if no entry matches.
+     *
+     * @see CatalogUtils#getDCMEntryByUID(CatCatalogI, String)
+     */
+    public CatDcmentryI getDCMEntryByUID(final String uid) {
+        build();
+        return _byUid.get(uid);
+    }
+
+    /**
+     * Adds the entry to the top level of the catalog.
+     *
+     * @param entry The entry to add.
+     *
+     * @throws Exception When the catalog implementation can't add the entry.
+     */
+    public void addEntry(final CatEntryI entry) throws Exception {
+        _catalog.addEntries_entry(entry);
+        if (_built) {
+            index(_catalog, entry);
+        }
+    }
+
+    /**
+     * Applies changes to an entry in the catalog that may change its URI, ID, name, or UID, and updates the indexes to
+     * match.
+     *
+     * @param entry  The entry to update.
+     * @param update The function that updates the entry.
+     * @param <T>    The type returned by the update.
+     *
+     * @return The value returned by the update.
+     */
+    public <T> T updateEntry(final CatEntryI entry, final Function<CatEntryI, T> update) {
+        if (!_built) {
+            return update.apply(entry);
+        }
+        final CatCatalogI owner = _owners.get(entry);
+        if (owner == null) {
+            // Not an entry we know about, so we can't tell what the update might affect.
+            final T result = update.apply(entry);
+            invalidate();
+            return result;
+        }
+        unindex(entry);
+        try {
+            return update.apply(entry);
+        } finally {
+            if (_built) {
+                reindex(entry);
+            }
+        }
+    }
+
+    /**
+     * Adds a new entry for the file or updates an existing entry, keeping the indexes consistent.
+     *
+     * @param catalogData  The catalog data, which must contain the indexed catalog.
+     * @param entry        The existing entry for the file, or null to add a new entry.
+     * @param uri          The URI for the entry.
+     * @param relativePath The path of the file relative to the catalog.
+     * @param file         The file.
+     * @param info         The resource info for a new entry.
+     * @param ci           The event data.
+     *
+     * @see CatalogUtils#addOrUpdateEntry(CatalogUtils.CatalogData, CatEntryI, String, String, File, XnatResourceInfo, EventMetaI)
+     */
+    public void addOrUpdateEntry(final CatalogUtils.CatalogData catalogData, @Nullable final CatEntryI entry, final String uri, final String relativePath, final File file, final XnatResourceInfo info, final EventMetaI ci) {
+        if (catalogData.catBean != _catalog) {
+            throw new IllegalArgumentException("The catalog data must contain the indexed catalog");
+        }
+        if (entry != null) {
+            updateEntry(entry, existing -> {
+                CatalogUtils.addOrUpdateEntry(catalogData, existing, uri, relativePath, file, info, ci);
+                return null;
+            });
+        } else {
+            final List<CatEntryI> entries = _catalog.getEntries_entry();
+            final int             count   = entries.size();
+            CatalogUtils.addOrUpdateEntry(catalogData, null, uri, relativePath, file, info, ci);
+            if (_built) {
+                for (int index = count; index < entries.size(); index++) {
+                    index(_catalog, entries.get(index));
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the first entry with the same URI as the submitted entry.
+     *
+     * @param entry The entry to remove.
+     *
+     * @return Returns <b>true</b> if an entry was removed.
+     *
+     * @see CatalogUtils#removeEntry(CatCatalogI, CatEntryI)
+     */
+    public boolean removeEntry(final CatEntryI entry) {
+        build();
+        if (_duplicates) {
+            // CatalogUtils removes the first match looking at each catalog's entries before its entry sets, which
+            // isn't necessarily the indexed entry when there are duplicate URIs.
+            final boolean removed = CatalogUtils.removeEntry(_catalog, entry);
+            invalidate();
+            return removed;
+        }
+        final CatEntryI indexed = _byUri.get(entry.getUri());
+        if (indexed == null) {
+            return false;
+        }
+        final CatCatalogI owner = _owners.get(indexed);
+        unindex(indexed);
+        _owners.remove(indexed);
+        _ranks.remove(indexed);
+        final List<CatEntryI> entries = owner.getEntries_entry();
+        for (int index = 0; index < entries.size(); index++) {
+            if (entries.get(index) == indexed) {
+                entries.remove(index);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Discards the indexes so they're rebuilt on the next lookup. This must be called if the catalog is modified
+     * other than through this wrapper.
+     */
+    public void invalidate() {
+        _built = false;
+    }
+
+    private void build() {
+        if (_built) {
+            return;
+        }
+        _byUri.clear();
+        _byName.clear();
+        _byId.clear();
+        _byUid.clear();
+        _ranks.clear();
+        _owners.clear();
+        _nextIndex.clear();
+        _nodes.clear();
+        _duplicates = false;
+        build(_catalog);
+        _built = true;
+        log.debug("Indexed {} entries in {} catalogs", _ranks.size(), _nodes.size());
+    }
+
+    // Entry sets are visited before a catalog's own entries, same as the recursive lookups in CatalogUtils.
+    private void build(final CatCatalogI catalog) {
+        for (final CatCatalogI subset : catalog.getSets_entryset()) {
+            build(subset);
+        }
+        _nodes.put(catalog, (long) _nodes.size());
+        for (final CatEntryI entry : catalog.getEntries_entry()) {
+            index(catalog, entry);
+        }
+    }
+
+    private void index(final CatCatalogI catalog, final CatEntryI entry) {
+        final Long node = _nodes.get(catalog);
+        if (node == null) {
+            invalidate();
+            return;
+        }
+        final long index = _nextIndex.merge(catalog, 1L, Long::sum) - 1;
+        _ranks.put(entry, (node << NODE_SHIFT) | index);
+        _owners.put(entry, catalog);
+        reindex(entry);
+    }
+
+    private void reindex(final CatEntryI entry) {
+        put(_byUri, entry.getUri(), entry);
+        put(_byName, entry.getName(), entry);
+        put(_byId, entry.getId(), entry);
+        if (entry instanceof CatDcmentryI) {
+            put(_byUid, ((CatDcmentryI) entry).getUid(), (CatDcmentryI) entry);
+        }
+    }
+
+    private void unindex(final CatEntryI entry) {
+        remove(_byUri, entry.getUri(), entry);
+        remove(_byName, entry.getName(), entry);
+        remove(_byId, entry.getId(), entry);
+        if (entry instanceof CatDcmentryI) {
+            remove(_byUid, ((CatDcmentryI) entry).getUid(), entry);
+        }
+    }
+
+    private <E extends CatEntryI> void put(final Map<String, E> index, final String key, final E entry) {
+        if (key == null) {
+            return;
+        }
+        final E existing = index.get(key);
+        if (existing == null || existing == entry) {
+            index.put(key, entry);
+            return;
+        }
+        _duplicates = true;
+        if (_ranks.get(entry) < _ranks.get(existing)) {
+            index.put(key, entry);
+        }
+    }
+
+    private void remove(final Map<String, ? extends CatEntryI> index, final String key, final CatEntryI entry) {
+        if (key == null || index.get(key) != entry) {
+            return;
+        }
+        index.remove(key);
+        if (_duplicates) {
+            // Another entry with the same key may need to take its place, so rebuild on the next lookup.
+            invalidate();
+        }
+    }
+
+    private CatEntryI first(final CatEntryI first, final CatEntryI second) {
+        if (first == null || second == null) {
+            return first != null ? first : second;
+        }
+        return _ranks.get(first) <= _ranks.get(second) ? first : second;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String decode(final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return URLDecoder.decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final int  NODE_SHIFT    = 33;
+    private static final long DECODED_PHASE = 1L << 32;
+
+    private final CatCatalogI _catalog;
+
+    private final Map<String, CatEntryI>          _byUri     = new HashMap<>();
+    private final Map<String, CatEntryI>          _byName    = new HashMap<>();
+    private final Map<String, CatEntryI>          _byId      = new HashMap<>();
+    private final Map<String, CatDcmentryI>       _byUid     = new HashMap<>();
+    private final Map<CatEntryI, Long>            _ranks     = new IdentityHashMap<>();
+    private final Map<CatEntryI, CatCatalogI>     _owners    = new IdentityHashMap<>();
+    private final Map<CatCatalogI, Long>          _nextIndex = new IdentityHashMap<>();
+    private final Map<CatCatalogI, Long>          _nodes     = new IdentityHashMap<>();
+
+    private boolean _built;
+    private boolean _duplicates;
+}
@@ -0,0 +1,499 @@
+/*
+ * web: org.nrg.xnat.utils.zip.ParallelZipWriter
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.utils.zip;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.common.io.LittleEndianDataOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a zip stream, choosing the compression method for each file entry with {@link ZipCompressionPolicy}.
+ * <p>
+ * Entries that are stored are read twice: once to calculate the CRC, which goes in the local header, and once to copy
+ * the data. Entries that are deflated are split into blocks that are compressed in parallel on a pool of threads
+ * shared by all zip streams. Each block is compressed with the end of the previous block as its dictionary and all but
+ * the last block end on a byte boundary, so the compressed blocks together form a single deflate stream. The CRC and
+ * sizes of deflated entries are written in a data descriptor after the data. Entries are written in the order they're
+ * added, and Zip64 extensions are used for large entries, large archives, and archives with many entries.
+ * <p>
+ * Input stream entries are always deflated, since storing an entry requires its CRC and size before its data.
+ */
+@SuppressWarnings("WeakerAccess")
+@Slf4j
+public class ParallelZipWriter implements Closeable {
+    /**
+     * Creates a zip stream that deflates entries unless they're already compressed.
+     *
+     * @param output The stream to write the zip to.
+     */
+    public ParallelZipWriter(final OutputStream output) {
+        this(output, ZipOutputStream.DEFLATED, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a zip stream. When the method is {@link ZipOutputStream#STORED}, every file is stored. When it's {@link
+     * ZipOutputStream#DEFLATED}, files are deflated unless they're already compressed.
+     *
+     * @param output The stream to write the zip to.
+     * @param method The compression method.
+     */
+    public ParallelZipWriter(final OutputStream output, final int method) {
+        this(output, method, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a zip stream. When the method is {@link ZipOutputStream#STORED}, every file is stored. When it's {@link
+     * ZipOutputStream#DEFLATED}, files are deflated unless they're already compressed.
+     *
+     * @param output     The stream to write the zip to.
+     * @param method     The compression method.
+     * @param bufferSize The size of the buffer used to read files.
+     */
+    public ParallelZipWriter(final OutputStream output, final int method, final int bufferSize) {
+        _counter = new CountingOutputStream(new BufferedOutputStream(output, DEFAULT_BUFFER_SIZE));
+        _output = new LittleEndianDataOutputStream(_counter);
+        _method = method;
+        _buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Adds the file to the zip.
+     *
+     * @param path The path of the entry in the zip.
+     * @param file The file to add.
+     *
+     * @return The number of bytes read from the file.
+     *
+     * @throws IOException When an error occurs reading the file or writing the zip.
+     */
+    public long write(final String path, final File file) throws IOException {
+        if (_method == ZipOutputStream.STORED || ZipCompressionPolicy.getMethod(file) == ZipOutputStream.STORED) {
+            return writeStored(path, file);
+        }
+        try (final InputStream input = new FileInputStream(file)) {
+            return writeDeflated(path, input, file.lastModified(), file.length());
+        }
+    }
+
+    /**
+     * Adds the contents of the input stream to the zip with the current time as its modification time. The stream
+     * isn't closed.
+     *
+     * @param path  The path of the entry in the zip.
+     * @param input The stream to add.
+     *
+     * @return The number of bytes read from the stream.
+     *
+     * @throws IOException When an error occurs reading the stream or writing the zip.
+     */
+    public long write(final String path, final InputStream input) throws IOException {
+        return writeDeflated(path, input, System.currentTimeMillis(), -1);
+    }
+
+    /**
+     * Indicates whether an entry has already been added at the specified path.
+     *
+     * @param path The path to check.
+     *
+     * @return Returns true if an entry exists at the path.
+     */
+    public boolean hasEntry(final String path) {
+        return _paths.contains(path);
+    }
+
+    /**
+     * Writes the central directory. No more entries can be added after this is called.
+     *
+     * @throws IOException When an error occurs writing the zip.
+     */
+    public void finish() throws IOException {
+        if (_finished) {
+            return;
+        }
+        _finished = true;
+        final long offset = _counter.getCount();
+        for (final Entry entry : _entries) {
+            writeCentralDirectoryHeader(entry);
+        }
+        final long    size  = _counter.getCount() - offset;
+        final int     count = _entries.size();
+        final boolean zip64 = count >= ZIP64_ENTRY_LIMIT || size >= ZIP64_LIMIT || offset >= ZIP64_LIMIT;
+        if (zip64) {
+            final long end = _counter.getCount();
+            _output.writeInt(ZIP64_END_SIGNATURE);
+            _output.writeLong(ZIP64_END_LENGTH);
+            _output.writeShort(VERSION_ZIP64);
+            _output.writeShort(VERSION_ZIP64);
+            _output.writeInt(0);
+            _output.writeInt(0);
+            _output.writeLong(count);
+            _output.writeLong(count);
+            _output.writeLong(size);
+            _output.writeLong(offset);
+            _output.writeInt(ZIP64_LOCATOR_SIGNATURE);
+            _output.writeInt(0);
+            _output.writeLong(end);
+            _output.writeInt(1);
+        }
+        _output.writeInt(END_SIGNATURE);
+        _output.writeShort(0);
+        _output.writeShort(0);
+        _output.writeShort(Math.min(count, ZIP64_ENTRY_LIMIT));
+        _output.writeShort(Math.min(count, ZIP64_ENTRY_LIMIT));
+        _output.writeInt((int) Math.min(size, ZIP64_LIMIT));
+        _output.writeInt((int) Math.min(offset, ZIP64_LIMIT));
+        _output.writeShort(0);
+        _output.flush();
+    }
+
+    /**
+     * Writes the central directory and closes the underlying stream.
+     *
+     * @throws IOException When an error occurs writing the zip.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            _output.close();
+        }
+    }
+
+    private long writeStored(final String path, final File file) throws IOException {
+        final CRC32 crc  = new CRC32();
+        long        size = 0;
+        try (final InputStream input = new FileInputStream(file)) {
+            int length;
+            while ((length = input.read(_buffer)) > 0) {
+                crc.update(_buffer, 0, length);
+                size += length;
+            }
+        }
+
+        final Entry entry = startEntry(path, ZipOutputStream.STORED, file.lastModified(), size >= ZIP64_LIMIT, false);
+        entry._crc = crc.getValue();
+        entry._size = size;
+        entry._compressedSize = size;
+        writeLocalHeader(entry);
+
+        long copied = 0;
+        try (final InputStream input = new FileInputStream(file)) {
+            int length;
+            while (copied < size && (length = input.read(_buffer, 0, (int) Math.min(_buffer.length, size - copied))) > 0) {
+                _output.write(_buffer, 0, length);
+                copied += length;
+            }
+        }
+        if (copied != size) {
+            throw new ZipException("The file " + file.getAbsolutePath() + " changed while it was being added to the zip at " + path);
+        }
+        return size;
+    }
+
+    private long writeDeflated(final String path, final InputStream input, final long time, final long expectedSize) throws IOException {
+        // The compressed size isn't known until the data's been written, so leave a margin for incompressible data.
+        final Entry entry = startEntry(path, ZipOutputStream.DEFLATED, time, expectedSize >= 0 && expectedSize + expectedSize / 100 + BLOCK_SIZE >= ZIP64_LIMIT, true);
+        writeLocalHeader(entry);
+
+        final CRC32                 crc        = new CRC32();
+        final Deque<Future<byte[]>> blocks     = new ArrayDeque<>();
+        long                        size       = 0;
+        long                        compressed = 0;
+        try {
+            byte[] dictionary = null;
+            byte[] current    = readBlock(input);
+            while (true) {
+                // A short block means the end of the input was reached.
+                final byte[] next = current.length < BLOCK_SIZE ? null : readBlock(input);
+                final boolean last = next == null || next.length == 0;
+                crc.update(current, 0, current.length);
+                size += current.length;
+                blocks.add(DEFLATERS.submit(new DeflateBlock(current, dictionary, last)));
+                while (blocks.size() >= MAX_BLOCKS_IN_FLIGHT) {
+                    compressed += writeBlock(blocks.poll());
+                }
+                if (last) {
+                    break;
+                }
+                dictionary = current;
+                current = next;
+            }
+            while (!blocks.isEmpty()) {
+                compressed += writeBlock(blocks.poll());
+            }
+        } finally {
+            for (final Future<byte[]> block : blocks) {
+                block.cancel(true);
+            }
+        }
+
+        entry._crc = crc.getValue();
+        entry._size = size;
+        entry._compressedSize = compressed;
+        if (!entry._zip64 && (size >= ZIP64_LIMIT || compressed >= ZIP64_LIMIT)) {
+            // Same as java.util.zip.ZipOutputStream: an entry whose size wasn't known up front gets a Zip64 data descriptor.
+            entry._zip64 = true;
+        }
+        _output.writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        _output.writeInt((int) entry._crc);
+        if (entry._zip64) {
+            _output.writeLong(compressed);
+            _output.writeLong(size);
+        } else {
+            _output.writeInt((int) compressed);
+            _output.writeInt((int) size);
+        }
+        return size;
+    }
+
+    private Entry startEntry(final String path, final int method, final long time, final boolean zip64, final boolean dataDescriptor) throws ZipException {
+        if (_finished) {
+            throw new ZipException("Can't add the entry " + path + ", the zip has already been finished");
+        }
+        if (!_paths.add(path)) {
+            throw new ZipException("duplicate entry: " + path);
+        }
+        final Entry entry = new Entry(path.getBytes(StandardCharsets.UTF_8), method, toDosTime(time), _counter.getCount(), zip64, dataDescriptor);
+        _entries.add(entry);
+        return entry;
+    }
+
+    private void writeLocalHeader(final Entry entry) throws IOException {
+        _output.writeInt(LOCAL_HEADER_SIGNATURE);
+        _output.writeShort(entry.getVersion());
+        _output.writeShort(entry.getFlags());
+        _output.writeShort(entry._method);
+        _output.writeInt((int) entry._time);
+        if (entry._dataDescriptor) {
+            _output.writeInt(0);
+            _output.writeInt(entry._zip64 ? (int) ZIP64_LIMIT : 0);
+            _output.writeInt(entry._zip64 ? (int) ZIP64_LIMIT : 0);
+        } else {
+            _output.writeInt((int) entry._crc);
+            _output.writeInt((int) (entry._zip64 ? ZIP64_LIMIT : entry._compressedSize));
+            _output.writeInt((int) (entry._zip64 ? ZIP64_LIMIT : entry._size));
+        }
+        _output.writeShort(entry._name.length);
+        _output.writeShort(entry._zip64 ? 20 : 0);
+        _output.write(entry._name);
+        if (entry._zip64) {
+            _output.writeShort(ZIP64_EXTRA_ID);
+            _output.writeShort(16);
+            _output.writeLong(entry._dataDescriptor ? 0 : entry._size);
+            _output.writeLong(entry._dataDescriptor ? 0 : entry._compressedSize);
+        }
+    }
+
+    private void writeCentralDirectoryHeader(final Entry entry) throws IOException {
+        final boolean zip64Size       = entry._size >= ZIP64_LIMIT;
+        final boolean zip64Compressed = entry._compressedSize >= ZIP64_LIMIT;
+        final boolean zip64Offset     = entry._offset >= ZIP64_LIMIT;
+        final int     extraLength     = (zip64Size ? 8 : 0) + (zip64Compressed ? 8 : 0) + (zip64Offset ? 8 : 0);
+        final int     version         = extraLength > 0 ? VERSION_ZIP64 : entry.getVersion();
+
+        _output.writeInt(CENTRAL_DIRECTORY_SIGNATURE);
+        _output.writeShort(version);
+        _output.writeShort(version);
+        _output.writeShort(entry.getFlags());
+        _output.writeShort(entry._method);
+        _output.writeInt((int) entry._time);
+        _output.writeInt((int) entry._crc);
+        _output.writeInt((int) Math.min(entry._compressedSize, ZIP64_LIMIT));
+        _output.writeInt((int) Math.min(entry._size, ZIP64_LIMIT));
+        _output.writeShort(entry._name.length);
+        _output.writeShort(extraLength > 0 ? extraLength + 4 : 0);
+        _output.writeShort(0);
+        _output.writeShort(0);
+        _output.writeShort(0);
+        _output.writeInt(0);
+        _output.writeInt((int) Math.min(entry._offset, ZIP64_LIMIT));
+        _output.write(entry._name);
+        if (extraLength > 0) {
+            _output.writeShort(ZIP64_EXTRA_ID);
+            _output.writeShort(extraLength);
+            if (zip64Size) {
+                _output.writeLong(entry._size);
+            }
+            if (zip64Compressed) {
+                _output.writeLong(entry._compressedSize);
+            }
+            if (zip64Offset) {
+                _output.writeLong(entry._offset);
+            }
+        }
+    }
+
+    private long writeBlock(final Future<byte[]> block) throws IOException {
+        final byte[] compressed;
+        try {
+            compressed = block.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a block to be compressed");
+        } catch (ExecutionException e) {
+            throw new IOException("An error occurred compressing a block", e.getCause());
+        }
+        _output.write(compressed);
+        return compressed.length;
+    }
+
+    /**
+     * Reads a full block from the input, or as much as is left.
+     */
+    private static byte[] readBlock(final InputStream input) throws IOException {
+        final byte[] block = new byte[BLOCK_SIZE];
+        int          total = 0;
+        int          length;
+        while (total < BLOCK_SIZE && (length = input.read(block, total, BLOCK_SIZE - total)) > 0) {
+            total += length;
+        }
+        return total == BLOCK_SIZE ? block : Arrays.copyOf(block, total);
+    }
+
+    private static long toDosTime(final long time) {
+        final LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        final int           year     = dateTime.getYear();
+        if (year < 1980) {
+            return DOS_EPOCH;
+        }
+        return (Math.min(year, 2107) - 1980) << 25 | dateTime.getMonthValue() << 21 | dateTime.getDayOfMonth() << 16 | dateTime.getHour() << 11 | dateTime.getMinute() << 5 | dateTime.getSecond() >> 1;
+    }
+
+    /**
+     * Compresses one block of an entry. The block is compressed with the last 32 KB of the previous block as its
+     * dictionary, so matches can reach back across the block boundary just as they would when deflating the whole
+     * entry on one thread.
+     */
+    private static class DeflateBlock implements Callable<byte[]> {
+        DeflateBlock(final byte[] data, final byte[] dictionary, final boolean last) {
+            _data = data;
+            _dictionary = dictionary;
+            _last = last;
+        }
+
+        @Override
+        public byte[] call() {
+            final Deflater deflater = DEFLATER.get();
+            deflater.reset();
+            if (_dictionary != null) {
+                final int length = Math.min(_dictionary.length, DICTIONARY_SIZE);
+                deflater.setDictionary(_dictionary, _dictionary.length - length, length);
+            }
+            deflater.setInput(_data);
+
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(_data.length / 2 + 64);
+            final byte[]                buffer     = new byte[DEFLATE_BUFFER_SIZE];
+            if (_last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // A sync flush ends the block on a byte boundary without ending the deflate stream.
+                int length;
+                do {
+                    length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, length);
+                } while (length == buffer.length);
+            }
+            return compressed.toByteArray();
+        }
+
+        private final byte[]  _data;
+        private final byte[]  _dictionary;
+        private final boolean _last;
+    }
+
+    private static class Entry {
+        Entry(final byte[] name, final int method, final long time, final long offset, final boolean zip64, final boolean dataDescriptor) {
+            _name = name;
+            _method = method;
+            _time = time;
+            _offset = offset;
+            _zip64 = zip64;
+            _dataDescriptor = dataDescriptor;
+        }
+
+        int getVersion() {
+            return _zip64 ? VERSION_ZIP64 : _method == ZipOutputStream.STORED ? VERSION_STORED : VERSION_DEFLATED;
+        }
+
+        int getFlags() {
+            return UTF8_FLAG | (_dataDescriptor ? DATA_DESCRIPTOR_FLAG : 0);
+        }
+
+        private final byte[]  _name;
+        private final int     _method;
+        private final long    _time;
+        private final long    _offset;
+        private final boolean _dataDescriptor;
+        private boolean       _zip64;
+        private long          _crc;
+        private long          _size;
+        private long          _compressedSize;
+    }
+
+    private static final int  DEFAULT_BUFFER_SIZE         = 64 * 1024;
+    private static final int  BLOCK_SIZE                  = 128 * 1024;
+    private static final int  DICTIONARY_SIZE             = 32 * 1024;
+    private static final int  DEFLATE_BUFFER_SIZE         = 32 * 1024;
+    private static final int  WORKERS                     = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static final int  MAX_BLOCKS_IN_FLIGHT        = WORKERS * 2;
+    private static final long ZIP64_LIMIT                 = 0xFFFFFFFFL;
+    private static final int  ZIP64_ENTRY_LIMIT           = 0xFFFF;
+    private static final long ZIP64_END_LENGTH            = 44;
+    private static final int  ZIP64_EXTRA_ID              = 0x0001;
+    private static final int  LOCAL_HEADER_SIGNATURE      = 0x04034b50;
+    private static final int  DATA_DESCRIPTOR_SIGNATURE   = 0x08074b50;
+    private static final int  CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    private static final int  ZIP64_END_SIGNATURE         = 0x06064b50;
+    private static final int  ZIP64_LOCATOR_SIGNATURE     = 0x07064b50;
+    private static final int  END_SIGNATURE               = 0x06054b50;
+    private static final int  VERSION_STORED              = 10;
+    private static final int  VERSION_DEFLATED            = 20;
+    private static final int  VERSION_ZIP64               = 45;
+    private static final int  DATA_DESCRIPTOR_FLAG        = 0x0008;
+    private static final int  UTF8_FLAG                   = 0x0800;
+    private static final long DOS_EPOCH                   = (1 << 21) | (1 << 16);
+
+    private static final ThreadLocal<Deflater> DEFLATER  = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ExecutorService       DEFLATERS = Executors.newFixedThreadPool(WORKERS, new ThreadFactory() {
+        private final AtomicInteger _count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "zip-deflater-" + _count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final CountingOutputStream         _counter;
+    private final LittleEndianDataOutputStream _output;
+    private final int                          _method;
+    private final byte[]                       _buffer;
+    private final List<Entry>                  _entries = new ArrayList<>();
+    private final Set<String>                  _paths   = new HashSet<>();
+    private boolean                            _finished;
+}
@@ -0,0 +1,133 @@
+/*
+ * web: org.nrg.xnat.utils.zip.ZipCompressionPolicy
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.utils.zip;
+
+import com.google.common.collect.ImmutableSet;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Decides whether a file should be deflated or stored when it's added to a zip. Deflating data that's already
+ * compressed costs a lot of CPU for little or no reduction in size, so files that are compressed already are stored.
+ * A file is treated as compressed when its extension is a known compressed format or when it's a DICOM file with a
+ * compressed transfer syntax, e.g. JPEG, JPEG 2000, or RLE. Only the DICOM file meta information is read to check the
+ * transfer syntax.
+ */
+@Slf4j
+public final class ZipCompressionPolicy {
+    private ZipCompressionPolicy() {
+    }
+
+    /**
+     * Gets the compression method to use for the file.
+     *
+     * @param file The file to be added to the zip.
+     *
+     * @return {@link ZipOutputStream#STORED} if the file is already compressed, {@link ZipOutputStream#DEFLATED}
+     *         otherwise.
+     */
+    public static int getMethod(final File file) {
+        final String extension = FilenameUtils.getExtension(file.getName()).toLowerCase();
+        if (COMPRESSED_EXTENSIONS.contains(extension)) {
+            return ZipOutputStream.STORED;
+        }
+        if (DICOM_EXTENSIONS.contains(extension) && isCompressedTransferSyntax(getTransferSyntax(file))) {
+            return ZipOutputStream.STORED;
+        }
+        return ZipOutputStream.DEFLATED;
+    }
+
+    /**
+     * Indicates whether the transfer syntax compresses the pixel data.
+     *
+     * @param transferSyntaxUid The transfer syntax UID.
+     *
+     * @return Returns true if the transfer syntax is compressed.
+     */
+    static boolean isCompressedTransferSyntax(final String transferSyntaxUid) {
+        return StringUtils.isNotBlank(transferSyntaxUid) && StringUtils.startsWithAny(transferSyntaxUid, COMPRESSED_TRANSFER_SYNTAXES);
+    }
+
+    /**
+     * Reads the transfer syntax UID from the DICOM file meta information. The file meta information is always encoded
+     * as explicit VR little endian and the transfer syntax UID is usually within the first few hundred bytes.
+     *
+     * @param file The file to check.
+     *
+     * @return The transfer syntax UID if the file is DICOM with file meta information, null otherwise.
+     */
+    static String getTransferSyntax(final File file) {
+        try (final DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            final byte[] preamble = new byte[DICOM_PREAMBLE_LENGTH + DICOM_PREFIX.length];
+            input.readFully(preamble);
+            for (int index = 0; index < DICOM_PREFIX.length; index++) {
+                if (preamble[DICOM_PREAMBLE_LENGTH + index] != DICOM_PREFIX[index]) {
+                    return null;
+                }
+            }
+            final byte[] header = new byte[8];
+            while (true) {
+                input.readFully(header);
+                final int group   = readShort(header, 0);
+                final int element = readShort(header, 2);
+                if (group != FILE_META_GROUP) {
+                    return null;
+                }
+                final String vr = new String(header, 4, 2, StandardCharsets.US_ASCII);
+                final long   length;
+                if (LONG_LENGTH_VRS.contains(vr)) {
+                    final byte[] value = new byte[4];
+                    input.readFully(value);
+                    length = (readShort(value, 0) | ((long) readShort(value, 2) << 16));
+                } else {
+                    length = readShort(header, 6);
+                }
+                if (element == TRANSFER_SYNTAX_ELEMENT) {
+                    final byte[] value = new byte[(int) Math.min(length, MAX_UID_LENGTH)];
+                    input.readFully(value);
+                    return StringUtils.strip(new String(value, StandardCharsets.US_ASCII), " \0");
+                }
+                if (length > MAX_META_ELEMENT_LENGTH || input.skip(length) < length) {
+                    return null;
+                }
+            }
+        } catch (EOFException e) {
+            return null;
+        } catch (IOException e) {
+            log.debug("Couldn't read the DICOM file meta information from {}, it will be deflated", file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    private static int readShort(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static final Set<String> COMPRESSED_EXTENSIONS        = ImmutableSet.of("gz", "tgz", "zip", "bz2", "xz", "7z", "zst", "lz4", "rar", "jar", "jpg", "jpeg", "png", "gif", "jp2", "j2k", "webp", "mp4", "mpg", "mpeg", "mov", "avi");
+    private static final Set<String> DICOM_EXTENSIONS             = ImmutableSet.of("", "dcm", "dicom", "ima");
+    private static final Set<String> LONG_LENGTH_VRS              = ImmutableSet.of("OB", "OD", "OF", "OL", "OW", "SQ", "UC", "UN", "UR", "UT");
+    private static final String[]    COMPRESSED_TRANSFER_SYNTAXES = {"1.2.840.10008.1.2.4.", "1.2.840.10008.1.2.5", "1.2.840.10008.1.2.1.99"};
+    private static final byte[]      DICOM_PREFIX                 = {'D', 'I', 'C', 'M'};
+    private static final int         DICOM_PREAMBLE_LENGTH        = 128;
+    private static final int         FILE_META_GROUP              = 0x0002;
+    private static final int         TRANSFER_SYNTAX_ELEMENT      = 0x0010;
+    private static final int         MAX_UID_LENGTH               = 64;
+    private static final long        MAX_META_ELEMENT_LENGTH      = 65536;
+}
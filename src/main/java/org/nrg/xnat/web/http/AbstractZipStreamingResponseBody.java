@@ -3,6 +3,7 @@ package org.nrg.xnat.web.http;
 import lombok.extern.slf4j.Slf4j;
 import org.nrg.xft.utils.FileUtils;
 import org.nrg.xnat.services.archive.PathResourceMap;
+import org.nrg.xnat.utils.zip.ParallelZipWriter;
 import org.springframework.core.io.Resource;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
@@ -10,7 +11,6 @@ import java.io.*;
 import java.net.SocketException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -29,6 +29,9 @@ import java.util.zip.ZipOutputStream;
  * You can specify the size of the internal buffer used to transfer data from the resource to the zip stream by calling
  * the constructor with the buffer size parameter. If you call the other constructor, {@link FileUtils#LARGE_DOWNLOAD}
  * is used for the default size.'
+ * <p>
+ * Files that are already compressed, such as DICOM with a JPEG transfer syntax or gzipped NIfTI, are stored rather
+ * than deflated, while other files are deflated in parallel. See {@link ParallelZipWriter} for details.
  */
 @SuppressWarnings("WeakerAccess")
 @Slf4j
@@ -163,7 +166,7 @@ public abstract class AbstractZipStreamingResponseBody implements StreamingRespo
      */
     public AbstractZipStreamingResponseBody(final Path rootPath, final int bufferSize, final File history, final boolean closeOnCompletion) {
         _rootPath = rootPath;
-        _buffer = new byte[bufferSize];
+        _bufferSize = bufferSize;
         try {
             _history = history != null ? new PrintWriter(history) : null;
         } catch (FileNotFoundException e) {
@@ -177,26 +180,14 @@ public abstract class AbstractZipStreamingResponseBody implements StreamingRespo
     @Override
     public void writeTo(final OutputStream output) throws IOException {
         startHistory();
-        try (final ZipOutputStream zip = new ZipOutputStream(output)) {
+        try (final ParallelZipWriter zip = new ParallelZipWriter(output, ZipOutputStream.DEFLATED, _bufferSize)) {
             while (getResourceMap().hasNext()) {
                 final PathResourceMap.Mapping<String, Resource> map  = getResourceMap().next();
                 final String                                    path = _rootPath != null ? _rootPath.resolve(map.getPath()).toString() : map.getPath();
                 final File                                      file = map.getResource().getFile();
                 log.info("Preparing to write zip entry to path {}: {}", path, file.getAbsolutePath());
 
-                final ZipEntry entry = new ZipEntry(map.getPath());
-                entry.setTime(file.lastModified());
-
-                long total = 0;
-                zip.putNextEntry(entry);
-                try (final InputStream input = new FileInputStream(file)) {
-                    int len;
-                    while ((len = input.read(_buffer)) > 0) {
-                        zip.write(_buffer, 0, len);
-                        total += len;
-                    }
-                }
-                zip.closeEntry();
+                final long total = zip.write(map.getPath(), file);
                 writeHistory(path, file, total);
             }
             log.info("Mapper has no more entries, processed {} total entries.", getResourceMap().getProcessedCount());
@@ -232,7 +223,7 @@ public abstract class AbstractZipStreamingResponseBody implements StreamingRespo
     private static final int DEFAULT_BUFFER_SIZE = FileUtils.LARGE_DOWNLOAD;
 
     private final Path        _rootPath;
-    private final byte[]      _buffer;
+    private final int         _bufferSize;
     private final PrintWriter _history;
     private final boolean     _closeOnCompletion;
 }
@@ -0,0 +1,372 @@
+/*
+ * web: org.nrg.xnat.web.http.RangedFileDelivery
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.web.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Works out how to deliver a file for a request that may be conditional or ask for a byte range, then delivers it. The
+ * validators are a strong entity tag taken from the file's digest when the catalog has one, otherwise a weak entity tag
+ * made from the file's size and modification time, along with the file's modification time. Requests whose
+ * <b>If-None-Match</b> or <b>If-Modified-Since</b> header still matches get a 304 and no content. A request for a
+ * single byte range gets a 206 with just that range, unless its <b>If-Range</b> header no longer matches, in which
+ * case it gets the whole file. Requests for more than one range get the whole file and requests for a range past the
+ * end of the file get a 416. Ranges are ignored for <b>HEAD</b> requests, since frameworks that only set the status
+ * when the content is written would otherwise send a 200 with the length of the range. The content is copied with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} so the container can send it straight from the file.
+ * <p>
+ * Requests are evaluated when the instance is created, after which you can either call
+ * {@link #deliver(HttpServletResponse)} to set the status and headers and write the content to a servlet response, or
+ * use {@link #getStatus()}, {@link #getHeaders()}, and {@link #transferTo(WritableByteChannel)} to deliver it through
+ * another framework.
+ */
+@Slf4j
+public class RangedFileDelivery {
+    /**
+     * Evaluates the request for the file.
+     *
+     * @param file    The file to deliver.
+     * @param digest  The file's digest from its catalog entry, if any.
+     * @param method  The request method. Only <b>GET</b> and <b>HEAD</b> requests are conditional and only <b>GET</b>
+     *                requests are ranged.
+     * @param headers Gets the value of a request header, returning null if the header isn't present.
+     */
+    public RangedFileDelivery(final File file, final String digest, final String method, final Function<String, String> headers) {
+        _file = file;
+        _fileLength = file.length();
+        _lastModified = file.lastModified() / 1000 * 1000;
+        _strong = StringUtils.isNotBlank(digest);
+        _entityTag = _strong ? digest.trim() : Long.toHexString(_fileLength) + "-" + Long.toHexString(_lastModified);
+        _head = StringUtils.equalsIgnoreCase(method, "HEAD");
+
+        final boolean isGetOrHead = StringUtils.equalsAnyIgnoreCase(method, "GET", "HEAD");
+        if (isGetOrHead && isNotModified(headers.apply(IF_NONE_MATCH), headers.apply(IF_MODIFIED_SINCE))) {
+            _status = HttpServletResponse.SC_NOT_MODIFIED;
+            _start = 0;
+            _length = 0;
+            return;
+        }
+
+        final long[] range = StringUtils.equalsIgnoreCase(method, "GET") && isIfRangeMatched(headers.apply(IF_RANGE)) ? parseRange(headers.apply(RANGE), _fileLength) : null;
+        if (range == null) {
+            _status = HttpServletResponse.SC_OK;
+            _start = 0;
+            _length = _fileLength;
+        } else if (range == UNSATISFIABLE) {
+            _status = HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+            _start = 0;
+            _length = 0;
+        } else {
+            _status = HttpServletResponse.SC_PARTIAL_CONTENT;
+            _start = range[0];
+            _length = range[1] - range[0] + 1;
+        }
+    }
+
+    /**
+     * Evaluates the servlet request for the file.
+     *
+     * @param request The request for the file.
+     * @param file    The file to deliver.
+     * @param digest  The file's digest from its catalog entry, if any.
+     *
+     * @return The evaluated request.
+     */
+    public static RangedFileDelivery forRequest(final HttpServletRequest request, final File file, final String digest) {
+        return new RangedFileDelivery(file, digest, request.getMethod(), request::getHeader);
+    }
+
+    /**
+     * Gets the status for the response: 200, 206, 304, or 416.
+     *
+     * @return The response status.
+     */
+    public int getStatus() {
+        return _status;
+    }
+
+    /**
+     * Indicates whether the response has any content, i.e. its status is 200 or 206.
+     *
+     * @return Returns true if the response has content.
+     */
+    public boolean hasContent() {
+        return _status == HttpServletResponse.SC_OK || _status == HttpServletResponse.SC_PARTIAL_CONTENT;
+    }
+
+    /**
+     * Gets the entity tag for the file without quotes or weak prefix.
+     *
+     * @return The opaque entity tag.
+     */
+    public String getEntityTag() {
+        return _entityTag;
+    }
+
+    /**
+     * Indicates whether the entity tag is strong, i.e. it was taken from the file's digest.
+     *
+     * @return Returns true if the entity tag is strong.
+     */
+    public boolean isStrong() {
+        return _strong;
+    }
+
+    /**
+     * Gets the file's modification time, truncated to seconds.
+     *
+     * @return The file's modification time.
+     */
+    public long getLastModified() {
+        return _lastModified;
+    }
+
+    /**
+     * Gets the offset in the file of the first byte to deliver.
+     *
+     * @return The offset of the first byte to deliver.
+     */
+    public long getStart() {
+        return _start;
+    }
+
+    /**
+     * Gets the number of bytes to deliver.
+     *
+     * @return The number of bytes to deliver.
+     */
+    public long getLength() {
+        return _length;
+    }
+
+    /**
+     * Gets the <b>Content-Range</b> header value for 206 and 416 responses.
+     *
+     * @return The content range, or null for any other status.
+     */
+    public String getContentRange() {
+        switch (_status) {
+            case HttpServletResponse.SC_PARTIAL_CONTENT:
+                return "bytes " + _start + "-" + (_start + _length - 1) + "/" + _fileLength;
+            case HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE:
+                return "bytes */" + _fileLength;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Gets the headers for the response: <b>ETag</b>, <b>Last-Modified</b>, and <b>Accept-Ranges</b>, plus
+     * <b>Content-Range</b> and <b>Content-Length</b> where the status calls for them.
+     *
+     * @return The response headers in the order they should be set.
+     */
+    public Map<String, String> getHeaders() {
+        final Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(ETAG, formatEntityTag());
+        headers.put(LAST_MODIFIED, DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(_lastModified), ZoneOffset.UTC)));
+        headers.put(ACCEPT_RANGES, "bytes");
+        final String contentRange = getContentRange();
+        if (contentRange != null) {
+            headers.put(CONTENT_RANGE, contentRange);
+        }
+        if (hasContent()) {
+            headers.put(CONTENT_LENGTH, Long.toString(_length));
+        }
+        return headers;
+    }
+
+    /**
+     * Sets the status and headers on the response and writes any content to it. No content is written for <b>HEAD</b>
+     * requests.
+     *
+     * @param response The response to deliver the file to.
+     *
+     * @throws IOException When an error occurs reading the file or writing the response.
+     */
+    public void deliver(final HttpServletResponse response) throws IOException {
+        response.setStatus(_status);
+        for (final Map.Entry<String, String> header : getHeaders().entrySet()) {
+            response.setHeader(header.getKey(), header.getValue());
+        }
+        if (hasContent() && !_head) {
+            transferTo(Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    /**
+     * Copies the bytes to be delivered to the target channel.
+     *
+     * @param target The channel to copy the bytes to.
+     *
+     * @return The number of bytes copied.
+     *
+     * @throws IOException When an error occurs reading the file or writing to the channel.
+     */
+    public long transferTo(final WritableByteChannel target) throws IOException {
+        if (!hasContent()) {
+            return 0;
+        }
+        try (final FileChannel channel = FileChannel.open(_file.toPath(), StandardOpenOption.READ)) {
+            long position  = _start;
+            long remaining = _length;
+            while (remaining > 0) {
+                final long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new IOException("Only " + (position - _start) + " of " + _length + " bytes could be read from the file " + _file.getAbsolutePath() + ", it may have been truncated while it was being delivered");
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+        return _length;
+    }
+
+    private String formatEntityTag() {
+        return (_strong ? "" : "W/") + "\"" + _entityTag + "\"";
+    }
+
+    /**
+     * If-None-Match takes precedence over If-Modified-Since, which is only checked when there's no If-None-Match. Entity
+     * tags are compared weakly here.
+     */
+    private boolean isNotModified(final String ifNoneMatch, final String ifModifiedSince) {
+        if (ifNoneMatch != null) {
+            for (final String candidate : StringUtils.split(ifNoneMatch, ',')) {
+                final String trimmed = StringUtils.removeStart(candidate.trim(), "W/");
+                if (StringUtils.equals(trimmed, "*") || StringUtils.equals(StringUtils.strip(trimmed, "\""), _entityTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        final Long since = parseDate(ifModifiedSince);
+        return since != null && _lastModified <= since;
+    }
+
+    /**
+     * A missing If-Range always matches. An entity tag in If-Range only matches if it's strong and the same as the
+     * file's, while a date only matches if it's the same as the file's modification time.
+     */
+    private boolean isIfRangeMatched(final String ifRange) {
+        if (StringUtils.isBlank(ifRange)) {
+            return true;
+        }
+        final String trimmed = ifRange.trim();
+        if (trimmed.startsWith("W/")) {
+            return false;
+        }
+        if (trimmed.startsWith("\"")) {
+            return _strong && StringUtils.equals(StringUtils.strip(trimmed, "\""), _entityTag);
+        }
+        final Long date = parseDate(trimmed);
+        return date != null && date == _lastModified;
+    }
+
+    /**
+     * Parses a range header for a single byte range. Headers that can't be parsed or that have more than one range are
+     * ignored, so the whole file is delivered.
+     *
+     * @return The first and last byte positions, {@link #UNSATISFIABLE} if the range starts past the end of the file, or
+     *         null if the range should be ignored.
+     */
+    static long[] parseRange(final String header, final long fileLength) {
+        if (StringUtils.isBlank(header) || !StringUtils.startsWithIgnoreCase(header.trim(), BYTES_UNIT)) {
+            return null;
+        }
+        final String spec = header.trim().substring(BYTES_UNIT.length()).trim();
+        if (spec.contains(",")) {
+            log.debug("Ignoring the range header \"{}\" because it has more than one range", header);
+            return null;
+        }
+        final int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            final String first = spec.substring(0, dash).trim();
+            final String last  = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                final long suffix = Long.parseLong(last);
+                if (suffix <= 0 || fileLength == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new long[]{Math.max(0, fileLength - suffix), fileLength - 1};
+            }
+            final long start = Long.parseLong(first);
+            final long end   = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= fileLength) {
+                return UNSATISFIABLE;
+            }
+            return new long[]{start, Math.min(end, fileLength - 1)};
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring the range header \"{}\" because it couldn't be parsed", header);
+            return null;
+        }
+    }
+
+    private static Long parseDate(final String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public static final String ETAG              = "ETag";
+    public static final String LAST_MODIFIED     = "Last-Modified";
+    public static final String ACCEPT_RANGES     = "Accept-Ranges";
+    public static final String CONTENT_RANGE     = "Content-Range";
+    public static final String CONTENT_LENGTH    = "Content-Length";
+    public static final String IF_NONE_MATCH     = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    public static final String IF_RANGE          = "If-Range";
+    public static final String RANGE             = "Range";
+
+    private static final String BYTES_UNIT    = "bytes=";
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    private final File    _file;
+    private final long    _fileLength;
+    private final long    _lastModified;
+    private final boolean _strong;
+    private final String  _entityTag;
+    private final boolean _head;
+    private final int     _status;
+    private final long    _start;
+    private final long    _length;
+}
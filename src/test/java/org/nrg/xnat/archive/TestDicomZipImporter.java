@@ -0,0 +1,157 @@
+/*
+ * web: org.nrg.xnat.archive.TestDicomZipImporter
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.archive;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nrg.action.ClientException;
+import org.nrg.framework.services.ContextService;
+import org.nrg.xdat.XDAT;
+import org.nrg.xnat.helpers.ArchiveEntryFileWriterWrapper;
+import org.nrg.xnat.restlet.util.FileWriterWrapperI;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests how the DICOM zip importer reads archive entries and hands them to the shared import workers. Each entry is
+ * imported with a stand-in for the gradual DICOM importer that records the entry instead of storing it.
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(XDAT.class)
+public class TestDicomZipImporter {
+    @Before
+    public void setup() {
+        PowerMockito.mockStatic(XDAT.class);
+        PowerMockito.when(XDAT.getContextService()).thenReturn(mock(ContextService.class));
+    }
+
+    @Test
+    public void testEveryEntryIsImportedOnce() throws Exception {
+        final Map<String, byte[]> entries = new HashMap<>();
+        final List<String>        names   = new ArrayList<>();
+        for (int index = 0; index < 500; index++) {
+            final String name = "series" + (index % 7) + "/instance" + index + ".dcm";
+            names.add(name);
+            entries.put(name, ("instance " + index).getBytes(StandardCharsets.UTF_8));
+        }
+        final Map<String, AtomicInteger> imported = new ConcurrentHashMap<>();
+        final List<String>               uris     = importArchive(zip(names, entries), entry -> {
+            assertArrayEquals(entries.get(entry.getName()), read(entry));
+            imported.computeIfAbsent(entry.getName(), name -> new AtomicInteger()).incrementAndGet();
+            return Collections.singletonList(getUri(entry.getName()));
+        });
+
+        assertEquals(names.size(), imported.size());
+        assertTrue(imported.values().stream().allMatch(count -> count.get() == 1));
+        assertEquals(names.stream().map(TestDicomZipImporter::getUri).collect(Collectors.toList()), uris);
+        assertEquals(TOTAL_PERMITS, getBufferedBytes().availablePermits());
+    }
+
+    @Test
+    public void testLargeEntryIsImportedFromTheArchiveStream() throws Exception {
+        final Map<String, byte[]> entries = new HashMap<>();
+        entries.put("small.dcm", new byte[1024]);
+        entries.put("large.dcm", new byte[33 * 1024 * 1024]);
+        final Map<String, String> threads = new ConcurrentHashMap<>();
+        final Map<String, Long>   sizes   = new ConcurrentHashMap<>();
+        final Thread              caller  = Thread.currentThread();
+        importArchive(zip(new ArrayList<>(entries.keySet()), entries), entry -> {
+            threads.put(entry.getName(), Thread.currentThread() == caller ? "caller" : "worker");
+            sizes.put(entry.getName(), (long) read(entry).length);
+            return Collections.singletonList(getUri(entry.getName()));
+        });
+
+        assertEquals("worker", threads.get("small.dcm"));
+        assertEquals("caller", threads.get("large.dcm"));
+        assertEquals(Long.valueOf(33 * 1024 * 1024), sizes.get("large.dcm"));
+        assertEquals(TOTAL_PERMITS, getBufferedBytes().availablePermits());
+    }
+
+    @Test
+    public void testBufferedBytesAreReleasedWhenAnEntryFails() throws Exception {
+        final Map<String, byte[]> entries = new HashMap<>();
+        final List<String>        names   = new ArrayList<>();
+        for (int index = 0; index < 50; index++) {
+            final String name = "instance" + index + ".dcm";
+            names.add(name);
+            entries.put(name, new byte[200 * 1024]);
+        }
+        try {
+            importArchive(zip(names, entries), entry -> {
+                if (entry.getName().equals("instance10.dcm")) {
+                    throw new ClientException("Couldn't import " + entry.getName());
+                }
+                return Collections.singletonList(getUri(entry.getName()));
+            });
+            fail("The import should have failed on instance10.dcm");
+        } catch (ClientException e) {
+            assertEquals("Couldn't import instance10.dcm", e.getMessage());
+        }
+        assertEquals(TOTAL_PERMITS, getBufferedBytes().availablePermits());
+    }
+
+    private static List<String> importArchive(final byte[] zip, final DicomZipImporter.EntryImporter entryImporter) throws Exception {
+        final FileWriterWrapperI archive = new ArchiveEntryFileWriterWrapper("archive.zip", zip.length, new ByteArrayInputStream(zip));
+        return new DicomZipImporter("test", null, archive, new HashMap<>(), entryImporter).call();
+    }
+
+    private static byte[] zip(final List<String> names, final Map<String, byte[]> entries) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final ZipOutputStream zip = new ZipOutputStream(output)) {
+            for (final String name : names) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(entries.get(name));
+                zip.closeEntry();
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] read(final FileWriterWrapperI entry) throws ClientException {
+        try {
+            return IOUtils.toByteArray(entry.getInputStream());
+        } catch (IOException e) {
+            throw new ClientException("Couldn't read the entry " + entry.getName(), e);
+        }
+    }
+
+    private static String getUri(final String name) {
+        return "/prearchive/projects/TEST/" + name;
+    }
+
+    private static Semaphore getBufferedBytes() {
+        return Whitebox.getInternalState(DicomZipImporter.class, "BUFFERED_BYTES");
+    }
+
+    private static final int TOTAL_PERMITS = 256 * 1024 * 1024 / (64 * 1024);
+}
@@ -0,0 +1,134 @@
+/*
+ * web: org.nrg.xnat.dicom.mizer.service.TestCompiledAnonScriptCache
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.dicom.mizer.service;
+
+import org.dcm4che2.data.DicomElement;
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nrg.dicom.mizer.exceptions.MizerException;
+import org.nrg.dicom.mizer.objects.DicomObjectFactory;
+import org.nrg.dicom.mizer.objects.DicomObjectI;
+import org.nrg.dicom.mizer.service.MizerService;
+import org.nrg.test.utils.TestFileUtils;
+import org.nrg.xnat.dicom.mizer.config.MizerServiceTestConfig;
+import org.nrg.xnat.helpers.merge.anonymize.CompiledAnonScriptCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = MizerServiceTestConfig.class)
+public class TestCompiledAnonScriptCache extends BaseMizerTest {
+    @Before
+    public void setUp() {
+        _cache = new CompiledAnonScriptCache(_service);
+    }
+
+    @Test
+    public void cachedScriptMatchesPerInstanceScript() throws IOException, MizerException {
+        final File perInstance = TestFileUtils.copyTestFileToTemp(TEST_FILE);
+        final File cached      = TestFileUtils.copyTestFileToTemp(TEST_FILE);
+
+        _service.anonymize(perInstance, PROJECT, SUBJECT, SESSION, true, 1L, SET_STD_ATTRS_DE6);
+        _cache.anonymize(cached, 1L, SET_STD_ATTRS_DE6, PROJECT, SUBJECT, SESSION, true);
+
+        final DicomObjectI actual = DicomObjectFactory.newInstance(cached);
+        assertEquals(PROJECT, actual.getString(TAG_PROJECT));
+        assertEquals(SUBJECT, actual.getString(TAG_SUBJECT));
+        assertEquals(SESSION, actual.getString(TAG_SESSION));
+        assertSameAnonymization(perInstance, cached);
+    }
+
+    @Test
+    public void changedScriptIsRecompiled() throws IOException, MizerException {
+        final File first  = TestFileUtils.copyTestFileToTemp(TEST_FILE);
+        final File second = TestFileUtils.copyTestFileToTemp(TEST_FILE);
+
+        _cache.anonymize(first, 1L, "version \"6.1\"\n- (0008,103e)\n", PROJECT, SUBJECT, SESSION, false);
+        _cache.anonymize(second, 1L, SET_STD_ATTRS_DE6, PROJECT, SUBJECT, SESSION, false);
+
+        assertFalse(DicomObjectFactory.newInstance(first).contains(0x0008103e));
+        final DicomObjectI updated = DicomObjectFactory.newInstance(second);
+        assertTrue(updated.contains(0x0008103e));
+        assertEquals(PROJECT, updated.getString(TAG_PROJECT));
+    }
+
+    @Test
+    public void concurrentInstancesMatchPerInstanceScript() throws Exception {
+        final File       expected = TestFileUtils.copyTestFileToTemp(TEST_FILE);
+        final List<File> files    = copyTestFiles();
+        _service.anonymize(expected, PROJECT, SUBJECT, SESSION, true, 1L, SET_STD_ATTRS_DE6);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (final File file : files) {
+                futures.add(executor.submit(() -> {
+                    _cache.anonymize(file, 1L, SET_STD_ATTRS_DE6, PROJECT, SUBJECT, SESSION, true);
+                    return null;
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (final File file : files) {
+            assertSameAnonymization(expected, file);
+        }
+    }
+
+    private static void assertSameAnonymization(final File expected, final File actual) throws MizerException {
+        final DicomObject expectedObject = DicomObjectFactory.newInstance(expected).getDcm4che2Object();
+        final DicomObject actualObject   = DicomObjectFactory.newInstance(actual).getDcm4che2Object();
+        for (final int tag : new int[]{TAG_PROJECT, TAG_SUBJECT, TAG_SESSION}) {
+            assertEquals(expectedObject.getString(tag), actualObject.getString(tag));
+        }
+        final DicomElement expectedMethod = expectedObject.get(Tag.DeidentificationMethodCodeSequence);
+        final DicomElement actualMethod   = actualObject.get(Tag.DeidentificationMethodCodeSequence);
+        assertNotNull(actualMethod);
+        assertEquals(expectedMethod.countItems(), actualMethod.countItems());
+        assertEquals(expectedMethod.getDicomObject().getString(Tag.CodeMeaning), actualMethod.getDicomObject().getString(Tag.CodeMeaning));
+    }
+
+    private static List<File> copyTestFiles() throws IOException {
+        final List<File> files = new ArrayList<>(INSTANCES);
+        for (int index = 0; index < INSTANCES; index++) {
+            files.add(TestFileUtils.copyTestFileToTemp(TEST_FILE));
+        }
+        return files;
+    }
+
+    private static final int INSTANCES = 16;
+    private static final int THREADS   = 4;
+
+    @Autowired
+    private MizerService _service;
+
+    private CompiledAnonScriptCache _cache;
+}
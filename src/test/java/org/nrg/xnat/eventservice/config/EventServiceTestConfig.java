@@ -33,6 +33,7 @@ import org.springframework.context.annotation.*;
 import org.springframework.orm.hibernate4.HibernateTransactionManager;
 import org.springframework.orm.hibernate4.LocalSessionFactoryBean;
 import org.springframework.transaction.support.ResourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import reactor.bus.EventBus;
 
 import java.io.IOException;
@@ -123,8 +124,8 @@ public class EventServiceTestConfig {
     }
 
     @Bean
-    public SubscriptionDeliveryEntityService subscriptionDeliveryEntityService(final @Lazy EventService eventService, final @Lazy EventSubscriptionEntityService eventSubscriptionService) {
-        return new SubscriptionDeliveryEntityServiceImpl(eventService, eventSubscriptionService);
+    public SubscriptionDeliveryEntityService subscriptionDeliveryEntityService(final @Lazy EventService eventService, final @Lazy EventSubscriptionEntityService eventSubscriptionService, final ResourceTransactionManager transactionManager) {
+        return new SubscriptionDeliveryEntityServiceImpl(eventService, eventSubscriptionService, new TransactionTemplate(transactionManager));
     }
 
     @Bean
@@ -160,13 +161,18 @@ public class EventServiceTestConfig {
     }
 
     @Bean
-    public ActionManager actionManager(EventServiceComponentManager componentManager, SubscriptionDeliveryEntityService subscriptionDeliveryEntityService, EventPropertyService eventPropertyService) {
-        return new ActionManagerImpl(componentManager, subscriptionDeliveryEntityService, eventPropertyService);
+    public ActionDispatcher actionDispatcher(EventServicePrefsBean mockEventServicePrefsBean) {
+        return new ActionDispatcherImpl(mockEventServicePrefsBean);
     }
 
     @Bean
-    public ActionManager mockActionManager(EventServiceComponentManager mockComponentManager, SubscriptionDeliveryEntityService mockSubscriptionDeliveryEntityService, EventPropertyService eventPropertyService) {
-        return new ActionManagerImpl(mockComponentManager, mockSubscriptionDeliveryEntityService, eventPropertyService);
+    public ActionManager actionManager(EventServiceComponentManager componentManager, SubscriptionDeliveryEntityService subscriptionDeliveryEntityService, EventPropertyService eventPropertyService, ActionDispatcher actionDispatcher) {
+        return new ActionManagerImpl(componentManager, subscriptionDeliveryEntityService, eventPropertyService, actionDispatcher);
+    }
+
+    @Bean
+    public ActionManager mockActionManager(EventServiceComponentManager mockComponentManager, SubscriptionDeliveryEntityService mockSubscriptionDeliveryEntityService, EventPropertyService eventPropertyService, ActionDispatcher actionDispatcher) {
+        return new ActionManagerImpl(mockComponentManager, mockSubscriptionDeliveryEntityService, eventPropertyService, actionDispatcher);
     }
 
     @Bean
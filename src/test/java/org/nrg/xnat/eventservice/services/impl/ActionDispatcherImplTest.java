@@ -0,0 +1,207 @@
+package org.nrg.xnat.eventservice.services.impl;
+
+import org.junit.After;
+import org.junit.Test;
+import org.nrg.xnat.eventservice.services.EventServicePrefsBean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ActionDispatcherImplTest {
+    @After
+    public void tearDown() {
+        release();
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrencyCapsAreNeverExceeded() throws InterruptedException {
+        dispatcher = createDispatcher(8, 100, 2, 3);
+        final Map<Long, AtomicInteger>   runningBySubscription = new ConcurrentHashMap<>();
+        final Map<String, AtomicInteger> runningByProvider     = new ConcurrentHashMap<>();
+        final Map<Long, AtomicInteger>   maxBySubscription     = new ConcurrentHashMap<>();
+        final Map<String, AtomicInteger> maxByProvider         = new ConcurrentHashMap<>();
+        final CountDownLatch             finished              = new CountDownLatch(40);
+        for (int index = 0; index < 40; index++) {
+            final long   subscriptionId = index % 4;
+            final String provider       = index % 2 == 0 ? "even" : "odd";
+            dispatcher.dispatch(subscriptionId, provider, index % 3 == 0, () -> {
+                final AtomicInteger subscription = runningBySubscription.computeIfAbsent(subscriptionId, id -> new AtomicInteger());
+                final AtomicInteger providers    = runningByProvider.computeIfAbsent(provider, name -> new AtomicInteger());
+                maxBySubscription.computeIfAbsent(subscriptionId, id -> new AtomicInteger()).accumulateAndGet(subscription.incrementAndGet(), Math::max);
+                maxByProvider.computeIfAbsent(provider, name -> new AtomicInteger()).accumulateAndGet(providers.incrementAndGet(), Math::max);
+                pause(10);
+                subscription.decrementAndGet();
+                providers.decrementAndGet();
+                finished.countDown();
+            });
+        }
+
+        assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(maxBySubscription.values().stream().allMatch(max -> max.get() <= 2));
+        assertTrue(maxByProvider.values().stream().allMatch(max -> max.get() <= 3));
+    }
+
+    @Test
+    public void priorityActionsRunAheadOfBulkActions() throws InterruptedException {
+        dispatcher = createDispatcher(1, 100, 2, 6);
+        occupyWorkers(1);
+        final List<String>   order    = new CopyOnWriteArrayList<>();
+        final CountDownLatch finished = new CountDownLatch(4);
+        for (int index = 0; index < 3; index++) {
+            final String name = "bulk " + index;
+            dispatcher.dispatch(2L, PROVIDER, false, () -> {
+                order.add(name);
+                finished.countDown();
+            });
+        }
+        dispatcher.dispatch(3L, PROVIDER, true, () -> {
+            order.add("priority");
+            finished.countDown();
+        });
+        assertEquals(1, dispatcher.getStatistics().priorityQueueDepth());
+        assertEquals(3, dispatcher.getStatistics().bulkQueueDepth());
+
+        release();
+        assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("priority", "bulk 0", "bulk 1", "bulk 2"), order);
+    }
+
+    @Test
+    public void fullLaneBlocksTheSubmitterUntilThereIsRoom() throws InterruptedException {
+        dispatcher = createDispatcher(1, 1, 2, 6);
+        occupyWorkers(1);
+        final CountDownLatch finished = new CountDownLatch(2);
+        dispatcher.dispatch(2L, PROVIDER, false, finished::countDown);
+
+        final Thread submitter = new Thread(() -> dispatcher.dispatch(3L, PROVIDER, false, finished::countDown));
+        submitter.start();
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while (dispatcher.getStatistics().blockedSubmissions() == 0) {
+            assertTrue("The submitter never blocked", System.currentTimeMillis() < deadline);
+            pause(10);
+        }
+        submitter.join(200);
+        assertTrue(submitter.isAlive());
+        assertEquals(1, dispatcher.getStatistics().bulkQueueDepth());
+
+        release();
+        submitter.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        assertFalse(submitter.isAlive());
+        assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void actionsForASubscriptionRunInTheOrderTheyWereDispatched() throws InterruptedException {
+        dispatcher = createDispatcher(4, 100, 1, 6);
+        final List<Integer>  first    = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer>  second   = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch finished = new CountDownLatch(40);
+        for (int index = 0; index < 20; index++) {
+            final int order = index;
+            dispatcher.dispatch(1L, PROVIDER, index % 4 == 0, () -> {
+                first.add(order);
+                pause(1);
+                finished.countDown();
+            });
+            dispatcher.dispatch(2L, PROVIDER, index % 5 == 0, () -> {
+                second.add(order);
+                finished.countDown();
+            });
+        }
+
+        assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+        final List<Integer> expected = IntStream.range(0, 20).boxed().collect(Collectors.toList());
+        assertEquals(expected, first);
+        assertEquals(expected, second);
+    }
+
+    @Test
+    public void shutdownDrainsQueuedActionsAndRunsLaterActionsInline() throws InterruptedException {
+        dispatcher = createDispatcher(1, 100, 2, 6);
+        occupyWorkers(1);
+        final List<String> ran = new CopyOnWriteArrayList<>();
+        for (int index = 0; index < 3; index++) {
+            final String name = "queued " + index;
+            dispatcher.dispatch(2L, PROVIDER, false, () -> ran.add(name));
+        }
+
+        final Thread stopper = new Thread(dispatcher::shutdown);
+        stopper.start();
+        release();
+        stopper.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        assertFalse(stopper.isAlive());
+        assertEquals(Arrays.asList("queued 0", "queued 1", "queued 2"), ran);
+        assertEquals(0, dispatcher.getStatistics().bulkQueueDepth());
+
+        final Thread caller = Thread.currentThread();
+        final List<Thread> ranOn = new ArrayList<>();
+        dispatcher.dispatch(2L, PROVIDER, true, () -> ranOn.add(Thread.currentThread()));
+        assertEquals(Collections.singletonList(caller), ranOn);
+    }
+
+    private static ActionDispatcherImpl createDispatcher(final int poolSize, final int queueCapacity, final int subscriptionConcurrency, final int providerConcurrency) {
+        final EventServicePrefsBean prefs = mock(EventServicePrefsBean.class);
+        when(prefs.getDispatcherPoolSize()).thenReturn(poolSize);
+        when(prefs.getDispatcherQueueCapacity()).thenReturn(queueCapacity);
+        when(prefs.getDispatcherSubscriptionConcurrency()).thenReturn(subscriptionConcurrency);
+        when(prefs.getDispatcherProviderConcurrency()).thenReturn(providerConcurrency);
+        return new ActionDispatcherImpl(prefs);
+    }
+
+    /**
+     * Dispatches an action for each worker that waits until {@link #release()} is called, and waits for all of them to
+     * start, so that the actions dispatched afterwards stay queued.
+     */
+    private void occupyWorkers(final int workers) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(workers);
+        for (int index = 0; index < workers; index++) {
+            dispatcher.dispatch(-1L - index, "blocking", true, () -> {
+                started.countDown();
+                try {
+                    gate.await(TIMEOUT, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    private void release() {
+        gate.countDown();
+    }
+
+    private static void pause(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final String PROVIDER = "provider";
+    private static final long   TIMEOUT  = 10;
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    private ActionDispatcherImpl dispatcher;
+}
@@ -0,0 +1,63 @@
+package org.nrg.xnat.eventservice.services.impl;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nrg.xnat.eventservice.config.EventServiceTestConfig;
+import org.nrg.xnat.eventservice.entities.SubscriptionDeliveryEntity;
+import org.nrg.xnat.eventservice.services.SubscriptionDeliveryEntityService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.ResourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.nrg.xnat.eventservice.entities.TimedEventStatusEntity.Status.EVENT_DETECTED;
+import static org.nrg.xnat.eventservice.entities.TimedEventStatusEntity.Status.OBJECT_FILTER_MISMATCH_HALT;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = EventServiceTestConfig.class)
+public class SubscriptionDeliveryEntityServiceImplTest {
+    private static final String PROJECT_ID = "DeliveryStatusRace";
+
+    @Autowired
+    private SubscriptionDeliveryEntityService subscriptionDeliveryEntityService;
+    @Autowired
+    private ResourceTransactionManager        transactionManager;
+
+    @Test
+    public void triggeringEventDoesNotOverwriteJournaledStatus() {
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        final Long deliveryId = transactionTemplate.execute(transaction -> {
+            final SubscriptionDeliveryEntity delivery = new SubscriptionDeliveryEntity();
+            delivery.setEventType("Test Event");
+            delivery.setProjectId(PROJECT_ID);
+            delivery.addTimedEventStatus(EVENT_DETECTED, new Date(), "Event detected.");
+            subscriptionDeliveryEntityService.create(delivery);
+            return delivery.getId();
+        });
+
+        transactionTemplate.execute(transaction -> {
+            // Load the delivery into this transaction before the journal writes a newer status in its own transaction.
+            assertEquals(EVENT_DETECTED, subscriptionDeliveryEntityService.retrieve(deliveryId).getStatus());
+            subscriptionDeliveryEntityService.addStatus(deliveryId, OBJECT_FILTER_MISMATCH_HALT, new Date(), "Filter mismatch.");
+            assertEquals(1, (int) subscriptionDeliveryEntityService.count(PROJECT_ID, null, true));
+
+            subscriptionDeliveryEntityService.setTriggeringEvent(deliveryId, "Test Event", "CREATED", true, "xnat:projectData", "/archive/projects/" + PROJECT_ID, PROJECT_ID);
+            return null;
+        });
+
+        transactionTemplate.execute(transaction -> {
+            final SubscriptionDeliveryEntity delivery = subscriptionDeliveryEntityService.retrieve(deliveryId);
+            assertEquals(OBJECT_FILTER_MISMATCH_HALT, delivery.getStatus());
+            assertEquals("Filter mismatch.", delivery.getStatusMessage());
+            assertNotNull(delivery.getTriggeringEventEntity());
+            assertEquals(2, delivery.getTimedEventStatuses().size());
+            assertEquals(0, (int) subscriptionDeliveryEntityService.count(PROJECT_ID, null, false));
+            return null;
+        });
+    }
+}
@@ -0,0 +1,214 @@
+package org.nrg.xnat.eventservice.services.impl;
+
+import org.junit.After;
+import org.junit.Test;
+import org.nrg.xnat.eventservice.services.impl.SubscriptionDeliveryStatusJournal.PendingStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.nrg.xnat.eventservice.entities.TimedEventStatusEntity.Status.*;
+
+public class SubscriptionDeliveryStatusJournalTest {
+    @After
+    public void tearDown() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void flushWritesStatusesInOrderAndInGroups() {
+        final Writer writer = new Writer();
+        journal = new SubscriptionDeliveryStatusJournal(writer, 3, 1000, FLUSH_INTERVAL);
+        journal.add(1L, ACTION_STEP, new Date(), "one");
+        journal.add(2L, ACTION_STEP, new Date(), "two");
+        journal.flush();
+        journal.add(1L, ACTION_COMPLETE, new Date(), "three");
+        journal.add(2L, ACTION_COMPLETE, new Date(), "four");
+        journal.add(3L, ACTION_COMPLETE, new Date(), "five");
+        journal.add(3L, ACTION_FAILED, new Date(), "six");
+        journal.flush();
+
+        assertEquals(Arrays.asList("one", "two", "three", "four", "five", "six"), writer.getWrittenMessages());
+        assertEquals(Arrays.asList(2, 3, 1), writer.getGroupSizes());
+        assertEquals(0, journal.getPendingCount());
+    }
+
+    @Test
+    public void fullGroupIsWrittenInBackground() throws InterruptedException {
+        final CountDownLatch written = new CountDownLatch(1);
+        final Writer         writer  = new Writer() {
+            @Override
+            public List<PendingStatus> apply(final List<PendingStatus> statuses) {
+                final List<PendingStatus> missing = super.apply(statuses);
+                written.countDown();
+                return missing;
+            }
+        };
+        journal = new SubscriptionDeliveryStatusJournal(writer, 2, 1000, FLUSH_INTERVAL);
+        journal.add(1L, ACTION_STEP, new Date(), "one");
+        journal.add(1L, ACTION_COMPLETE, new Date(), "two");
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("one", "two"), writer.getWrittenMessages());
+    }
+
+    @Test
+    public void tooManyPendingStatusesAreWrittenByTheAddingThread() {
+        final Writer writer = new Writer();
+        journal = new SubscriptionDeliveryStatusJournal(writer, 100, 3, FLUSH_INTERVAL);
+        journal.add(1L, ACTION_STEP, new Date(), "one");
+        journal.add(1L, ACTION_STEP, new Date(), "two");
+        assertTrue(writer.getWrittenMessages().isEmpty());
+
+        journal.add(1L, ACTION_COMPLETE, new Date(), "three");
+        assertEquals(Arrays.asList("one", "two", "three"), writer.getWrittenMessages());
+    }
+
+    @Test
+    public void statusesForMissingDeliveriesWaitInOrder() {
+        final Writer writer = new Writer();
+        writer.hide(1L);
+        journal = new SubscriptionDeliveryStatusJournal(writer, 2, 1000, FLUSH_INTERVAL);
+        journal.add(1L, ACTION_STEP, new Date(), "first for 1");
+        journal.add(2L, ACTION_STEP, new Date(), "first for 2");
+        journal.add(1L, ACTION_COMPLETE, new Date(), "second for 1");
+        journal.add(2L, ACTION_COMPLETE, new Date(), "second for 2");
+        journal.flush();
+
+        // The later status for delivery 1 isn't written ahead of the one waiting for the delivery to be committed.
+        assertEquals(Arrays.asList("first for 2", "second for 2"), writer.getWrittenMessages());
+
+        writer.show(1L);
+        journal.flush();
+        assertEquals(Arrays.asList("first for 2", "second for 2", "first for 1", "second for 1"), writer.getWrittenMessages());
+        assertEquals(0, journal.getPendingCount());
+    }
+
+    @Test
+    public void statusesForMissingDeliveriesAreDiscardedAfterMaxAttempts() {
+        final Writer writer = new Writer();
+        writer.hide(1L);
+        journal = new SubscriptionDeliveryStatusJournal(writer, 10, 1000, FLUSH_INTERVAL);
+        journal.add(1L, ACTION_STEP, new Date(), "never written");
+        for (int attempt = 0; attempt < 9; attempt++) {
+            journal.flush();
+            assertEquals(1, journal.getPendingCount());
+        }
+        journal.flush();
+        assertEquals(0, journal.getPendingCount());
+        assertTrue(writer.getWrittenMessages().isEmpty());
+    }
+
+    @Test
+    public void failedWritesAreRetriedOnTheNextFlush() {
+        final Writer writer = new Writer();
+        writer.fail(true);
+        journal = new SubscriptionDeliveryStatusJournal(writer, 2, 1000, FLUSH_INTERVAL);
+        journal.add(1L, ACTION_STEP, new Date(), "one");
+        journal.add(2L, ACTION_STEP, new Date(), "two");
+        journal.add(3L, ACTION_STEP, new Date(), "three");
+        journal.flush();
+        assertTrue(writer.getWrittenMessages().isEmpty());
+
+        writer.fail(false);
+        journal.add(4L, ACTION_STEP, new Date(), "four");
+        journal.flush();
+        assertEquals(Arrays.asList("one", "two", "three", "four"), writer.getWrittenMessages());
+        assertEquals(0, journal.getPendingCount());
+    }
+
+    @Test
+    public void statusesThatKeepFailingAreDiscardedAfterMaxAttempts() {
+        final Writer writer = new Writer();
+        writer.fail(true);
+        journal = new SubscriptionDeliveryStatusJournal(writer, 10, 1000, FLUSH_INTERVAL);
+        journal.add(1L, ACTION_STEP, new Date(), "never written");
+        for (int attempt = 0; attempt < 9; attempt++) {
+            journal.flush();
+            assertEquals(1, journal.getPendingCount());
+        }
+        journal.flush();
+        assertEquals(0, journal.getPendingCount());
+
+        writer.fail(false);
+        journal.flush();
+        assertTrue(writer.getWrittenMessages().isEmpty());
+    }
+
+    @Test
+    public void closeWritesPendingStatusesAndLaterStatusesImmediately() {
+        final Writer writer = new Writer();
+        journal = new SubscriptionDeliveryStatusJournal(writer, 100, 1000, FLUSH_INTERVAL);
+        journal.add(1L, ACTION_STEP, new Date(), "one");
+        journal.close();
+        assertEquals(Collections.singletonList("one"), writer.getWrittenMessages());
+
+        journal.add(1L, ACTION_COMPLETE, new Date(), "two");
+        assertEquals(Arrays.asList("one", "two"), writer.getWrittenMessages());
+    }
+
+    /**
+     * Records the statuses it's asked to write, returning the statuses for hidden deliveries as missing.
+     */
+    private static class Writer implements Function<List<PendingStatus>, List<PendingStatus>> {
+        @Override
+        public List<PendingStatus> apply(final List<PendingStatus> statuses) {
+            if (failing) {
+                throw new IllegalStateException("The database is unavailable");
+            }
+            groupSizes.add(statuses.size());
+            final List<PendingStatus> missing = new ArrayList<>();
+            for (final PendingStatus status : statuses) {
+                if (hidden.contains(status.getDeliveryId())) {
+                    missing.add(status);
+                } else {
+                    written.add(status);
+                }
+            }
+            return missing;
+        }
+
+        void hide(final Long deliveryId) {
+            hidden.add(deliveryId);
+        }
+
+        void show(final Long deliveryId) {
+            hidden.remove(deliveryId);
+        }
+
+        void fail(final boolean failing) {
+            this.failing = failing;
+        }
+
+        List<String> getWrittenMessages() {
+            return written.stream().map(PendingStatus::getMessage).collect(Collectors.toList());
+        }
+
+        List<Integer> getGroupSizes() {
+            return new ArrayList<>(groupSizes);
+        }
+
+        private final List<PendingStatus> written    = new CopyOnWriteArrayList<>();
+        private final List<Integer>       groupSizes = new CopyOnWriteArrayList<>();
+        private final Set<Long>           hidden     = ConcurrentHashMap.newKeySet();
+        private volatile boolean          failing;
+    }
+
+    private static final long FLUSH_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    private SubscriptionDeliveryStatusJournal journal;
+}
@@ -0,0 +1,105 @@
+/*
+ * web: org.nrg.xnat.helpers.uri.TestUriTemplateTrie
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.helpers.uri;
+
+import org.junit.Test;
+import org.restlet.util.Template;
+
+import java.util.*;
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the compiled template trie finds the same templates and parses the same properties as running each
+ * registered template through {@link UriParserUtils.UriParser} in turn.
+ */
+public class TestUriTemplateTrie {
+    @Test
+    public void testParityWithRegisteredTemplates() {
+        for (final URIManager.TEMPLATE_TYPE type : URIManager.TEMPLATE_TYPE.values()) {
+            final List<URIManager.TemplateInfo<?>> templates = new ArrayList<>();
+            for (final URIManager.TemplateInfo template : URIManager.getTemplates(type)) {
+                templates.add(template);
+            }
+            assertParity(templates, URIManager.getTemplateTrie(type));
+        }
+    }
+
+    @Test
+    public void testParityWithIrregularTemplates() {
+        final List<URIManager.TemplateInfo<?>> templates = Arrays.<URIManager.TemplateInfo<?>>asList(template("/user/cache/resources/{XNAME}/files/", Template.MODE_STARTS_WITH),
+                                                                                                     template("/files/{NAME}.{EXT}", Template.MODE_EQUALS),
+                                                                                                     template("/files/{NAME}", Template.MODE_EQUALS),
+                                                                                                     template("/files", Template.MODE_STARTS_WITH),
+                                                                                                     template("/files/{NAME}/{NAME}", Template.MODE_STARTS_WITH),
+                                                                                                     template("files/{NAME}", Template.MODE_STARTS_WITH));
+        final UriTemplateTrie trie = new UriTemplateTrie();
+        for (final URIManager.TemplateInfo<?> template : templates) {
+            trie.add(template);
+        }
+        assertParity(templates, trie);
+    }
+
+    @Test
+    public void testMatchOrder() {
+        final List<UriTemplateTrie.Match> matches = URIManager.getTemplateTrie(URIManager.TEMPLATE_TYPE.ARC).match("/archive/experiments/E1/resources/DICOM/files/1.dcm");
+        assertEquals(2, matches.size());
+        assertEquals("/archive/experiments/{EXPT_ID}/resources/{XNAME}/files", matches.get(0).getTemplate().key);
+        assertEquals("/1.dcm", matches.get(0).getProperties().get(UriParserUtils._REMAINDER));
+        assertEquals("/archive/experiments/{EXPT_ID}/resources/{XNAME}", matches.get(1).getTemplate().key);
+        assertEquals("/files/1.dcm", matches.get(1).getProperties().get(UriParserUtils._REMAINDER));
+        assertTrue(URIManager.getTemplateTrie(URIManager.TEMPLATE_TYPE.ARC).match("/archive").isEmpty());
+    }
+
+    private static void assertParity(final List<URIManager.TemplateInfo<?>> templates, final UriTemplateTrie trie) {
+        for (final String uri : getSampleUris(templates)) {
+            final List<UriTemplateTrie.Match> matches = trie.match(uri);
+            int                               index   = 0;
+            for (final URIManager.TemplateInfo<?> template : templates) {
+                final Map<String, Object> expected = new UriParserUtils.UriParser(template.key, template.MODE).readUri(uri);
+                if (expected.isEmpty()) {
+                    continue;
+                }
+                assertTrue("The template " + template.key + " should match " + uri, index < matches.size());
+                final UriTemplateTrie.Match match = matches.get(index++);
+                assertSame("The template " + template.key + " should be the next match for " + uri + " but got " + match.getTemplate().key, template, match.getTemplate());
+                assertEquals("Different properties for the template " + template.key + " and " + uri, expected, match.getProperties());
+            }
+            assertEquals("Found unexpected matches for " + uri, index, matches.size());
+        }
+    }
+
+    private static Set<String> getSampleUris(final List<URIManager.TemplateInfo<?>> templates) {
+        final Set<String> uris = new LinkedHashSet<>(Arrays.asList("", "/", "//", "/archive", "/archive/", "/archive/projects", "/archive/projects/", "/prearchive/projects/P1/", "/user/cache", "/services/triage/projects", "/files", "/filesXYZ"));
+        for (final URIManager.TemplateInfo<?> template : templates) {
+            for (final String value : VALUES) {
+                final String uri = template.key.replaceAll("\\{[^{}]+}", Matcher.quoteReplacement(value));
+                for (final String suffix : SUFFIXES) {
+                    uris.add(uri + suffix);
+                    uris.add("/data" + uri + suffix);
+                }
+                final int slash = uri.lastIndexOf('/');
+                if (slash > 0) {
+                    uris.add(uri.substring(0, slash));
+                    uris.add(uri.substring(0, slash + 1));
+                }
+            }
+        }
+        return uris;
+    }
+
+    private static URIManager.TemplateInfo<?> template(final String key, final int mode) {
+        return new URIManager.TemplateInfo<>(key, mode, URIManager.ArchiveURI.class);
+    }
+
+    private static final List<String> VALUES   = Arrays.asList("ABC_123", "Sample%20One", "x:y@z!$&'()*+,;=~", "a b", "caf\u00e9", "50%", "%4", "%zz", "");
+    private static final List<String> SUFFIXES = Arrays.asList("", "/", "//", "2", " extra", "/files", "/files/", "/files/scan 1/image.dcm", "/resources/DICOM/files/1.dcm", "?format=json");
+}
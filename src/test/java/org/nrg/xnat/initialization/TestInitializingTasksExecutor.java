@@ -0,0 +1,287 @@
+/*
+ * web: org.nrg.xnat.initialization.TestInitializingTasksExecutor
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.initialization;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnat.initialization.InitializingTaskTiming.Status;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests how the initializing tasks executor orders, serializes, and retries tasks. The tasks are launched directly
+ * rather than waiting for XFT to be initialized.
+ */
+public class TestInitializingTasksExecutor {
+    @Before
+    public void setup() {
+        _scheduler = new ThreadPoolTaskScheduler();
+        _scheduler.initialize();
+    }
+
+    @After
+    public void teardown() {
+        if (_executor != null) {
+            _executor.shutdown();
+        }
+        _scheduler.shutdown();
+    }
+
+    @Test
+    public void testDependentsRunAfterTheirPrerequisites() throws InterruptedException {
+        final Map<String, InitializingTaskTiming> timeline = launch(new Third().dependsOn(First.class, Second.class).concurrent(),
+                                                                    new Second().dependsOn(First.class).concurrent(),
+                                                                    new First().concurrent());
+
+        assertEquals(Arrays.asList("First", "Second", "Third"), _calls);
+        assertEquals(Arrays.asList("First", "Second"), timeline.get("Third").getDependencies());
+        assertEquals(Collections.singletonList("First"), timeline.get("Second").getDependencies());
+        assertTrue(timeline.values().stream().allMatch(timing -> timing.getStatus() == Status.Completed));
+    }
+
+    @Test
+    public void testUnknownDependenciesAreIgnored() throws InterruptedException {
+        final Map<String, InitializingTaskTiming> timeline = launch(new First().dependsOn(Second.class));
+
+        assertEquals(Collections.singletonList("First"), _calls);
+        assertTrue(timeline.get("First").getDependencies().isEmpty());
+        assertEquals(Status.Completed, timeline.get("First").getStatus());
+    }
+
+    @Test
+    public void testCircularDependenciesAreRemoved() throws InterruptedException {
+        final Map<String, InitializingTaskTiming> timeline = launch(new First().dependsOn(Third.class),
+                                                                    new Second().dependsOn(First.class),
+                                                                    new Third().dependsOn(Second.class));
+
+        // Following the dependencies from the first task, Second's dependency on First closes the cycle and is dropped.
+        assertEquals(Arrays.asList("Second", "Third", "First"), _calls);
+        assertTrue(timeline.get("Second").getDependencies().isEmpty());
+        assertEquals(Collections.singletonList("Second"), timeline.get("Third").getDependencies());
+        assertEquals(Collections.singletonList("Third"), timeline.get("First").getDependencies());
+        assertTrue(timeline.values().stream().allMatch(timing -> timing.getStatus() == Status.Completed));
+    }
+
+    @Test
+    public void testMaxedOutPrerequisiteReleasesDependents() throws InterruptedException {
+        final Map<String, InitializingTaskTiming> timeline = launch(new First().maxedOut(), new Second().dependsOn(First.class));
+
+        assertEquals(Collections.singletonList("Second"), _calls);
+        assertEquals(Status.MaxedOut, timeline.get("First").getStatus());
+        assertEquals(Status.Completed, timeline.get("Second").getStatus());
+    }
+
+    @Test
+    public void testTasksRunOneAtATimeInRegistrationOrder() throws InterruptedException {
+        final AtomicInteger running    = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Function<Task, Boolean> body = task -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return true;
+        };
+        launch(new Third().runs(body), new First().runs(body), new Second().runs(body));
+
+        assertEquals(Arrays.asList("Third", "First", "Second"), _calls);
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void testConcurrentTasksRunAtTheSameTime() throws InterruptedException {
+        // Each task waits for the other to start, so they only both complete if they run at the same time.
+        final CountDownLatch          started = new CountDownLatch(2);
+        final Function<Task, Boolean> body    = task -> {
+            started.countDown();
+            try {
+                return started.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        };
+        final Map<String, InitializingTaskTiming> timeline = launch(new First().concurrent().runs(body), new Second().concurrent().runs(body));
+
+        assertEquals(1, timeline.get("First").getAttempts());
+        assertEquals(1, timeline.get("Second").getAttempts());
+    }
+
+    @Test
+    public void testTasksThatArentReadyOrDontCompleteAreRetried() throws InterruptedException {
+        final AtomicInteger                       attempts = new AtomicInteger();
+        final Map<String, InitializingTaskTiming> timeline = launch(new First().notReadyFor(1), new Second().runs(task -> attempts.incrementAndGet() > 1));
+
+        assertEquals(1, timeline.get("First").getAttempts());
+        assertTrue(timeline.get("First").getReadinessWait() >= 1000);
+        assertEquals(2, timeline.get("Second").getAttempts());
+        assertTrue(timeline.get("Second").getReadinessWait() >= 1000);
+        assertTrue(timeline.values().stream().allMatch(timing -> timing.getStatus() == Status.Completed));
+    }
+
+    @Test
+    public void testRetryDelayDoublesUpToTheMaximum() {
+        final List<Long> delays = new ArrayList<>();
+        long             delay  = 0;
+        for (int attempt = 0; attempt < 6; attempt++) {
+            delay = InitializingTasksExecutor.getRetryDelay(delay);
+            delays.add(delay);
+        }
+        assertEquals(Arrays.asList(1000L, 2000L, 4000L, 8000L, 15000L, 15000L), delays);
+    }
+
+    /**
+     * Launches the tasks and waits for all of them to complete or max out.
+     *
+     * @return The timeline for the tasks, keyed by task name.
+     */
+    private Map<String, InitializingTaskTiming> launch(final InitializingTask... tasks) throws InterruptedException {
+        _executor = new InitializingTasksExecutor(_scheduler, Arrays.asList(tasks));
+        _executor.launch();
+
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!_executor.getTimeline().stream().allMatch(timing -> timing.getStatus() == Status.Completed || timing.getStatus() == Status.MaxedOut)) {
+            assertTrue("The initializing tasks didn't finish in time: " + _executor.getTimeline(), System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        return _executor.getTimeline().stream().collect(Collectors.toMap(InitializingTaskTiming::getTaskName, Function.identity()));
+    }
+
+    /**
+     * A task that records when it's called. Tasks are identified by their class, so each test uses the subclasses below.
+     */
+    private abstract class Task implements InitializingTask {
+        @SafeVarargs
+        final Task dependsOn(final Class<? extends InitializingTask>... dependencies) {
+            _dependencies.addAll(Arrays.asList(dependencies));
+            return this;
+        }
+
+        Task concurrent() {
+            _concurrent = true;
+            return this;
+        }
+
+        Task maxedOut() {
+            _maxedOut = true;
+            return this;
+        }
+
+        Task notReadyFor(final int checks) {
+            _notReadyFor.set(checks);
+            return this;
+        }
+
+        Task runs(final Function<Task, Boolean> body) {
+            _body = body;
+            return this;
+        }
+
+        @Override
+        public Boolean call() {
+            _executions++;
+            _calls.add(getTaskName());
+            final boolean completed = _body.apply(this);
+            if (completed) {
+                complete();
+            }
+            return completed;
+        }
+
+        @Override
+        public String getTaskName() {
+            return getClass().getSimpleName();
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return _completedAt != null;
+        }
+
+        @Override
+        public Date completedAt() {
+            return _completedAt;
+        }
+
+        @Override
+        public void complete() {
+            _completedAt = new Date();
+        }
+
+        @Override
+        public void reset() {
+            _completedAt = null;
+            _executions = 0;
+        }
+
+        @Override
+        public boolean isMaxedOut() {
+            return _maxedOut;
+        }
+
+        @Override
+        public int executions() {
+            return _executions;
+        }
+
+        @Override
+        public Set<Class<? extends InitializingTask>> getDependencies() {
+            return _dependencies;
+        }
+
+        @Override
+        public boolean canRunConcurrently() {
+            return _concurrent;
+        }
+
+        @Override
+        public boolean isReady() {
+            return _notReadyFor.getAndDecrement() <= 0;
+        }
+
+        private final Set<Class<? extends InitializingTask>> _dependencies = new LinkedHashSet<>();
+        private final AtomicInteger                          _notReadyFor  = new AtomicInteger();
+
+        private          Function<Task, Boolean> _body = task -> true;
+        private          boolean                 _concurrent;
+        private          boolean                 _maxedOut;
+        private volatile Date                    _completedAt;
+        private volatile int                     _executions;
+    }
+
+    private class First extends Task {
+    }
+
+    private class Second extends Task {
+    }
+
+    private class Third extends Task {
+    }
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(20);
+
+    private final List<String> _calls = new CopyOnWriteArrayList<>();
+
+    private ThreadPoolTaskScheduler   _scheduler;
+    private InitializingTasksExecutor _executor;
+}
@@ -0,0 +1,131 @@
+/*
+ * web: org.nrg.xnat.restlet.representations.TestStreamingTableQuery
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.restlet.representations;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.nrg.xft.XFTTable;
+import org.restlet.data.MediaType;
+import org.restlet.resource.OutputRepresentation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that search results streamed from the database with a {@link StreamingTableQuery} are written as JSON, CSV,
+ * and XML with the values escaped for each format, and that they're written the same way as the same rows in an
+ * {@link XFTTable}.
+ */
+public class TestStreamingTableQuery {
+    @BeforeClass
+    public static void createTable() {
+        _dataSource = new SingleConnectionDataSource("jdbc:h2:mem:streaming_formats;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "", true);
+        _template = new JdbcTemplate(_dataSource);
+        _template.execute("CREATE TABLE xnat_sample (id VARCHAR(32), label VARCHAR(64), notes VARCHAR(255))");
+        _template.update("INSERT INTO xnat_sample VALUES (?, ?, ?)", "XNAT_E1", "Session, \"One\"", "<b>first</b> & only");
+        _template.update("INSERT INTO xnat_sample VALUES (?, ?, ?)", "XNAT_E2", "Session Two", null);
+    }
+
+    @AfterClass
+    public static void dropTable() {
+        _template.execute("DROP TABLE xnat_sample");
+        _dataSource.destroy();
+    }
+
+    @Test
+    public void testJsonRepresentation() throws IOException {
+        final Hashtable<String, Object> metadata = new Hashtable<>();
+        final String                    json     = write(new JSONTableRepresentation(new StreamingTableQuery(_template, QUERY), null, metadata, MediaType.APPLICATION_JSON));
+        assertTrue(json.startsWith("{\"ResultSet\":{\"Result\":[{\"id\":\"XNAT_E1\",\"label\":\"Session, \\\"One\\\"\",\"notes\":\"<b>first</b> & only\"},{\"id\":\"XNAT_E2\",\"label\":\"Session Two\",\"notes\":\"\"}]"));
+        assertTrue(json.contains("\"totalRecords\": \"2\""));
+        assertEquals(2L, metadata.get(StreamingTableQuery.TOTAL_RECORDS));
+    }
+
+    @Test
+    public void testCsvRepresentation() throws IOException {
+        final String csv = write(new CSVTableRepresentation(new StreamingTableQuery(_template, QUERY), null, new Hashtable<String, Object>(), MediaType.TEXT_CSV));
+        assertEquals("id,label,notes\nXNAT_E1,\"Session, \"\"One\"\"\",<b>first</b> & only\nXNAT_E2,Session Two,\n", csv);
+    }
+
+    @Test
+    public void testXmlRepresentation() throws IOException {
+        final String xml = write(new XMLTableRepresentation(new StreamingTableQuery(_template, QUERY), null, new Hashtable<String, Object>(), MediaType.TEXT_XML));
+        assertTrue(xml.startsWith("<ResultSet totalRecords=\"2\">"));
+        assertTrue(xml.contains("<columns><column>id</column><column>label</column><column>notes</column></columns>"));
+        assertTrue(xml.contains("<row><cell>XNAT_E1</cell><cell>Session, &quot;One&quot;</cell><cell>&lt;b&gt;first&lt;/b&gt; &amp; only</cell></row>"));
+        assertTrue(xml.endsWith("</rows></results></ResultSet>"));
+    }
+
+    @Test
+    public void testJsonMatchesTable() throws IOException {
+        assertEquals(write(new JSONTableRepresentation(getTable(), getColumnProperties(), getMetadata(), MediaType.APPLICATION_JSON)),
+                     write(new JSONTableRepresentation(new StreamingTableQuery(_template, QUERY), getColumnProperties(), getMetadata(), MediaType.APPLICATION_JSON)));
+    }
+
+    @Test
+    public void testCsvMatchesTable() throws IOException {
+        assertEquals(write(new CSVTableRepresentation(getTable(), getColumnProperties(), getMetadata(), MediaType.TEXT_CSV)),
+                     write(new CSVTableRepresentation(new StreamingTableQuery(_template, QUERY), getColumnProperties(), getMetadata(), MediaType.TEXT_CSV)));
+    }
+
+    @Test
+    public void testXmlMatchesTable() throws IOException {
+        assertEquals(write(new XMLTableRepresentation(getTable(), getColumnProperties(), getMetadata(), MediaType.TEXT_XML)),
+                     write(new XMLTableRepresentation(new StreamingTableQuery(_template, QUERY), getColumnProperties(), getMetadata(), MediaType.TEXT_XML)));
+    }
+
+    private static XFTTable getTable() {
+        final XFTTable table = new XFTTable();
+        table.initTable(new String[]{"id", "label", "notes"});
+        table.insertRow(new Object[]{"XNAT_E1", "Session, \"One\"", "<b>first</b> & only"});
+        table.insertRow(new Object[]{"XNAT_E2", "Session Two", null});
+        return table;
+    }
+
+    private static Map<String, Map<String, String>> getColumnProperties() {
+        final Map<String, String> id = new LinkedHashMap<>();
+        id.put("element_name", "xnat:mrSessionData");
+        id.put("header", "ID");
+        id.put("xPATH", "xnat:mrSessionData.ID");
+        final Map<String, String> label = new LinkedHashMap<>();
+        label.put("header", "Label");
+        label.put("type", "string");
+        final Map<String, Map<String, String>> columnProperties = new LinkedHashMap<>();
+        columnProperties.put("id", id);
+        columnProperties.put("label", label);
+        return columnProperties;
+    }
+
+    private static Hashtable<String, Object> getMetadata() {
+        final Hashtable<String, Object> metadata = new Hashtable<>();
+        metadata.put(StreamingTableQuery.TOTAL_RECORDS, 2L);
+        return metadata;
+    }
+
+    private static String write(final OutputRepresentation representation) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        representation.write(output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static final String QUERY = "SELECT id AS \"id\", label AS \"label\", notes AS \"notes\" FROM xnat_sample ORDER BY id";
+
+    private static SingleConnectionDataSource _dataSource;
+    private static JdbcTemplate               _template;
+}
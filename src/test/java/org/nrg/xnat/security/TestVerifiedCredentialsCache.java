@@ -0,0 +1,177 @@
+package org.nrg.xnat.security;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xdat.entities.AliasToken;
+import org.nrg.xdat.preferences.SiteConfigPreferences;
+import org.nrg.xdat.services.AliasTokenService;
+import org.nrg.xft.event.XftItemEventI;
+import org.nrg.xnat.security.preferences.SecurityPreferences;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.security.core.Authentication;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that verified credentials are only returned for matching passwords within the timeout and are removed when
+ * the user's account changes, is disabled or locked out, or an alias token is invalidated.
+ */
+public class TestVerifiedCredentialsCache {
+    @Before
+    public void setUp() {
+        _preferences = mock(SecurityPreferences.class);
+        when(_preferences.getVerifiedCredentialsTimeout()).thenReturn(60);
+        when(_preferences.getVerifiedCredentialsMaxEntries()).thenReturn(100);
+        when(_preferences.getVerifiedCredentialsLoginInterval()).thenReturn(300);
+        _siteConfigPreferences = mock(SiteConfigPreferences.class);
+        when(_siteConfigPreferences.getMaxFailedLogins()).thenReturn(3);
+        _aliasTokenService = mock(AliasTokenService.class);
+
+        _dataSource = new SingleConnectionDataSource("jdbc:h2:mem:verified_credentials;DB_CLOSE_DELAY=-1", "sa", "", true);
+        _template = new JdbcTemplate(_dataSource);
+        _template.execute("CREATE TABLE xdat_user (login VARCHAR(255), enabled INTEGER)");
+        _template.execute("CREATE TABLE xhbm_xdat_user_auth (xdat_username VARCHAR(255), auth_method VARCHAR(255), failed_login_attempts INTEGER)");
+        for (final String username : new String[]{"jane", "john"}) {
+            _template.update("INSERT INTO xdat_user VALUES (?, 1)", username);
+            _template.update("INSERT INTO xhbm_xdat_user_auth VALUES (?, 'localdb', 0)", username);
+        }
+
+        _cache = new VerifiedCredentialsCache(_preferences, _siteConfigPreferences, _aliasTokenService, new NamedParameterJdbcTemplate(_template));
+        _authentication = authentication("jane");
+    }
+
+    @After
+    public void tearDown() {
+        _template.execute("DROP TABLE xdat_user");
+        _template.execute("DROP TABLE xhbm_xdat_user_auth");
+        _dataSource.destroy();
+    }
+
+    @Test
+    public void testVerifiedCredentials() {
+        assertNull(_cache.getAuthentication("jane", "password"));
+        _cache.putAuthentication("jane", "password", _authentication);
+        assertSame(_authentication, _cache.getAuthentication("jane", "password"));
+        assertNull(_cache.getAuthentication("jane", "wrong"));
+        assertNull(_cache.getAuthentication("ldap/jane", "password"));
+    }
+
+    @Test
+    public void testDisabledAndExpired() throws InterruptedException {
+        _cache.putAuthentication("jane", "password", _authentication);
+        when(_preferences.getVerifiedCredentialsTimeout()).thenReturn(0);
+        assertNull(_cache.getAuthentication("jane", "password"));
+
+        when(_preferences.getVerifiedCredentialsTimeout()).thenReturn(1);
+        _cache.putAuthentication("jane", "password", _authentication);
+        assertSame(_authentication, _cache.getAuthentication("jane", "password"));
+        Thread.sleep(1100);
+        assertNull(_cache.getAuthentication("jane", "password"));
+    }
+
+    @Test
+    public void testLoginRecordedOncePerInterval() throws InterruptedException {
+        _cache.putAuthentication("jane", "password", _authentication);
+        assertFalse(_cache.shouldRecordLogin("jane"));
+
+        when(_preferences.getVerifiedCredentialsLoginInterval()).thenReturn(1);
+        Thread.sleep(1100);
+        assertTrue(_cache.shouldRecordLogin("jane"));
+        assertFalse(_cache.shouldRecordLogin("jane"));
+    }
+
+    @Test
+    public void testInvalidation() {
+        final Authentication other = authentication("john");
+        _cache.putAuthentication("jane", "password", _authentication);
+        _cache.putAuthentication("localdb/jane", "password", _authentication);
+        _cache.putAuthentication("0123abcd", "secret", _authentication);
+        _cache.putAuthentication("john", "password", other);
+
+        final XftItemEventI event = mock(XftItemEventI.class);
+        when(event.getId()).thenReturn("jane");
+        _cache.handleEventImpl(event);
+        assertNull(_cache.getAuthentication("jane", "password"));
+        assertNull(_cache.getAuthentication("localdb/jane", "password"));
+        assertNull(_cache.getAuthentication("0123abcd", "secret"));
+        assertSame(other, _cache.getAuthentication("john", "password"));
+
+        _cache.putAuthentication("0123abcd", "secret", _authentication);
+        _cache.putAuthentication("token/0123abcd", "secret", _authentication);
+        _cache.invalidateLogin("0123abcd");
+        assertNull(_cache.getAuthentication("0123abcd", "secret"));
+        assertNull(_cache.getAuthentication("token/0123abcd", "secret"));
+        assertSame(other, _cache.getAuthentication("john", "password"));
+    }
+
+    @Test
+    public void testDisabledOrLockedOutAccount() {
+        _cache.putAuthentication("jane", "password", _authentication);
+        _template.update("UPDATE xhbm_xdat_user_auth SET failed_login_attempts = 3 WHERE xdat_username = 'jane'");
+        assertNull(_cache.getAuthentication("jane", "password"));
+
+        // The entry was removed, so it isn't returned even after the lockout is reset.
+        _template.update("UPDATE xhbm_xdat_user_auth SET failed_login_attempts = 0 WHERE xdat_username = 'jane'");
+        assertNull(_cache.getAuthentication("jane", "password"));
+
+        _cache.putAuthentication("jane", "password", _authentication);
+        assertSame(_authentication, _cache.getAuthentication("jane", "password"));
+        _template.update("UPDATE xdat_user SET enabled = 0 WHERE login = 'jane'");
+        assertNull(_cache.getAuthentication("jane", "password"));
+    }
+
+    @Test
+    public void testAliasTokens() {
+        final AliasToken token = token(false);
+        when(_aliasTokenService.locateToken(ALIAS)).thenReturn(token);
+        _cache.putAuthentication(ALIAS, "secret", _authentication);
+        assertSame(_authentication, _cache.getAuthentication(ALIAS, "secret"));
+
+        // Tokens can be invalidated without going through the cache, e.g. when they expire.
+        when(token.isEnabled()).thenReturn(false);
+        assertNull(_cache.getAuthentication(ALIAS, "secret"));
+
+        when(_aliasTokenService.locateToken(ALIAS)).thenReturn(null);
+        _cache.putAuthentication(ALIAS, "secret", _authentication);
+        assertNull(_cache.getAuthentication(ALIAS, "secret"));
+    }
+
+    @Test
+    public void testSingleUseAliasTokensAreNotCached() {
+        when(_aliasTokenService.locateToken(ALIAS)).thenReturn(token(true));
+        _cache.putAuthentication(ALIAS, "secret", _authentication);
+        _cache.putAuthentication("token/" + ALIAS, "secret", _authentication);
+        assertNull(_cache.getAuthentication(ALIAS, "secret"));
+        assertNull(_cache.getAuthentication("token/" + ALIAS, "secret"));
+    }
+
+    private static AliasToken token(final boolean singleUse) {
+        final AliasToken token = mock(AliasToken.class);
+        when(token.getXdatUserId()).thenReturn("jane");
+        when(token.isEnabled()).thenReturn(true);
+        when(token.isSingleUse()).thenReturn(singleUse);
+        return token;
+    }
+
+    private static Authentication authentication(final String username) {
+        final Authentication authentication = mock(Authentication.class);
+        when(authentication.getName()).thenReturn(username);
+        when(authentication.isAuthenticated()).thenReturn(true);
+        return authentication;
+    }
+
+    private static final String ALIAS = "0c5e0a12-6d1f-4b7a-9c3e-2f4a6b8d0e1f";
+
+    private SecurityPreferences        _preferences;
+    private SiteConfigPreferences      _siteConfigPreferences;
+    private AliasTokenService          _aliasTokenService;
+    private SingleConnectionDataSource _dataSource;
+    private JdbcTemplate               _template;
+    private VerifiedCredentialsCache   _cache;
+    private Authentication             _authentication;
+}
@@ -0,0 +1,167 @@
+/*
+ * web: org.nrg.xnat.services.cache.TestDefaultUserProjectCache
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.services.cache;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.nrg.xdat.om.XdatUsergroup;
+import org.nrg.xdat.om.XnatProjectdata;
+import org.nrg.xdat.security.helpers.Groups;
+import org.nrg.xdat.services.cache.GroupsAndPermissionsCache;
+import org.nrg.xft.event.XftItemEventI;
+import org.powermock.reflect.Whitebox;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.nrg.xft.event.XftItemEventI.*;
+
+/**
+ * Tests how group changes are applied to the cached project access snapshots. The project and its users are seeded
+ * directly into the cache, so the users are never loaded from the database.
+ */
+public class TestDefaultUserProjectCache {
+    @Before
+    public void setup() {
+        _dataSource = new SingleConnectionDataSource("jdbc:h2:mem:user_project_cache;DB_CLOSE_DELAY=-1", "sa", "", true);
+        final JdbcTemplate template = new JdbcTemplate(_dataSource);
+        template.execute("CREATE TABLE xnat_projectdata (id VARCHAR(255))");
+        template.execute("CREATE TABLE xnat_projectdata_alias (alias VARCHAR(255), aliases_alias_xnat_projectdata_id VARCHAR(255))");
+        template.update("INSERT INTO xnat_projectdata VALUES (?)", PROJECT);
+
+        final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
+        _cache = new DefaultUserProjectCache(cacheManager, Mockito.mock(GroupsAndPermissionsCache.class), new NamedParameterJdbcTemplate(template));
+        _cache.initialize();
+        cacheManager.getCache(_cache.getCacheName()).put(PROJECT, new DefaultUserProjectCache.ProjectCache(Mockito.mock(XnatProjectdata.class), ImmutableMap.of(ALICE, 0L, BOB, 0L)));
+
+        final Set<String> nonAdmins = Whitebox.getInternalState(_cache, "_nonAdmins");
+        nonAdmins.addAll(Arrays.asList(ALICE, BOB));
+    }
+
+    @After
+    public void teardown() {
+        final JdbcTemplate template = new JdbcTemplate(_dataSource);
+        template.execute("DROP TABLE xnat_projectdata");
+        template.execute("DROP TABLE xnat_projectdata_alias");
+        _dataSource.destroy();
+    }
+
+    @Test
+    public void testOwnerCanDeleteWriteAndRead() {
+        addUsers("owner", ALICE);
+        assertAccess(ALICE, true, true, true);
+        assertAccess(BOB, false, false, false);
+
+        removeUsers("owner", ALICE);
+        assertAccess(ALICE, false, false, false);
+    }
+
+    @Test
+    public void testMemberCanWriteAndRead() {
+        addUsers("member", ALICE);
+        assertAccess(ALICE, false, true, true);
+
+        removeUsers("member", ALICE);
+        assertAccess(ALICE, false, false, false);
+    }
+
+    @Test
+    public void testCollaboratorCanOnlyRead() {
+        addUsers("collaborator", ALICE, BOB);
+        assertAccess(ALICE, false, false, true);
+        assertAccess(BOB, false, false, true);
+
+        removeUsers("collaborator", BOB);
+        assertAccess(ALICE, false, false, true);
+        assertAccess(BOB, false, false, false);
+    }
+
+    @Test
+    public void testRevokingOneGroupLeavesOtherGroupAccess() {
+        addUsers("owner", ALICE);
+        addUsers("collaborator", ALICE);
+        removeUsers("collaborator", ALICE);
+        assertAccess(ALICE, true, true, true);
+
+        removeUsers("owner", ALICE);
+        assertAccess(ALICE, false, false, false);
+    }
+
+    @Test
+    public void testAllDataAdminMembershipIsSwapped() {
+        assertAccess(ALICE, false, false, false);
+
+        _cache.setAllDataGroupMembers(Groups.ALL_DATA_ADMIN_GROUP, Collections.singletonList(ALICE));
+        assertAccess(ALICE, true, true, true);
+        assertAccess(BOB, false, false, false);
+
+        _cache.setAllDataGroupMembers(Groups.ALL_DATA_ADMIN_GROUP, Collections.singletonList(BOB));
+        assertAccess(ALICE, false, false, false);
+        assertAccess(BOB, true, true, true);
+    }
+
+    @Test
+    public void testAllDataAccessMembershipIsSwapped() {
+        _cache.setAllDataGroupMembers(Groups.ALL_DATA_ACCESS_GROUP, Collections.singletonList(ALICE));
+        assertTrue(_cache.canRead(ALICE, PROJECT));
+        assertFalse(_cache.canRead(BOB, PROJECT));
+
+        _cache.setAllDataGroupMembers(Groups.ALL_DATA_ACCESS_GROUP, Collections.emptyList());
+        assertFalse(_cache.canRead(ALICE, PROJECT));
+
+        // Replacing one group's members doesn't affect the other group.
+        _cache.setAllDataGroupMembers(Groups.ALL_DATA_ACCESS_GROUP, Collections.singletonList(ALICE));
+        _cache.setAllDataGroupMembers(Groups.ALL_DATA_ADMIN_GROUP, Collections.singletonList(BOB));
+        assertTrue(_cache.canRead(ALICE, PROJECT));
+        assertTrue(_cache.canDelete(BOB, PROJECT));
+    }
+
+    private void addUsers(final String access, final String... users) {
+        assertTrue(_cache.handleEventImpl(getGroupEvent(access, OPERATION_ADD_USERS, users)));
+    }
+
+    private void removeUsers(final String access, final String... users) {
+        assertTrue(_cache.handleEventImpl(getGroupEvent(access, OPERATION_REMOVE_USERS, users)));
+    }
+
+    private void assertAccess(final String user, final boolean delete, final boolean write, final boolean read) {
+        assertEquals(delete, _cache.canDelete(user, PROJECT));
+        assertEquals(write, _cache.canWrite(user, PROJECT));
+        assertEquals(read, _cache.canRead(user, PROJECT));
+    }
+
+    private static XftItemEventI getGroupEvent(final String access, final String operation, final String... users) {
+        final Map<String, ?> properties = ImmutableMap.of(OPERATION, operation, Groups.USERS, Arrays.asList(users));
+        final XftItemEventI  event      = Mockito.mock(XftItemEventI.class);
+        Mockito.when(event.getXsiType()).thenReturn(XdatUsergroup.SCHEMA_ELEMENT_NAME);
+        Mockito.when(event.getId()).thenReturn(PROJECT + "_" + access);
+        Mockito.doReturn(properties).when(event).getProperties();
+        return event;
+    }
+
+    private static final String PROJECT = "PROJECT";
+    private static final String ALICE   = "alice";
+    private static final String BOB     = "bob";
+
+    private SingleConnectionDataSource _dataSource;
+    private DefaultUserProjectCache    _cache;
+}
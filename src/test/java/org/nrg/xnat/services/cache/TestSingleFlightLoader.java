@@ -0,0 +1,125 @@
+/*
+ * web: org.nrg.xnat.services.cache.TestSingleFlightLoader
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.services.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestSingleFlightLoader {
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception {
+        final SingleFlightLoader   loader = new SingleFlightLoader();
+        final Map<String, Integer> cache  = new ConcurrentHashMap<>();
+        final AtomicInteger        loads  = new AtomicInteger();
+        final CountDownLatch       ready  = new CountDownLatch(1);
+
+        final List<Integer> results = runConcurrently(20, index -> {
+            await(ready);
+            return loader.load("user", () -> cache.get("user"), () -> {
+                sleep(100);
+                cache.put("user", loads.incrementAndGet());
+                return cache.get("user");
+            });
+        }, ready);
+
+        assertEquals(1, loads.get());
+        for (final Integer result : results) {
+            assertEquals(Integer.valueOf(1), result);
+        }
+        assertEquals(0, loader.getLoadingCount());
+    }
+
+    @Test
+    public void testFailuresArePropagatedToWaitingThreads() throws Exception {
+        final SingleFlightLoader loader = new SingleFlightLoader();
+        final CountDownLatch     ready  = new CountDownLatch(1);
+
+        final List<Integer> results = runConcurrently(10, index -> {
+            await(ready);
+            try {
+                return loader.load("user", () -> null, () -> {
+                    sleep(100);
+                    throw new IllegalStateException("The query failed");
+                });
+            } catch (IllegalStateException e) {
+                return -1;
+            }
+        }, ready);
+
+        for (final Integer result : results) {
+            assertEquals(Integer.valueOf(-1), result);
+        }
+        assertEquals(Integer.valueOf(2), loader.load("user", () -> null, () -> 2));
+    }
+
+    @Test
+    public void testAwaitWaitsForLoadInProgress() throws Exception {
+        final SingleFlightLoader loader  = new SingleFlightLoader();
+        final CountDownLatch     started = new CountDownLatch(1);
+        final AtomicInteger      loaded  = new AtomicInteger();
+        final ExecutorService    service = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Integer> future = service.submit(() -> loader.load("user", () -> null, () -> {
+                started.countDown();
+                sleep(200);
+                return loaded.incrementAndGet();
+            }));
+            started.await();
+            loader.await("user");
+            assertEquals(1, loaded.get());
+            assertEquals(Integer.valueOf(1), future.get());
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    private static List<Integer> runConcurrently(final int count, final Function<Integer, Integer> task, final CountDownLatch ready) throws Exception {
+        final ExecutorService service = Executors.newFixedThreadPool(count);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int index = 0; index < count; index++) {
+                final int current = index;
+                futures.add(service.submit(() -> task.apply(current)));
+            }
+            ready.countDown();
+            final List<Integer> results = new ArrayList<>();
+            for (final Future<Integer> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
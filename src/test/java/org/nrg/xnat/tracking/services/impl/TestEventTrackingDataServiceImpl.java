@@ -0,0 +1,88 @@
+package org.nrg.xnat.tracking.services.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnat.tracking.entities.EventTrackingData;
+import org.nrg.xnat.tracking.model.TrackableEvent;
+import org.nrg.xnat.tracking.services.EventTrackingDataHibernateService;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that progress updates for a key are merged in memory, that the merged payload is visible before it's written,
+ * and that completion writes the merged payload before the completion.
+ */
+public class TestEventTrackingDataServiceImpl {
+    @Before
+    public void setUp() throws Exception {
+        final EventTrackingData stored = new EventTrackingData(KEY, USER_ID);
+        stored.setPayload("");
+
+        _hibernateService = mock(EventTrackingDataHibernateService.class);
+        when(_hibernateService.findOrCreateByKey(KEY, USER_ID)).thenReturn(stored);
+        when(_hibernateService.findByKey(KEY, USER_ID)).thenReturn(stored);
+
+        _user = mock(UserI.class);
+        when(_user.getID()).thenReturn(USER_ID);
+
+        _service = new EventTrackingDataServiceImpl(_hibernateService);
+    }
+
+    @Test
+    public void testUpdatesAreCoalesced() throws Exception {
+        for (int index = 0; index < 10; index++) {
+            _service.createOrUpdate(progress(index));
+        }
+        verify(_hibernateService, times(1)).updatePayload(eq(KEY), eq(USER_ID), anyString());
+        verify(_hibernateService).updatePayload(KEY, USER_ID, "0");
+        assertEquals("0123456789", _service.getPayloadByKey(KEY, _user));
+
+        _service.flushPendingUpdates();
+        verify(_hibernateService).updatePayload(KEY, USER_ID, "0123456789");
+        _service.flushPendingUpdates();
+        verify(_hibernateService, times(2)).updatePayload(eq(KEY), eq(USER_ID), anyString());
+    }
+
+    @Test
+    public void testCompletionWritesPendingPayload() throws Exception {
+        for (int index = 0; index < 5; index++) {
+            _service.createOrUpdate(progress(index));
+        }
+        final TrackableEvent completed = event(true);
+        _service.createOrUpdate(completed);
+
+        final InOrder inOrder = inOrder(_hibernateService);
+        inOrder.verify(_hibernateService).updatePayload(KEY, USER_ID, "0");
+        inOrder.verify(_hibernateService).updatePayload(KEY, USER_ID, "01234");
+        inOrder.verify(_hibernateService).createOrUpdate(completed);
+
+        _service.flushPendingUpdates();
+        verify(_hibernateService, times(2)).updatePayload(eq(KEY), eq(USER_ID), anyString());
+    }
+
+    private static TrackableEvent progress(final int index) throws Exception {
+        final TrackableEvent event = event(false);
+        when(event.updateTrackingPayload(nullable(String.class))).thenAnswer(invocation -> invocation.getArgument(0) + Integer.toString(index));
+        return event;
+    }
+
+    private static TrackableEvent event(final boolean completed) {
+        final TrackableEvent event = mock(TrackableEvent.class);
+        when(event.getTrackingId()).thenReturn(KEY);
+        when(event.getUserId()).thenReturn(USER_ID);
+        when(event.isCompleted()).thenReturn(completed);
+        when(event.isSuccess()).thenReturn(completed);
+        return event;
+    }
+
+    private static final String  KEY     = "upload-1";
+    private static final Integer USER_ID = 1;
+
+    private EventTrackingDataHibernateService _hibernateService;
+    private UserI                             _user;
+    private EventTrackingDataServiceImpl      _service;
+}
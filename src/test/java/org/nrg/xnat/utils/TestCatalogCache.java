@@ -0,0 +1,142 @@
+/*
+ * web: org.nrg.xnat.utils.TestCatalogCache
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.utils;
+
+import com.google.common.cache.CacheBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nrg.xdat.bean.CatCatalogBean;
+import org.nrg.xdat.bean.CatEntryBean;
+import org.powermock.reflect.Whitebox;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that cached catalogs are only returned while the catalog file is unchanged and that callers can't change the
+ * cached catalog through the beans they get back. The cache is created directly rather than from the site
+ * configuration.
+ */
+public class TestCatalogCache {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setup() throws IOException {
+        Whitebox.setInternalState(CatalogCache.class, "_cache", CacheBuilder.newBuilder().build());
+        Whitebox.setInternalState(CatalogCache.class, "_initialized", true);
+        _file = folder.newFile("scan_catalog.xml");
+        write(_file, CATALOG_CONTENTS);
+    }
+
+    @After
+    public void teardown() {
+        Whitebox.setInternalState(CatalogCache.class, "_cache", (Object) null);
+        Whitebox.setInternalState(CatalogCache.class, "_initialized", false);
+    }
+
+    @Test
+    public void testCachedCatalogIsReturnedWhileTheFileIsUnchanged() {
+        CatalogCache.put(CatalogCache.identify(_file), createCatalog(), CHECKSUM);
+
+        final CatalogCache.CachedCatalog cached = CatalogCache.get(_file);
+        assertNotNull(cached);
+        assertEquals(CHECKSUM, cached.getChecksum());
+        assertEquals(CATALOG_ID, cached.getCatalog().getId());
+        assertEquals(2, cached.getCatalog().getEntries_entry().size());
+        assertNotNull(CatalogCache.get(new File(_file.getParentFile(), "../" + _file.getParentFile().getName() + "/" + _file.getName())));
+    }
+
+    @Test
+    public void testReplacedFileIsNotReturned() throws IOException {
+        CatalogCache.put(CatalogCache.identify(_file), createCatalog(), CHECKSUM);
+        assertNotNull(CatalogCache.get(_file));
+
+        // The replacement has the same size and modification time, so only its file key is different.
+        final long lastModified = _file.lastModified();
+        final File replacement  = folder.newFile("scan_catalog.xml.tmp");
+        write(replacement, CATALOG_CONTENTS.replace("scan", "SCAN"));
+        assertTrue(replacement.setLastModified(lastModified));
+        Files.move(replacement.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        assertNull(CatalogCache.get(_file));
+        assertNull(CatalogCache.get(_file));
+    }
+
+    @Test
+    public void testInvalidatedCatalogIsNotReturned() {
+        CatalogCache.put(CatalogCache.identify(_file), createCatalog(), CHECKSUM);
+        CatalogCache.invalidate(_file);
+        assertNull(CatalogCache.get(_file));
+    }
+
+    @Test
+    public void testChangesToTheReturnedCatalogAreNotCached() {
+        final CatCatalogBean catalog = createCatalog();
+        CatalogCache.put(CatalogCache.identify(_file), catalog, CHECKSUM);
+        catalog.setId("changed after put");
+
+        final CatalogCache.CachedCatalog first = CatalogCache.get(_file);
+        assertNotNull(first);
+        first.getCatalog().setId("changed after get");
+        first.getCatalog().addEntries_entry(createEntry("3"));
+
+        final CatalogCache.CachedCatalog second = CatalogCache.get(_file);
+        assertNotNull(second);
+        assertNotSame(first.getCatalog(), second.getCatalog());
+        assertEquals(CATALOG_ID, second.getCatalog().getId());
+        assertEquals(2, second.getCatalog().getEntries_entry().size());
+    }
+
+    @Test
+    public void testRecentlyModifiedFileIsNotCached() throws IOException {
+        write(_file, CATALOG_CONTENTS);
+        assertTrue(_file.setLastModified(System.currentTimeMillis()));
+        CatalogCache.put(CatalogCache.identify(_file), createCatalog(), CHECKSUM);
+        assertNull(CatalogCache.get(_file));
+    }
+
+    private static CatCatalogBean createCatalog() {
+        final CatCatalogBean catalog = new CatCatalogBean();
+        catalog.setId(CATALOG_ID);
+        catalog.addEntries_entry(createEntry("1"));
+        catalog.addEntries_entry(createEntry("2"));
+        return catalog;
+    }
+
+    private static CatEntryBean createEntry(final String number) {
+        final CatEntryBean entry = new CatEntryBean();
+        entry.setName(number + ".dcm");
+        entry.setUri(number + ".dcm");
+        return entry;
+    }
+
+    /**
+     * Writes the contents with a modification time old enough for the catalog to be cached.
+     */
+    private static void write(final File file, final String contents) throws IOException {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(System.currentTimeMillis() - 60000));
+    }
+
+    private static final String CATALOG_ID       = "scan_catalog";
+    private static final String CHECKSUM         = "0cc175b9c0f1b6a831c399e269772661";
+    private static final String CATALOG_CONTENTS = "<cat:Catalog xmlns:cat=\"http://nrg.wustl.edu/catalog\" ID=\"scan_catalog\"/>";
+
+    private File _file;
+}
@@ -0,0 +1,108 @@
+/*
+ * web: org.nrg.xnat.utils.TestChecksumEngine
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.utils;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestChecksumEngine {
+    @BeforeClass
+    public static void setup() throws IOException {
+        _tree = Files.createTempDirectory("checksums").toFile();
+        final Random random = new Random(SEED);
+        for (int index = 0; index < FILES; index++) {
+            // Include empty files, files smaller than one read, and files that span several reads.
+            final byte[] data = new byte[index == 0 ? 0 : random.nextInt(MAX_FILE_SIZE)];
+            random.nextBytes(data);
+            final File file = new File(_tree, index + ".dcm");
+            Files.write(file.toPath(), data);
+            _files.add(file);
+        }
+    }
+
+    @AfterClass
+    public static void teardown() throws IOException {
+        org.apache.commons.io.FileUtils.deleteDirectory(_tree);
+    }
+
+    @Test
+    public void testDigestsMatchReferenceImplementations() throws IOException {
+        for (final File file : _files) {
+            final byte[] data = Files.readAllBytes(file.toPath());
+            assertEquals(DigestUtils.md5Hex(data), ChecksumEngine.hash(file, ChecksumEngine.MD5));
+            assertEquals(DigestUtils.sha256Hex(data), ChecksumEngine.hash(file, "sha-256"));
+        }
+    }
+
+    @Test
+    public void testXxh64KnownValues() throws IOException {
+        assertEquals("ef46db3751d8e999", hashString(""));
+        assertEquals("d24ec4f1a98c6e5b", hashString("a"));
+        assertEquals("44bc2cf5ad770999", hashString("abc"));
+        assertEquals("fbcea83c8a378bf1", hashString("Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    public void testHashAllKeepsFileOrder() {
+        for (final String algorithm : ChecksumEngine.ALGORITHMS) {
+            final List<String> expected = _files.stream().map(file -> hash(file, algorithm)).collect(Collectors.toList());
+            assertEquals(expected, ChecksumEngine.hashAll(_files, 4, file -> hash(file, algorithm)));
+        }
+    }
+
+    @Test
+    public void testHashAllReturnsEmptyChecksumForFailures() {
+        final List<String> checksums = ChecksumEngine.hashAll(_files, 4, file -> {
+            if (file.equals(_files.get(1))) {
+                throw new IllegalStateException("Can't hash " + file);
+            }
+            return hash(file, ChecksumEngine.MD5);
+        });
+        assertEquals(FILES, checksums.size());
+        assertEquals("", checksums.get(1));
+        assertEquals(hash(_files.get(2), ChecksumEngine.MD5), checksums.get(2));
+    }
+
+    private static String hash(final File file, final String algorithm) {
+        try {
+            return ChecksumEngine.hash(file, algorithm);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String hashString(final String value) throws IOException {
+        final File file = File.createTempFile("xxh64", ".txt", _tree);
+        Files.write(file.toPath(), value.getBytes(StandardCharsets.UTF_8));
+        return ChecksumEngine.hash(file, ChecksumEngine.XXH64);
+    }
+
+    private static final long SEED          = 8675309L;
+    private static final int  FILES         = 20;
+    private static final int  MAX_FILE_SIZE = 1024 * 1024;
+
+    private static final List<File> _files = new ArrayList<>();
+
+    private static File _tree;
+}
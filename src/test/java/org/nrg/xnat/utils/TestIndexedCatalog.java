@@ -0,0 +1,128 @@
+/*
+ * web: org.nrg.xnat.utils.TestIndexedCatalog
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xdat.bean.CatCatalogBean;
+import org.nrg.xdat.bean.CatDcmentryBean;
+import org.nrg.xdat.bean.CatEntryBean;
+import org.nrg.xdat.model.CatEntryI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestIndexedCatalog {
+    @Before
+    public void setup() throws Exception {
+        _catalog = new CatCatalogBean();
+        final CatCatalogBean scans = new CatCatalogBean();
+        final CatCatalogBean nested = new CatCatalogBean();
+        scans.addSets_entryset(nested);
+        _catalog.addSets_entryset(scans);
+
+        for (int index = 0; index < 20; index++) {
+            nested.addEntries_entry(dicom("nested/" + index + ".dcm", "1.2.3." + index));
+            scans.addEntries_entry(dicom("scans/" + index + ".dcm", "1.2.4." + index));
+            _catalog.addEntries_entry(entry("top/" + index + ".txt"));
+        }
+
+        // The same URI in an entry set and at the top level, where the entry set is searched first.
+        scans.addEntries_entry(entry("duplicate.txt"));
+        _catalog.addEntries_entry(entry("duplicate.txt"));
+
+        // An encoded URI that only matches once decoded, at the top level, and the literal encoded URI in an entry set.
+        _catalog.addEntries_entry(entry("with space.txt"));
+        nested.addEntries_entry(entry("other%20name.txt"));
+        scans.addEntries_entry(entry("other name.txt"));
+
+        // A DICOM UID shared by two entries.
+        nested.addEntries_entry(dicom("nested/copy.dcm", "1.2.4.0"));
+
+        _keys.addAll(Arrays.asList("nested/3.dcm", "scans/7.dcm", "top/19.txt", "duplicate.txt", "with%20space.txt", "with space.txt",
+                                   "other%20name.txt", "other name.txt", "missing.txt", "1.2.3.5", "1.2.4.0", "3.dcm", "19.txt", "bad%zzname"));
+    }
+
+    @Test
+    public void testLookupsMatchCatalogUtils() {
+        final IndexedCatalog indexed = new IndexedCatalog(_catalog);
+        for (final String key : _keys) {
+            if (!key.contains("%zz")) {
+                assertSame(key, CatalogUtils.getEntryByURI(_catalog, key), indexed.getEntryByURI(key));
+                assertSame(key, CatalogUtils.getEntryByName(_catalog, key), indexed.getEntryByName(key));
+                assertSame(key, CatalogUtils.getEntryByURIOrId(_catalog, key), indexed.getEntryByURIOrId(key));
+            }
+            assertSame(key, CatalogUtils.getEntryById(_catalog, key), indexed.getEntryById(key));
+            assertSame(key, CatalogUtils.getDCMEntryByUID(_catalog, key), indexed.getDCMEntryByUID(key));
+        }
+    }
+
+    @Test
+    public void testIndexesFollowChanges() throws Exception {
+        final IndexedCatalog indexed = new IndexedCatalog(_catalog);
+        assertNull(indexed.getEntryByURI("added.txt"));
+
+        final CatEntryBean added = entry("added.txt");
+        indexed.addEntry(added);
+        assertSame(added, indexed.getEntryByURI("added.txt"));
+        assertSame(CatalogUtils.getEntryByURI(_catalog, "added.txt"), indexed.getEntryByURI("added.txt"));
+
+        final CatEntryI renamed = indexed.getEntryByURI("top/4.txt");
+        indexed.updateEntry(renamed, entry -> {
+            entry.setUri("top/renamed.txt");
+            entry.setId("top/renamed.txt");
+            return null;
+        });
+        assertNull(indexed.getEntryByURI("top/4.txt"));
+        assertSame(renamed, indexed.getEntryByURI("top/renamed.txt"));
+        assertSame(renamed, indexed.getEntryById("top/renamed.txt"));
+
+        assertTrue(indexed.removeEntry(added));
+        assertNull(indexed.getEntryByURI("added.txt"));
+        assertNull(CatalogUtils.getEntryByURI(_catalog, "added.txt"));
+
+        final CatEntryI duplicate = indexed.getEntryByURI("duplicate.txt");
+        assertTrue(indexed.removeEntry(duplicate));
+        assertSame(CatalogUtils.getEntryByURI(_catalog, "duplicate.txt"), indexed.getEntryByURI("duplicate.txt"));
+        assertNotNull(indexed.getEntryByURI("duplicate.txt"));
+
+        for (final String key : _keys) {
+            if (!key.contains("%zz")) {
+                assertSame(key, CatalogUtils.getEntryByURI(_catalog, key), indexed.getEntryByURI(key));
+            }
+        }
+    }
+
+    private static CatEntryBean entry(final String uri) {
+        final CatEntryBean entry = new CatEntryBean();
+        populate(entry, uri);
+        return entry;
+    }
+
+    private static CatDcmentryBean dicom(final String uri, final String uid) {
+        final CatDcmentryBean entry = new CatDcmentryBean();
+        populate(entry, uri);
+        entry.setUid(uid);
+        return entry;
+    }
+
+    private static void populate(final CatEntryBean entry, final String uri) {
+        entry.setUri(uri);
+        entry.setId(uri);
+        entry.setName(uri.substring(uri.lastIndexOf('/') + 1));
+    }
+
+    private final List<String> _keys = new ArrayList<>();
+
+    private CatCatalogBean _catalog;
+}
@@ -0,0 +1,160 @@
+/*
+ * web: org.nrg.xnat.utils.zip.TestParallelZipWriter
+ * XNAT http://www.xnat.org
+ * Copyright (c) 2005-2021, Washington University School of Medicine and Howard Hughes Medical Institute
+ * All Rights Reserved
+ *
+ * Released under the Simplified BSD.
+ */
+
+package org.nrg.xnat.utils.zip;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.*;
+
+import static org.junit.Assert.*;
+
+public class TestParallelZipWriter {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEntriesRoundTripInOrder() throws IOException {
+        final Map<String, byte[]> expected = new LinkedHashMap<>();
+        expected.put("scans/1/text.txt", getCompressibleBytes(3 * 1024 * 1024 + 17));
+        expected.put("scans/1/image.nii.gz", getRandomBytes(1024 * 1024));
+        expected.put("scans/1/empty.txt", new byte[0]);
+        expected.put("scans/1/two-blocks.bin", getCompressibleBytes(2 * 128 * 1024));
+        expected.put("scans/1/jpeg.dcm", getDicomBytes(JPEG_BASELINE, getRandomBytes(5000)));
+        expected.put("scans/1/uncompressed.dcm", getDicomBytes(EXPLICIT_VR_LITTLE_ENDIAN, getCompressibleBytes(50000)));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final ParallelZipWriter zip = new ParallelZipWriter(output)) {
+            for (final Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                assertEquals(entry.getValue().length, zip.write(entry.getKey(), createFile(entry.getKey(), entry.getValue())));
+            }
+            zip.write("catalog.xml", new ByteArrayInputStream(expected.get("scans/1/text.txt")));
+            assertTrue(zip.hasEntry("catalog.xml"));
+        }
+        expected.put("catalog.xml", expected.get("scans/1/text.txt"));
+
+        final File zipFile = folder.newFile("test.zip");
+        Files.write(zipFile.toPath(), output.toByteArray());
+        final Map<String, Integer> methods = new HashMap<>();
+        try (final ZipFile zip = new ZipFile(zipFile)) {
+            final List<String> names = new ArrayList<>();
+            for (final Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                final ZipEntry entry = entries.nextElement();
+                names.add(entry.getName());
+                methods.put(entry.getName(), entry.getMethod());
+                try (final InputStream input = zip.getInputStream(entry)) {
+                    assertArrayEquals(entry.getName(), expected.get(entry.getName()), IOUtils.toByteArray(input));
+                }
+            }
+            assertEquals(new ArrayList<>(expected.keySet()), names);
+        }
+        assertEquals(ZipEntry.STORED, (int) methods.get("scans/1/image.nii.gz"));
+        assertEquals(ZipEntry.STORED, (int) methods.get("scans/1/jpeg.dcm"));
+        assertEquals(ZipEntry.DEFLATED, (int) methods.get("scans/1/uncompressed.dcm"));
+        assertEquals(ZipEntry.DEFLATED, (int) methods.get("scans/1/text.txt"));
+
+        // Streaming readers rely on the local headers and data descriptors rather than the central directory.
+        int count = 0;
+        try (final ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                assertArrayEquals(entry.getName(), expected.get(entry.getName()), IOUtils.toByteArray(input));
+                count++;
+            }
+        }
+        assertEquals(expected.size(), count);
+    }
+
+    @Test
+    public void testStoredMethodStoresEverything() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final ParallelZipWriter zip = new ParallelZipWriter(output, ZipOutputStream.STORED)) {
+            zip.write("text.txt", createFile("text.txt", getCompressibleBytes(100000)));
+        }
+        try (final ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertEquals(ZipEntry.STORED, input.getNextEntry().getMethod());
+        }
+    }
+
+    @Test(expected = ZipException.class)
+    public void testDuplicateEntriesAreRejected() throws IOException {
+        try (final ParallelZipWriter zip = new ParallelZipWriter(new ByteArrayOutputStream())) {
+            zip.write("text.txt", new ByteArrayInputStream(new byte[10]));
+            zip.write("text.txt", new ByteArrayInputStream(new byte[10]));
+        }
+    }
+
+    @Test
+    public void testTransferSyntaxDetection() throws IOException {
+        assertEquals(JPEG_BASELINE, ZipCompressionPolicy.getTransferSyntax(createFile("jpeg.dcm", getDicomBytes(JPEG_BASELINE, new byte[10]))));
+        assertNull(ZipCompressionPolicy.getTransferSyntax(createFile("text.dcm", "not a DICOM file".getBytes(StandardCharsets.US_ASCII))));
+        assertTrue(ZipCompressionPolicy.isCompressedTransferSyntax("1.2.840.10008.1.2.4.90"));
+        assertTrue(ZipCompressionPolicy.isCompressedTransferSyntax("1.2.840.10008.1.2.5"));
+        assertFalse(ZipCompressionPolicy.isCompressedTransferSyntax(EXPLICIT_VR_LITTLE_ENDIAN));
+        assertFalse(ZipCompressionPolicy.isCompressedTransferSyntax(null));
+    }
+
+    private File createFile(final String path, final byte[] contents) throws IOException {
+        // The compression policy looks at the file name, so keep the name of the entry.
+        final File file = new File(folder.newFolder(), new File(path).getName());
+        Files.write(file.toPath(), contents);
+        return file;
+    }
+
+    private static byte[] getCompressibleBytes(final int length) {
+        final byte[] bytes = new byte[length];
+        for (int index = 0; index < length; index++) {
+            bytes[index] = (byte) ("the quick brown fox " + (index / 97)).charAt(index % 20);
+        }
+        return bytes;
+    }
+
+    private static byte[] getRandomBytes(final int length) {
+        final byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Creates a minimal DICOM file: the preamble, the DICM prefix, and file meta information with the group length,
+     * version, and transfer syntax, followed by the specified data.
+     */
+    private static byte[] getDicomBytes(final String transferSyntax, final byte[] data) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(new byte[128]);
+        output.write("DICM".getBytes(StandardCharsets.US_ASCII));
+        writeElement(output, 0x0000, "UL", new byte[4]);
+        writeElement(output, 0x0001, "OB", new byte[]{0, 1});
+        final String uid = transferSyntax.length() % 2 == 0 ? transferSyntax : transferSyntax + "\0";
+        writeElement(output, 0x0010, "UI", uid.getBytes(StandardCharsets.US_ASCII));
+        output.write(data);
+        return output.toByteArray();
+    }
+
+    private static void writeElement(final OutputStream output, final int element, final String vr, final byte[] value) throws IOException {
+        output.write(new byte[]{0x02, 0x00, (byte) element, (byte) (element >> 8)});
+        output.write(vr.getBytes(StandardCharsets.US_ASCII));
+        if (vr.equals("OB")) {
+            output.write(new byte[]{0, 0, (byte) value.length, (byte) (value.length >> 8), 0, 0});
+        } else {
+            output.write(new byte[]{(byte) value.length, (byte) (value.length >> 8)});
+        }
+        output.write(value);
+    }
+
+    private static final String JPEG_BASELINE             = "1.2.840.10008.1.2.4.50";
+    private static final String EXPLICIT_VR_LITTLE_ENDIAN = "1.2.840.10008.1.2.1";
+}
@@ -0,0 +1,178 @@
+package org.nrg.xnat.web.http;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs conditional and byte range requests for a file through the servlet request and response used by the container
+ * and checks the status, headers, and content of each response.
+ */
+public class TestRangedFileDelivery {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void createFile() throws IOException {
+        _content = new byte[FILE_LENGTH];
+        new Random(FILE_LENGTH).nextBytes(_content);
+        _file = folder.newFile("image.dcm");
+        Files.write(_file.toPath(), _content);
+    }
+
+    @Test
+    public void testFullDeliveryWithValidators() throws IOException {
+        final MockHttpServletResponse response = deliver(request("GET"), DIGEST);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals("\"" + DIGEST + "\"", response.getHeader("ETag"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertNotNull(response.getHeader("Last-Modified"));
+        assertEquals(Integer.toString(FILE_LENGTH), response.getHeader("Content-Length"));
+        assertArrayEquals(_content, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void testWeakEntityTagWithoutDigest() throws IOException {
+        final MockHttpServletResponse response = deliver(request("GET"), null);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertTrue(response.getHeader("ETag").startsWith("W/\""));
+        assertArrayEquals(_content, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void testNotModified() throws IOException {
+        final MockHttpServletRequest byTag = request("GET");
+        byTag.addHeader("If-None-Match", "\"other\", \"" + DIGEST + "\"");
+        final MockHttpServletResponse tagResponse = deliver(byTag, DIGEST);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, tagResponse.getStatus());
+        assertEquals("\"" + DIGEST + "\"", tagResponse.getHeader("ETag"));
+        assertEquals(0, tagResponse.getContentAsByteArray().length);
+
+        final String                  lastModified = deliver(request("GET"), null).getHeader("Last-Modified");
+        final MockHttpServletRequest  byDate       = request("GET");
+        byDate.addHeader("If-Modified-Since", lastModified);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, deliver(byDate, null).getStatus());
+
+        final MockHttpServletRequest changed = request("GET");
+        changed.addHeader("If-None-Match", "\"other\"");
+        changed.addHeader("If-Modified-Since", lastModified);
+        final MockHttpServletResponse changedResponse = deliver(changed, DIGEST);
+        assertEquals(HttpServletResponse.SC_OK, changedResponse.getStatus());
+        assertArrayEquals(_content, changedResponse.getContentAsByteArray());
+    }
+
+    @Test
+    public void testPartialContent() throws IOException {
+        assertRange("bytes=0-99", 0, 99);
+        assertRange("bytes=1000-", 1000, FILE_LENGTH - 1);
+        assertRange("bytes=-500", FILE_LENGTH - 500, FILE_LENGTH - 1);
+        assertRange("bytes=4000-999999", 4000, FILE_LENGTH - 1);
+    }
+
+    @Test
+    public void testIfRange() throws IOException {
+        final MockHttpServletRequest matching = request("GET");
+        matching.addHeader("Range", "bytes=10-19");
+        matching.addHeader("If-Range", "\"" + DIGEST + "\"");
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, deliver(matching, DIGEST).getStatus());
+
+        final MockHttpServletRequest changed = request("GET");
+        changed.addHeader("Range", "bytes=10-19");
+        changed.addHeader("If-Range", "\"other\"");
+        final MockHttpServletResponse response = deliver(changed, DIGEST);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertArrayEquals(_content, response.getContentAsByteArray());
+
+        final MockHttpServletRequest weak = request("GET");
+        weak.addHeader("Range", "bytes=10-19");
+        weak.addHeader("If-Range", deliver(request("GET"), null).getHeader("ETag"));
+        assertEquals(HttpServletResponse.SC_OK, deliver(weak, null).getStatus());
+    }
+
+    @Test
+    public void testUnsatisfiableAndIgnoredRanges() throws IOException {
+        final MockHttpServletRequest unsatisfiable = request("GET");
+        unsatisfiable.addHeader("Range", "bytes=" + FILE_LENGTH + "-");
+        final MockHttpServletResponse response = deliver(unsatisfiable, DIGEST);
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+        assertEquals("bytes */" + FILE_LENGTH, response.getHeader("Content-Range"));
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        for (final String ignored : Arrays.asList("bytes=0-9,20-29", "bytes=20-10", "items=0-9", "bytes=abc")) {
+            final MockHttpServletRequest request = request("GET");
+            request.addHeader("Range", ignored);
+            final MockHttpServletResponse full = deliver(request, DIGEST);
+            assertEquals(ignored, HttpServletResponse.SC_OK, full.getStatus());
+            assertArrayEquals(ignored, _content, full.getContentAsByteArray());
+        }
+
+        final MockHttpServletRequest post = request("POST");
+        post.addHeader("Range", "bytes=0-9");
+        post.addHeader("If-None-Match", "\"" + DIGEST + "\"");
+        assertEquals(HttpServletResponse.SC_OK, deliver(post, DIGEST).getStatus());
+    }
+
+    @Test
+    public void testRangeIsIgnoredForHead() throws IOException {
+        final MockHttpServletRequest head = request("HEAD");
+        head.addHeader("Range", "bytes=0-99");
+        final RangedFileDelivery delivery = RangedFileDelivery.forRequest(head, _file, DIGEST);
+        // The restlet representation sets its size from the length before it knows whether the content will be written.
+        assertEquals(HttpServletResponse.SC_OK, delivery.getStatus());
+        assertEquals(FILE_LENGTH, delivery.getLength());
+        assertNull(delivery.getContentRange());
+
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        delivery.deliver(response);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals(Integer.toString(FILE_LENGTH), response.getHeader("Content-Length"));
+        assertNull(response.getHeader("Content-Range"));
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        final MockHttpServletRequest conditional = request("HEAD");
+        conditional.addHeader("Range", "bytes=0-99");
+        conditional.addHeader("If-None-Match", "\"" + DIGEST + "\"");
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, deliver(conditional, DIGEST).getStatus());
+    }
+
+    private void assertRange(final String range, final int first, final int last) throws IOException {
+        final MockHttpServletRequest request = request("GET");
+        request.addHeader("Range", range);
+        final MockHttpServletResponse response = deliver(request, DIGEST);
+
+        assertEquals(range, HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals(range, "bytes " + first + "-" + last + "/" + FILE_LENGTH, response.getHeader("Content-Range"));
+        assertEquals(range, Integer.toString(last - first + 1), response.getHeader("Content-Length"));
+        assertArrayEquals(range, Arrays.copyOfRange(_content, first, last + 1), response.getContentAsByteArray());
+    }
+
+    private MockHttpServletResponse deliver(final MockHttpServletRequest request, final String digest) throws IOException {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        RangedFileDelivery.forRequest(request, _file, digest).deliver(response);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(final String method) {
+        return new MockHttpServletRequest(method, "/archive/cache/1");
+    }
+
+    private static final int    FILE_LENGTH = 5000;
+    private static final String DIGEST      = "1f2e3d4c5b6a79881f2e3d4c5b6a7988";
+
+    private byte[] _content;
+    private File   _file;
+}